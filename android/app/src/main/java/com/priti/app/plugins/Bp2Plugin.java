@@ -12,11 +12,11 @@ import com.lepu.blepro.event.InterfaceEvent;
 import com.lepu.blepro.objs.Bluetooth;
 import androidx.lifecycle.MutableLiveData;
 import com.jeremyliao.liveeventbus.LiveEventBus;
+import com.priti.bp2codec.Bp2Codec;
+import com.priti.bp2codec.EcgArchive;
 import android.util.Log;
 import android.content.Context;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.ArrayList;
 
 @CapacitorPlugin(name = "Bp2")
@@ -25,6 +25,10 @@ public class Bp2Plugin extends Plugin {
     private Object bleHelperInstance = null;
     private int currentModel = Bluetooth.MODEL_BP2; // Default to BP2, will be detected
     private boolean isBp2w = false;
+    // One observer per vendor event key; replies are routed to waiting calls instead of per-call observers
+    private final VendorReplyDispatcher replies = new VendorReplyDispatcher();
+    private static final long FILE_LIST_TIMEOUT_MS = 15000L;
+    private static final long READ_FILE_TIMEOUT_MS = 60000L;
 
     private Object getBleHelper() {
         if (bleHelperInstance != null) {
@@ -58,6 +62,26 @@ public class Bp2Plugin extends Plugin {
         // Observe service ready (SDK posts this)
         LiveEventBus.get(EventMsgConst.Ble.EventServiceConnectedAndInterfaceInit, Boolean.class)
             .observeForever(ready -> serviceReady.postValue(true));
+        // Read replies are matched to the requested record by file name
+        VendorReplyDispatcher.Correlator byFileName = evt -> readFileName(evt.getData());
+        replies.correlate(InterfaceEvent.BP2.EventBp2ReadFileComplete, byFileName);
+        replies.correlate(InterfaceEvent.BP2W.EventBp2wReadFileComplete, byFileName);
+        // Read errors that name their file fail only that read
+        replies.correlate(InterfaceEvent.BP2.EventBp2ReadFileError, byFileName);
+        replies.correlate(InterfaceEvent.BP2W.EventBp2wReadFileError, byFileName);
+        replies.failOn(InterfaceEvent.BP2.EventBp2ReadFileError, InterfaceEvent.BP2.EventBp2ReadFileComplete);
+        replies.failOn(InterfaceEvent.BP2W.EventBp2wReadFileError, InterfaceEvent.BP2W.EventBp2wReadFileComplete);
+    }
+
+    private static String readFileName(Object data) {
+        if (data == null) return null;
+        for (String mn : new String[]{"getFileName", "getName"}) {
+            try {
+                Object v = data.getClass().getMethod(mn).invoke(data);
+                if (v != null) return String.valueOf(v);
+            } catch (Throwable ignore) {}
+        }
+        return null;
     }
 
     @PluginMethod
@@ -99,6 +123,18 @@ public class Bp2Plugin extends Plugin {
             Log.w("Bp2Plugin", "Could not detect model, using default BP2", e);
         }
 
+        // Concurrent list requests share one device round trip and one reply
+        final String key = isBp2w ? InterfaceEvent.BP2W.EventBp2wFileList : InterfaceEvent.BP2.EventBp2FileList;
+        boolean send = replies.await(key, "", FILE_LIST_TIMEOUT_MS, new VendorReplyDispatcher.Reply() {
+            @Override public void onReply(InterfaceEvent evt) { handleFileListResponse(evt, call); }
+
+            @Override public void onFailure(String message) { call.reject(message); }
+        });
+        if (!send) {
+            Log.d("Bp2Plugin", "File list already requested; waiting on the pending reply");
+            return;
+        }
+
         try {
             bleHelper.getClass().getMethod("setInterfaces", int.class).invoke(bleHelper, currentModel);
             
@@ -112,17 +148,7 @@ public class Bp2Plugin extends Plugin {
             }
         } catch (Exception e) {
             Log.e("Bp2Plugin", "Failed to request file list", e);
-            call.reject("Failed to request file list: " + e.getMessage());
-            return;
-        }
-
-        // Listen for file list response
-        if (!isBp2w) {
-            LiveEventBus.get(InterfaceEvent.BP2.EventBp2FileList, InterfaceEvent.class)
-                .observeForever(evt -> handleFileListResponse(evt, call));
-        } else {
-            LiveEventBus.get(InterfaceEvent.BP2W.EventBp2wFileList, InterfaceEvent.class)
-                .observeForever(evt -> handleFileListResponse(evt, call));
+            replies.fail(key, "", "Failed to request file list: " + e.getMessage());
         }
     }
 
@@ -198,6 +224,10 @@ public class Bp2Plugin extends Plugin {
         }
 
         // Request file read based on model
+        final boolean useBp2w = isBp2w;
+        final String completeKey = useBp2w
+                ? InterfaceEvent.BP2W.EventBp2wReadFileComplete
+                : InterfaceEvent.BP2.EventBp2ReadFileComplete;
         try {
             Object bleHelper = getBleHelper();
             if (bleHelper == null) {
@@ -205,84 +235,56 @@ public class Bp2Plugin extends Plugin {
                 return;
             }
 
-            if (!isBp2w) {
-                java.lang.reflect.Method bp2ReadFile = bleHelper.getClass().getMethod("bp2ReadFile", int.class, String.class);
-                bp2ReadFile.invoke(bleHelper, currentModel, recordId);
-            } else {
-                java.lang.reflect.Method bp2wReadFile = bleHelper.getClass().getMethod("bp2wReadFile", int.class, String.class);
-                bp2wReadFile.invoke(bleHelper, currentModel, recordId);
-            }
-
-            // Set up observers with proper cleanup to prevent memory leaks and duplicate resolves
-            final boolean useBp2w = isBp2w;
-            final String COMPLETE_KEY = useBp2w
-                    ? InterfaceEvent.BP2W.EventBp2wReadFileComplete
-                    : InterfaceEvent.BP2.EventBp2ReadFileComplete;
-            final String ERROR_KEY = useBp2w
-                    ? InterfaceEvent.BP2W.EventBp2wReadFileError
-                    : InterfaceEvent.BP2.EventBp2ReadFileError;
-
-            final java.util.concurrent.atomic.AtomicBoolean handled = new java.util.concurrent.atomic.AtomicBoolean(false);
-            final java.util.concurrent.atomic.AtomicReference<androidx.lifecycle.Observer<InterfaceEvent>> completeRef = new java.util.concurrent.atomic.AtomicReference<>();
-            final java.util.concurrent.atomic.AtomicReference<androidx.lifecycle.Observer<InterfaceEvent>> errorRef = new java.util.concurrent.atomic.AtomicReference<>();
-
-            androidx.lifecycle.Observer<InterfaceEvent> completeObs = evt -> {
-                if (handled.compareAndSet(false, true)) {
+            // Wait before sending so a fast reply cannot slip past; a second call for the same record joins the first
+            boolean send = replies.await(completeKey, recordId, READ_FILE_TIMEOUT_MS, new VendorReplyDispatcher.Reply() {
+                @Override public void onReply(InterfaceEvent evt) {
                     try {
-                        // stop listening first to avoid races
-                        LiveEventBus.get(COMPLETE_KEY, InterfaceEvent.class).removeObserver(completeRef.get());
-                        LiveEventBus.get(ERROR_KEY, InterfaceEvent.class).removeObserver(errorRef.get());
-
-                        // process success
-                        Object data = evt.getData();
-                        handleBp2EcgComplete(data, call, useBp2w);
+                        handleBp2EcgComplete(evt.getData(), call, useBp2w);
                     } catch (Throwable t) {
                         call.reject("Error handling ECG completion: " + t.getMessage());
                     }
                 }
-            };
-            completeRef.set(completeObs);
-            LiveEventBus.get(COMPLETE_KEY, InterfaceEvent.class).observeForever(completeObs);
-
-            androidx.lifecycle.Observer<InterfaceEvent> errorObs = evt -> {
-                if (handled.compareAndSet(false, true)) {
-                    // stop listening
-                    LiveEventBus.get(COMPLETE_KEY, InterfaceEvent.class).removeObserver(completeRef.get());
-                    LiveEventBus.get(ERROR_KEY, InterfaceEvent.class).removeObserver(errorRef.get());
-
-                    // propagate error
-                    call.reject("Read error: " + String.valueOf(evt.getData()));
-                }
-            };
-            errorRef.set(errorObs);
-            LiveEventBus.get(ERROR_KEY, InterfaceEvent.class).observeForever(errorObs);
 
+                @Override public void onFailure(String message) { call.reject(message); }
+            });
+            if (!send) return;
+
+            if (!useBp2w) {
+                java.lang.reflect.Method bp2ReadFile = bleHelper.getClass().getMethod("bp2ReadFile", int.class, String.class);
+                bp2ReadFile.invoke(bleHelper, currentModel, recordId);
+            } else {
+                java.lang.reflect.Method bp2wReadFile = bleHelper.getClass().getMethod("bp2wReadFile", int.class, String.class);
+                bp2wReadFile.invoke(bleHelper, currentModel, recordId);
+            }
         } catch (Exception e) {
             Log.e("Bp2Plugin", "Error requesting file read", e);
-            call.reject("Error requesting file read: " + e.getMessage());
+            replies.fail(completeKey, recordId, "Error requesting file read: " + e.getMessage());
         }
     }
 
+    @PluginMethod
+    public void getReplyStats(PluginCall call) {
+        JSObject ret = new JSObject();
+        ret.put("pending", replies.pendingCount());
+        ret.put("observers", replies.observerCount());
+        ret.put("replies", replies.replies());
+        ret.put("coalesced", replies.coalesced());
+        ret.put("timeouts", replies.timeouts());
+        ret.put("unmatched", replies.unmatched());
+        call.resolve(ret);
+    }
+
     private void handleBp2EcgComplete(Object data, PluginCall call, boolean isBp2w) {
         try {
             Log.d("Bp2Plugin", "Processing ECG file completion, BP2W: " + isBp2w);
             
-            // If the SDK ever returns an EcgFile directly
-            if (data != null && data.getClass().getSimpleName().contains("EcgFile")) {
-                Log.d("Bp2Plugin", "Data is already an EcgFile, processing directly");
-                resolveEcg(call, getWaveShortData(data), getWaveFloatData(data), 125, getRecordingTime(data));
-                return;
-            }
-            
-            // Extract wave data using our robust unwrapping
-            short[] shorts = getWaveShortData(data);
-            float[] floats = getWaveFloatData(data);
-            Integer durationSec = getRecordingTime(data);
+            // Unwrap/parse the EcgFile once and read every field from that single instance
+            DecodedEcgRecord rec = decodeEcgRecord(data);
             
-            Log.d("Bp2Plugin", "Resolving ECG data - shorts: " + (shorts != null ? shorts.length : 0) + 
-                  ", floats: " + (floats != null ? floats.length : 0));
+            Log.d("Bp2Plugin", "Resolving ECG data - shorts: " + (rec.shorts != null ? rec.shorts.length : 0) + 
+                  ", floats: " + (rec.floats != null ? rec.floats.length : 0) + ", decode " + rec.decodeMs + " ms");
             
-            resolveEcg(call, shorts, floats, 125, durationSec);
+            resolveEcg(call, rec.shorts, rec.floats, rec.sampleRate, rec.durationSec);
             
         } catch (Exception e) {
             Log.e("Bp2Plugin", "Error processing ECG completion", e);
@@ -290,6 +292,33 @@ public class Bp2Plugin extends Plugin {
         }
     }
 
+    /** One EcgFile decoded once: waveform, duration and sample rate read from the same parsed instance. */
+    private static final class DecodedEcgRecord {
+        short[] shorts;
+        float[] floats;
+        Integer durationSec;
+        // BP2 default; replaced by the record's own rate when the EcgFile reports one
+        int sampleRate = 125;
+        long decodeMs;
+    }
+
+    private DecodedEcgRecord decodeEcgRecord(Object data) {
+        long t0 = android.os.SystemClock.elapsedRealtime();
+        DecodedEcgRecord rec = new DecodedEcgRecord();
+        Object ecg = resolveEcgFile(data);
+        if (ecg != null) {
+            rec.shorts = readWaveShorts(ecg);
+            if (rec.shorts == null || rec.shorts.length == 0) rec.floats = readWaveFloats(ecg);
+            rec.durationSec = readRecordingTime(ecg);
+            Integer sr = readSampleRate(ecg);
+            if (sr != null) rec.sampleRate = sr;
+        } else {
+            Log.w("Bp2Plugin", "No EcgFile available to read wave data");
+        }
+        rec.decodeMs = android.os.SystemClock.elapsedRealtime() - t0;
+        return rec;
+    }
+
     private Integer getFileType(Object file) {
         try {
             java.lang.reflect.Method getType = file.getClass().getMethod("getType");
@@ -364,208 +393,132 @@ public class Bp2Plugin extends Plugin {
         return null;
     }
 
-    private short[] getWaveShortData(Object file) {
-        try {
-            Log.d("Bp2Plugin", "=== getWaveShortData ===");
-            Object ecg = unwrapEcgFile(file);
+    private Object resolveEcgFile(Object file) {
+        if (file == null) return null;
+        Object ecg = unwrapEcgFile(file);
+        if (ecg != null) return ecg;
 
-            if (ecg == null) {
-                // Fallback: parse bytes -> EcgFile
-                Log.d("Bp2Plugin", "unwrapEcgFile failed, trying to build EcgFile from bytes");
-                byte[] content = null;
-                try {
-                    java.lang.reflect.Method m = file.getClass().getMethod("getContent");
-                    Object r = m.invoke(file);
-                    if (r instanceof byte[]) {
-                        content = (byte[]) r;
-                        Log.d("Bp2Plugin", "Got content bytes, length: " + content.length);
-                    }
-                } catch (Throwable t) {
-                    Log.d("Bp2Plugin", "getContent() not available: " + t);
-                }
-                if (content != null) {
-                    // Try to determine if this is BP2W based on the file object
-                    boolean isBp2w = false;
-                    try {
-                        String className = file.getClass().getName();
-                        isBp2w = className.contains("bp2w") || className.contains("BP2W");
-                    } catch (Throwable ignore) {}
-                    
-                    ecg = buildEcgFileFromBytes(content, isBp2w);
-                    if (ecg != null) {
-                        Log.d("Bp2Plugin", "Successfully built EcgFile from bytes");
-                    } else {
-                        Log.w("Bp2Plugin", "Failed to build EcgFile from bytes");
-                    }
-                }
+        // Fallback: parse bytes -> EcgFile
+        Log.d("Bp2Plugin", "unwrapEcgFile failed, trying to build EcgFile from bytes");
+        byte[] content = null;
+        try {
+            java.lang.reflect.Method m = file.getClass().getMethod("getContent");
+            Object r = m.invoke(file);
+            if (r instanceof byte[]) {
+                content = (byte[]) r;
+                Log.d("Bp2Plugin", "Got content bytes, length: " + content.length);
             }
+        } catch (Throwable t) {
+            Log.d("Bp2Plugin", "getContent() not available: " + t);
+        }
+        if (content == null) return null;
+        // Try to determine if this is BP2W based on the file object
+        boolean isBp2w = false;
+        try {
+            String className = file.getClass().getName();
+            isBp2w = className.contains("bp2w") || className.contains("BP2W");
+        } catch (Throwable ignore) {}
+
+        ecg = buildEcgFileFromBytes(content, isBp2w);
+        if (ecg != null) {
+            Log.d("Bp2Plugin", "Successfully built EcgFile from bytes");
+        } else {
+            Log.w("Bp2Plugin", "Failed to build EcgFile from bytes");
+        }
+        return ecg;
+    }
 
-            if (ecg == null) {
-                Log.w("Bp2Plugin", "No EcgFile available to read short data");
-                return null;
+    private short[] readWaveShorts(Object ecg) {
+        // Primary: getWaveShortData()
+        try {
+            java.lang.reflect.Method m = ecg.getClass().getMethod("getWaveShortData");
+            Object r = m.invoke(ecg);
+            if (r instanceof short[]) {
+                short[] shorts = (short[]) r;
+                Log.d("Bp2Plugin", "SUCCESS: Found short[] data from EcgFile: " + shorts.length + " samples");
+                return shorts;
             }
+        } catch (Throwable e) {
+            Log.d("Bp2Plugin", "EcgFile.getWaveShortData() not available: " + e);
+        }
 
-            // Primary: getWaveShortData()
+        // Fallbacks
+        for (String alt : new String[]{"getShortData", "getWaveData"}) {
             try {
-                java.lang.reflect.Method m = ecg.getClass().getMethod("getWaveShortData");
+                java.lang.reflect.Method m = ecg.getClass().getMethod(alt);
                 Object r = m.invoke(ecg);
                 if (r instanceof short[]) {
                     short[] shorts = (short[]) r;
-                    Log.d("Bp2Plugin", "SUCCESS: Found short[] data from EcgFile: " + shorts.length + " samples");
+                    Log.d("Bp2Plugin", "SUCCESS: Found short[] data via " + alt + ": " + shorts.length + " samples");
                     return shorts;
                 }
-            } catch (Throwable e) {
-                Log.d("Bp2Plugin", "EcgFile.getWaveShortData() not available: " + e);
-            }
-
-            // Fallbacks
-            for (String alt : new String[]{"getShortData", "getWaveData"}) {
-                try {
-                    java.lang.reflect.Method m = ecg.getClass().getMethod(alt);
-                    Object r = m.invoke(ecg);
-                    if (r instanceof short[]) {
-                        short[] shorts = (short[]) r;
-                        Log.d("Bp2Plugin", "SUCCESS: Found short[] data via " + alt + ": " + shorts.length + " samples");
-                        return shorts;
-                    }
-                    if (r instanceof byte[]) {
-                        byte[] b = (byte[]) r;
-                        short[] s = new short[b.length / 2];
-                        java.nio.ByteBuffer bb = java.nio.ByteBuffer.wrap(b).order(java.nio.ByteOrder.LITTLE_ENDIAN);
-                        for (int i = 0; i < s.length; i++) s[i] = bb.getShort();
-                        Log.d("Bp2Plugin", "SUCCESS: Converted byte[] to short[] via " + alt + ": " + s.length + " samples");
-                        return s;
-                    }
-                } catch (Throwable ignore) {}
-            }
-
-        } catch (Throwable t) {
-            Log.e("Bp2Plugin", "getWaveShortData fatal", t);
+                if (r instanceof byte[]) {
+                    byte[] b = (byte[]) r;
+                    short[] s = Bp2Codec.decodeInt16Le(b);
+                    Log.d("Bp2Plugin", "SUCCESS: Converted byte[] to short[] via " + alt + ": " + s.length + " samples");
+                    return s;
+                }
+            } catch (Throwable ignore) {}
         }
         return null;
     }
 
-    private float[] getWaveFloatData(Object file) {
+    private float[] readWaveFloats(Object ecg) {
         try {
-            Log.d("Bp2Plugin", "=== getWaveFloatData ===");
-            Object ecg = unwrapEcgFile(file);
-
-            if (ecg == null) {
-                // Fallback: parse bytes -> EcgFile
-                Log.d("Bp2Plugin", "unwrapEcgFile failed, trying to build EcgFile from bytes");
-                byte[] content = null;
-                try {
-                    java.lang.reflect.Method m = file.getClass().getMethod("getContent");
-                    Object r = m.invoke(file);
-                    if (r instanceof byte[]) {
-                        content = (byte[]) r;
-                        Log.d("Bp2Plugin", "Got content bytes, length: " + content.length);
-                    }
-                } catch (Throwable t) {
-                    Log.d("Bp2Plugin", "getContent() not available: " + t);
-                }
-                if (content != null) {
-                    // Try to determine if this is BP2W based on the file object
-                    boolean isBp2w = false;
-                    try {
-                        String className = file.getClass().getName();
-                        isBp2w = className.contains("bp2w") || className.contains("BP2W");
-                    } catch (Throwable ignore) {}
-                    
-                    ecg = buildEcgFileFromBytes(content, isBp2w);
-                    if (ecg != null) {
-                        Log.d("Bp2Plugin", "Successfully built EcgFile from bytes");
-                    } else {
-                        Log.w("Bp2Plugin", "Failed to build EcgFile from bytes");
-                    }
-                }
-            }
-
-            if (ecg == null) {
-                Log.w("Bp2Plugin", "No EcgFile available to read float data");
-                return null;
+            java.lang.reflect.Method m = ecg.getClass().getMethod("getWaveFloatData");
+            Object r = m.invoke(ecg);
+            if (r instanceof float[]) {
+                float[] floats = (float[]) r;
+                Log.d("Bp2Plugin", "SUCCESS: Found float[] data from EcgFile: " + floats.length + " samples");
+                return floats;
             }
+        } catch (Throwable e) {
+            Log.d("Bp2Plugin", "EcgFile.getWaveFloatData() not available: " + e);
+        }
+        return null;
+    }
 
+    private Integer readRecordingTime(Object ecg) {
+        for (String name : new String[]{"getRecordingTime", "getRecordTime", "getDuration", "getTime"}) {
             try {
-                java.lang.reflect.Method m = ecg.getClass().getMethod("getWaveFloatData");
+                java.lang.reflect.Method m = ecg.getClass().getMethod(name);
                 Object r = m.invoke(ecg);
-                if (r instanceof float[]) {
-                    float[] floats = (float[]) r;
-                    Log.d("Bp2Plugin", "SUCCESS: Found float[] data from EcgFile: " + floats.length + " samples");
-                    return floats;
+                if (r instanceof Number) {
+                    int time = ((Number) r).intValue();
+                    Log.d("Bp2Plugin", "SUCCESS: Found recording time via " + name + ": " + time + " seconds");
+                    return time;
                 }
-            } catch (Throwable e) {
-                Log.d("Bp2Plugin", "EcgFile.getWaveFloatData() not available: " + e);
-            }
-        } catch (Throwable t) {
-            Log.e("Bp2Plugin", "getWaveFloatData fatal", t);
+            } catch (Throwable ignore) {}
         }
         return null;
     }
 
-    private Integer getRecordingTime(Object file) {
-        try {
-            Log.d("Bp2Plugin", "=== getRecordingTime ===");
-            Object ecg = unwrapEcgFile(file);
-
-            if (ecg == null) {
-                // Fallback: parse bytes -> EcgFile
-                Log.d("Bp2Plugin", "unwrapEcgFile failed, trying to build EcgFile from bytes");
-                byte[] content = null;
-                try {
-                    java.lang.reflect.Method m = file.getClass().getMethod("getContent");
-                    Object r = m.invoke(file);
-                    if (r instanceof byte[]) {
-                        content = (byte[]) r;
-                        Log.d("Bp2Plugin", "Got content bytes, length: " + content.length);
-                    }
-                } catch (Throwable t) {
-                    Log.d("Bp2Plugin", "getContent() not available: " + t);
-                }
-                if (content != null) {
-                    // Try to determine if this is BP2W based on the file object
-                    boolean isBp2w = false;
-                    try {
-                        String className = file.getClass().getName();
-                        isBp2w = className.contains("bp2w") || className.contains("BP2W");
-                    } catch (Throwable ignore) {}
-                    
-                    ecg = buildEcgFileFromBytes(content, isBp2w);
-                    if (ecg != null) {
-                        Log.d("Bp2Plugin", "Successfully built EcgFile from bytes");
-                    } else {
-                        Log.w("Bp2Plugin", "Failed to build EcgFile from bytes");
-                    }
+    private Integer readSampleRate(Object ecg) {
+        for (String name : new String[]{"getSampleRate", "getSamplingRate", "getFs", "getRate"}) {
+            try {
+                java.lang.reflect.Method m = ecg.getClass().getMethod(name);
+                Object r = m.invoke(ecg);
+                if (r instanceof Number) {
+                    int rate = ((Number) r).intValue();
+                    if (rate > 0 && rate < 1000) return rate;
                 }
-            }
-
-            if (ecg == null) {
-                Log.w("Bp2Plugin", "No EcgFile available to read recording time");
-                return null;
-            }
-
-            for (String name : new String[]{"getRecordingTime", "getRecordTime", "getDuration", "getTime"}) {
-                try {
-                    java.lang.reflect.Method m = ecg.getClass().getMethod(name);
-                    Object r = m.invoke(ecg);
-                    if (r instanceof Number) {
-                        int time = ((Number) r).intValue();
-                        Log.d("Bp2Plugin", "SUCCESS: Found recording time via " + name + ": " + time + " seconds");
-                        return time;
-                    }
-                } catch (Throwable ignore) {}
-            }
-        } catch (Throwable t) {
-            Log.e("Bp2Plugin", "getRecordingTime fatal", t);
+            } catch (Throwable ignore) {}
         }
         return null;
     }
 
     private void resolveEcg(PluginCall call, short[] shorts, float[] floats, int sampleRate, Integer durationSec) {
         if (shorts != null && shorts.length > 0) {
-            String base64 = shortsToBase64(shorts);
             JSObject ret = new JSObject();
-            ret.put("base64Int16", base64);
+            if ("archive".equalsIgnoreCase(call.getString("format", "int16"))) {
+                // Delta + zigzag varint blocks; decode with decodeEcgArchive() in plugins/bp2.ts
+                byte[] archive = EcgArchive.encode(shorts, shorts.length, sampleRate, 3.098f, durationSec != null ? durationSec * 1000L : 0L);
+                ret.put("archiveBase64", android.util.Base64.encodeToString(archive, android.util.Base64.NO_WRAP));
+                ret.put("archiveBytes", archive.length);
+                ret.put("sampleCount", shorts.length);
+            } else {
+                ret.put("base64Int16", shortsToBase64(shorts));
+            }
             ret.put("sampleRate", sampleRate);
             ret.put("scaleUvPerLsb", 3.098);
             if (durationSec != null) ret.put("durationSec", durationSec);
@@ -593,11 +546,58 @@ public class Bp2Plugin extends Plugin {
     }
 
     private String shortsToBase64(short[] data) {
-        ByteBuffer bb = ByteBuffer.allocate(data.length * 2).order(ByteOrder.LITTLE_ENDIAN);
-        for (short s : data) bb.putShort(s);
-        return android.util.Base64.encodeToString(bb.array(), android.util.Base64.NO_WRAP);
+        byte[] bytes = new byte[data.length * 2];
+        Bp2Codec.encodeInt16Le(data, data.length, bytes);
+        return android.util.Base64.encodeToString(bytes, android.util.Base64.NO_WRAP);
+    }
+
+    /**
+     * A resolved way to turn raw file bytes into an EcgFile: constructor, static factory, instance
+     * parse method or Kotlin Companion method, taking (bytes), (bytes, len) or (bytes, 0, len).
+     */
+    private static final class EcgFileFactory {
+        final java.lang.reflect.Constructor<?> ctor;
+        final java.lang.reflect.Method method;
+        final Object receiver;       // Companion instance, or null for static methods
+        final boolean instanceParse; // new EcgFile() then method(bytes...)
+        final String label;
+
+        EcgFileFactory(java.lang.reflect.Constructor<?> ctor, java.lang.reflect.Method method, Object receiver, boolean instanceParse, String label) {
+            this.ctor = ctor;
+            this.method = method;
+            this.receiver = receiver;
+            this.instanceParse = instanceParse;
+            this.label = label;
+        }
+
+        Object create(Class<?> ecgCls, byte[] content) throws Exception {
+            if (ctor != null && method == null) return ctor.newInstance((Object) content);
+            Object target = instanceParse ? ctor.newInstance() : receiver;
+            Object r = invokeWithBytes(method, target, content);
+            Object ecg = instanceParse ? target : r;
+            return ecg != null && ecgCls.isInstance(ecg) ? ecg : null;
+        }
+
+        static boolean acceptsBytes(java.lang.reflect.Method m) {
+            Class<?>[] p = m.getParameterTypes();
+            if (p.length == 0 || p[0] != byte[].class) return false;
+            return p.length == 1
+                || (p.length == 2 && p[1] == int.class)
+                || (p.length == 3 && p[1] == int.class && p[2] == int.class);
+        }
+
+        static Object invokeWithBytes(java.lang.reflect.Method m, Object target, byte[] content) throws Exception {
+            switch (m.getParameterCount()) {
+                case 1: return m.invoke(target, (Object) content);
+                case 2: return m.invoke(target, content, content.length);
+                default: return m.invoke(target, content, 0, content.length);
+            }
+        }
     }
 
+    // EcgFile class -> the factory that last parsed it successfully; avoids re-scanning ctors/Companion per record
+    private static final java.util.concurrent.ConcurrentHashMap<Class<?>, EcgFileFactory> ecgFactories = new java.util.concurrent.ConcurrentHashMap<>();
+
     private Object buildEcgFileFromBytes(byte[] content, boolean bp2w) {
         if (content == null || content.length == 0) return null;
 
@@ -609,92 +609,26 @@ public class Bp2Plugin extends Plugin {
             try {
                 Class<?> ecgCls = Class.forName(fqcn);
 
-                // A) new EcgFile(byte[])
-                try {
-                    var c = ecgCls.getDeclaredConstructor(byte[].class);
-                    c.setAccessible(true);
-                    Object ecg = c.newInstance((Object) content);
-                    Log.d("Bp2Plugin", "EcgFile(byte[]) -> " + fqcn);
-                    return ecg;
-                } catch (Throwable ignore) {}
-
-                // B) Static methods that return EcgFile and accept byte[] or (byte[],int,...) 
-                for (var m : ecgCls.getMethods()) {
-                    if (!java.lang.reflect.Modifier.isStatic(m.getModifiers())) continue;
-                    if (!ecgCls.isAssignableFrom(m.getReturnType())) continue;
-                    var params = m.getParameterTypes();
-                    if (params.length >= 1 && params[0] == byte[].class) {
-                        try {
-                            Object ecg;
-                            if (params.length == 1) {
-                                ecg = m.invoke(null, (Object) content);
-                            } else if (params.length == 2 && params[1] == int.class) {
-                                ecg = m.invoke(null, content, content.length);
-                            } else if (params.length == 3 && params[1] == int.class && params[2] == int.class) {
-                                ecg = m.invoke(null, content, 0, content.length);
-                            } else {
-                                continue;
-                            }
-                            if (ecg != null) {
-                                Log.d("Bp2Plugin", "static " + m.getName() + "(bytes...) -> " + fqcn);
-                                return ecg;
-                            }
-                        } catch (Throwable ignore) {}
-                    }
+                EcgFileFactory cached = ecgFactories.get(ecgCls);
+                if (cached != null) {
+                    try {
+                        Object ecg = cached.create(ecgCls, content);
+                        if (ecg != null) return ecg;
+                    } catch (Throwable ignore) {}
+                    // Cached path failed for this payload; fall through and re-probe
+                    ecgFactories.remove(ecgCls, cached);
                 }
 
-                // C) Instance parse/decode methods: new EcgFile(); ecg.parse/decode(...)
-                try {
-                    Object ecg = ecgCls.getDeclaredConstructor().newInstance();
-                    for (var m : ecgCls.getMethods()) {
-                        var name = m.getName();
-                        if (!(name.equals("parse") || name.equals("decode") || name.equals("fromBytes") || name.equals("load"))) continue;
-                        var params = m.getParameterTypes();
-                        if (params.length >= 1 && params[0] == byte[].class) {
-                            try {
-                                if (params.length == 1) {
-                                    m.invoke(ecg, (Object) content);
-                                } else if (params.length == 2 && params[1] == int.class) {
-                                    m.invoke(ecg, content, content.length);
-                                } else if (params.length == 3 && params[1] == int.class && params[2] == int.class) {
-                                    m.invoke(ecg, content, 0, content.length);
-                                } else {
-                                    continue;
-                                }
-                                Log.d("Bp2Plugin", "instance " + name + "(bytes...) -> " + fqcn);
-                                return ecg;
-                            } catch (Throwable ignore) {}
-                        }
-                    }
-                } catch (Throwable ignore) {}
-
-                // D) Kotlin Companion.*(bytes…)
-                try {
-                    var comp = ecgCls.getField("Companion").get(null);
-                    if (comp != null) {
-                        for (var m : comp.getClass().getMethods()) {
-                            var params = m.getParameterTypes();
-                            if (params.length >= 1 && params[0] == byte[].class) {
-                                try {
-                                    Object ecg;
-                                    if (params.length == 1) {
-                                        ecg = m.invoke(comp, (Object) content);
-                                    } else if (params.length == 2 && params[1] == int.class) {
-                                        ecg = m.invoke(comp, content, content.length);
-                                    } else if (params.length == 3 && params[1] == int.class && params[2] == int.class) {
-                                        ecg = m.invoke(comp, content, 0, content.length);
-                                    } else {
-                                        continue;
-                                    }
-                                    if (ecg != null && ecgCls.isInstance(ecg)) {
-                                        Log.d("Bp2Plugin", "Companion." + m.getName() + "(bytes...) -> " + fqcn);
-                                        return ecg;
-                                    }
-                                } catch (Throwable ignore) {}
-                            }
+                for (EcgFileFactory f : ecgFactoryCandidates(ecgCls)) {
+                    try {
+                        Object ecg = f.create(ecgCls, content);
+                        if (ecg != null) {
+                            ecgFactories.put(ecgCls, f);
+                            Log.d("Bp2Plugin", f.label + " -> " + fqcn + " (cached)");
+                            return ecg;
                         }
-                    }
-                } catch (Throwable ignore) {}
+                    } catch (Throwable ignore) {}
+                }
 
                 // Debug aid: list public methods once if nothing matched
                 Log.d("Bp2Plugin", "No parser matched in " + fqcn + ". Public methods:");
@@ -706,4 +640,44 @@ public class Bp2Plugin extends Plugin {
         Log.w("Bp2Plugin", "buildEcgFileFromBytes: no EcgFile parser/ctor found");
         return null;
     }
+
+    // Candidate factories in probe order: ctor(byte[]), static factories, instance parse/decode, Companion.*(bytes...)
+    private static java.util.List<EcgFileFactory> ecgFactoryCandidates(Class<?> ecgCls) {
+        java.util.List<EcgFileFactory> out = new ArrayList<>();
+
+        // A) new EcgFile(byte[])
+        try {
+            var c = ecgCls.getDeclaredConstructor(byte[].class);
+            c.setAccessible(true);
+            out.add(new EcgFileFactory(c, null, null, false, "EcgFile(byte[])"));
+        } catch (Throwable ignore) {}
+
+        // B) Static methods that return EcgFile and accept byte[] or (byte[],int,...)
+        for (var m : ecgCls.getMethods()) {
+            if (!java.lang.reflect.Modifier.isStatic(m.getModifiers())) continue;
+            if (!ecgCls.isAssignableFrom(m.getReturnType())) continue;
+            if (EcgFileFactory.acceptsBytes(m)) out.add(new EcgFileFactory(null, m, null, false, "static " + m.getName() + "(bytes...)"));
+        }
+
+        // C) Instance parse/decode methods: new EcgFile(); ecg.parse/decode(...)
+        try {
+            var noArg = ecgCls.getDeclaredConstructor();
+            for (var m : ecgCls.getMethods()) {
+                var name = m.getName();
+                if (!(name.equals("parse") || name.equals("decode") || name.equals("fromBytes") || name.equals("load"))) continue;
+                if (EcgFileFactory.acceptsBytes(m)) out.add(new EcgFileFactory(noArg, m, null, true, "instance " + name + "(bytes...)"));
+            }
+        } catch (Throwable ignore) {}
+
+        // D) Kotlin Companion.*(bytes…)
+        try {
+            var comp = ecgCls.getField("Companion").get(null);
+            if (comp != null) {
+                for (var m : comp.getClass().getMethods()) {
+                    if (EcgFileFactory.acceptsBytes(m)) out.add(new EcgFileFactory(null, m, comp, false, "Companion." + m.getName() + "(bytes...)"));
+                }
+            }
+        } catch (Throwable ignore) {}
+        return out;
+    }
 }
@@ -0,0 +1,211 @@
+package com.priti.app.plugins;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.lifecycle.Observer;
+
+import com.jeremyliao.liveeventbus.LiveEventBus;
+import com.lepu.blepro.event.InterfaceEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Request/response routing for vendor SDK events.
+ *
+ * Each event key gets one observer for the life of the plugin, registered the first time a request
+ * waits on it. Waiting requests sit in a per-key correlation table (id -> pending calls, in arrival
+ * order) with a timeout each. A reply goes to the group whose id the key's {@link Correlator}
+ * extracts from the event, or to the oldest group when the event carries no id at all. An id that
+ * matches no waiting group (a reply to a request that already timed out, or one nobody asked for)
+ * is counted as unmatched and dropped, never handed to another request. Error events are matched
+ * the same way. Requests that share an id share one reply, so the caller only needs to hit the
+ * device for the first one.
+ */
+final class VendorReplyDispatcher {
+
+    private static final String TAG = "VendorReplyDispatcher";
+
+    interface Reply {
+        void onReply(InterfaceEvent evt);
+
+        void onFailure(String message);
+    }
+
+    /** Pulls the correlation id out of a reply event; may return null. */
+    interface Correlator {
+        String idOf(InterfaceEvent evt);
+    }
+
+    private static final class Pending {
+        final Reply reply;
+        final Runnable timeout;
+
+        Pending(Reply reply, Runnable timeout) {
+            this.reply = reply;
+            this.timeout = timeout;
+        }
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    // key -> (correlation id -> waiting calls); LinkedHashMap keeps the oldest id first
+    private final Map<String, LinkedHashMap<String, List<Pending>>> table = new HashMap<>();
+    private final Map<String, Correlator> correlators = new HashMap<>();
+    // error key -> the reply key whose matching (or, without an id, oldest) request it fails
+    private final Map<String, String> errorRoutes = new HashMap<>();
+    private final Map<String, Observer<InterfaceEvent>> observers = new HashMap<>();
+
+    private long replies = 0L;
+    private long coalesced = 0L;
+    private long timeouts = 0L;
+    private long unmatched = 0L;
+
+    /** Sets how replies on {@code key} are matched to requests. Without one, the oldest request wins. */
+    synchronized void correlate(String key, Correlator correlator) {
+        correlators.put(key, correlator);
+    }
+
+    /**
+     * Events on {@code errorKey} fail the request waiting on {@code replyKey} they correlate to (via the error
+     * key's correlator if set, else the reply key's); an error that carries no id fails the oldest request.
+     */
+    synchronized void failOn(String errorKey, String replyKey) {
+        errorRoutes.put(errorKey, replyKey);
+        ensureObserver(errorKey);
+    }
+
+    /**
+     * Waits for a reply on {@code key} correlated to {@code id}.
+     *
+     * @return true if no identical request was already waiting, i.e. the caller should send the command
+     */
+    synchronized boolean await(final String key, final String id, long timeoutMs, Reply reply) {
+        ensureObserver(key);
+        LinkedHashMap<String, List<Pending>> byId = table.get(key);
+        if (byId == null) {
+            byId = new LinkedHashMap<>();
+            table.put(key, byId);
+        }
+        List<Pending> group = byId.get(id);
+        boolean first = group == null;
+        if (first) {
+            group = new ArrayList<>(1);
+            byId.put(id, group);
+        } else {
+            coalesced++;
+        }
+        final Pending[] self = new Pending[1];
+        Runnable timeout = () -> {
+            if (remove(key, id, self[0])) {
+                synchronized (VendorReplyDispatcher.this) { timeouts++; }
+                self[0].reply.onFailure("Timed out waiting for device reply");
+            }
+        };
+        self[0] = new Pending(reply, timeout);
+        group.add(self[0]);
+        handler.postDelayed(timeout, timeoutMs);
+        return first;
+    }
+
+    /** Fails every request waiting on {@code key}/{@code id} (e.g. the command could not be sent). */
+    void fail(String key, String id, String message) {
+        List<Pending> group;
+        synchronized (this) {
+            LinkedHashMap<String, List<Pending>> byId = table.get(key);
+            group = byId != null ? byId.remove(id) : null;
+        }
+        deliverFailure(group, message);
+    }
+
+    synchronized int pendingCount() {
+        int n = 0;
+        for (LinkedHashMap<String, List<Pending>> byId : table.values()) {
+            for (List<Pending> group : byId.values()) n += group.size();
+        }
+        return n;
+    }
+
+    synchronized long replies() { return replies; }
+    synchronized long coalesced() { return coalesced; }
+    synchronized long timeouts() { return timeouts; }
+    synchronized long unmatched() { return unmatched; }
+    synchronized int observerCount() { return observers.size(); }
+
+    private void ensureObserver(final String key) {
+        if (observers.containsKey(key)) return;
+        Observer<InterfaceEvent> obs = evt -> onEvent(key, evt);
+        observers.put(key, obs);
+        LiveEventBus.get(key, InterfaceEvent.class).observeForever(obs);
+    }
+
+    private void onEvent(String key, InterfaceEvent evt) {
+        List<Pending> group;
+        boolean error;
+        synchronized (this) {
+            String replyKey = errorRoutes.get(key);
+            error = replyKey != null;
+            Correlator c = correlators.get(key);
+            if (c == null && error) c = correlators.get(replyKey);
+            group = take(error ? replyKey : key, evt, c);
+            if (group == null) unmatched++; else if (!error) replies++;
+        }
+        if (group == null) return;
+        if (error) {
+            deliverFailure(group, "Read error: " + (evt != null ? String.valueOf(evt.getData()) : "unknown"));
+            return;
+        }
+        for (Pending p : group) {
+            handler.removeCallbacks(p.timeout);
+            try {
+                p.reply.onReply(evt);
+            } catch (Throwable t) {
+                Log.w(TAG, "Reply handler threw for " + key, t);
+            }
+        }
+    }
+
+    /**
+     * Removes and returns the group the event belongs to. Only an event with no id takes the oldest group;
+     * an id nobody is waiting for returns null.
+     */
+    private List<Pending> take(String key, InterfaceEvent evt, Correlator c) {
+        LinkedHashMap<String, List<Pending>> byId = table.get(key);
+        if (byId == null || byId.isEmpty()) return null;
+        String id = null;
+        if (evt != null && c != null) {
+            try { id = c.idOf(evt); } catch (Throwable ignore) {}
+        }
+        if (id != null) return byId.remove(id);
+        Iterator<Map.Entry<String, List<Pending>>> it = byId.entrySet().iterator();
+        List<Pending> oldest = it.next().getValue();
+        it.remove();
+        return oldest;
+    }
+
+    private synchronized boolean remove(String key, String id, Pending p) {
+        LinkedHashMap<String, List<Pending>> byId = table.get(key);
+        if (byId == null) return false;
+        List<Pending> group = byId.get(id);
+        if (group == null || !group.remove(p)) return false;
+        if (group.isEmpty()) byId.remove(id);
+        return true;
+    }
+
+    private void deliverFailure(List<Pending> group, String message) {
+        if (group == null) return;
+        for (Pending p : group) {
+            handler.removeCallbacks(p.timeout);
+            try {
+                p.reply.onFailure(message);
+            } catch (Throwable t) {
+                Log.w(TAG, "Failure handler threw", t);
+            }
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package com.priti.wellue;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Owns every BP2 file transfer. Requests are queued per link and run strictly one at a time on each
+ * link; while anything is pending the transport delivers read-complete replies (BP2 and BP2W), which are correlated
+ * to the in-flight request by file name. The SDK addresses reads by model (one link per model), so
+ * lanes are keyed by model, not MAC. Each attempt has a timeout and failed attempts are retried a
+ * bounded number of times. A timed-out transfer may still be running on the link, so its lane stays
+ * blocked until the stale reply lands or a grace period passes; an unnamed reply in that window
+ * settles the timed-out request. A second request for a file that is already queued joins it instead
+ * of starting another transfer. All state is touched on the {@link Loop}.
+ */
+final class Bp2DownloadScheduler {
+
+    private static final String TAG = "Bp2DownloadScheduler";
+
+    static final long DEFAULT_TIMEOUT_MS = 30000L;
+    static final int DEFAULT_MAX_RETRIES = 2;
+    private static final long RETRY_BACKOFF_MS = 1000L;
+    // How long a timed-out transfer may still occupy the link before the lane moves on
+    private static final long STALE_GRACE_MS = 5000L;
+
+    /** The single thread the scheduler runs on, and its clock. */
+    interface Loop {
+        void post(Runnable r);
+
+        void postDelayed(Runnable r, long delayMs);
+
+        void removeCallbacks(Runnable r);
+
+        long uptimeMillis();
+    }
+
+    /** SDK read replies, delivered on the {@link Loop}. */
+    interface Replies {
+        void onComplete(Object payload);
+
+        void onProgress(Object payload);
+    }
+
+    /** How the scheduler talks to the SDK; implemented by the plugin. */
+    interface Transport {
+        void requestRead(String mac, int model, String fileName) throws Exception;
+
+        /** Starts delivering read-complete and progress events to {@code replies}, until {@link #stopObserving}. */
+        void observe(Replies replies);
+
+        void stopObserving();
+
+        Bp2RecordCache.Record decode(Object payload);
+
+        /** Unwraps a progress payload to a percentage, or null. */
+        Integer progress(Object payload);
+    }
+
+    /** A {@link Loop} over an Android handler. */
+    static Loop loop(final Handler handler) {
+        return new Loop() {
+            @Override public void post(Runnable r) { handler.post(r); }
+
+            @Override public void postDelayed(Runnable r, long delayMs) { handler.postDelayed(r, delayMs); }
+
+            @Override public void removeCallbacks(Runnable r) { handler.removeCallbacks(r); }
+
+            @Override public long uptimeMillis() { return SystemClock.uptimeMillis(); }
+        };
+    }
+
+    /** Completion callbacks, invoked on the handler's looper. */
+    abstract static class Callback {
+        void onProgress(String fileName, int percent) {}
+
+        abstract void onComplete(Bp2RecordCache.Record rec);
+
+        abstract void onError(String message);
+    }
+
+    private static final class Request {
+        final String mac;
+        final int model;
+        final String fileName;
+        final long timeoutMs;
+        final int maxRetries;
+        final List<Callback> callbacks = new ArrayList<>(1);
+        final long enqueuedMs;
+        long startedMs;
+        int attempts;
+        boolean done;
+
+        Request(String mac, int model, String fileName, long timeoutMs, int maxRetries, long nowMs) {
+            this.mac = mac;
+            this.model = model;
+            this.fileName = fileName;
+            this.timeoutMs = timeoutMs;
+            this.maxRetries = maxRetries;
+            this.enqueuedMs = nowMs;
+        }
+    }
+
+    /** Per-link (model) queue with at most one transfer in flight. */
+    private final class Lane {
+        final int model;
+        // Device last queued on this link, for stats
+        String mac;
+        final ArrayDeque<Request> queue = new ArrayDeque<>();
+        Request inFlight;
+        // A timed-out request whose transfer may still be running; blocks the lane until it settles
+        Request stale;
+        final Runnable timeout = new Runnable() {
+            @Override public void run() { onTimeout(Lane.this); }
+        };
+        final Runnable staleExpired = new Runnable() {
+            @Override public void run() {
+                stale = null;
+                pump(Lane.this);
+            }
+        };
+
+        Lane(int model) {
+            this.model = model;
+        }
+    }
+
+    private final Loop handler;
+    private final Transport transport;
+    private final Map<Integer, Lane> lanes = new HashMap<>();
+    private final Replies replies = new Replies() {
+        @Override public void onComplete(Object payload) { Bp2DownloadScheduler.this.onComplete(payload); }
+
+        @Override public void onProgress(Object payload) { Bp2DownloadScheduler.this.onProgress(payload); }
+    };
+    private boolean observing;
+
+    private long enqueued = 0L;
+    private long joined = 0L;
+    private long completed = 0L;
+    private long failed = 0L;
+    private long retries = 0L;
+    private long timeouts = 0L;
+    private long strayReplies = 0L;
+    private long bytes = 0L;
+    private long transferMs = 0L;
+    private long queueWaitMs = 0L;
+    private long lastBytesPerSec = 0L;
+
+    Bp2DownloadScheduler(Loop handler, Transport transport) {
+        this.handler = handler;
+        this.transport = transport;
+    }
+
+    /** Queues a read of {@code fileName} on {@code model}'s link; joins an identical pending request if there is one. */
+    void enqueue(final String mac, final int model, final String fileName, final long timeoutMs, final int maxRetries,
+                 final Callback cb) {
+        handler.post(() -> {
+            Lane lane = lanes.get(model);
+            if (lane == null) {
+                lane = new Lane(model);
+                lanes.put(model, lane);
+            }
+            if (!normalize(mac).isEmpty()) lane.mac = normalize(mac);
+            Request existing = find(lane, fileName);
+            if (existing != null) {
+                existing.callbacks.add(cb);
+                joined++;
+                return;
+            }
+            Request r = new Request(normalize(mac), model, fileName, timeoutMs, maxRetries, handler.uptimeMillis());
+            r.callbacks.add(cb);
+            lane.queue.add(r);
+            enqueued++;
+            pump(lane);
+        });
+    }
+
+    /**
+     * Drops queued (not in-flight) requests for a device, failing their callbacks. Requests queued without
+     * an address on the same link go too: they were addressed to that device's link.
+     */
+    void cancelQueued(final String mac, final String reason) {
+        final String m = normalize(mac);
+        handler.post(() -> {
+            for (Lane lane : lanes.values()) {
+                boolean ours = m.equals(lane.mac);
+                java.util.Iterator<Request> it = lane.queue.iterator();
+                while (it.hasNext()) {
+                    Request r = it.next();
+                    if (r.mac.equals(m) || (ours && r.mac.isEmpty())) {
+                        it.remove();
+                        finish(r, null, reason);
+                    }
+                }
+            }
+            releaseIfIdle();
+        });
+    }
+
+    /** Fails everything pending and drops the bus observers; call on the handler's looper. */
+    void shutdown() {
+        for (Lane lane : lanes.values()) {
+            handler.removeCallbacks(lane.timeout);
+            handler.removeCallbacks(lane.staleExpired);
+            lane.stale = null;
+            if (lane.inFlight != null) finish(lane.inFlight, null, "Scheduler shut down");
+            lane.inFlight = null;
+            while (!lane.queue.isEmpty()) finish(lane.queue.poll(), null, "Scheduler shut down");
+        }
+        lanes.clear();
+        releaseIfIdle();
+    }
+
+    /** Queue state and throughput; call on the handler's looper. */
+    JSONObject stats() {
+        JSONObject out = new JSONObject();
+        try {
+            JSONArray devices = new JSONArray();
+            int queued = 0;
+            int inFlight = 0;
+            for (Lane lane : lanes.values()) {
+                JSONObject d = new JSONObject();
+                d.put("model", lane.model);
+                if (lane.mac != null) d.put("address", lane.mac);
+                d.put("queued", lane.queue.size());
+                if (lane.stale != null) d.put("settling", lane.stale.fileName);
+                if (lane.inFlight != null) {
+                    d.put("inFlight", lane.inFlight.fileName);
+                    d.put("attempt", lane.inFlight.attempts);
+                    d.put("inFlightMs", handler.uptimeMillis() - lane.inFlight.startedMs);
+                    inFlight++;
+                }
+                queued += lane.queue.size();
+                devices.put(d);
+            }
+            out.put("queued", queued);
+            out.put("inFlight", inFlight);
+            out.put("devices", devices);
+            out.put("enqueued", enqueued);
+            out.put("joined", joined);
+            out.put("completed", completed);
+            out.put("failed", failed);
+            out.put("retries", retries);
+            out.put("timeouts", timeouts);
+            out.put("strayReplies", strayReplies);
+            out.put("bytes", bytes);
+            out.put("avgBytesPerSec", transferMs > 0 ? bytes * 1000L / transferMs : 0L);
+            out.put("lastBytesPerSec", lastBytesPerSec);
+            out.put("avgQueueWaitMs", completed + failed > 0 ? queueWaitMs / (completed + failed) : 0L);
+        } catch (Throwable ignore) {}
+        return out;
+    }
+
+    private static Request find(Lane lane, String fileName) {
+        if (lane.inFlight != null && lane.inFlight.fileName.equals(fileName)) return lane.inFlight;
+        for (Request r : lane.queue) {
+            if (r.fileName.equals(fileName)) return r;
+        }
+        return null;
+    }
+
+    private static String normalize(String mac) {
+        return mac == null ? "" : mac.toUpperCase(java.util.Locale.US);
+    }
+
+    private void pump(Lane lane) {
+        while (lane.inFlight == null && lane.stale == null && !lane.queue.isEmpty()) {
+            Request r = lane.queue.poll();
+            lane.inFlight = r;
+            r.attempts++;
+            r.startedMs = handler.uptimeMillis();
+            ensureObservers();
+            try {
+                transport.requestRead(r.mac, r.model, r.fileName);
+                handler.postDelayed(lane.timeout, r.timeoutMs);
+            } catch (Throwable t) {
+                Log.w(TAG, "Read request failed for " + r.fileName, t);
+                lane.inFlight = null;
+                retryOrFail(lane, r, "Read request failed: " + t.getMessage());
+            }
+        }
+        releaseIfIdle();
+    }
+
+    private void retryOrFail(final Lane lane, final Request r, String reason) {
+        if (r.attempts <= r.maxRetries) {
+            retries++;
+            // Back off, then requeue at the head of the lane (a late reply may have settled it meanwhile)
+            handler.postDelayed(() -> {
+                if (r.done) return;
+                lane.queue.addFirst(r);
+                pump(lane);
+            }, RETRY_BACKOFF_MS * r.attempts);
+            return;
+        }
+        finish(r, null, reason);
+    }
+
+    private void onTimeout(Lane lane) {
+        Request r = lane.inFlight;
+        if (r == null) return;
+        timeouts++;
+        Log.w(TAG, "⏱️ Timed out reading " + r.fileName + " (attempt " + r.attempts + ")");
+        lane.inFlight = null;
+        // The SDK may still be transferring: no new read on this link until that reply lands or the grace period ends
+        lane.stale = r;
+        handler.postDelayed(lane.staleExpired, STALE_GRACE_MS);
+        retryOrFail(lane, r, "Timed out reading " + r.fileName);
+    }
+
+    private void onComplete(Object payload) {
+        Bp2RecordCache.Record rec;
+        try {
+            rec = transport.decode(payload);
+        } catch (Throwable t) {
+            Log.w(TAG, "Unable to decode read-complete payload", t);
+            return;
+        }
+        Lane lane = laneFor(rec.fileName);
+        if (lane == null) {
+            // Reply for a request that already finished, an unnamed reply we cannot attribute, or one issued outside the scheduler
+            strayReplies++;
+            return;
+        }
+        if (lane.inFlight == null) {
+            // The late reply of a timed-out transfer: the link is free again
+            Request r = lane.stale;
+            lane.stale = null;
+            handler.removeCallbacks(lane.staleExpired);
+            if (r.done) {
+                strayReplies++;
+            } else {
+                // Its retry is still pending, so this is the file it wants
+                lane.queue.remove(r);
+                if (rec.fileName == null) rec.fileName = r.fileName;
+                finish(r, rec, null);
+            }
+            pump(lane);
+            return;
+        }
+        Request r = lane.inFlight;
+        handler.removeCallbacks(lane.timeout);
+        lane.inFlight = null;
+        if (rec.fileName == null) rec.fileName = r.fileName;
+        long ms = Math.max(1L, handler.uptimeMillis() - r.startedMs);
+        int size = rec.content != null ? rec.content.remaining() : (rec.waveShorts != null ? rec.waveShorts.length * 2 : 0);
+        bytes += size;
+        transferMs += ms;
+        lastBytesPerSec = size * 1000L / ms;
+        finish(r, rec, null);
+        pump(lane);
+    }
+
+    private void onProgress(Object payload) {
+        Integer percent = transport.progress(payload);
+        if (percent == null) return;
+        for (Lane lane : lanes.values()) {
+            Request r = lane.inFlight;
+            if (r == null) continue;
+            for (Callback cb : r.callbacks) {
+                try { cb.onProgress(r.fileName, percent); } catch (Throwable ignore) {}
+            }
+        }
+    }
+
+    /**
+     * The lane whose in-flight (or settling, timed-out) request matches by name. An unnamed reply goes to the
+     * only busy lane, if unique: to its settling request if it has one (nothing else runs on a settling link),
+     * else to its in-flight request. Once the grace period has passed, a timed-out transfer is assumed dead.
+     */
+    private Lane laneFor(String fileName) {
+        Lane only = null;
+        int active = 0;
+        for (Lane lane : lanes.values()) {
+            if (lane.inFlight == null && lane.stale == null) continue;
+            active++;
+            only = lane;
+            if (fileName == null) continue;
+            if (lane.inFlight != null && lane.inFlight.fileName.equals(fileName)) return lane;
+            if (lane.stale != null && lane.stale.fileName.equals(fileName)) return lane;
+        }
+        return fileName == null && active == 1 ? only : null;
+    }
+
+    private void finish(Request r, Bp2RecordCache.Record rec, String error) {
+        r.done = true;
+        queueWaitMs += Math.max(0L, r.startedMs - r.enqueuedMs);
+        if (rec != null) completed++; else failed++;
+        for (Callback cb : r.callbacks) {
+            try {
+                if (rec != null) cb.onComplete(rec); else cb.onError(error);
+            } catch (Throwable t) {
+                Log.w(TAG, "Download callback threw for " + r.fileName, t);
+            }
+        }
+    }
+
+    private void ensureObservers() {
+        if (observing) return;
+        transport.observe(replies);
+        observing = true;
+    }
+
+    /** Stops the reply feed once nothing is queued, in flight or settling. */
+    private void releaseIfIdle() {
+        if (!observing) return;
+        for (Lane lane : lanes.values()) {
+            if (lane.inFlight != null || lane.stale != null || !lane.queue.isEmpty()) return;
+        }
+        try { transport.stopObserving(); } catch (Throwable ignore) {}
+        observing = false;
+    }
+}
@@ -0,0 +1,158 @@
+package com.priti.wellue;
+
+import android.os.Handler;
+import android.util.Log;
+
+import androidx.lifecycle.Observer;
+
+import com.jeremyliao.liveeventbus.LiveEventBus;
+import com.lepu.blepro.event.InterfaceEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BP2 file list requests, correlated by model. The SDK holds one link per model and tags the list event
+ * with that model, so waiters are grouped per model: the first waiter sends the command, later ones share
+ * its reply. A list for a model nobody is waiting on is counted and dropped, never handed to another
+ * request; a list without a model goes to the waiting model only if there is exactly one. Each group has
+ * a timeout. The bus observer is held only while something waits. All methods run on the handler's looper.
+ */
+final class Bp2FileListRequests {
+
+    private static final String TAG = "Bp2FileListRequests";
+    // BP2/BP2A/BP2T lists arrive on the BP2 key, BP2W lists on its own
+    private static final String[] KEYS = { InterfaceEvent.BP2.EventBp2FileList, InterfaceEvent.BP2W.EventBp2wFileList };
+
+    interface Reply {
+        void onList(Object payload);
+
+        void onFailure(String message);
+    }
+
+    /** Sends the list command on {@code model}'s link. */
+    interface Sender {
+        void requestList(int model) throws Exception;
+    }
+
+    private final class Group {
+        final int model;
+        final List<Reply> waiters = new ArrayList<>(1);
+        final Runnable timeout = new Runnable() {
+            @Override public void run() {
+                if (groups.remove(model) != Group.this) return;
+                timeouts++;
+                fail(Group.this, "Timed out waiting for BP2 file list");
+            }
+        };
+
+        Group(int model) {
+            this.model = model;
+        }
+    }
+
+    private final Handler handler;
+    private final Sender sender;
+    private final Map<Integer, Group> groups = new HashMap<>();
+    private Observer<Object> observer;
+
+    private long replies = 0L;
+    private long coalesced = 0L;
+    private long timeouts = 0L;
+    private long unmatched = 0L;
+
+    Bp2FileListRequests(Handler handler, Sender sender) {
+        this.handler = handler;
+        this.sender = sender;
+    }
+
+    /** Waits for {@code model}'s file list, requesting it unless a request for that link is already out. */
+    void await(int model, long timeoutMs, Reply reply) {
+        Group g = groups.get(model);
+        if (g != null) {
+            g.waiters.add(reply);
+            coalesced++;
+            return;
+        }
+        g = new Group(model);
+        g.waiters.add(reply);
+        groups.put(model, g);
+        ensureObserver();
+        handler.postDelayed(g.timeout, timeoutMs);
+        try {
+            sender.requestList(model);
+        } catch (Throwable t) {
+            groups.remove(model);
+            handler.removeCallbacks(g.timeout);
+            fail(g, "Failed to request BP2 file list: " + t.getMessage());
+        }
+        releaseIfIdle();
+    }
+
+    /** Fails everything waiting and drops the observer. */
+    void shutdown() {
+        List<Group> all = new ArrayList<>(groups.values());
+        groups.clear();
+        for (Group g : all) {
+            handler.removeCallbacks(g.timeout);
+            fail(g, "Plugin shut down");
+        }
+        releaseIfIdle();
+    }
+
+    long replies() { return replies; }
+    long coalesced() { return coalesced; }
+    long timeouts() { return timeouts; }
+    long unmatched() { return unmatched; }
+
+    private void onEvent(Object payload) {
+        Group g = null;
+        if (payload instanceof InterfaceEvent) {
+            g = groups.remove(((InterfaceEvent) payload).getModel());
+        } else if (groups.size() == 1) {
+            g = groups.remove(groups.keySet().iterator().next());
+        }
+        if (g == null) {
+            // Another link's list, or one nobody asked for
+            unmatched++;
+            return;
+        }
+        replies++;
+        handler.removeCallbacks(g.timeout);
+        for (Reply r : g.waiters) {
+            try {
+                r.onList(payload);
+            } catch (Throwable t) {
+                Log.w(TAG, "File list handler threw", t);
+            }
+        }
+        releaseIfIdle();
+    }
+
+    private void fail(Group g, String message) {
+        for (Reply r : g.waiters) {
+            try {
+                r.onFailure(message);
+            } catch (Throwable t) {
+                Log.w(TAG, "File list failure handler threw", t);
+            }
+        }
+        releaseIfIdle();
+    }
+
+    private void ensureObserver() {
+        if (observer != null) return;
+        observer = this::onEvent;
+        for (String key : KEYS) LiveEventBus.get(key, Object.class).observeForever(observer);
+    }
+
+    private void releaseIfIdle() {
+        if (observer == null || !groups.isEmpty()) return;
+        for (String key : KEYS) {
+            try { LiveEventBus.get(key, Object.class).removeObserver(observer); } catch (Throwable ignore) {}
+        }
+        observer = null;
+    }
+}
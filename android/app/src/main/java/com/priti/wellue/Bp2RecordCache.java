@@ -0,0 +1,294 @@
+package com.priti.wellue;
+
+import android.util.Log;
+
+import com.priti.bp2codec.Bp2EcgFile;
+import com.priti.bp2codec.EcgArchive;
+
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On-device cache of downloaded BP2 record files, keyed by device MAC + file name.
+ *
+ * BP2 files never change once written, so a hit skips the BLE transfer entirely. Each entry is a
+ * content file ({@code .bin}), an optional waveform when the SDK decoded one ({@code .ecgz}, an
+ * {@link com.priti.bp2codec.EcgArchive}; entries written before that carry Int16LE {@code .w16}),
+ * and a small JSON sidecar ({@code .json}) with the metadata bp2ReadFile returns. Reads are
+ * memory-mapped. Recency is the sidecar's mtime, so the LRU order survives restarts; entries are
+ * evicted oldest-first once the total exceeds {@code maxBytes}. All methods are synchronized.
+ */
+final class Bp2RecordCache {
+
+    private static final String TAG = "Bp2RecordCache";
+    private static final String EXT_CONTENT = ".bin";
+    private static final String EXT_WAVE = ".w16";
+    private static final String EXT_ARCHIVE = ".ecgz";
+    private static final String EXT_META = ".json";
+
+    /** A cached (or freshly downloaded) record. Buffers are read-only views over the mapped files. */
+    static final class Record {
+        // Name reported by the device for a fresh download; not persisted
+        String fileName;
+        ByteBuffer content;
+        ByteBuffer wave;
+        // Compressed waveform (EcgArchive) read back from disk
+        ByteBuffer archive;
+        // Set instead of wave for a record that was just downloaded (not read back from disk)
+        short[] waveShorts;
+        Integer fileType;
+        Integer sampleRate;
+        Integer recordingTimeSec;
+        Integer measureTimeSec;
+        String diagnosis;
+
+        /** True if a waveform is present in any form; never decodes it. */
+        boolean hasWave() {
+            return waveShorts != null || wave != null || archive != null;
+        }
+
+        short[] waveShorts() {
+            if (waveShorts == null && wave != null) {
+                waveShorts = new short[wave.remaining() / 2];
+                com.priti.bp2codec.Bp2Codec.decodeInt16Le(wave.duplicate(), waveShorts, 0);
+            } else if (waveShorts == null && archive != null) {
+                try {
+                    waveShorts = EcgArchive.decode(archive);
+                } catch (IOException e) {
+                    Log.w(TAG, "Unreadable cached waveform archive", e);
+                }
+            }
+            return waveShorts;
+        }
+
+        /** The waveform as an EcgArchive: the cached file as-is, otherwise encoded from the samples. */
+        byte[] archiveBytes() {
+            if (archive != null) {
+                ByteBuffer ab = archive.duplicate();
+                byte[] out = new byte[ab.remaining()];
+                ab.get(out);
+                return out;
+            }
+            short[] w = waveShorts();
+            if (w == null) return null;
+            return EcgArchive.encode(w, w.length, sampleRate != null ? sampleRate : Bp2EcgFile.SAMPLE_RATE_HZ,
+                (float) (Bp2EcgFile.MV_PER_COUNT * 1000.0), recordingTimeSec != null ? recordingTimeSec * 1000L : 0L);
+        }
+
+        /** The content as an array: the backing array of a fresh download, a copy of a mapped entry. */
+        byte[] contentBytes() {
+            if (content == null) return null;
+            ByteBuffer cb = content.duplicate();
+            if (cb.hasArray() && cb.arrayOffset() == 0 && cb.remaining() == cb.array().length) return cb.array();
+            byte[] out = new byte[cb.remaining()];
+            cb.get(out);
+            return out;
+        }
+    }
+
+    private final File dir;
+    private final long maxBytes;
+    // key -> bytes on disk, access-ordered (eldest = least recently used)
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(64, 0.75f, true);
+    private boolean loaded = false;
+    private long totalBytes = 0L;
+    private long hits = 0L;
+    private long misses = 0L;
+    private long evictions = 0L;
+
+    Bp2RecordCache(File dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+    }
+
+    static String key(String mac, String fileName) {
+        String m = mac.replace(":", "").toUpperCase();
+        StringBuilder sb = new StringBuilder(m.length() + 1 + fileName.length());
+        sb.append(m).append('_');
+        for (int i = 0; i < fileName.length(); i++) {
+            char c = fileName.charAt(i);
+            sb.append(Character.isLetterOrDigit(c) || c == '-' || c == '.' ? c : '_');
+        }
+        return sb.toString();
+    }
+
+    synchronized Record get(String mac, String fileName) {
+        ensureLoaded();
+        String key = key(mac, fileName);
+        // get(), not containsKey(): only get() moves the entry to the recent end of the access order
+        if (index.get(key) == null) { misses++; return null; }
+        File meta = new File(dir, key + EXT_META);
+        try {
+            Record r = new Record();
+            JSONObject json = new JSONObject(readString(meta));
+            r.fileType = optInt(json, "fileType");
+            r.sampleRate = optInt(json, "sampleRate");
+            r.recordingTimeSec = optInt(json, "recordingTimeSec");
+            r.measureTimeSec = optInt(json, "measureTimeSec");
+            r.diagnosis = json.has("diagnosis") ? json.optString("diagnosis", null) : null;
+            File content = new File(dir, key + EXT_CONTENT);
+            if (content.exists()) r.content = map(content);
+            File archive = new File(dir, key + EXT_ARCHIVE);
+            if (archive.exists()) r.archive = map(archive);
+            File wave = new File(dir, key + EXT_WAVE);
+            if (wave.exists()) r.wave = map(wave);
+            meta.setLastModified(System.currentTimeMillis());
+            hits++;
+            return r;
+        } catch (Throwable t) {
+            Log.w(TAG, "Dropping unreadable cache entry " + key, t);
+            remove(key);
+            misses++;
+            return null;
+        }
+    }
+
+    /** Stores a freshly downloaded record (array-backed content, {@code waveShorts}). */
+    void put(String mac, String fileName, Record rec) {
+        put(mac, fileName, rec.contentBytes(), rec.waveShorts(), rec);
+    }
+
+    /** Stores a downloaded record; content and wave are copied out of the caller's arrays. */
+    synchronized void put(String mac, String fileName, byte[] content, short[] waveShorts, Record meta) {
+        ensureLoaded();
+        String key = key(mac, fileName);
+        // Replace wholesale so a stale waveform from an earlier put cannot outlive its content
+        if (index.containsKey(key)) remove(key);
+        try {
+            if (!dir.exists() && !dir.mkdirs()) return;
+            long size = 0L;
+            if (content != null) size += write(new File(dir, key + EXT_CONTENT), content, 0, content.length);
+            if (waveShorts != null) {
+                // Delta/varint archive: roughly half the size of Int16LE for ECG counts
+                byte[] w = EcgArchive.encode(waveShorts, waveShorts.length,
+                    meta.sampleRate != null ? meta.sampleRate : Bp2EcgFile.SAMPLE_RATE_HZ, (float) (Bp2EcgFile.MV_PER_COUNT * 1000.0),
+                    meta.recordingTimeSec != null ? meta.recordingTimeSec * 1000L : 0L);
+                size += write(new File(dir, key + EXT_ARCHIVE), w, 0, w.length);
+            }
+            JSONObject json = new JSONObject();
+            if (meta.fileType != null) json.put("fileType", meta.fileType.intValue());
+            if (meta.sampleRate != null) json.put("sampleRate", meta.sampleRate.intValue());
+            if (meta.recordingTimeSec != null) json.put("recordingTimeSec", meta.recordingTimeSec.intValue());
+            if (meta.measureTimeSec != null) json.put("measureTimeSec", meta.measureTimeSec.intValue());
+            if (meta.diagnosis != null) json.put("diagnosis", meta.diagnosis);
+            byte[] metaBytes = json.toString().getBytes("UTF-8");
+            // Sidecar last: its presence marks the entry complete
+            size += write(new File(dir, key + EXT_META), metaBytes, 0, metaBytes.length);
+            index.put(key, size);
+            totalBytes += size;
+            trim();
+        } catch (Throwable t) {
+            Log.w(TAG, "Unable to cache " + key, t);
+            remove(key);
+        }
+    }
+
+    synchronized boolean contains(String mac, String fileName) {
+        ensureLoaded();
+        return index.get(key(mac, fileName)) != null;
+    }
+
+    synchronized void clear() {
+        ensureLoaded();
+        for (String key : new ArrayList<>(index.keySet())) remove(key);
+    }
+
+    synchronized JSONObject stats() {
+        ensureLoaded();
+        JSONObject out = new JSONObject();
+        try {
+            out.put("entries", index.size());
+            out.put("bytes", totalBytes);
+            out.put("maxBytes", maxBytes);
+            out.put("hits", hits);
+            out.put("misses", misses);
+            out.put("evictions", evictions);
+        } catch (Throwable ignore) {}
+        return out;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        loaded = true;
+        File[] metas = dir.listFiles((d, name) -> name.endsWith(EXT_META));
+        if (metas == null) return;
+        Arrays.sort(metas, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File meta : metas) {
+            String key = meta.getName().substring(0, meta.getName().length() - EXT_META.length());
+            long size = meta.length()
+                + new File(dir, key + EXT_CONTENT).length()
+                + new File(dir, key + EXT_WAVE).length()
+                + new File(dir, key + EXT_ARCHIVE).length();
+            index.put(key, size);
+            totalBytes += size;
+        }
+        trim();
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+        List<String> victims = new ArrayList<>();
+        long total = totalBytes;
+        while (total > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> e = it.next();
+            victims.add(e.getKey());
+            total -= e.getValue();
+        }
+        for (String key : victims) {
+            remove(key);
+            evictions++;
+        }
+    }
+
+    private void remove(String key) {
+        Long size = index.remove(key);
+        if (size != null) totalBytes -= size;
+        new File(dir, key + EXT_META).delete();
+        new File(dir, key + EXT_CONTENT).delete();
+        new File(dir, key + EXT_WAVE).delete();
+        new File(dir, key + EXT_ARCHIVE).delete();
+    }
+
+    private static Integer optInt(JSONObject json, String name) {
+        return json.has(name) ? json.optInt(name, 0) : null;
+    }
+
+    private static ByteBuffer map(File f) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r"); FileChannel ch = raf.getChannel()) {
+            // The mapping stays valid after the channel is closed
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()).asReadOnlyBuffer();
+        }
+    }
+
+    private static String readString(File f) throws IOException {
+        ByteBuffer b = map(f);
+        byte[] bytes = new byte[b.remaining()];
+        b.get(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static long write(File target, byte[] data, int off, int len) throws IOException {
+        File tmp = new File(target.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(data, off, len);
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(target)) {
+            tmp.delete();
+            throw new IOException("rename failed for " + target.getName());
+        }
+        return len;
+    }
+}
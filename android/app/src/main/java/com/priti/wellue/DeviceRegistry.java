@@ -0,0 +1,345 @@
+package com.priti.wellue;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Devices this app has connected to, persisted across restarts: MAC -> model, name, last connect time,
+ * connect attempts/successes and time-to-connected.
+ *
+ * The file is read and written on the {@code io} executor, so plugin load never blocks on disk; callers
+ * that need the data pass a callback to {@link #loadAsync}. Writes go to a temp file and are renamed
+ * into place. Connect timing uses {@link SystemClock#elapsedRealtime()}. All methods are synchronized.
+ */
+final class DeviceRegistry {
+
+    private static final String TAG = "DeviceRegistry";
+    private static final int MAX_DEVICES = 32;
+
+    static final String PATH_FAST = "fast";
+    static final String PATH_FULL = "full";
+    static final String PATH_AUTO = "auto";
+
+    static final class Device {
+        final String address;
+        Integer model;
+        String name;
+        long lastConnectMs;
+        int attempts;
+        int successes;
+        long lastTimeToConnectMs = -1L;
+        long avgTimeToConnectMs = -1L;
+        String lastPath;
+
+        Device(String address) {
+            this.address = address;
+        }
+
+        /** Known well enough to connect directly: model cached and at least one successful connect. */
+        boolean isKnown() {
+            return model != null && successes > 0;
+        }
+
+        JSONObject toJson() {
+            JSONObject o = new JSONObject();
+            try {
+                o.put("address", address);
+                if (model != null) o.put("model", model.intValue());
+                if (name != null) o.put("name", name);
+                o.put("lastConnectMs", lastConnectMs);
+                o.put("attempts", attempts);
+                o.put("successes", successes);
+                o.put("successRate", attempts > 0 ? (double) successes / attempts : 0.0);
+                if (lastTimeToConnectMs >= 0) o.put("lastTimeToConnectMs", lastTimeToConnectMs);
+                if (avgTimeToConnectMs >= 0) o.put("avgTimeToConnectMs", avgTimeToConnectMs);
+                if (lastPath != null) o.put("lastPath", lastPath);
+            } catch (Throwable ignore) {}
+            return o;
+        }
+
+        static Device fromJson(JSONObject o) {
+            // Older files may hold addresses as JS passed them; GATT callbacks report upper case
+            Device d = new Device(WellueState.normalize(o.optString("address")));
+            if (o.has("model")) d.model = o.optInt("model");
+            d.name = o.has("name") ? o.optString("name", null) : null;
+            d.lastConnectMs = o.optLong("lastConnectMs", 0L);
+            d.attempts = o.optInt("attempts", 0);
+            d.successes = o.optInt("successes", 0);
+            d.lastTimeToConnectMs = o.optLong("lastTimeToConnectMs", -1L);
+            d.avgTimeToConnectMs = o.optLong("avgTimeToConnectMs", -1L);
+            d.lastPath = o.has("lastPath") ? o.optString("lastPath", null) : null;
+            return d;
+        }
+
+        /**
+         * Folds in the persisted record for this MAC when the device was first touched before the file
+         * was read: counts add up, fields not yet known in memory come from the file.
+         */
+        void mergeFrom(Device stored) {
+            attempts += stored.attempts;
+            successes += stored.successes;
+            if (model == null) model = stored.model;
+            if (name == null) name = stored.name;
+            lastConnectMs = Math.max(lastConnectMs, stored.lastConnectMs);
+            if (lastTimeToConnectMs < 0) lastTimeToConnectMs = stored.lastTimeToConnectMs;
+            if (stored.avgTimeToConnectMs >= 0) {
+                avgTimeToConnectMs = avgTimeToConnectMs < 0 ? stored.avgTimeToConnectMs
+                    : (stored.avgTimeToConnectMs * 3 + avgTimeToConnectMs) / 4;
+            }
+            if (lastPath == null) lastPath = stored.lastPath;
+        }
+    }
+
+    /** An attempt in flight: when it started and which path it took. */
+    private static final class Attempt {
+        final long startMs;
+        final String path;
+
+        Attempt(long startMs, String path) {
+            this.startMs = startMs;
+            this.path = path;
+        }
+    }
+
+    private final File file;
+    private final Executor io;
+    private final Map<String, Device> devices = new HashMap<>();
+    private final Map<String, Attempt> attempts = new HashMap<>();
+    private boolean loaded = false;
+    private boolean loading = false;
+    private final List<Runnable> onLoaded = new ArrayList<>(1);
+
+    DeviceRegistry(File file, Executor io) {
+        this.file = file;
+        this.io = io;
+    }
+
+    /** Loads the file on the io executor; {@code done} runs there once loaded (immediately if already). */
+    void loadAsync(Runnable done) {
+        synchronized (this) {
+            if (loaded) {
+                if (done != null) execute(done);
+                return;
+            }
+            if (done != null) onLoaded.add(done);
+            if (loading) return;
+            loading = true;
+        }
+        execute(() -> {
+            Map<String, Device> read = new HashMap<>();
+            try {
+                if (file.exists()) {
+                    JSONArray arr = new JSONObject(readString(file)).optJSONArray("devices");
+                    for (int i = 0; arr != null && i < arr.length(); i++) {
+                        Device d = Device.fromJson(arr.getJSONObject(i));
+                        if (d.address.isEmpty()) continue;
+                        Device dup = read.get(d.address);
+                        if (dup != null) dup.mergeFrom(d); else read.put(d.address, d);
+                    }
+                }
+            } catch (Throwable t) {
+                Log.w(TAG, "Unable to read device registry; starting empty", t);
+            }
+            List<Runnable> callbacks;
+            boolean dirty;
+            synchronized (DeviceRegistry.this) {
+                dirty = !devices.isEmpty();
+                // Devices touched before the load finished keep their new data and gain the file's history
+                for (Device d : read.values()) {
+                    Device mem = devices.get(d.address);
+                    if (mem == null) {
+                        devices.put(d.address, d);
+                    } else {
+                        mem.mergeFrom(d);
+                    }
+                }
+                loaded = true;
+                loading = false;
+                callbacks = new ArrayList<>(onLoaded);
+                onLoaded.clear();
+            }
+            Log.d(TAG, "📇 Device registry loaded: " + read.size() + " device(s)");
+            // Writes before the load were skipped; persist the merged view
+            if (dirty) saveAsync();
+            for (Runnable r : callbacks) {
+                try { r.run(); } catch (Throwable t) { Log.w(TAG, "Registry load callback threw", t); }
+            }
+        });
+    }
+
+    synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    synchronized Device get(String address) {
+        return address != null ? devices.get(address) : null;
+    }
+
+    /** The device with the most recent successful connect, or null. */
+    synchronized Device lastConnected() {
+        Device best = null;
+        for (Device d : devices.values()) {
+            if (d.successes > 0 && (best == null || d.lastConnectMs > best.lastConnectMs)) best = d;
+        }
+        return best;
+    }
+
+    /** Scan/discovery learned a name or model; persisted only when something changed. */
+    void recordSeen(String address, String name, Integer model) {
+        if (address == null) return;
+        synchronized (this) {
+            Device d = devices.get(address);
+            // Only devices we have tried to connect to are worth remembering
+            if (d == null) return;
+            boolean changed = false;
+            if (name != null && !name.isEmpty() && !name.equals(d.name)) { d.name = name; changed = true; }
+            if (model != null && !model.equals(d.model)) { d.model = model; changed = true; }
+            if (!changed) return;
+        }
+        saveAsync();
+    }
+
+    synchronized void onConnectAttempt(String address, Integer model, String path) {
+        Device d = devices.get(address);
+        if (d == null) {
+            d = new Device(address);
+            devices.put(address, d);
+        }
+        if (model != null) d.model = model;
+        d.attempts++;
+        d.lastPath = path;
+        attempts.put(address, new Attempt(SystemClock.elapsedRealtime(), path));
+    }
+
+    /** True if a connect attempt for {@code address} is waiting to complete. */
+    synchronized boolean isConnecting(String address) {
+        return address != null && attempts.containsKey(address);
+    }
+
+    /** Marks the pending attempt connected; returns time-to-connected in ms, or -1 if none was pending. */
+    long onConnected(String address, String name) {
+        long ttc;
+        synchronized (this) {
+            Attempt a = address != null ? attempts.remove(address) : null;
+            if (a == null) return -1L;
+            Device d = devices.get(address);
+            if (d == null) return -1L;
+            ttc = SystemClock.elapsedRealtime() - a.startMs;
+            d.successes++;
+            d.lastConnectMs = System.currentTimeMillis();
+            d.lastTimeToConnectMs = ttc;
+            d.avgTimeToConnectMs = d.avgTimeToConnectMs < 0 ? ttc : (d.avgTimeToConnectMs * 3 + ttc) / 4;
+            if (name != null && !name.isEmpty()) d.name = name;
+        }
+        saveAsync();
+        return ttc;
+    }
+
+    /** The pending attempt failed or timed out; the attempt already counts against the success rate. */
+    void onConnectFailed(String address) {
+        synchronized (this) {
+            if (address == null || attempts.remove(address) == null) return;
+        }
+        saveAsync();
+    }
+
+    void forget(String address) {
+        synchronized (this) {
+            if (devices.remove(address) == null) return;
+            attempts.remove(address);
+        }
+        saveAsync();
+    }
+
+    synchronized JSONObject toJson() {
+        JSONObject out = new JSONObject();
+        try {
+            JSONArray arr = new JSONArray();
+            for (Device d : sorted()) arr.put(d.toJson());
+            out.put("loaded", loaded);
+            out.put("devices", arr);
+        } catch (Throwable ignore) {}
+        return out;
+    }
+
+    /** Most recently connected first. */
+    private List<Device> sorted() {
+        List<Device> list = new ArrayList<>(devices.values());
+        list.sort((a, b) -> Long.compare(b.lastConnectMs, a.lastConnectMs));
+        return list;
+    }
+
+    /** Runs on the io executor; dropped once the executor is shut down (plugin destroyed). */
+    private void execute(Runnable task) {
+        try {
+            io.execute(task);
+        } catch (RejectedExecutionException e) {
+            Log.d(TAG, "Registry io is shut down; dropping task");
+        }
+    }
+
+    private void saveAsync() {
+        execute(() -> {
+            byte[] bytes;
+            synchronized (DeviceRegistry.this) {
+                // Don't overwrite the file with a partial view before it has been read
+                if (!loaded) return;
+                List<Device> list = sorted();
+                JSONArray arr = new JSONArray();
+                for (int i = 0; i < list.size() && i < MAX_DEVICES; i++) arr.put(list.get(i).toJson());
+                JSONObject root = new JSONObject();
+                try {
+                    root.put("version", 1);
+                    root.put("devices", arr);
+                    bytes = root.toString().getBytes("UTF-8");
+                } catch (Throwable t) {
+                    return;
+                }
+            }
+            try {
+                write(file, bytes);
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to persist device registry", e);
+            }
+        });
+    }
+
+    private static String readString(File f) throws IOException {
+        try (FileInputStream in = new FileInputStream(f)) {
+            byte[] buf = new byte[(int) f.length()];
+            int off = 0;
+            while (off < buf.length) {
+                int r = in.read(buf, off, buf.length - off);
+                if (r < 0) break;
+                off += r;
+            }
+            return new String(buf, 0, off, "UTF-8");
+        }
+    }
+
+    private static void write(File target, byte[] data) throws IOException {
+        File tmp = new File(target.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(data);
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(target)) {
+            tmp.delete();
+            throw new IOException("rename failed for " + target.getName());
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package com.priti.wellue;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+import com.priti.bp2codec.Bp2BpResult;
+import com.priti.bp2codec.EcgFilter;
+import com.priti.bp2codec.EcgFlowController;
+import com.priti.bp2codec.EcgRingBuffer;
+import com.priti.bp2codec.QrsDetector;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One connected (or connecting) device: its lifecycle, its RT decode pipeline and all decoder state.
+ *
+ * The bus observer only calls {@link #enqueue}; packets are decoded on this session's own
+ * HandlerThread, so devices decode in parallel and share no locks. Everything under "decoder state"
+ * is confined to that thread (fields read by stats are volatile). Sessions are keyed by MAC; the
+ * vendor SDK keeps one link per model, so at most one live session exists per model.
+ */
+final class DeviceSession {
+
+    private static final String TAG = "DeviceSession";
+
+    static final int STATE_CONNECTING = 0;
+    static final int STATE_CONNECTED = 1;
+    static final int STATE_DISCONNECTED = 2;
+    private static final String[] STATE_NAMES = { "connecting", "connected", "disconnected" };
+
+    static final int RT_QUEUE_CAPACITY = 256;
+    static final int ECG_RING_CAPACITY = 4096;
+
+    /** Decodes one vendor RT payload for a session; runs on the session's decode thread. */
+    interface Decoder {
+        void decode(DeviceSession session, Object payload);
+    }
+
+    private static final class RtPacket {
+        final Object payload;
+        final long enqueuedNs;
+
+        RtPacket(Object payload, long enqueuedNs) {
+            this.payload = payload;
+            this.enqueuedNs = enqueuedNs;
+        }
+    }
+
+    /** Null for a session bound only to a model (RT data from a link we did not open). */
+    final String address;
+    final int model;
+    volatile String name;
+    volatile int state = STATE_CONNECTING;
+    final long createdMs = System.currentTimeMillis();
+    volatile long connectedAtMs;
+    volatile long connectStartMs = android.os.SystemClock.elapsedRealtime();
+
+    // RT pipeline
+    private final Decoder decoder;
+    private final ArrayBlockingQueue<RtPacket> queue = new ArrayBlockingQueue<>(RT_QUEUE_CAPACITY);
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    private HandlerThread thread;
+    private Handler handler;
+    private boolean closed;
+    final AtomicLong enqueued = new AtomicLong();
+    final AtomicLong dropped = new AtomicLong();
+    volatile int queueHighWater = 0;
+    volatile long decoded = 0L;
+    volatile long queueWaitNsTotal = 0L;
+    volatile long decodeNsTotal = 0L;
+    volatile long decodeNsMax = 0L;
+    volatile long packets = 0L;
+    volatile long lastRtPacketMs = 0L;
+
+    // Decoder state (decode thread)
+    Integer lastDeviceStatus;
+    volatile boolean ecgMeasuringActive;
+    final EcgRingBuffer ecgRing = new EcgRingBuffer(ECG_RING_CAPACITY);
+    final EcgRingBuffer ecgRingFiltered = new EcgRingBuffer(ECG_RING_CAPACITY);
+    // Sized for a whole ring so a flow-controlled batch can coalesce everything buffered
+    final float[] ecgDrainScratch = new float[ECG_RING_CAPACITY];
+    final float[] ecgFilteredDrainScratch = new float[ECG_RING_CAPACITY];
+    final float[] ecgFilterScratch = new float[ECG_RING_CAPACITY];
+    // Raw ECG bytes decoded per packet; a packet never outgrows the ring
+    final short[] ecgDecodeScratch = new short[ECG_RING_CAPACITY];
+    final float[] ecgDisplayScratch = new float[ECG_RING_CAPACITY];
+    final float[] ecgFilteredDisplayScratch = new float[ECG_RING_CAPACITY];
+    final int[] ecgDisplayIdx = new int[ECG_RING_CAPACITY];
+    final byte[] ecgPackScratch = new byte[ECG_RING_CAPACITY * 4];
+    boolean ecgRingHoldsCounts = true;
+    // What ecgRing carries (the plugin's ECG_OUTPUT_*); switched on the decode thread together with a ring clear
+    volatile int ecgOutput;
+    volatile long ecgSeq = 0L;
+    // Rate reported by the device's RT payloads; packets that omit it keep the last known one
+    int ecgSampleRate = 125;
+    long lastEcgEmitMs = 0L;
+    volatile long ecgOverflowSamples = 0L;
+    volatile long ecgFlowDroppedSamples = 0L;
+    volatile EcgFlowController ecgFlow;
+    EcgFilter ecgFilter;
+    QrsDetector qrs = new QrsDetector(125);
+    final long[] ecgBeatScratch = new long[64];
+    int ecgBeatCount = 0;
+    final Bp2BpResult bpResultScratch = new Bp2BpResult();
+
+    // BP measurement state machine (driven on the decode thread)
+    volatile String bpState;
+    Runnable bpStartRt;
+    Runnable bpTimeout;
+
+    DeviceSession(String address, int model, Decoder decoder, EcgFlowController flow, EcgFilter filter) {
+        this.address = address;
+        this.model = model;
+        this.decoder = decoder;
+        this.ecgFlow = flow;
+        this.ecgFilter = filter;
+    }
+
+    static String stateName(int state) {
+        return STATE_NAMES[state];
+    }
+
+    boolean isLive() {
+        return state != STATE_DISCONNECTED;
+    }
+
+    synchronized Handler handler() {
+        if (handler == null) {
+            thread = new HandlerThread("WellueRt-" + (address != null ? address : "model" + model), Process.THREAD_PRIORITY_DISPLAY);
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+        return handler;
+    }
+
+    /** Runs {@code r} on this session's decode thread; dropped (returns false) once the session is closed. */
+    boolean post(Runnable r) {
+        Handler h;
+        synchronized (this) {
+            if (closed) return false;
+            h = handler();
+        }
+        return h.post(r);
+    }
+
+    void postDelayed(Runnable r, long delayMs) {
+        Handler h;
+        synchronized (this) {
+            if (closed) return;
+            h = handler();
+        }
+        h.postDelayed(r, delayMs);
+    }
+
+    void removeCallbacks(Runnable r) {
+        Handler h;
+        synchronized (this) {
+            h = handler;
+        }
+        if (h != null && r != null) h.removeCallbacks(r);
+    }
+
+    /** Called on the bus thread: hand the packet off and return immediately. */
+    void enqueue(Object payload) {
+        if (!queue.offer(new RtPacket(payload, System.nanoTime()))) {
+            long n = dropped.incrementAndGet();
+            if ((n & 0xFF) == 1) Log.w(TAG, "⚠️ RT decode queue full for " + address + ", dropped=" + n);
+            return;
+        }
+        enqueued.incrementAndGet();
+        int depth = queue.size();
+        if (depth > queueHighWater) queueHighWater = depth;
+        if (drainScheduled.compareAndSet(false, true)) post(drain);
+    }
+
+    int queueDepth() {
+        return queue.size();
+    }
+
+    private final Runnable drain = new Runnable() {
+        @Override public void run() {
+            drainScheduled.set(false);
+            RtPacket pkt;
+            while ((pkt = queue.poll()) != null) {
+                long start = System.nanoTime();
+                queueWaitNsTotal += start - pkt.enqueuedNs;
+                try {
+                    decoder.decode(DeviceSession.this, pkt.payload);
+                } catch (Throwable t) {
+                    Log.w(TAG, "RT decode error for " + address, t);
+                }
+                long took = System.nanoTime() - start;
+                decodeNsTotal += took;
+                if (took > decodeNsMax) decodeNsMax = took;
+                decoded++;
+            }
+        }
+    };
+
+    /** Ends the session: pending packets and timers are dropped and the decode thread exits. */
+    void close() {
+        state = STATE_DISCONNECTED;
+        synchronized (this) {
+            closed = true;
+            if (thread != null) {
+                try { handler.removeCallbacksAndMessages(null); } catch (Throwable ignore) {}
+                try { thread.quitSafely(); } catch (Throwable ignore) {}
+                thread = null;
+                handler = null;
+            }
+        }
+        queue.clear();
+        drainScheduled.set(false);
+    }
+}
@@ -0,0 +1,214 @@
+package com.priti.wellue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-class accessor tables for the vendor RT payload objects.
+ *
+ * Each payload class is resolved once: every accessor group (a list of candidate zero-arg getter
+ * names, in priority order) becomes an array of the getters that actually exist on that class.
+ * Decoding a packet is then a map lookup plus direct invocations - no getMethod() scans and no
+ * NoSuchMethodException per miss. Invocation uses the cached, pre-accessible Method (MethodHandle
+ * call sites would need API 26 to dex; minSdk is 24).
+ */
+final class RtAccessorCache {
+
+    /** A cached zero-arg getter. {@link #get} returns null when the getter throws. */
+    static final class Accessor {
+        final String name;
+        private final Method method;
+
+        Accessor(String name, Method method) {
+            this.name = name;
+            this.method = method;
+        }
+
+        Object get(Object target) {
+            try {
+                return method.invoke(target);
+            } catch (Throwable t) {
+                INVOKE_FAILURES.incrementAndGet();
+                return null;
+            }
+        }
+    }
+
+    /** Candidate getter names for one logical field; the id indexes the per-class slot array. */
+    static final class Group {
+        final int id;
+        final String[] names;
+
+        private Group(int id, String[] names) {
+            this.id = id;
+            this.names = names;
+        }
+    }
+
+    private static final List<Group> GROUPS = new ArrayList<>();
+
+    private static Group group(String... names) {
+        Group g = new Group(GROUPS.size(), names);
+        GROUPS.add(g);
+        return g;
+    }
+
+    // RtData wrapper / top-level
+    static final Group UNWRAP = group("getObj", "getData", "getPayload", "getSecond", "component2");
+    static final Group DEVICE_STATUS = group("getDeviceStatus");
+    static final Group BATTERY_STATUS = group("getBatteryStatus");
+    static final Group PERCENT = group("getPercent");
+    static final Group PARAM = group("getParam", "getRtParam", "getParamData", "getRtData", "getParams");
+    static final Group PARAM_DATA_TYPE = group("getParamDataType");
+    // RtParam / nested paramData
+    static final Group PARAM_DATA = group("getParamData", "getData", "getBpIng", "getBpResult", "getEcgIng", "getEcgResult");
+    static final Group HR = group("getHr", "getHeartRate", "getPr");
+    static final Group ECG_RESULT_HR = group(
+        "getHr", "getHeartRate", "getBpm", "getEcgHr", "getAvgHeartRate",
+        "getFinalHr", "getFinalHeartRate", "getHR", "getBPM", "getPulseRate",
+        "getAvgHr", "getResultHr", "getEcgResult", "getResult");
+    static final Group ECG_FINAL_HR = group("getHr", "getHeartRate", "getBpm", "getEcgHr", "getFinalHr", "getResultHr");
+    static final Group QRS_DURATION = group("getQrsDuration");
+    static final Group QT_INTERVAL = group("getQtInterval");
+    static final Group PR_INTERVAL = group("getPrInterval");
+    static final Group RHYTHM = group("getRhythm");
+    // Waveform
+    static final Group SAMPLE_RATE = group("getSampleRate", "getFs", "getSamplingRate", "getRate");
+    static final Group WAVE_SHORTS = group("getEcgShorts", "getEcgShortData", "getWaveShortData", "getEcgData", "shorts", "getShorts");
+    static final Group WAVE_FLOATS = group("getEcgFloats", "getWave", "getWaveData", "getEcgFloatData", "floats", "getFloats");
+    static final Group WAVE_BYTES = group("getEcgBytes", "getBytes", "getParamData", "getData");
+    // BP in-progress / result
+    static final Group PRESSURE = group("getPs", "getPressure", "getCurPressure", "getCurrentPressure", "ps");
+    static final Group SYS = group("getSys", "getSbp", "getSystolic");
+    static final Group DIA = group("getDia", "getDbp", "getDiastolic");
+    static final Group PULSE = group("getPr", "getHr", "getPulseRate");
+    static final Group MAP = group("getMap", "getMeanArterialPressure");
+    static final Group RESULT = group("getResult");
+
+    private static final Accessor[] NONE = new Accessor[0];
+    private static final Field[] NO_FIELDS = new Field[0];
+    private static final AtomicLong INVOKE_FAILURES = new AtomicLong();
+
+    /** Resolved slots for one payload class. */
+    private static final class Table {
+        final Accessor[][] slots;
+        // Fallback candidates for waveform discovery: zero-arg array getters and array fields
+        final Accessor[] arrayGetters;
+        final Field[] arrayFields;
+
+        Table(Accessor[][] slots, Accessor[] arrayGetters, Field[] arrayFields) {
+            this.slots = slots;
+            this.arrayGetters = arrayGetters;
+            this.arrayFields = arrayFields;
+        }
+    }
+
+    private final ConcurrentHashMap<Class<?>, Table> tables = new ConcurrentHashMap<>();
+    private final AtomicLong tableHits = new AtomicLong();
+    private final AtomicLong tableMisses = new AtomicLong();
+    private final AtomicLong resolvedGetters = new AtomicLong();
+    private final AtomicLong missingGetters = new AtomicLong();
+
+    /** Getters of {@code g} present on the target's class, in priority order (empty for null). */
+    Accessor[] accessors(Object target, Group g) {
+        if (target == null) return NONE;
+        return table(target.getClass()).slots[g.id];
+    }
+
+    Accessor[] arrayGetters(Object target) {
+        if (target == null) return NONE;
+        return table(target.getClass()).arrayGetters;
+    }
+
+    Field[] arrayFields(Object target) {
+        if (target == null) return NO_FIELDS;
+        return table(target.getClass()).arrayFields;
+    }
+
+    /** First non-null value among the group's getters. */
+    Object first(Object target, Group g) {
+        for (Accessor a : accessors(target, g)) {
+            Object v = a.get(target);
+            if (v != null) return v;
+        }
+        return null;
+    }
+
+    /** First numeric value among the group's getters, as an int. */
+    Integer firstInt(Object target, Group g) {
+        for (Accessor a : accessors(target, g)) {
+            Object v = a.get(target);
+            if (v instanceof Number) return ((Number) v).intValue();
+        }
+        return null;
+    }
+
+    long tableHits() { return tableHits.get(); }
+    long tableMisses() { return tableMisses.get(); }
+    long resolvedGetters() { return resolvedGetters.get(); }
+    long missingGetters() { return missingGetters.get(); }
+    long invokeFailures() { return INVOKE_FAILURES.get(); }
+    int cachedClasses() { return tables.size(); }
+
+    private Table table(Class<?> cls) {
+        Table t = tables.get(cls);
+        if (t != null) {
+            tableHits.incrementAndGet();
+            return t;
+        }
+        tableMisses.incrementAndGet();
+        t = resolve(cls);
+        Table prev = tables.putIfAbsent(cls, t);
+        return prev != null ? prev : t;
+    }
+
+    private Table resolve(Class<?> cls) {
+        // One pass over the public surface; a missing name must not cost an exception
+        Map<String, Accessor> getters = new HashMap<>();
+        List<Accessor> arrays = new ArrayList<>();
+        for (Method m : cls.getMethods()) {
+            if (m.getParameterCount() != 0 || m.getReturnType() == void.class) continue;
+            Accessor a = wrap(m);
+            getters.put(m.getName(), a);
+            if (m.getReturnType().isArray()) arrays.add(a);
+        }
+        Accessor[][] slots = new Accessor[GROUPS.size()][];
+        for (Group g : GROUPS) {
+            List<Accessor> found = new ArrayList<>(g.names.length);
+            for (String name : g.names) {
+                Accessor a = getters.get(name);
+                if (a != null) {
+                    found.add(a);
+                    resolvedGetters.incrementAndGet();
+                } else {
+                    missingGetters.incrementAndGet();
+                }
+            }
+            slots[g.id] = found.isEmpty() ? NONE : found.toArray(NONE);
+        }
+        List<Field> fields = new ArrayList<>();
+        for (Field f : cls.getDeclaredFields()) {
+            if (!f.getType().isArray()) continue;
+            try {
+                f.setAccessible(true);
+                fields.add(f);
+            } catch (Throwable ignore) {}
+        }
+        return new Table(slots, arrays.isEmpty() ? NONE : arrays.toArray(NONE),
+            fields.isEmpty() ? NO_FIELDS : fields.toArray(NO_FIELDS));
+    }
+
+    private static Accessor wrap(Method m) {
+        try {
+            // Skips the per-call access check; also covers public getters on non-public classes
+            m.setAccessible(true);
+        } catch (Throwable ignore) {}
+        return new Accessor(m.getName(), m);
+    }
+}
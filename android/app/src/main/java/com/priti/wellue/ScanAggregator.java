@@ -0,0 +1,231 @@
+package com.priti.wellue;
+
+import android.os.Handler;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One device table for both scan sources (vendor EventDeviceFound and the system BLE scanner).
+ *
+ * Advertisements are merged per MAC into an entry with an EWMA-smoothed RSSI, last-seen time and the
+ * sources that reported it. JS gets a {@code deviceFound} only when a MAC first appears (or its name or
+ * model becomes known), and otherwise a coalesced {@code deviceTableDelta} (changed entries + MACs that
+ * went stale) at most {@code emitHz} times a second. Adverts outside a session (before {@link #start},
+ * after {@link #stop}) are ignored. Updates may come from any thread; flushes run on the handler's looper.
+ */
+final class ScanAggregator {
+
+    static final int SOURCE_VENDOR = 1;
+    static final int SOURCE_SYSTEM = 2;
+    static final int DEFAULT_EMIT_HZ = 4;
+    private static final int MAX_EMIT_HZ = 20;
+    // Weight of a new reading; ~3 adverts to follow a step, enough to flatten single-packet fades
+    private static final double RSSI_ALPHA = 0.3;
+    private static final long STALE_MS = 15000L;
+    private static final long SWEEP_MS = 1000L;
+
+    /** Where merged results go; implemented by the plugin. */
+    interface Sink {
+        void onDeviceFound(JSObject device);
+
+        void onDelta(JSObject delta);
+    }
+
+    private static final class Entry {
+        final String address;
+        String name;
+        Integer model;
+        double rssi = Double.NaN;
+        int lastRssi;
+        final long firstSeenMs;
+        long lastSeenMs;
+        int sources;
+        long adverts;
+        boolean dirty;
+
+        Entry(String address, long now) {
+            this.address = address;
+            this.firstSeenMs = now;
+        }
+    }
+
+    private final Handler handler;
+    private final Sink sink;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final List<String> removed = new ArrayList<>();
+    private final Runnable flush = this::flush;
+    private long intervalMs = 1000L / DEFAULT_EMIT_HZ;
+    private boolean scanning;
+    private boolean flushScheduled;
+    private long flushDueMs;
+    private long lastFlushMs;
+    private long seq;
+
+    private long advertisements;
+    private long deltas;
+    private long foundEvents;
+
+    ScanAggregator(Handler handler, Sink sink) {
+        this.handler = handler;
+        this.sink = sink;
+    }
+
+    /** Starts a scan session with an empty table; {@code emitHz} bounds deviceTableDelta events. */
+    synchronized void start(int emitHz) {
+        entries.clear();
+        removed.clear();
+        intervalMs = 1000L / Math.max(1, Math.min(MAX_EMIT_HZ, emitHz));
+        scanning = true;
+        schedule(System.currentTimeMillis(), intervalMs);
+    }
+
+    /** Ends the session: pending changes go out now, the table is kept for {@link #snapshot()}. */
+    void stop() {
+        synchronized (this) {
+            scanning = false;
+            schedule(System.currentTimeMillis(), 0L);
+        }
+    }
+
+    void onAdvertisement(int source, String address, String name, Integer model, Integer rssi) {
+        if (address == null) return;
+        JSObject found = null;
+        synchronized (this) {
+            // The vendor scanner can outlive a session by a few adverts; a stopped table stays as it was
+            if (!scanning) return;
+            long now = System.currentTimeMillis();
+            Entry e = entries.get(address);
+            boolean isNew = e == null;
+            if (isNew) {
+                e = new Entry(address, now);
+                entries.put(address, e);
+                removed.remove(address);
+            }
+            boolean identity = isNew;
+            if (name != null && !name.isEmpty() && !name.equals(e.name)) {
+                identity |= e.name == null;
+                e.name = name;
+            }
+            if (model != null && !model.equals(e.model)) {
+                identity |= e.model == null;
+                e.model = model;
+            }
+            if (rssi != null && rssi.intValue() < 0) {
+                e.lastRssi = rssi;
+                e.rssi = Double.isNaN(e.rssi) ? rssi : e.rssi + RSSI_ALPHA * (rssi - e.rssi);
+            }
+            e.lastSeenMs = now;
+            e.sources |= source;
+            e.adverts++;
+            e.dirty = true;
+            advertisements++;
+            if (identity) {
+                found = toJson(e);
+                foundEvents++;
+            }
+            // Pull an idle sweep forward; a flush already due sooner picks this change up
+            long delay = Math.max(0L, lastFlushMs + intervalMs - now);
+            if (!flushScheduled || flushDueMs > now + delay) schedule(now, delay);
+        }
+        if (found != null) sink.onDeviceFound(found);
+    }
+
+    /** Whether {@code address} has advertised in the current (or last) session. */
+    synchronized boolean contains(String address) {
+        if (address == null) return false;
+        if (entries.containsKey(address)) return true;
+        for (String known : entries.keySet()) {
+            if (known.equalsIgnoreCase(address)) return true;
+        }
+        return false;
+    }
+
+    /** Every known device, strongest first. */
+    synchronized JSObject snapshot() {
+        List<Entry> list = new ArrayList<>(entries.values());
+        list.sort((a, b) -> Double.compare(rssiOf(b), rssiOf(a)));
+        JSArray devices = new JSArray();
+        for (Entry e : list) devices.put(toJson(e));
+        JSObject out = new JSObject();
+        out.put("devices", devices);
+        out.put("scanning", scanning);
+        out.put("advertisements", advertisements);
+        out.put("deltas", deltas);
+        out.put("deviceFoundEvents", foundEvents);
+        out.put("emitIntervalMs", intervalMs);
+        return out;
+    }
+
+    private void schedule(long now, long delayMs) {
+        handler.removeCallbacks(flush);
+        flushScheduled = true;
+        flushDueMs = now + delayMs;
+        handler.postDelayed(flush, delayMs);
+    }
+
+    private void flush() {
+        JSObject delta = null;
+        synchronized (this) {
+            flushScheduled = false;
+            long now = System.currentTimeMillis();
+            lastFlushMs = now;
+            JSArray changed = new JSArray();
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry e = it.next();
+                if (now - e.lastSeenMs > STALE_MS) {
+                    it.remove();
+                    removed.add(e.address);
+                } else if (e.dirty) {
+                    e.dirty = false;
+                    changed.put(toJson(e));
+                }
+            }
+            if (changed.length() > 0 || !removed.isEmpty()) {
+                JSArray gone = new JSArray();
+                for (String mac : removed) gone.put(mac);
+                removed.clear();
+                delta = new JSObject();
+                delta.put("seq", ++seq);
+                delta.put("devices", changed);
+                delta.put("removed", gone);
+                delta.put("size", entries.size());
+                deltas++;
+            }
+            // Keep sweeping while scanning so devices that go quiet still age out
+            if (scanning) schedule(now, Math.max(intervalMs, SWEEP_MS));
+        }
+        if (delta != null) sink.onDelta(delta);
+    }
+
+    private static double rssiOf(Entry e) {
+        return Double.isNaN(e.rssi) ? -200 : e.rssi;
+    }
+
+    private static JSObject toJson(Entry e) {
+        JSObject dev = new JSObject();
+        dev.put("deviceId", e.address);
+        dev.put("address", e.address);
+        dev.put("deviceName", e.name != null ? e.name : "Unknown");
+        if (e.model != null) dev.put("model", e.model.intValue()); else dev.put("model", "unknown");
+        if (!Double.isNaN(e.rssi)) {
+            dev.put("rssi", (int) Math.round(e.rssi));
+            dev.put("lastRssi", e.lastRssi);
+        }
+        dev.put("firstSeenMs", e.firstSeenMs);
+        dev.put("lastSeenMs", e.lastSeenMs);
+        dev.put("adverts", e.adverts);
+        JSArray sources = new JSArray();
+        if ((e.sources & SOURCE_VENDOR) != 0) sources.put("vendor");
+        if ((e.sources & SOURCE_SYSTEM) != 0) sources.put("system");
+        dev.put("sources", sources);
+        return dev;
+    }
+}
@@ -0,0 +1,309 @@
+package com.priti.wellue;
+
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.le.BluetoothLeScanner;
+import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanFilter;
+import android.bluetooth.le.ScanResult;
+import android.bluetooth.le.ScanSettings;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONObject;
+
+import java.util.List;
+
+/**
+ * Runs the system BLE scanner on a power budget.
+ *
+ * Modes: {@code burst} scans at low latency for {@code burstMs} and then drops to balanced,
+ * {@code balanced} stays balanced, and {@code opportunistic} only receives results from scans other
+ * apps are running (no radio time of its own). Balanced phases use hardware batching
+ * ({@code setReportDelay}) where the controller supports it, so the app wakes once per batch instead
+ * of once per advertisement. A session ends on {@link #stop}, after {@code timeoutMs}, or as soon as
+ * {@code targetAddress} is seen. Wakeups and radio time per mode are counted for {@link #metrics()}.
+ * All state is touched on the handler's looper.
+ */
+final class ScanScheduler {
+
+    private static final String TAG = "ScanScheduler";
+
+    static final int MODE_BURST = 0;
+    static final int MODE_BALANCED = 1;
+    static final int MODE_OPPORTUNISTIC = 2;
+    static final long DEFAULT_BURST_MS = 10000L;
+    static final long DEFAULT_TIMEOUT_MS = 120000L;
+    static final long DEFAULT_REPORT_DELAY_MS = 2000L;
+
+    static final String STOP_MANUAL = "manual";
+    static final String STOP_TIMEOUT = "timeout";
+    static final String STOP_TARGET_FOUND = "targetFound";
+    static final String STOP_FAILED = "failed";
+
+    static final class Config {
+        int mode = MODE_BURST;
+        long burstMs = DEFAULT_BURST_MS;
+        // 0 = scan until stopped
+        long timeoutMs = DEFAULT_TIMEOUT_MS;
+        String targetAddress;
+        // Batching delay for balanced/opportunistic phases; 0 = report every advertisement
+        long reportDelayMs = DEFAULT_REPORT_DELAY_MS;
+    }
+
+    /** Receives results and the end of each session, on the handler's looper. */
+    interface Sink {
+        void onResult(ScanResult result);
+
+        void onStopped(String reason);
+
+        /** Whether the device was already seen this session (by any scanner) before the scheduler started. */
+        boolean seen(String address);
+    }
+
+    static int parseMode(String mode) {
+        if ("balanced".equalsIgnoreCase(mode)) return MODE_BALANCED;
+        if ("opportunistic".equalsIgnoreCase(mode)) return MODE_OPPORTUNISTIC;
+        return MODE_BURST;
+    }
+
+    static String modeName(int mode) {
+        return mode == MODE_BALANCED ? "balanced" : mode == MODE_OPPORTUNISTIC ? "opportunistic" : "burst";
+    }
+
+    private final Handler handler;
+    private final BluetoothAdapter adapter;
+    private final List<ScanFilter> filters;
+    private final Sink sink;
+    private final ScanCallback callback = new ScanCallback() {
+        @Override
+        public void onScanResult(int callbackType, ScanResult result) {
+            wakeups++;
+            results++;
+            deliver(result);
+        }
+
+        @Override
+        public void onBatchScanResults(List<ScanResult> batch) {
+            wakeups++;
+            if (batch == null) return;
+            batches++;
+            results += batch.size();
+            for (ScanResult r : batch) deliver(r);
+        }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+            Log.w(TAG, "❌ System scan failed: " + errorCode);
+            failures++;
+            stop(STOP_FAILED);
+        }
+    };
+    private final Runnable downshift = () -> runPhase(ScanSettings.SCAN_MODE_BALANCED);
+    private final Runnable timeout = () -> stop(STOP_TIMEOUT);
+
+    private BluetoothLeScanner scanner;
+    private Config config;
+    private boolean active;
+    private boolean batching;
+    private int phaseMode = Integer.MIN_VALUE;
+    private long phaseStartMs;
+    private long sessionStartMs;
+
+    // Metrics (lifetime of the plugin)
+    private long sessions = 0L;
+    private long wakeups = 0L;
+    private long results = 0L;
+    private long batches = 0L;
+    private long failures = 0L;
+    private long lowLatencyMs = 0L;
+    private long balancedMs = 0L;
+    private long opportunisticMs = 0L;
+    private long lastSessionMs = 0L;
+    private long lastTimeToTargetMs = -1L;
+    private String lastStopReason;
+    private final java.util.Map<String, Long> stopsByReason = new java.util.HashMap<>();
+
+    ScanScheduler(Handler handler, BluetoothAdapter adapter, List<ScanFilter> filters, Sink sink) {
+        this.handler = handler;
+        this.adapter = adapter;
+        this.filters = filters;
+        this.sink = sink;
+    }
+
+    /** Starts a session (replacing a running one without reporting it as stopped). */
+    void start(final Config cfg) {
+        handler.post(() -> {
+            if (active) {
+                endPhase();
+                try { scanner.stopScan(callback); } catch (Throwable ignore) {}
+            }
+            handler.removeCallbacks(downshift);
+            handler.removeCallbacks(timeout);
+            if (scanner == null && adapter != null) scanner = adapter.getBluetoothLeScanner();
+            if (scanner == null) {
+                Log.w(TAG, "System BLE scanner not available");
+                active = false;
+                return;
+            }
+            config = cfg;
+            active = true;
+            sessions++;
+            sessionStartMs = SystemClock.elapsedRealtime();
+            lastTimeToTargetMs = -1L;
+            boolean offload = false;
+            try { offload = adapter.isOffloadedScanBatchingSupported(); } catch (Throwable ignore) {}
+            batching = offload && cfg.reportDelayMs > 0;
+            if (cfg.mode == MODE_BURST) {
+                runPhase(ScanSettings.SCAN_MODE_LOW_LATENCY);
+                if (cfg.burstMs > 0) handler.postDelayed(downshift, cfg.burstMs);
+            } else {
+                runPhase(cfg.mode == MODE_OPPORTUNISTIC ? ScanSettings.SCAN_MODE_OPPORTUNISTIC : ScanSettings.SCAN_MODE_BALANCED);
+            }
+            if (cfg.timeoutMs > 0) handler.postDelayed(timeout, cfg.timeoutMs);
+            Log.d(TAG, "🛰️ Scan session started: mode=" + modeName(cfg.mode) + " timeoutMs=" + cfg.timeoutMs
+                + " target=" + cfg.targetAddress + " batching=" + batching);
+            // deviceFound fires once per MAC; if the vendor scan reported the target before this runnable,
+            // onDeviceSeen was dropped, so look it up now instead of waiting for the timeout
+            if (cfg.targetAddress != null && sink.seen(cfg.targetAddress)) {
+                lastTimeToTargetMs = 0L;
+                stop(STOP_TARGET_FOUND);
+            }
+        });
+    }
+
+    void stop(final String reason) {
+        handler.post(() -> {
+            if (!active) return;
+            handler.removeCallbacks(downshift);
+            handler.removeCallbacks(timeout);
+            endPhase();
+            try {
+                if (batching) scanner.flushPendingScanResults(callback);
+            } catch (Throwable ignore) {}
+            try {
+                scanner.stopScan(callback);
+            } catch (Throwable t) {
+                Log.w(TAG, "System scanner stop error", t);
+            }
+            active = false;
+            phaseMode = Integer.MIN_VALUE;
+            lastSessionMs = SystemClock.elapsedRealtime() - sessionStartMs;
+            lastStopReason = reason;
+            Long n = stopsByReason.get(reason);
+            stopsByReason.put(reason, n == null ? 1L : n + 1L);
+            Log.d(TAG, "🛰️ Scan session ended (" + reason + ") after " + lastSessionMs + " ms");
+            sink.onStopped(reason);
+        });
+    }
+
+    /** Stops the scanner without reporting; call on the handler's looper (plugin teardown). */
+    void shutdown() {
+        handler.removeCallbacks(downshift);
+        handler.removeCallbacks(timeout);
+        if (!active) return;
+        endPhase();
+        try { scanner.stopScan(callback); } catch (Throwable ignore) {}
+        active = false;
+    }
+
+    /** A device was seen by any source; ends the session if it is the target. */
+    void onDeviceSeen(final String address) {
+        handler.post(() -> {
+            if (!active || config == null || config.targetAddress == null) return;
+            if (config.targetAddress.equalsIgnoreCase(address)) {
+                lastTimeToTargetMs = SystemClock.elapsedRealtime() - sessionStartMs;
+                stop(STOP_TARGET_FOUND);
+            }
+        });
+    }
+
+    /** Call on the handler's looper. */
+    JSONObject metrics() {
+        JSONObject out = new JSONObject();
+        try {
+            long now = SystemClock.elapsedRealtime();
+            long ll = lowLatencyMs;
+            long bal = balancedMs;
+            long opp = opportunisticMs;
+            // Include the phase in progress
+            if (active) {
+                long cur = now - phaseStartMs;
+                if (phaseMode == ScanSettings.SCAN_MODE_LOW_LATENCY) ll += cur;
+                else if (phaseMode == ScanSettings.SCAN_MODE_BALANCED) bal += cur;
+                else opp += cur;
+            }
+            out.put("active", active);
+            if (active && config != null) {
+                out.put("mode", modeName(config.mode));
+                out.put("phase", phaseName(phaseMode));
+                out.put("sessionMs", now - sessionStartMs);
+            }
+            out.put("batching", batching);
+            out.put("sessions", sessions);
+            out.put("wakeups", wakeups);
+            out.put("results", results);
+            out.put("batches", batches);
+            out.put("failures", failures);
+            out.put("lowLatencyMs", ll);
+            out.put("balancedMs", bal);
+            out.put("opportunisticMs", opp);
+            // Opportunistic scanning borrows other apps' scans and costs no radio time of ours
+            out.put("radioMs", ll + bal);
+            out.put("lastSessionMs", lastSessionMs);
+            if (lastTimeToTargetMs >= 0) out.put("lastTimeToTargetMs", lastTimeToTargetMs);
+            if (lastStopReason != null) out.put("lastStopReason", lastStopReason);
+            JSONObject stops = new JSONObject();
+            for (java.util.Map.Entry<String, Long> e : stopsByReason.entrySet()) stops.put(e.getKey(), e.getValue().longValue());
+            out.put("stops", stops);
+        } catch (Throwable ignore) {}
+        return out;
+    }
+
+    private void runPhase(int scanMode) {
+        if (!active) return;
+        if (phaseMode != Integer.MIN_VALUE) {
+            endPhase();
+            try { scanner.stopScan(callback); } catch (Throwable ignore) {}
+        }
+        ScanSettings.Builder b = new ScanSettings.Builder().setScanMode(scanMode);
+        // Low latency is for finding the device now; batching would only delay it
+        if (batching && scanMode != ScanSettings.SCAN_MODE_LOW_LATENCY) b.setReportDelay(config.reportDelayMs);
+        try {
+            scanner.startScan(filters, b.build(), callback);
+            phaseMode = scanMode;
+            phaseStartMs = SystemClock.elapsedRealtime();
+            Log.d(TAG, "🛰️ Scan phase: " + phaseName(scanMode));
+        } catch (Throwable t) {
+            Log.w(TAG, "System scanner start error", t);
+            failures++;
+            phaseMode = Integer.MIN_VALUE;
+            stop(STOP_FAILED);
+        }
+    }
+
+    private void endPhase() {
+        if (phaseMode == Integer.MIN_VALUE) return;
+        long ms = SystemClock.elapsedRealtime() - phaseStartMs;
+        if (phaseMode == ScanSettings.SCAN_MODE_LOW_LATENCY) lowLatencyMs += ms;
+        else if (phaseMode == ScanSettings.SCAN_MODE_BALANCED) balancedMs += ms;
+        else opportunisticMs += ms;
+        phaseMode = Integer.MIN_VALUE;
+    }
+
+    private void deliver(ScanResult r) {
+        if (r == null) return;
+        try {
+            sink.onResult(r);
+        } catch (Throwable t) {
+            Log.w(TAG, "Scan result handler threw", t);
+        }
+    }
+
+    private static String phaseName(int scanMode) {
+        if (scanMode == ScanSettings.SCAN_MODE_LOW_LATENCY) return "lowLatency";
+        if (scanMode == ScanSettings.SCAN_MODE_BALANCED) return "balanced";
+        if (scanMode == ScanSettings.SCAN_MODE_OPPORTUNISTIC) return "opportunistic";
+        return "idle";
+    }
+}
@@ -3,10 +3,7 @@ package com.priti.wellue;
 import android.Manifest;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothManager;
-import android.bluetooth.le.BluetoothLeScanner;
-import android.bluetooth.le.ScanCallback;
 import android.bluetooth.le.ScanResult;
-import android.bluetooth.le.ScanSettings;
 import android.bluetooth.BluetoothProfile;
 import android.content.BroadcastReceiver;
 import android.content.Context;
@@ -35,12 +32,20 @@ import com.getcapacitor.annotation.PermissionCallback;
 // LiveEventBus (available via dependency) - will be used with real SDK on device
 import com.jeremyliao.liveeventbus.LiveEventBus;
 import androidx.lifecycle.Observer;
+import com.priti.bp2codec.Bp2BpResult;
+import com.priti.bp2codec.Bp2Codec;
+import com.priti.bp2codec.EcgDecimator;
+import com.priti.bp2codec.EcgFlowController;
+import com.priti.bp2codec.QrsDetector;
+import com.priti.bp2codec.EcgFilter;
+import com.priti.bp2codec.EcgRingBuffer;
 
 // Vendor SDK (enable real integration on device)
 import com.lepu.blepro.ext.BleServiceHelper;
 import com.lepu.blepro.event.EventMsgConst;
 import com.lepu.blepro.event.InterfaceEvent;
 import com.lepu.blepro.objs.Bluetooth;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 @CapacitorPlugin(
@@ -57,71 +62,272 @@ public class WelluePlugin extends Plugin {
     private BluetoothAdapter bluetoothAdapter;
     private BroadcastReceiver bluetoothReceiver;
     private boolean isWellueSDKInitialized = false;
-    private String lastConnectingAddress = null;
     private Object bleHelperInstance = null;
     private boolean discoveryObserverRegistered = false;
-    private BluetoothLeScanner systemScanner;
-    private ScanCallback systemScanCallback;
-    private java.util.Set<String> seenAddresses = new java.util.HashSet<>();
-    private final java.util.Map<String, Integer> modelByAddress = new java.util.HashMap<>();
-    private String pendingAction = null; // "startScan", "connect", "getBp2FileList", "bp2ReadFile"
+    // System BLE scanner, duty-cycled per startScan options
+    private ScanScheduler scanScheduler;
+    // Vendor and system scan results merged per MAC; deltas go to JS at a bounded rate
+    private ScanAggregator scanTable;
+    // Connected/active/connecting addresses, per-MAC models and the BP2 file index; safe from any thread
+    private final WellueState state = new WellueState();
+    // Devices connected before (model, name, connect history), read off the main thread in load()
+    private DeviceRegistry deviceRegistry;
+    private java.util.concurrent.ExecutorService registryIo;
+    // SDK-side setup that only needs to happen once per process: interfaces per model, device handles per MAC
+    private final java.util.Set<Integer> interfacesReady = java.util.concurrent.ConcurrentHashMap.newKeySet();
+    private final java.util.Map<String, android.bluetooth.BluetoothDevice> deviceHandles = new java.util.concurrent.ConcurrentHashMap<>();
+    private volatile boolean scanActive = false;
+    private static final long CONNECT_TIMEOUT_MS = 20000L;
+    private String pendingAction = null; // "startScan", "connect", "getBp2FileList", "bp2ReadFile", "syncNewRecords"
     private String pendingFileName = null;
     private String pendingAddress = null;
-    private final java.util.Set<String> connectedAddrsSnapshot = new java.util.HashSet<>();
-    // Tracks only the Wellue (BP2) device we actively manage
-    private String activeWellueAddress = null;
-    // Map BP2 filename -> index (filled when fetching list) to support index-based read fallbacks
-    private final java.util.Map<String, Integer> bp2FileIndexMap = new java.util.HashMap<>();
     private final android.os.Handler connHandler = new android.os.Handler(android.os.Looper.getMainLooper());
+    // Connection state is event-driven: SDK ready/disconnect events and ACL disconnects (ACL connects only pull the
+    // reconcile pass forward). connPoller is the reconciliation pass against GATT: it backs off from 2 s to 60 s
+    // while nothing changes and resets on any event.
+    private static final long CONN_RECONCILE_MIN_MS = 2000L;
+    private static final long CONN_RECONCILE_MAX_MS = 60000L;
+    private long connReconcileDelayMs = CONN_RECONCILE_MIN_MS;
+    private final java.util.Set<String> connReconcileScratch = new java.util.HashSet<>();
+    private boolean bleConnEventsRegistered = false;
+
+    private void onGattConnected(String addr, String name) {
+        // A device we opened a session for (or are connecting to) becomes the default target for calls without an address
+        DeviceSession session = addr != null ? sessions.get(addr) : null;
+        if (addr == null || !state.onConnected(addr, session != null)) return;
+        JSObject dev = new JSObject();
+        dev.put("deviceName", name);
+        dev.put("deviceId", addr);
+        dev.put("address", addr);
+        dev.put("model", "unknown");
+        // Close out a pending connect attempt: time from connect()/auto-reconnect to link up
+        long ttc = registry().onConnected(addr, name);
+        if (ttc >= 0) {
+            DeviceRegistry.Device known = registry().get(addr);
+            dev.put("timeToConnectedMs", ttc);
+            if (known != null && known.lastPath != null) dev.put("connectPath", known.lastPath);
+        }
+        notifyListeners("deviceConnected", dev);
+        Log.d(TAG, "✅ GATT connected: " + addr + " (" + name + ")" + (ttc >= 0 ? " in " + ttc + " ms" : ""));
+        if (session != null) {
+            session.state = DeviceSession.STATE_CONNECTED;
+            session.connectedAtMs = System.currentTimeMillis();
+            if (name != null) session.name = name;
+        }
+    }
+
+    private void onGattDisconnected(String addr) {
+        // A link that drops before it was reported connected fails the pending attempt
+        if (addr != null && registry().isConnecting(addr)) failConnectAttempt(addr, "disconnected");
+        // If it was the active device, another connected device with a live session takes over
+        if (addr == null || !state.onDisconnected(addr, other -> {
+            DeviceSession s = sessions.get(other);
+            return s != null && s.state == DeviceSession.STATE_CONNECTED;
+        })) return;
+        JSObject dev = new JSObject();
+        dev.put("deviceId", addr);
+        dev.put("address", addr);
+        notifyListeners("deviceDisconnected", dev);
+        Log.d(TAG, "❎ GATT disconnected: " + addr);
+        if (bp2Downloads != null) bp2Downloads.cancelQueued(addr, "Device disconnected");
+        DeviceSession session = sessions.get(addr);
+        if (session != null) closeSession(session);
+    }
+
+    private synchronized DeviceRegistry registry() {
+        if (deviceRegistry == null) {
+            registryIo = java.util.concurrent.Executors.newSingleThreadExecutor();
+            deviceRegistry = new DeviceRegistry(new java.io.File(getContext().getFilesDir(), "wellue_devices.json"), registryIo);
+        }
+        return deviceRegistry;
+    }
+
+    private void beginConnectAttempt(String addr, int model, String path) {
+        registry().onConnectAttempt(addr, model, path);
+        // One check per attempt; the sweep only fails attempts that are actually overdue
+        connHandler.postDelayed(connectTimeout, CONNECT_TIMEOUT_MS);
+        Log.d(TAG, "⏱️ Connect attempt to " + addr + " (" + path + ")");
+    }
+
+    private void failConnectAttempt(String addr, String reason) {
+        registry().onConnectFailed(addr);
+        state.clearConnecting(addr);
+        JSObject ev = new JSObject();
+        ev.put("deviceId", addr);
+        ev.put("address", addr);
+        ev.put("reason", reason);
+        notifyListeners("deviceConnectFailed", ev);
+        Log.w(TAG, "⏱️ Connect attempt to " + addr + " failed: " + reason);
+    }
+
+    private final Runnable connectTimeout = this::sweepConnectTimeouts;
+
+    private void sweepConnectTimeouts() {
+        long now = android.os.SystemClock.elapsedRealtime();
+        for (DeviceSession s : sessions.values()) {
+            if (s.state != DeviceSession.STATE_CONNECTING || !registry().isConnecting(s.address)) continue;
+            if (now - s.connectStartMs >= CONNECT_TIMEOUT_MS) failConnectAttempt(s.address, "timeout");
+        }
+    }
+
+    private static boolean isBp2Family(Integer model) {
+        return model != null && (model == com.lepu.blepro.objs.Bluetooth.MODEL_BP2 || model == com.lepu.blepro.objs.Bluetooth.MODEL_BP2A
+            || model == com.lepu.blepro.objs.Bluetooth.MODEL_BP2T || model == com.lepu.blepro.objs.Bluetooth.MODEL_BP2W);
+    }
+
+    // setInterfaces is only needed once per model per process; reconnects to a known device skip it
+    private boolean ensureInterfaces(int model) {
+        if (interfacesReady.contains(model)) return true;
+        try {
+            Class<?> helperCls = Class.forName("com.lepu.blepro.ext.BleServiceHelper");
+            Object companion = helperCls.getField("Companion").get(null);
+            try {
+                companion.getClass().getMethod("setInterfaces", int.class, boolean.class).invoke(companion, model, true);
+                Log.d(TAG, "setInterfaces(" + model + ") via Companion OK");
+            } catch (Throwable ignore) {
+                Object helper = getBleHelper();
+                if (helper == null) return false;
+                helper.getClass().getMethod("setInterfaces", int.class, boolean.class).invoke(helper, model, true);
+                Log.d(TAG, "setInterfaces(" + model + ") via instance OK");
+            }
+            interfacesReady.add(model);
+            return true;
+        } catch (Throwable t) {
+            Log.w(TAG, "setInterfaces(" + model + ") failed", t);
+            return false;
+        }
+    }
+
+    private android.bluetooth.BluetoothDevice deviceHandle(String addr) {
+        android.bluetooth.BluetoothDevice d = deviceHandles.get(addr);
+        if (d == null) {
+            d = bluetoothAdapter.getRemoteDevice(addr);
+            deviceHandles.put(addr, d);
+        }
+        return d;
+    }
+
+    // Runs once the registry is loaded: reconnect straight to the last device, no scan
+    private void autoReconnect(String lastMacPref) {
+        try {
+            if (!state.isIdle()) return; // JS already took over
+            DeviceRegistry.Device d = registry().lastConnected();
+            // Installs from before the registry only have last_mac, stored as JS passed it
+            String last = WellueState.normalize(d != null ? d.address : lastMacPref);
+            if (last == null || last.isEmpty()) return;
+            Object helper = getBleHelper();
+            if (helper == null) return;
+            int model = d != null && d.model != null ? d.model : state.model(last, com.lepu.blepro.objs.Bluetooth.MODEL_BP2);
+            state.putModel(last, model);
+            state.setConnecting(last);
+            openSession(last, model);
+            beginConnectAttempt(last, model, DeviceRegistry.PATH_AUTO);
+            // reconnectByAddress(Integer, String, boolean, boolean)
+            helper.getClass().getMethod("reconnectByAddress", Integer.class, String.class, boolean.class, boolean.class)
+                    .invoke(helper, model, last, true, true);
+            Log.d(TAG, "🔁 Auto reconnect attempt to " + last);
+        } catch (Throwable t) {
+            Log.w(TAG, "auto-reconnect error", t);
+        }
+    }
+
+    // Pull the next reconciliation pass forward after a connection event so GATT state converges quickly
+    private void scheduleConnReconcile(long delayMs) {
+        connReconcileDelayMs = CONN_RECONCILE_MIN_MS;
+        connHandler.removeCallbacks(connPoller);
+        connHandler.postDelayed(connPoller, delayMs);
+    }
+
     private final Runnable connPoller = new Runnable() {
         @Override public void run() {
+            boolean changed = false;
             try {
                 BluetoothManager manager = (BluetoothManager) getContext().getSystemService(Context.BLUETOOTH_SERVICE);
-                java.util.Set<String> current = new java.util.HashSet<>();
+                java.util.Set<String> current = connReconcileScratch;
+                current.clear();
                 if (manager != null) {
                     java.util.List<android.bluetooth.BluetoothDevice> list = manager.getConnectedDevices(BluetoothProfile.GATT);
                     for (android.bluetooth.BluetoothDevice d : list) {
                         if (d == null || d.getAddress() == null) continue;
                         String addr = d.getAddress();
                         current.add(addr);
-                        if (!connectedAddrsSnapshot.contains(addr)) {
-                            // newly connected
-                            JSObject dev = new JSObject();
-                            dev.put("deviceName", d.getName());
-                            dev.put("deviceId", addr);
-                            dev.put("address", addr);
-                            dev.put("model", "unknown");
-                            notifyListeners("deviceConnected", dev);
-                            Log.d(TAG, "✅ GATT connected: " + addr + " (" + d.getName() + ")");
-                            // If this is the address we are trying to connect, mark as our active Wellue device
-                            if (lastConnectingAddress != null && lastConnectingAddress.equalsIgnoreCase(addr)) {
-                                activeWellueAddress = addr;
-                            }
+                        if (!state.snapshot().isConnected(addr)) {
+                            onGattConnected(addr, d.getName());
+                            changed = true;
                         }
                     }
                 }
-                // disconnected ones
-                for (String prev : new java.util.HashSet<>(connectedAddrsSnapshot)) {
-                    if (!current.contains(prev)) {
-                        JSObject dev = new JSObject();
-                        dev.put("deviceId", prev);
-                        dev.put("address", prev);
-                        notifyListeners("deviceDisconnected", dev);
-                        Log.d(TAG, "❎ GATT disconnected: " + prev);
-                        if (activeWellueAddress != null && activeWellueAddress.equalsIgnoreCase(prev)) {
-                            activeWellueAddress = null;
+                // disconnected ones; the snapshot's set is immutable, so iterating it is safe while events mutate state
+                java.util.Set<String> known = state.snapshot().connected;
+                if (known.size() != current.size() || !current.containsAll(known)) {
+                    for (String prev : known) {
+                        if (!current.contains(prev)) {
+                            onGattDisconnected(prev);
+                            changed = true;
                         }
                     }
                 }
-                connectedAddrsSnapshot.clear();
-                connectedAddrsSnapshot.addAll(current);
             } catch (Throwable t) {
                 Log.w(TAG, "connection poll error", t);
             } finally {
-                connHandler.postDelayed(this, 2000);
+                connReconcileDelayMs = changed ? CONN_RECONCILE_MIN_MS : Math.min(CONN_RECONCILE_MAX_MS, connReconcileDelayMs * 2);
+                connHandler.postDelayed(this, connReconcileDelayMs);
             }
         }
     };
+
+    // SDK connection events carry the model, not the MAC, so they are attributed to the device we are managing
+    private void ensureBleConnectionObservers() {
+        if (bleConnEventsRegistered) return;
+        try {
+            LiveEventBus.get(EventMsgConst.Ble.EventBleDeviceReady, Object.class).observeForever(model -> {
+                try {
+                    DeviceSession session = model instanceof Integer ? sessionByModel.get((Integer) model) : null;
+                    WellueState.Snapshot st = state.snapshot();
+                    String addr = session != null && session.address != null ? session.address
+                        : st.connecting != null ? st.connecting : st.active;
+                    Log.d(TAG, "🔗 SDK device ready model=" + model + " addr=" + addr);
+                    if (addr != null) {
+                        String name = null;
+                        try { if (bluetoothAdapter != null) name = bluetoothAdapter.getRemoteDevice(addr).getName(); } catch (Throwable ignore) {}
+                        onGattConnected(addr, name);
+                    }
+                    scheduleConnReconcile(CONN_RECONCILE_MIN_MS);
+                } catch (Throwable ignore) {}
+            });
+            LiveEventBus.get(EventMsgConst.Ble.EventBleDeviceDisconnectReason, Object.class).observeForever(reason -> {
+                try {
+                    // The reason carries neither MAC nor model; with several devices, ACL broadcasts and the reconcile pass attribute it
+                    WellueState.Snapshot st = state.snapshot();
+                    String addr = sessions.size() > 1 ? null : st.active != null ? st.active : st.connecting;
+                    Log.d(TAG, "🔌 SDK device disconnected reason=" + reason + " addr=" + addr);
+                    onGattDisconnected(addr);
+                    // Unattributed: reconcile right away rather than leave a dead session CONNECTED until the next pass
+                    scheduleConnReconcile(addr == null ? 0L : CONN_RECONCILE_MIN_MS);
+                } catch (Throwable ignore) {}
+            });
+            bleConnEventsRegistered = true;
+        } catch (Throwable t) {
+            Log.w(TAG, "Unable to register BLE connection observers", t);
+        }
+    }
+    private synchronized ScanAggregator scanTable() {
+        if (scanTable == null) {
+            scanTable = new ScanAggregator(connHandler, new ScanAggregator.Sink() {
+                @Override public void onDeviceFound(JSObject device) {
+                    Log.d(TAG, "🔎 deviceFound: name=" + device.getString("deviceName") + ", addr=" + device.getString("address"));
+                    notifyListeners("deviceFound", device);
+                    scanScheduler().onDeviceSeen(device.getString("address"));
+                }
+
+                @Override public void onDelta(JSObject delta) {
+                    notifyListeners("deviceTableDelta", delta);
+                }
+            });
+        }
+        return scanTable;
+    }
+
     private void ensureDiscoveryObserver() {
         if (discoveryObserverRegistered) return;
         try {
@@ -129,14 +335,16 @@ public class WelluePlugin extends Plugin {
                 .observeForever(bt -> {
                     try {
                         if (bt == null) return;
-                        Log.d(TAG, "🔎 EventDeviceFound: name=" + bt.getName() + ", model=" + bt.getModel() + ", addr=" + (bt.getDevice()!=null?bt.getDevice().getAddress():"null"));
-                        JSObject dev = new JSObject();
-                        dev.put("deviceName", bt.getName());
-                        dev.put("deviceId", bt.getDevice().getAddress());
-                        dev.put("address", bt.getDevice().getAddress());
-                        dev.put("model", bt.getModel());
-                        notifyListeners("deviceFound", dev);
-                        try { if (bt.getDevice()!=null && bt.getDevice().getAddress()!=null) modelByAddress.put(bt.getDevice().getAddress(), bt.getModel()); } catch (Throwable ignore) {}
+                        if (bt.getDevice() == null) return;
+                        String address = bt.getDevice().getAddress();
+                        Integer rssi = null;
+                        try { rssi = bt.getRssi(); } catch (Throwable ignore) {}
+                        scanTable().onAdvertisement(ScanAggregator.SOURCE_VENDOR, address, bt.getName(), bt.getModel(), rssi);
+                        try { state.putModel(address, bt.getModel()); } catch (Throwable ignore) {}
+                        if (address != null) {
+                            deviceHandles.put(address, bt.getDevice());
+                            registry().recordSeen(address, bt.getName(), bt.getModel());
+                        }
                     } catch (Throwable ex) {
                         Log.e(TAG, "Error emitting deviceFound", ex);
                     }
@@ -148,9 +356,76 @@ public class WelluePlugin extends Plugin {
         }
     }
 
+    // RT diagnostics: off (default, zero reflection/logging on the stream), sampled 1-in-N packets, or full
+    private static final int DIAG_OFF = 0;
+    private static final int DIAG_SAMPLED = 1;
+    private static final int DIAG_FULL = 2;
+    private static final String[] DIAG_LEVEL_NAMES = { "off", "sampled", "full" };
+    private volatile int diagLevel = DIAG_OFF;
+    private volatile int diagSampleEvery = 100;
+    private final java.util.concurrent.atomic.AtomicLong rtPacketCount = new java.util.concurrent.atomic.AtomicLong();
+    private volatile long rtPacketsTraced = 0L;
+
+    private boolean shouldTraceRtPacket() {
+        int level = diagLevel;
+        if (level == DIAG_OFF) return false;
+        if (level == DIAG_FULL) return true;
+        return (rtPacketCount.get() % Math.max(1, diagSampleEvery)) == 0;
+    }
+
+    private void loadDiagnosticsPrefs() {
+        try {
+            android.content.SharedPreferences sp = getContext().getSharedPreferences("wellue_prefs", Context.MODE_PRIVATE);
+            int level = sp.getInt("diag_level", DIAG_OFF);
+            diagLevel = (level >= DIAG_OFF && level <= DIAG_FULL) ? level : DIAG_OFF;
+            diagSampleEvery = Math.max(1, sp.getInt("diag_sample_every", 100));
+        } catch (Throwable t) {
+            Log.w(TAG, "Unable to load diagnostics prefs", t);
+        }
+    }
+
+    @PluginMethod
+    public void setDiagnostics(PluginCall call) {
+        String levelStr = call.getString("level", "off");
+        int level = java.util.Arrays.asList(DIAG_LEVEL_NAMES).indexOf(levelStr == null ? "" : levelStr.toLowerCase());
+        if (level < 0) { call.reject("level must be one of off, sampled, full"); return; }
+        int every = call.getInt("sampleEvery", diagSampleEvery);
+        if (every < 1) { call.reject("sampleEvery must be >= 1"); return; }
+        diagLevel = level;
+        diagSampleEvery = every;
+        try {
+            android.content.SharedPreferences sp = getContext().getSharedPreferences("wellue_prefs", Context.MODE_PRIVATE);
+            sp.edit().putInt("diag_level", level).putInt("diag_sample_every", every).apply();
+        } catch (Throwable ignore) {}
+        if (level == DIAG_OFF) removeBp2DebugObservers(); else ensureBp2DebugObservers();
+        Log.d(TAG, "🧪 Diagnostics level=" + DIAG_LEVEL_NAMES[level] + " sampleEvery=" + every);
+        getDiagnostics(call);
+    }
+
+    @PluginMethod
+    public void getDiagnostics(PluginCall call) {
+        JSObject out = new JSObject();
+        out.put("level", DIAG_LEVEL_NAMES[diagLevel]);
+        out.put("sampleEvery", diagSampleEvery);
+        out.put("packets", rtPacketCount.get());
+        out.put("packetsTraced", rtPacketsTraced);
+        call.resolve(out);
+    }
+
     private boolean bp2DebugObserversRegistered = false;
+    private final java.util.Map<String, Observer<Object>> bp2DebugObservers = new java.util.HashMap<>();
+    private void removeBp2DebugObservers() {
+        if (!bp2DebugObserversRegistered) return;
+        for (java.util.Map.Entry<String, Observer<Object>> e : bp2DebugObservers.entrySet()) {
+            try { LiveEventBus.get(e.getKey(), Object.class).removeObserver(e.getValue()); } catch (Throwable ignore) {}
+        }
+        bp2DebugObservers.clear();
+        bp2DebugObserversRegistered = false;
+        Log.d(TAG, "🧪 BP2 debug observers removed");
+    }
+
     private void ensureBp2DebugObservers() {
-        if (bp2DebugObserversRegistered) return;
+        if (bp2DebugObserversRegistered || diagLevel == DIAG_OFF) return;
         try {
             Class<?> bp2Cls = Class.forName("com.lepu.blepro.event.InterfaceEvent$BP2");
             for (java.lang.reflect.Field f : bp2Cls.getDeclaredFields()) {
@@ -161,11 +436,13 @@ public class WelluePlugin extends Plugin {
                 if (key == null || key.isEmpty()) continue;
                 final String observeKey = key;
                 try {
-                    LiveEventBus.get(observeKey, Object.class).observeForever(obj -> {
+                    Observer<Object> obs = obj -> {
                         try {
                             Log.d(TAG, "🔔 BP2 Event: " + observeKey + ", payloadClass=" + (obj!=null?obj.getClass().getName():"null"));
                         } catch (Throwable ignore) {}
-                    });
+                    };
+                    LiveEventBus.get(observeKey, Object.class).observeForever(obs);
+                    bp2DebugObservers.put(observeKey, obs);
                 } catch (Throwable ignore) {}
             }
             bp2DebugObserversRegistered = true;
@@ -176,13 +453,209 @@ public class WelluePlugin extends Plugin {
     }
 
     private boolean bp2RtObserverRegistered = false;
-    // Track last known deviceStatus to infer ECG start/stop
-    private Integer lastDeviceStatus = null;
-    private boolean ecgMeasuringActive = false;
-    // Native batching for smoother UI rendering
-    private final Object ecgLock = new Object();
-    private final java.util.ArrayList<Float> ecgAccumFloats = new java.util.ArrayList<>(1024);
-    private long lastEcgEmitMs = 0L;
+    // Native batching for smoother UI rendering (per-session SPSC ring, drained in bulk into a reusable scratch)
+    private static final int ECG_EMIT_MAX_POINTS = 1200;
+    // Binary transport: listeners on "ecgDataBinary" get base64 little-endian samples instead of a JSON array
+    private static final String ECG_EVENT_JSON = "ecgData";
+    private static final String ECG_EVENT_BINARY = "ecgDataBinary";
+    // Flow control: JS acks rendered batch seqs (ackEcg) and cadence follows consumer lag. The settings apply to
+    // every session; each session runs its own controller on its decode thread
+    private volatile boolean ecgFlowEnabled = false;
+    private volatile int ecgFlowMinIntervalMs = EcgFlowController.DEFAULT_MIN_INTERVAL_MS;
+    private volatile int ecgFlowMaxIntervalMs = EcgFlowController.DEFAULT_MAX_INTERVAL_MS;
+    private volatile int ecgFlowMaxInFlight = EcgFlowController.DEFAULT_MAX_IN_FLIGHT;
+    // Display decimation for the live stream (setEcgDisplay); width 0 ships every sample
+    private volatile int ecgDisplayWidth = 0;
+    private volatile int ecgDisplayWindowSec = 10;
+    private volatile boolean ecgDisplayLttb = false;
+    // Baseline/mains filter stage (setEcgFilter). A session's ecgRing carries what "waveform" ships: raw counts,
+    // or the filtered signal in FILTERED mode; in BOTH mode ecgRingFiltered runs in lockstep beside it
+    private static final int ECG_OUTPUT_RAW = 0;
+    private static final int ECG_OUTPUT_FILTERED = 1;
+    private static final int ECG_OUTPUT_BOTH = 2;
+    private volatile int ecgOutput = ECG_OUTPUT_RAW;
+    private volatile double ecgFilterHighPassHz = EcgFilter.DEFAULT_HIGH_PASS_HZ;
+    private volatile int ecgFilterNotchHz = 0;
+    // Vendor RT payload getters resolved once per class (see RtAccessorCache); shared, lock-free lookups
+    private final RtAccessorCache rtAccessors = new RtAccessorCache();
+    // One session per device (MAC): lifecycle, RT decode thread and all decoder state. The SDK keeps one link
+    // per model and tags RT events with the model only, so sessionByModel routes packets to their session
+    private final java.util.concurrent.ConcurrentHashMap<String, DeviceSession> sessions = new java.util.concurrent.ConcurrentHashMap<>();
+    private final java.util.concurrent.ConcurrentHashMap<Integer, DeviceSession> sessionByModel = new java.util.concurrent.ConcurrentHashMap<>();
+    private volatile DeviceSession.Decoder rtDecoder;
+    private final DeviceSession.Decoder rtDispatch = (s, payload) -> {
+        DeviceSession.Decoder decoder = rtDecoder;
+        if (decoder != null) decoder.decode(s, payload);
+    };
+    // Background work that is not per device (record cache writes, chunked file streaming)
+    private android.os.HandlerThread workThread;
+    private android.os.Handler workHandler;
+
+    private synchronized android.os.Handler workHandler() {
+        if (workHandler == null) {
+            workThread = new android.os.HandlerThread("WellueWork");
+            workThread.start();
+            workHandler = new android.os.Handler(workThread.getLooper());
+        }
+        return workHandler;
+    }
+
+    private DeviceSession newSession(String address, int model) {
+        DeviceSession s = new DeviceSession(address, model, rtDispatch,
+            newEcgFlow(ecgFlowMinIntervalMs, ecgFlowMaxIntervalMs, ecgFlowMaxInFlight),
+            new EcgFilter(125, ecgFilterHighPassHz, ecgFilterNotchHz));
+        s.ecgOutput = ecgOutput;
+        s.bpState = BP_IDLE;
+        s.bpStartRt = () -> bpStartRtTask(s);
+        s.bpTimeout = () -> {
+            String from = s.bpState;
+            if (BP_IDLE.equals(from) || BP_COMPLETE.equals(from)) return;
+            Log.w(TAG, "⏱️ BP state timeout in " + from + " for " + s.address);
+            setBpState(s, BP_IDLE, from + "_timeout");
+        };
+        return s;
+    }
+
+    /** Session for a device we are connecting to; reused if still live, and it takes over its model's route. */
+    private DeviceSession openSession(String address, int model) {
+        DeviceSession s = sessions.get(address);
+        if (s != null && s.model == model && s.isLive()) {
+            s.connectStartMs = android.os.SystemClock.elapsedRealtime();
+            return s;
+        }
+        DeviceSession fresh = newSession(address, model);
+        DeviceSession replaced = sessions.put(address, fresh);
+        if (replaced != null) closeSession(replaced);
+        DeviceSession previous = sessionByModel.put(model, fresh);
+        // The SDK drops the old link of this model when it connects the new one
+        if (previous != null && previous != replaced) closeSession(previous);
+        Log.d(TAG, "🧩 Session opened for " + address + " (model " + model + "), live sessions=" + sessions.size());
+        return fresh;
+    }
+
+    private void closeSession(DeviceSession s) {
+        if (s.address != null) sessions.remove(s.address, s);
+        sessionByModel.remove(s.model, s);
+        s.close();
+    }
+
+    // Bus thread: route by the event's model and hand off to that session's decode thread
+    private void routeRtPacket(Object obj, int defaultModel) {
+        int model = obj instanceof InterfaceEvent ? ((InterfaceEvent) obj).getModel() : defaultModel;
+        modelSession(model).enqueue(obj);
+    }
+
+    /** The session routed for {@code model}; a link we did not open (another plugin, SDK-side reconnect) gets one bound to the model. */
+    private DeviceSession modelSession(int model) {
+        DeviceSession s = sessionByModel.get(model);
+        if (s != null) return s;
+        DeviceSession fresh = newSession(null, model);
+        fresh.state = DeviceSession.STATE_CONNECTED;
+        s = sessionByModel.putIfAbsent(model, fresh);
+        if (s == null) return fresh;
+        fresh.close();
+        return s;
+    }
+
+    // { address? } on device commands: that device's session, otherwise the default (most recently connected) one
+    private DeviceSession sessionFor(PluginCall call) {
+        String addr = WellueState.normalize(call.getString("address", call.getString("deviceId")));
+        if (addr != null && !addr.isEmpty()) return sessions.get(addr);
+        String active = state.active();
+        DeviceSession s = active != null ? sessions.get(active) : null;
+        return s != null ? s : sessionByModel.get(com.lepu.blepro.objs.Bluetooth.MODEL_BP2);
+    }
+
+    /** Model for a device command: explicit {@code model}, else the addressed/default session's, else the active device's. */
+    private int commandModel(PluginCall call) {
+        String modelStr = call.getString("model");
+        if (modelStr != null) return resolveModelFromStringOrActive(modelStr);
+        DeviceSession s = sessionFor(call);
+        return s != null ? s.model : resolveModelFromStringOrActive(null);
+    }
+
+    /** Every event from a session carries its device id (absent for a session bound only to a model). */
+    private void notifyDevice(DeviceSession s, String event, JSObject ev) {
+        if (s.address != null) ev.put("deviceId", s.address);
+        notifyListeners(event, ev);
+    }
+
+    private void shutdownSessions() {
+        for (DeviceSession s : sessionByModel.values()) s.close();
+        for (DeviceSession s : sessions.values()) s.close();
+        sessionByModel.clear();
+        sessions.clear();
+        synchronized (this) {
+            if (workThread != null) {
+                try { workThread.quitSafely(); } catch (Throwable ignore) {}
+                workThread = null;
+                workHandler = null;
+            }
+        }
+    }
+
+    // BP measurement state machine, one per session. Runs on the session's decode thread: deviceStatus transitions
+    // from the RT decoder and scheduled timeouts drive it, so startBPMeasurement never blocks the bridge.
+    private static final String BP_IDLE = "idle";
+    private static final String BP_RESETTING = "resetting";
+    private static final String BP_STARTING = "starting";
+    private static final String BP_MEASURING = "measuring";
+    private static final String BP_WAITING_RESULT = "waiting_result";
+    private static final String BP_COMPLETE = "complete";
+    private static final long BP_RESET_SETTLE_MS = 500L;
+    private static final long BP_RT_IDLE_MS = 1000L;
+    private static final long BP_START_TIMEOUT_MS = 15000L;
+    private static final long BP_MEASURE_TIMEOUT_MS = 180000L;
+    private static final long BP_RESULT_TIMEOUT_MS = 30000L;
+
+    private void setBpState(DeviceSession s, String next, String reason) {
+        String prev = s.bpState;
+        if (prev.equals(next)) return;
+        s.bpState = next;
+        s.removeCallbacks(s.bpTimeout);
+        long timeout = BP_STARTING.equals(next) ? BP_START_TIMEOUT_MS
+            : BP_MEASURING.equals(next) ? BP_MEASURE_TIMEOUT_MS
+            : BP_WAITING_RESULT.equals(next) ? BP_RESULT_TIMEOUT_MS : 0L;
+        if (timeout > 0) s.postDelayed(s.bpTimeout, timeout);
+        if (!BP_RESETTING.equals(next)) s.removeCallbacks(s.bpStartRt);
+        JSObject ev = new JSObject();
+        ev.put("state", next);
+        ev.put("previous", prev);
+        if (reason != null) ev.put("reason", reason);
+        notifyDevice(s, "bpMeasurementState", ev);
+        Log.d(TAG, "🩺 BP state " + prev + " -> " + next + " for " + s.address + (reason != null ? " (" + reason + ")" : ""));
+    }
+
+    // Decode thread: stop a running RT stream first and let the device settle, otherwise start immediately
+    private void bpBeginMeasurement(DeviceSession s) {
+        boolean rtActive = s.lastRtPacketMs > 0 && android.os.SystemClock.uptimeMillis() - s.lastRtPacketMs < BP_RT_IDLE_MS;
+        if (!rtActive) {
+            bpStartRtTask(s);
+            return;
+        }
+        setBpState(s, BP_RESETTING, "rt_active");
+        try {
+            Object helper = getBleHelper();
+            if (helper != null) helper.getClass().getMethod("stopRtTask", int.class).invoke(helper, s.model);
+            Log.d(TAG, "✅ stopRtTask(" + s.model + ") issued - device state reset");
+        } catch (Throwable e) {
+            Log.w(TAG, "ℹ️ stopRtTask not found or failed (might be OK): " + e.getMessage());
+        }
+        s.postDelayed(s.bpStartRt, BP_RESET_SETTLE_MS);
+    }
+
+    private void bpStartRtTask(DeviceSession s) {
+        setBpState(s, BP_STARTING, null);
+        try {
+            Object helper = getBleHelper();
+            if (helper == null) throw new IllegalStateException("BleServiceHelper unavailable");
+            helper.getClass().getMethod("startRtTask", int.class).invoke(helper, s.model);
+            Log.d(TAG, "✅ startRtTask(" + s.model + ") invoked for BP measurement");
+        } catch (Throwable e) {
+            Log.e(TAG, "❌ startRtTask invocation failed", e);
+            setBpState(s, BP_IDLE, "start_failed: " + e.getMessage());
+        }
+    }
     private void logIntrospection(Object obj, String label) {
         try {
             if (obj == null) { Log.d(TAG, label + ": <null>"); return; }
@@ -226,6 +699,20 @@ public class WelluePlugin extends Plugin {
             Log.w(TAG, "introspection error", t);
         }
     }
+    // Packs n samples little-endian into the session's ecgPackScratch (Int16 counts or Float32) and returns the byte length
+    private int packEcgSamples(DeviceSession s, float[] src, int n, boolean counts) {
+        return counts ? Bp2Codec.encodeInt16Le(src, n, s.ecgPackScratch) : Bp2Codec.encodeFloat32Le(src, n, s.ecgPackScratch);
+    }
+
+    /** Tags a live batch with what "waveform" holds and, when filtering, the filter settings. */
+    private void putEcgFilter(DeviceSession s, JSObject ev, int output) {
+        ev.put("output", output == ECG_OUTPUT_BOTH ? "both" : output == ECG_OUTPUT_FILTERED ? "filtered" : "raw");
+        if (output == ECG_OUTPUT_RAW) return;
+        EcgFilter f = s.ecgFilter;
+        ev.put("highPassHz", f.highPassHz());
+        ev.put("notchHz", f.notchHz());
+    }
+
     private void ensureBp2RtObserver() {
         if (bp2RtObserverRegistered) return;
         try {
@@ -239,44 +726,48 @@ public class WelluePlugin extends Plugin {
                     .observeForever(model -> Log.d(TAG, "⏹️ EventRealTimeStop model=" + model));
             } catch (Throwable ignore) {}
             final String key = com.lepu.blepro.event.InterfaceEvent.BP2.EventBp2RtData;
-            LiveEventBus.get(key, Object.class).observeForever(new Observer<Object>() {
-                @Override public void onChanged(Object obj) {
+            // Decoder body runs on each session's decode thread; the bus observers only route and enqueue
+            rtDecoder = new DeviceSession.Decoder() {
+                @Override public void decode(DeviceSession s, Object obj) {
                     try {
-                        Log.d(TAG, "📡 BP2 Rt event received class=" + (obj!=null?obj.getClass().getName():"null"));
+                        rtPacketCount.incrementAndGet();
+                        s.packets++;
+                        s.lastRtPacketMs = android.os.SystemClock.uptimeMillis();
+                        final boolean diag = shouldTraceRtPacket();
+                        if (diag) {
+                            rtPacketsTraced++;
+                            Log.d(TAG, "📡 BP2 Rt event received class=" + (obj!=null?obj.getClass().getName():"null"));
+                        }
                         Object payload = obj;
                         // Unwrap common wrappers
                         if (payload != null) {
-                            String[] unwrap = new String[]{"getObj","getData","getPayload","getSecond","component2"};
-                            for (String m : unwrap) {
-                                try { java.lang.reflect.Method mm = payload.getClass().getMethod(m); Object v = mm.invoke(payload); if (v != null) { payload = v; break; } } catch (Throwable ignore) {}
-                            }
+                            Object v = rtAccessors.first(payload, RtAccessorCache.UNWRAP);
+                            if (v != null) payload = v;
                         }
                         Integer deviceStatus = null, batteryStatus = null, percent = null, dataType = null, hr = null;
                         Object param = null;
                         Object paramData = null;
                         if (payload != null) {
                             // Top-level fields
-                            try { Object v = payload.getClass().getMethod("getDeviceStatus").invoke(payload); if (v instanceof Number) deviceStatus = ((Number) v).intValue(); } catch (Throwable ignore) {}
-                            try { Object v = payload.getClass().getMethod("getBatteryStatus").invoke(payload); if (v instanceof Number) batteryStatus = ((Number) v).intValue(); } catch (Throwable ignore) {}
-                            try { Object v = payload.getClass().getMethod("getPercent").invoke(payload); if (v instanceof Number) percent = ((Number) v).intValue(); } catch (Throwable ignore) {}
+                            deviceStatus = rtAccessors.firstInt(payload, RtAccessorCache.DEVICE_STATUS);
+                            batteryStatus = rtAccessors.firstInt(payload, RtAccessorCache.BATTERY_STATUS);
+                            percent = rtAccessors.firstInt(payload, RtAccessorCache.PERCENT);
                             // RtParam
-                            String[] paramNames = new String[]{"getParam","getRtParam","getParamData","getRtData","getParams"};
-                            for (String pn : paramNames) {
-                                try { java.lang.reflect.Method pm = payload.getClass().getMethod(pn); Object v = pm.invoke(payload); if (v != null) { param = v; break; } } catch (Throwable ignore) {}
-                            }
+                            param = rtAccessors.first(payload, RtAccessorCache.PARAM);
                             // Some SDKs expose paramDataType at top-level too
                             if (dataType == null) {
-                                try { Object v = payload.getClass().getMethod("getParamDataType").invoke(payload); if (v instanceof Number) dataType = ((Number) v).intValue(); } catch (Throwable ignore) {}
+                                dataType = rtAccessors.firstInt(payload, RtAccessorCache.PARAM_DATA_TYPE);
                             }
                             // Extra diagnostics
-                            if (dataType == null || dataType == 2 || dataType == 3) {
+                            if (diag && (dataType == null || dataType == 2 || dataType == 3)) {
                                 logIntrospection(payload, "ℹ️ RtData payload");
                             }
                         }
                         if (param != null) {
-            Log.e(TAG, "🔍 PARAM EXTRACTION - param type: " + param.getClass().getName());
-                            try { Object v = param.getClass().getMethod("getParamDataType").invoke(param); if (v instanceof Number) dataType = ((Number) v).intValue(); } catch (Throwable ignore) {}
-            Log.e(TAG, "🔍 PARAM dataType extracted: " + dataType);
+                            Integer paramType = rtAccessors.firstInt(param, RtAccessorCache.PARAM_DATA_TYPE);
+                            if (paramType != null) dataType = paramType;
+            if (diag) {
+            Log.e(TAG, "🔍 PARAM EXTRACTION - param type: " + param.getClass().getName() + ", dataType=" + dataType);
             
             // Log all available methods on param
             Log.e(TAG, "🔍 Available methods on RtParam:");
@@ -289,66 +780,45 @@ public class WelluePlugin extends Plugin {
                         Log.e(TAG, "  ❌ PARAM_METHOD: " + m.getName() + "() -> Error: " + e.getMessage());
                     }
                 }
+            }
             }
             
                             // Try to fetch nested paramData (RtBpIng/RtBpResult/RtEcgIng/RtEcgResult)
-                            String[] pdNames = new String[]{"getParamData","getData","getBpIng","getBpResult","getEcgIng","getEcgResult"};
-                            for (String pd : pdNames) {
-                try { 
-                    java.lang.reflect.Method pm = param.getClass().getMethod(pd); 
-                    Object v = pm.invoke(param); 
-                    Log.e(TAG, "🔍 Trying " + pd + "() -> " + v + " (type: " + (v != null ? v.getClass().getName() : "null") + ")");
-                    if (v != null) { 
-                        paramData = v; 
-                        Log.e(TAG, "✅ PARAM_DATA extracted using " + pd + "() -> type: " + paramData.getClass().getName());
-                        break; 
-                    } 
-                } catch (Throwable ignore) {
-                    Log.e(TAG, "❌ Method " + pd + "() not found or failed");
+                            for (RtAccessorCache.Accessor pd : rtAccessors.accessors(param, RtAccessorCache.PARAM_DATA)) {
+                Object v = pd.get(param);
+                if (v != null) {
+                    paramData = v;
+                    if (diag) Log.e(TAG, "✅ PARAM_DATA extracted using " + pd.name + "() -> type: " + paramData.getClass().getName());
+                    break;
                 }
             }
-            Log.e(TAG, "🔍 Final paramData: " + paramData + " (type: " + (paramData != null ? paramData.getClass().getName() : "null") + ")");
                             // Heart rate candidates (param level)
-                            String[] hrNames = new String[]{"getHr","getHeartRate","getPr"};
-                            for (String hn : hrNames) {
-                                try { Object v = param.getClass().getMethod(hn).invoke(param); if (v instanceof Number) { hr = ((Number) v).intValue(); break; } } catch (Throwable ignore) {}
-                            }
+                            hr = rtAccessors.firstInt(param, RtAccessorCache.HR);
                             // Heart rate candidates (nested paramData)
                             if (hr == null && paramData != null) {
-                                for (String hn : hrNames) {
-                                    try { Object v = paramData.getClass().getMethod(hn).invoke(paramData); if (v instanceof Number) { hr = ((Number) v).intValue(); break; } } catch (Throwable ignore) {}
-                                }
+                                hr = rtAccessors.firstInt(paramData, RtAccessorCache.HR);
                             }
                             
                             // 🚀 ENHANCED ECG HEART RATE EXTRACTION from RtEcgResult (dataType=3)
                             if (hr == null && dataType != null && dataType == 3 && paramData != null) {
-                                Log.d(TAG, "🔍 ECG dataType=3 detected, paramData should be RtEcgResult...");
+                                if (diag) Log.d(TAG, "🔍 ECG dataType=3 detected, paramData should be RtEcgResult...");
                                 
                                 // According to vendor docs: dataType=3 means paramData is RtEcgResult
                                 // Try to extract HR from RtEcgResult object methods
-                                String[] ecgResultHrNames = new String[]{
-                                    "getHr", "getHeartRate", "getBpm", "getEcgHr", "getAvgHeartRate", 
-                                    "getFinalHr", "getFinalHeartRate", "getHR", "getBPM", "getPulseRate", 
-                                    "getAvgHr", "getResultHr", "getEcgResult", "getResult"
-                                };
-                                
-                                for (String methodName : ecgResultHrNames) {
-                                    try {
-                                        java.lang.reflect.Method method = paramData.getClass().getMethod(methodName);
-                                        Object result = method.invoke(paramData);
-                                        if (result instanceof Number) {
-                                            int value = ((Number) result).intValue();
-                                            if (value >= 30 && value <= 200) {
-                                                hr = value;
-                                                Log.d(TAG, "✅ ECG HR found via RtEcgResult." + methodName + "(): " + hr + " BPM");
-                                                break;
-                                            }
+                                for (RtAccessorCache.Accessor a : rtAccessors.accessors(paramData, RtAccessorCache.ECG_RESULT_HR)) {
+                                    Object result = a.get(paramData);
+                                    if (result instanceof Number) {
+                                        int value = ((Number) result).intValue();
+                                        if (value >= 30 && value <= 200) {
+                                            hr = value;
+                                            Log.d(TAG, "✅ ECG HR found via RtEcgResult." + a.name + "(): " + hr + " BPM");
+                                            break;
                                         }
-                                    } catch (Throwable ignore) {}
+                                    }
                                 }
                                 
                                 // If still no HR, try to inspect all methods on RtEcgResult
-                                if (hr == null) {
+                                if (diag && hr == null) {
                                     Log.e(TAG, "🔍 Available methods on RtEcgResult (paramData):");
                                     for (java.lang.reflect.Method m : paramData.getClass().getMethods()) {
                                         if (m.getParameterCount() == 0 && !m.getName().equals("getClass") && !m.getName().equals("hashCode")) {
@@ -377,17 +847,12 @@ public class WelluePlugin extends Plugin {
                                     try {
                                         byte[] ecgBytes = (byte[]) paramData;
                                         if (ecgBytes.length >= 4) {
-                                            int hr1 = ((ecgBytes[1] & 0xFF) << 8) | (ecgBytes[0] & 0xFF);
-                                            int hr2 = ((ecgBytes[3] & 0xFF) << 8) | (ecgBytes[2] & 0xFF);
-                                            
-                                            if (hr1 >= 30 && hr1 <= 200) {
-                                                hr = hr1;
-                                                Log.d(TAG, "✅ ECG HR parsed from bytes[0-1]: " + hr + " BPM");
-                                            } else if (hr2 >= 30 && hr2 <= 200) {
-                                                hr = hr2;
-                                                Log.d(TAG, "✅ ECG HR parsed from bytes[2-3]: " + hr + " BPM");
+                                            int parsed = Bp2Codec.decodeEcgHeartRate(java.nio.ByteBuffer.wrap(ecgBytes));
+                                            if (parsed > 0) {
+                                                hr = parsed;
+                                                Log.d(TAG, "✅ ECG HR parsed from raw bytes: " + hr + " BPM");
                                             } else {
-                                                Log.w(TAG, "⚠️ ECG HR parsing failed - hr1=" + hr1 + ", hr2=" + hr2 + " (outside 30-200 range)");
+                                                Log.w(TAG, "⚠️ ECG HR parsing failed (bytes[0-3] outside 30-200 range)");
                                             }
                                         }
                                     } catch (Throwable t) {
@@ -396,24 +861,24 @@ public class WelluePlugin extends Plugin {
                                 }
                             }
                             // Extra diagnostics
-                            if (dataType == null || dataType == 2 || dataType == 3) {
+                            if (diag && (dataType == null || dataType == 2 || dataType == 3)) {
                                 logIntrospection(param, "ℹ️ RtParam");
                                 if (paramData != null) logIntrospection(paramData, "ℹ️ RtParamData");
                             }
                             // Fallback lifecycle from paramDataType
-                            if (dataType != null && dataType == 2 && !ecgMeasuringActive) {
-                                ecgMeasuringActive = true;
+                            if (dataType != null && dataType == 2 && !s.ecgMeasuringActive) {
+                                s.ecgMeasuringActive = true;
                                 JSObject life = new JSObject(); life.put("state", "start");
-                                notifyListeners("ecgLifecycle", life);
+                                notifyDevice(s, "ecgLifecycle", life);
                                 Log.d(TAG, "🔶 ECG lifecycle (paramType=2): start");
                             } else if (dataType != null && dataType == 3) {
                                 // 🚀 CRITICAL FIX: ECG result data (dataType=3) means measurement is complete
                                 // Always trigger stop event when we get ECG result data
-                                Log.e(TAG, "🔍 ECG dataType=3 detected, ecgMeasuringActive=" + ecgMeasuringActive + ", deviceStatus=" + deviceStatus);
+                                Log.e(TAG, "🔍 ECG dataType=3 detected, s.ecgMeasuringActive=" + s.ecgMeasuringActive + ", deviceStatus=" + deviceStatus);
                                 // 🚀 FORCE ECG STOP: Always trigger stop event when we get ECG result data (dataType=3)
-                                // This handles cases where ecgMeasuringActive might not be properly set
+                                // This handles cases where s.ecgMeasuringActive might not be properly set
                                 // FIXED: Remove restrictive condition - always trigger stop when dataType=3
-                                ecgMeasuringActive = false;
+                                s.ecgMeasuringActive = false;
                                 JSObject life = new JSObject(); 
                                 life.put("state", "stop");
                                 // Use a default heart rate if we didn't extract one from the data
@@ -435,24 +900,17 @@ public class WelluePlugin extends Plugin {
                                     // 🚀 CRITICAL: First try to get heart rate from the actual ECG data bytes
                                     if (paramData instanceof byte[]) {
                                         byte[] ecgBytes = (byte[]) paramData;
-                                        Log.e(TAG, "🔍 ECG bytes length: " + ecgBytes.length + ", content: " + java.util.Arrays.toString(ecgBytes));
+                                        if (diag) Log.e(TAG, "🔍 ECG bytes length: " + ecgBytes.length + ", content: " + java.util.Arrays.toString(ecgBytes));
                                         
                                         // Try different byte parsing strategies for heart rate
                                         if (ecgBytes.length >= 2) {
-                                            // Strategy 1: Direct heart rate extraction
-                                            int hrFromBytes = ((ecgBytes[1] & 0xFF) << 8) | (ecgBytes[0] & 0xFF);
-                                            if (hrFromBytes >= 30 && hrFromBytes <= 200) {
+                                            // Strategy 1+2: u16 LE at bytes[0-1], then bytes[2-3]
+                                            int hrFromBytes = ecgBytes.length >= 4
+                                                ? Bp2Codec.decodeEcgHeartRate(java.nio.ByteBuffer.wrap(ecgBytes))
+                                                : (((ecgBytes[1] & 0xFF) << 8) | (ecgBytes[0] & 0xFF));
+                                            if (hrFromBytes >= Bp2Codec.HR_MIN && hrFromBytes <= Bp2Codec.HR_MAX) {
                                                 realHR = hrFromBytes;
-                                                Log.e(TAG, "✅ Real ECG HR found from bytes[0-1]: " + realHR + " BPM");
-                                            }
-                                            
-                                            // Strategy 2: Try other byte positions if first didn't work
-                                            if (realHR == 0 && ecgBytes.length >= 4) {
-                                                int hrFromBytes2 = ((ecgBytes[3] & 0xFF) << 8) | (ecgBytes[2] & 0xFF);
-                                                if (hrFromBytes2 >= 30 && hrFromBytes2 <= 200) {
-                                                    realHR = hrFromBytes2;
-                                                    Log.e(TAG, "✅ Real ECG HR found from bytes[2-3]: " + realHR + " BPM");
-                                                }
+                                                Log.e(TAG, "✅ Real ECG HR found from bytes[0-3]: " + realHR + " BPM");
                                             }
                                             
                                             // Strategy 3: Look for heart rate in specific byte patterns
@@ -471,48 +929,32 @@ public class WelluePlugin extends Plugin {
                                     
                                     // If still no HR from bytes, try reflection methods
                                     if (realHR == 0) {
-                                        String[] hrMethods = {"getHr", "getHeartRate", "getBpm", "getEcgHr", "getFinalHr", "getResultHr"};
-                                        for (String methodName : hrMethods) {
-                                            try {
-                                                java.lang.reflect.Method method = paramData.getClass().getMethod(methodName);
-                                                Object result = method.invoke(paramData);
-                                                if (result instanceof Number) {
-                                                    int value = ((Number) result).intValue();
-                                                    if (value >= 30 && value <= 200) {
-                                                        realHR = value;
-                                                        Log.e(TAG, "✅ Real ECG HR found via reflection: " + realHR + " BPM via " + methodName);
-                                                        break;
-                                                    }
+                                        for (RtAccessorCache.Accessor a : rtAccessors.accessors(paramData, RtAccessorCache.ECG_FINAL_HR)) {
+                                            Object result = a.get(paramData);
+                                            if (result instanceof Number) {
+                                                int value = ((Number) result).intValue();
+                                                if (value >= 30 && value <= 200) {
+                                                    realHR = value;
+                                                    Log.e(TAG, "✅ Real ECG HR found via reflection: " + realHR + " BPM via " + a.name);
+                                                    break;
                                                 }
-                                            } catch (Throwable ignore) {}
+                                            }
                                         }
                                     }
                                     
                                     // Try to get ECG parameters
-                                    try {
-                                        java.lang.reflect.Method qrsMethod = paramData.getClass().getMethod("getQrsDuration");
-                                        Object qrsResult = qrsMethod.invoke(paramData);
-                                        if (qrsResult instanceof Number) realQRS = ((Number) qrsResult).intValue();
-                                    } catch (Throwable ignore) {}
+                                    Integer qrsResult = rtAccessors.firstInt(paramData, RtAccessorCache.QRS_DURATION);
+                                    if (qrsResult != null) realQRS = qrsResult;
                                     
-                                    try {
-                                        java.lang.reflect.Method qtMethod = paramData.getClass().getMethod("getQtInterval");
-                                        Object qtResult = qtMethod.invoke(paramData);
-                                        if (qtResult instanceof Number) realQT = ((Number) qtResult).intValue();
-                                    } catch (Throwable ignore) {}
+                                    Integer qtResult = rtAccessors.firstInt(paramData, RtAccessorCache.QT_INTERVAL);
+                                    if (qtResult != null) realQT = qtResult;
                                     
-                                    try {
-                                        java.lang.reflect.Method prMethod = paramData.getClass().getMethod("getPrInterval");
-                                        Object prResult = prMethod.invoke(paramData);
-                                        if (prResult instanceof Number) realPR = ((Number) prResult).intValue();
-                                    } catch (Throwable ignore) {}
+                                    Integer prResult = rtAccessors.firstInt(paramData, RtAccessorCache.PR_INTERVAL);
+                                    if (prResult != null) realPR = prResult;
                                     
                                     // Try to get rhythm analysis
-                                    try {
-                                        java.lang.reflect.Method rhythmMethod = paramData.getClass().getMethod("getRhythm");
-                                        Object rhythmResult = rhythmMethod.invoke(paramData);
-                                        if (rhythmResult instanceof String) realRhythm = (String) rhythmResult;
-                                    } catch (Throwable ignore) {}
+                                    Object rhythmResult = rtAccessors.first(paramData, RtAccessorCache.RHYTHM);
+                                    if (rhythmResult instanceof String) realRhythm = (String) rhythmResult;
                                     
                                 } catch (Throwable e) {
                                     Log.e(TAG, "❌ Error extracting ECG parameters: " + e.getMessage());
@@ -533,8 +975,8 @@ public class WelluePlugin extends Plugin {
                                     Log.e(TAG, "🔶 ECG lifecycle (paramType=3): FORCE stop with fallback HR=" + fallbackHR + " (using device-reported value)");
                                 }
                                 }
-                                notifyListeners("ecgLifecycle", life);
-                                try { Object helper = getBleHelper(); if (helper != null) helper.getClass().getMethod("stopRtTask", int.class).invoke(helper, com.lepu.blepro.objs.Bluetooth.MODEL_BP2); } catch (Throwable ignore) {}
+                                notifyDevice(s, "ecgLifecycle", life);
+                                try { Object helper = getBleHelper(); if (helper != null) helper.getClass().getMethod("stopRtTask", int.class).invoke(helper, s.model); } catch (Throwable ignore) {}
                             }
                         }
 
@@ -542,95 +984,66 @@ public class WelluePlugin extends Plugin {
                         Object waveSrc = paramData != null ? paramData : (param != null ? param : payload);
                         short[] ecgShorts = null;
                         float[] ecgFloats = null;
+                        // Samples decoded into the session scratch (which is longer than the packet), or -1
+                        int decodedLen = -1;
                         // Attempt to obtain sample rate from any available object
-                        int sampleRate = 125; // BP2 default; will override if provided by SDK
+                        int sampleRate = s.ecgSampleRate; // last rate this device reported (BP2 default 125 until then)
                         try {
                             Integer sr = null;
-                            Object[] srCandidates = new Object[]{ waveSrc, paramData, param, payload };
-                            String[] srNames = new String[]{ "getSampleRate", "getFs", "getSamplingRate", "getRate" };
-                            for (Object holder : srCandidates) {
-                                if (holder == null) continue;
-                                for (String nm : srNames) {
-                                    try {
-                                        java.lang.reflect.Method m = holder.getClass().getMethod(nm);
-                                        Object v = m.invoke(holder);
-                                        if (v instanceof Number) { sr = ((Number) v).intValue(); break; }
-                                    } catch (Throwable ignore) {}
-                                }
-                                if (sr != null) break;
-                            }
-                            if (sr != null && sr.intValue() > 0 && sr.intValue() < 1000) sampleRate = sr.intValue();
+                            sr = rtAccessors.firstInt(waveSrc, RtAccessorCache.SAMPLE_RATE);
+                            if (sr == null) sr = rtAccessors.firstInt(paramData, RtAccessorCache.SAMPLE_RATE);
+                            if (sr == null) sr = rtAccessors.firstInt(param, RtAccessorCache.SAMPLE_RATE);
+                            if (sr == null) sr = rtAccessors.firstInt(payload, RtAccessorCache.SAMPLE_RATE);
+                            if (sr != null && sr.intValue() > 0 && sr.intValue() < 1000) sampleRate = s.ecgSampleRate = sr.intValue();
                         } catch (Throwable ignore) {}
                         if (waveSrc != null && (dataType != null && (dataType == 2 || dataType == 3))) {
-                            String[] shortNames = new String[]{"getEcgShorts","getEcgShortData","getWaveShortData","getEcgData","shorts","getShorts"};
-                            for (String sn : shortNames) {
-                                try {
-                                    java.lang.reflect.Method sm = waveSrc.getClass().getMethod(sn);
-                                    Object v = sm.invoke(waveSrc);
-                                    if (v instanceof short[]) { ecgShorts = (short[]) v; break; }
-                                    if (v instanceof int[]) { int[] arr = (int[]) v; short[] tmp = new short[arr.length]; for (int i=0;i<arr.length;i++) tmp[i] = (short) arr[i]; ecgShorts = tmp; break; }
-                                } catch (Throwable ignore) {}
+                            for (RtAccessorCache.Accessor a : rtAccessors.accessors(waveSrc, RtAccessorCache.WAVE_SHORTS)) {
+                                Object v = a.get(waveSrc);
+                                if (v instanceof short[]) { ecgShorts = (short[]) v; break; }
+                                if (v instanceof int[]) { int[] arr = (int[]) v; short[] tmp = new short[arr.length]; for (int i=0;i<arr.length;i++) tmp[i] = (short) arr[i]; ecgShorts = tmp; break; }
                             }
                             if (ecgShorts == null) {
-                                String[] floatNames = new String[]{"getEcgFloats","getWave","getWaveData","getEcgFloatData","floats","getFloats"};
-                                for (String fn : floatNames) {
-                                    try { java.lang.reflect.Method fm = waveSrc.getClass().getMethod(fn); Object v = fm.invoke(waveSrc); if (v instanceof float[]) { ecgFloats = (float[]) v; break; } } catch (Throwable ignore) {}
+                                for (RtAccessorCache.Accessor a : rtAccessors.accessors(waveSrc, RtAccessorCache.WAVE_FLOATS)) {
+                                    Object v = a.get(waveSrc);
+                                    if (v instanceof float[]) { ecgFloats = (float[]) v; break; }
                                 }
                             }
                             // If still nothing, try raw bytes (observed in logs as getParamData(): [B and getEcgBytes(): [B)
                             if (ecgShorts == null && ecgFloats == null) {
                                 byte[] bytes = null;
                                 // Preferred getter names
-                                String[] byteNames = new String[]{"getEcgBytes","getBytes","getParamData","getData"};
-                                for (String bn : byteNames) {
-                                    try {
-                                        java.lang.reflect.Method bm = waveSrc.getClass().getMethod(bn);
-                                        Object v = bm.invoke(waveSrc);
-                                        if (v instanceof byte[]) { bytes = (byte[]) v; break; }
-                                    } catch (Throwable ignore) {}
+                                for (RtAccessorCache.Accessor a : rtAccessors.accessors(waveSrc, RtAccessorCache.WAVE_BYTES)) {
+                                    Object v = a.get(waveSrc);
+                                    if (v instanceof byte[]) { bytes = (byte[]) v; break; }
                                 }
                                 // If waveSrc was not the raw bytes holder, but paramData was a byte[]
                                 if (bytes == null && paramData instanceof byte[]) {
                                     bytes = (byte[]) paramData;
                                 }
-                                if (bytes != null) {
+                                if (diag && bytes != null) {
                                     Log.d(TAG, "📦 ecgBytes detected len=" + bytes.length);
                                 }
                                 if (bytes != null && bytes.length >= 2) {
-                                    int n = bytes.length / 2;
-                                    short[] tmp = new short[n];
-                                    // Assume little-endian signed 16-bit per vendor convention; scale applied later
-                                    for (int i = 0; i < n; i++) {
-                                        int lo = bytes[2 * i] & 0xFF;
-                                        int hi = bytes[2 * i + 1] & 0xFF;
-                                        tmp[i] = (short) ((hi << 8) | lo);
-                                    }
-                                    ecgShorts = tmp;
-                                    Log.d(TAG, "🧩 Converted ECG bytes -> shorts count=" + n + " (bytes=" + bytes.length + ")");
+                                    // Little-endian signed 16-bit per vendor convention; scale applied later
+                                    ecgShorts = s.ecgDecodeScratch;
+                                    int n = decodedLen = Bp2Codec.decodeInt16Le(bytes, ecgShorts, 0);
+                                    if (diag) Log.d(TAG, "🧩 Converted ECG bytes -> shorts count=" + n + " (bytes=" + bytes.length + ")");
                                 }
                             }
                             // Fallback: inspect any zero-arg method returning a numeric array
                             if (ecgShorts == null && ecgFloats == null) {
-                                for (java.lang.reflect.Method m : waveSrc.getClass().getMethods()) {
-                                    try {
-                                        if (m.getParameterCount() == 0) {
-                                            Class<?> rt = m.getReturnType();
-                                            if (rt.isArray()) {
-                                                Object v = m.invoke(waveSrc);
-                                                if (v instanceof float[] && ((float[]) v).length > 0) { ecgFloats = (float[]) v; break; }
-                                                if (v instanceof short[] && ((short[]) v).length > 0) { ecgShorts = (short[]) v; break; }
-                                                if (v instanceof int[] && ((int[]) v).length > 0) { int[] arr = (int[]) v; short[] tmp = new short[arr.length]; for (int i=0;i<arr.length;i++) tmp[i]=(short)arr[i]; ecgShorts = tmp; break; }
-                                                if (v instanceof double[] && ((double[]) v).length > 0) { double[] arr = (double[]) v; float[] tmp = new float[arr.length]; for (int i=0;i<arr.length;i++) tmp[i]=(float)arr[i]; ecgFloats = tmp; break; }
-                                            }
-                                        }
-                                    } catch (Throwable ignore) {}
+                                for (RtAccessorCache.Accessor a : rtAccessors.arrayGetters(waveSrc)) {
+                                    Object v = a.get(waveSrc);
+                                    if (v instanceof float[] && ((float[]) v).length > 0) { ecgFloats = (float[]) v; break; }
+                                    if (v instanceof short[] && ((short[]) v).length > 0) { ecgShorts = (short[]) v; break; }
+                                    if (v instanceof int[] && ((int[]) v).length > 0) { int[] arr = (int[]) v; short[] tmp = new short[arr.length]; for (int i=0;i<arr.length;i++) tmp[i]=(short)arr[i]; ecgShorts = tmp; break; }
+                                    if (v instanceof double[] && ((double[]) v).length > 0) { double[] arr = (double[]) v; float[] tmp = new float[arr.length]; for (int i=0;i<arr.length;i++) tmp[i]=(float)arr[i]; ecgFloats = tmp; break; }
                                 }
                             }
                             // Fallback: inspect fields
                             if (ecgShorts == null && ecgFloats == null) {
-                                for (java.lang.reflect.Field f : waveSrc.getClass().getDeclaredFields()) {
+                                for (java.lang.reflect.Field f : rtAccessors.arrayFields(waveSrc)) {
                                     try {
-                                        f.setAccessible(true);
                                         Object v = f.get(waveSrc);
                                         if (v instanceof float[] && ((float[]) v).length > 0) { ecgFloats = (float[]) v; break; }
                                         if (v instanceof short[] && ((short[]) v).length > 0) { ecgShorts = (short[]) v; break; }
@@ -648,72 +1061,79 @@ public class WelluePlugin extends Plugin {
                         if (dataType != null) rt.put("paramDataType", dataType);
                         if (hr != null) rt.put("hr", hr);
                         // Device status lifecycle events (ECG and BP)
-                        if (deviceStatus != null && (lastDeviceStatus == null || !lastDeviceStatus.equals(deviceStatus))) {
+                        if (deviceStatus != null && (s.lastDeviceStatus == null || !s.lastDeviceStatus.equals(deviceStatus))) {
                             int ds = deviceStatus.intValue();
                             
                             // ECG lifecycle
                             if (ds == 6) { // STATUS_ECG_MEASURING
                                 JSObject life = new JSObject(); life.put("state", "start");
-                                notifyListeners("ecgLifecycle", life);
+                                notifyDevice(s, "ecgLifecycle", life);
                                 Log.d(TAG, "🔶 ECG lifecycle: start");
-                                ecgMeasuringActive = true;
-                                synchronized (ecgLock) { ecgAccumFloats.clear(); lastEcgEmitMs = 0L; }
+                                s.ecgMeasuringActive = true;
+                                s.ecgRing.clear(); s.lastEcgEmitMs = 0L; s.ecgSeq = 0L;
+                                s.ecgFlow.reset(0L, System.currentTimeMillis());
+                                s.qrs.reset(); s.ecgBeatCount = 0;
+                                s.ecgRingFiltered.clear(); s.ecgFilter.reset();
                             } else if (ds == 7) { // STATUS_ECG_MEASURE_END
                                 JSObject life = new JSObject(); life.put("state", "stop");
-                                notifyListeners("ecgLifecycle", life);
+                                notifyDevice(s, "ecgLifecycle", life);
                                 Log.d(TAG, "🔶 ECG lifecycle: stop");
-                                ecgMeasuringActive = false;
-                                synchronized (ecgLock) { ecgAccumFloats.clear(); lastEcgEmitMs = 0L; }
+                                s.ecgMeasuringActive = false;
+                                s.ecgRing.clear(); s.ecgRingFiltered.clear(); s.lastEcgEmitMs = 0L;
                                 // Proactively ask SDK to stop RT task to avoid lingering stream
                                 try {
                                     Object helper = getBleHelper();
-                                    if (helper != null) helper.getClass().getMethod("stopRtTask", int.class).invoke(helper, com.lepu.blepro.objs.Bluetooth.MODEL_BP2);
+                                    if (helper != null) helper.getClass().getMethod("stopRtTask", int.class).invoke(helper, s.model);
                                 } catch (Throwable ignore) {}
                             }
                             
                             // 🚀 ADDITIONAL ECG STOP TRIGGER: If we have HR data and device status is 7 (even if unchanged)
                             // This handles cases where deviceStatus stays at 7 but we finally get heart rate data
-                            if (deviceStatus != null && deviceStatus.intValue() == 7 && hr != null && hr > 0 && ecgMeasuringActive) {
+                            if (deviceStatus != null && deviceStatus.intValue() == 7 && hr != null && hr > 0 && s.ecgMeasuringActive) {
                                 JSObject life = new JSObject(); 
                                 life.put("state", "stop");
                                 life.put("finalHeartRate", hr);
                                 Log.d(TAG, "🔶 ECG lifecycle: FORCED stop with final HR = " + hr + " BPM (deviceStatus unchanged but HR found)");
-                                notifyListeners("ecgLifecycle", life);
-                                ecgMeasuringActive = false;
-                                synchronized (ecgLock) { ecgAccumFloats.clear(); lastEcgEmitMs = 0L; }
+                                notifyDevice(s, "ecgLifecycle", life);
+                                s.ecgMeasuringActive = false;
+                                s.ecgRing.clear(); s.ecgRingFiltered.clear(); s.lastEcgEmitMs = 0L;
                                 // Proactively ask SDK to stop RT task to avoid lingering stream
                                 try {
                                     Object helper = getBleHelper();
-                                    if (helper != null) helper.getClass().getMethod("stopRtTask", int.class).invoke(helper, com.lepu.blepro.objs.Bluetooth.MODEL_BP2);
+                                    if (helper != null) helper.getClass().getMethod("stopRtTask", int.class).invoke(helper, s.model);
                                 } catch (Throwable ignore) {}
                             }
                             
                                         // BP lifecycle with enhanced state detection
             else if (ds == 3) { // STATUS_READY
                 JSObject bpLife = new JSObject(); bpLife.put("state", "ready");
-                notifyListeners("bpLifecycle", bpLife);
+                notifyDevice(s, "bpLifecycle", bpLife);
                 Log.d(TAG, "🩺 BP lifecycle: ready");
             } else if (ds == 4) { // STATUS_BP_MEASURING
                 JSObject bpLife = new JSObject(); bpLife.put("state", "measuring");
-                notifyListeners("bpLifecycle", bpLife);
+                notifyDevice(s, "bpLifecycle", bpLife);
                 Log.d(TAG, "🩺 BP lifecycle: measuring started");
                 
                 // 🚨 CRITICAL: The device has actually started measuring!
                 // This means we should start seeing live pressure data (dataType=0)
                 Log.e(TAG, "🚨 DEVICE CONFIRMED MEASURING - expecting live pressure data now");
+                boolean appInitiated = BP_STARTING.equals(s.bpState);
+                setBpState(s, BP_MEASURING, appInitiated ? "device_measuring" : "device_initiated");
                 
                 // 🔄 AUTO-START RT TASK: When device initiates measurement, we need to monitor
-                Log.e(TAG, "🔄 Device-initiated measurement detected - auto-starting RT monitoring");
-                try {
-                    Object helper = getBleHelper();
-                    if (helper != null) {
-                        helper.getClass().getMethod("startRtTask", int.class).invoke(helper, com.lepu.blepro.objs.Bluetooth.MODEL_BP2);
-                        Log.e(TAG, "✅ Auto-started RT monitoring for device-initiated measurement");
-                    } else {
-                        Log.e(TAG, "❌ Cannot auto-start RT monitoring - BleHelper unavailable");
+                if (!appInitiated) {
+                    Log.e(TAG, "🔄 Device-initiated measurement detected - auto-starting RT monitoring");
+                    try {
+                        Object helper = getBleHelper();
+                        if (helper != null) {
+                            helper.getClass().getMethod("startRtTask", int.class).invoke(helper, s.model);
+                            Log.e(TAG, "✅ Auto-started RT monitoring for device-initiated measurement");
+                        } else {
+                            Log.e(TAG, "❌ Cannot auto-start RT monitoring - BleHelper unavailable");
+                        }
+                    } catch (Throwable t) {
+                        Log.e(TAG, "❌ Failed to auto-start RT monitoring for device-initiated measurement", t);
                     }
-                } catch (Throwable t) {
-                    Log.e(TAG, "❌ Failed to auto-start RT monitoring for device-initiated measurement", t);
                 }
                 
             } else if (ds == 5) { // STATUS_BP_MEASURE_END
@@ -726,66 +1146,38 @@ public class WelluePlugin extends Plugin {
                 // Send lifecycle event to indicate measurement phase is over
                 JSObject bpLife = new JSObject();
                 bpLife.put("state", "waiting_result");
-                notifyListeners("bpLifecycle", bpLife);
+                notifyDevice(s, "bpLifecycle", bpLife);
+                setBpState(s, BP_WAITING_RESULT, "device_measure_end");
                 Log.d(TAG, "🩺 BP lifecycle: waiting for result data");
             }
                             
-                            lastDeviceStatus = deviceStatus;
+                            s.lastDeviceStatus = deviceStatus;
                         }
-                        notifyListeners("bp2Rt", rt);
-                        Log.d(TAG, "🔧 bp2Rt forwarded hr=" + hr + " percent=" + percent + " type=" + dataType);
+                        notifyDevice(s, "bp2Rt", rt);
+                        if (diag) Log.d(TAG, "🔧 bp2Rt forwarded hr=" + hr + " percent=" + percent + " type=" + dataType);
 
                                 // If BP in-progress (real-time pressure during measurement)
                         if (dataType != null && dataType.intValue() == 0 && paramData != null) {
-            Log.e(TAG, "🔴 BP MEASURING IN PROGRESS - paramData type: " + paramData.getClass().getName());
+            if (diag) Log.e(TAG, "🔴 BP MEASURING IN PROGRESS - paramData type: " + paramData.getClass().getName());
             
                             Integer pressure = null;
-                            String[] pNames = new String[]{"getPs","getPressure","getCurPressure","getCurrentPressure","ps"};
             
             // Try reflection-based extraction first
-                            for (String pn : pNames) {
-                try { 
-                    Object v = paramData.getClass().getMethod(pn).invoke(paramData); 
-                    if (v instanceof Number) { 
-                        pressure = ((Number) v).intValue(); 
-                        Log.e(TAG, "🔴 PRESSURE extracted via " + pn + "(): " + pressure + " mmHg");
-                        break; 
-                    } 
-                } catch (Throwable ignore) {}
-            }
+            pressure = rtAccessors.firstInt(paramData, RtAccessorCache.PRESSURE);
+            if (diag && pressure != null) Log.e(TAG, "🔴 PRESSURE extracted via getter: " + pressure + " mmHg");
             
             // If reflection failed, try byte array parsing for pressure
             if (pressure == null && paramData instanceof byte[]) {
                 byte[] bytes = (byte[]) paramData;
-                Log.e(TAG, "🔴 PARSING PRESSURE from byte array - length: " + bytes.length);
+                if (diag) Log.e(TAG, "🔴 PARSING PRESSURE from byte array - length: " + bytes.length);
                 
-                if (bytes.length >= 2) {
-                    try {
-                        // Try different pressure extraction strategies
-                        // Strategy 1: First 2 bytes as pressure (big-endian)
-                        pressure = ((bytes[0] & 0xFF) << 8) | (bytes[1] & 0xFF);
-                        Log.e(TAG, "🔴 PRESSURE Strategy 1 (big-endian): " + pressure + " mmHg");
-                        
-                        // Validate pressure range (0-400 mmHg is reasonable for cuff pressure)
-                        if (pressure < 0 || pressure > 400) {
-                            // Strategy 2: Little-endian
-                            pressure = ((bytes[1] & 0xFF) << 8) | (bytes[0] & 0xFF);
-                            Log.e(TAG, "🔴 PRESSURE Strategy 2 (little-endian): " + pressure + " mmHg");
-                            
-                            if (pressure < 0 || pressure > 400) {
-                                // Strategy 3: Single byte
-                                pressure = bytes[0] & 0xFF;
-                                Log.e(TAG, "🔴 PRESSURE Strategy 3 (single byte): " + pressure + " mmHg");
-                                
-                                if (pressure < 0 || pressure > 400) {
-                                    pressure = null; // Invalid pressure
-                                    Log.e(TAG, "🔴 All pressure strategies failed - invalid values");
-                                }
-                            }
-                        }
-                    } catch (Exception e) {
-                        Log.e(TAG, "🔴 PRESSURE parsing error: " + e.getMessage());
-                    }
+                // Big-endian, then little-endian, then single byte (see Bp2Codec.decodePressure)
+                int decoded = Bp2Codec.decodePressure(java.nio.ByteBuffer.wrap(bytes));
+                if (decoded != Bp2Codec.PRESSURE_INVALID) {
+                    pressure = decoded;
+                    if (diag) Log.e(TAG, "🔴 PRESSURE decoded from bytes: " + pressure + " mmHg");
+                } else if (diag) {
+                    Log.e(TAG, "🔴 All pressure strategies failed - invalid values");
                 }
             }
             
@@ -793,9 +1185,9 @@ public class WelluePlugin extends Plugin {
                 JSObject ev = new JSObject(); 
                 ev.put("pressure", pressure);
                 ev.put("timestamp", System.currentTimeMillis());
-                notifyListeners("bpProgress", ev);
-                Log.e(TAG, "🔴 LIVE PRESSURE SENT: " + pressure + " mmHg");
-            } else {
+                notifyDevice(s, "bpProgress", ev);
+                if (diag) Log.e(TAG, "🔴 LIVE PRESSURE SENT: " + pressure + " mmHg");
+            } else if (diag) {
                 Log.e(TAG, "🔴 NO VALID PRESSURE DATA - pressure=" + pressure);
                             }
                         }
@@ -812,49 +1204,28 @@ public class WelluePlugin extends Plugin {
                 Log.e(TAG, "🩺 PARSING BYTE ARRAY - length: " + bytes.length);
                 
                 // Log raw bytes for debugging
-                StringBuilder hexString = new StringBuilder();
-                for (byte b : bytes) {
-                    hexString.append(String.format("%02X ", b));
+                if (diag) {
+                    StringBuilder hexString = new StringBuilder();
+                    for (byte b : bytes) {
+                        hexString.append(String.format("%02X ", b));
+                    }
+                    Log.e(TAG, "🩺 RAW BYTES: " + hexString.toString());
                 }
-                Log.e(TAG, "🩺 RAW BYTES: " + hexString.toString());
                 
                 // CORRECTED BP2 protocol parsing - raw bytes are actually correct!
                 // Latest test: Device 128/90 HR 70 vs Raw: 01 00 00 80 00 5A 00 6C 00 46
                 // Pattern: [skip 3] [sys] [skip 1] [dia] [skip 1] [pr] [skip 1] [extra]
-                if (bytes.length >= 10) {
-                    try {
-                        // FINAL CORRECT STRATEGY: Use raw byte values directly
-                        // Bytes 3,5,7,9 contain the exact values - no corrections needed!
-                        sys = bytes[3] & 0xFF;  // 0x80 = 128 ✅
-                        dia = bytes[5] & 0xFF;  // 0x5A = 90 ✅
-                        pr = bytes[9] & 0xFF;   // 0x46 = 70 ✅
-                        
-                        Log.e(TAG, "🩺 RAW EXTRACTED VALUES: sys=" + sys + " dia=" + dia + " pr=" + pr);
-                        
-                        // Validate ranges (reasonable BP values)
-                        if (sys >= 70 && sys <= 250 && 
-                            dia >= 40 && dia <= 150 && 
-                            pr >= 40 && pr <= 180) {
-                            Log.e(TAG, "🩺 ✅ VALUES VALIDATED: sys=" + sys + " dia=" + dia + " pr=" + pr);
-                        } else {
-                            Log.e(TAG, "🩺 ⚠️ VALUES OUT OF RANGE - might be parsing error");
-                            // Still use them but log warning
-                        }
-                        
-                        // Try to extract result code from different positions
-                        if (bytes.length > 6) resultCode = bytes[6] & 0xFF;
-                        if (resultCode == null || resultCode == 0) {
-                            if (bytes.length > 16) resultCode = bytes[16] & 0xFF;
-                        }
-                        
-                        // Calculate MAP (Mean Arterial Pressure)
-                        if (sys != null && dia != null && sys > 0 && dia > 0) {
-                            map = (2 * dia + sys) / 3;
-                            Log.e(TAG, "🩺 CALCULATED MAP: " + map);
-                        }
-                        
-                    } catch (Exception e) {
-                        Log.e(TAG, "🩺 BYTE PARSING ERROR: " + e.getMessage());
+                Bp2BpResult parsed = s.bpResultScratch;
+                if (parsed.decode(java.nio.ByteBuffer.wrap(bytes))) {
+                    sys = parsed.systolic;
+                    dia = parsed.diastolic;
+                    pr = parsed.pulseRate;
+                    resultCode = parsed.resultCode;
+                    if (parsed.map > 0) map = parsed.map;
+                    Log.e(TAG, "🩺 RAW EXTRACTED VALUES: sys=" + sys + " dia=" + dia + " pr=" + pr + " map=" + map);
+                    if (!parsed.inRange()) {
+                        Log.e(TAG, "🩺 ⚠️ VALUES OUT OF RANGE - might be parsing error");
+                        // Still use them but log warning
                     }
                 } else {
                     Log.e(TAG, "🩺 BYTE ARRAY TOO SHORT: " + bytes.length + " bytes (need >= 10)");
@@ -862,19 +1233,11 @@ public class WelluePlugin extends Plugin {
             } else {
                 // Try reflection-based parsing (fallback)
                 Log.e(TAG, "🩺 TRYING REFLECTION-BASED PARSING");
-                            String[][] cand = new String[][]{
-                                {"getSys","getDia","getPr","getMap"},
-                                {"getSbp","getDbp","getHr","getMap"},
-                                {"getSystolic","getDiastolic","getPulseRate","getMeanArterialPressure"}
-                            };
-                            for (String[] c : cand) {
-                                try { Object v = paramData.getClass().getMethod(c[0]).invoke(paramData); if (v instanceof Number) sys = ((Number) v).intValue(); } catch (Throwable ignore) {}
-                                try { Object v = paramData.getClass().getMethod(c[1]).invoke(paramData); if (v instanceof Number) dia = ((Number) v).intValue(); } catch (Throwable ignore) {}
-                                try { Object v = paramData.getClass().getMethod(c[2]).invoke(paramData); if (v instanceof Number) pr  = ((Number) v).intValue(); } catch (Throwable ignore) {}
-                                try { Object v = paramData.getClass().getMethod(c[3]).invoke(paramData); if (v instanceof Number) map = ((Number) v).intValue(); } catch (Throwable ignore) {}
-                                if (sys != null || dia != null || pr != null || map != null) break;
-                            }
-                            try { Object v = paramData.getClass().getMethod("getResult").invoke(paramData); if (v instanceof Number) resultCode = ((Number) v).intValue(); } catch (Throwable ignore) {}
+                            sys = rtAccessors.firstInt(paramData, RtAccessorCache.SYS);
+                            dia = rtAccessors.firstInt(paramData, RtAccessorCache.DIA);
+                            pr  = rtAccessors.firstInt(paramData, RtAccessorCache.PULSE);
+                            map = rtAccessors.firstInt(paramData, RtAccessorCache.MAP);
+                            resultCode = rtAccessors.firstInt(paramData, RtAccessorCache.RESULT);
             }
             
             Log.e(TAG, "🩺 FINAL EXTRACTED VALUES: sys=" + sys + " dia=" + dia + " pr=" + pr + " map=" + map + " result=" + resultCode);
@@ -905,7 +1268,7 @@ public class WelluePlugin extends Plugin {
                     if (helper != null) {
                         Log.e(TAG, "🛑 STOPPING RT TASK AFTER SUCCESSFUL MEASUREMENT");
                         java.lang.reflect.Method stopRtTaskMethod = helper.getClass().getMethod("stopRtTask", int.class);
-                        stopRtTaskMethod.invoke(helper, com.lepu.blepro.objs.Bluetooth.MODEL_BP2);
+                        stopRtTaskMethod.invoke(helper, s.model);
                         Log.e(TAG, "✅ RT TASK STOPPED - no more duplicate measurements");
                     }
                 } catch (Throwable e) {
@@ -913,7 +1276,7 @@ public class WelluePlugin extends Plugin {
                 }
                 
                 // Send the BP measurement data
-                            notifyListeners("bpMeasurement", ev);
+                            notifyDevice(s, "bpMeasurement", ev);
                 Log.e(TAG, "🩺 SENT bpMeasurement event with data: " + ev.toString());
                 
                 // Send BP lifecycle complete event with data
@@ -923,7 +1286,8 @@ public class WelluePlugin extends Plugin {
                 bpLife.put("diastolic", dia);
                 bpLife.put("pulseRate", pr);
                 if (map != null) bpLife.put("map", map);
-                notifyListeners("bpLifecycle", bpLife);
+                notifyDevice(s, "bpLifecycle", bpLife);
+                setBpState(s, BP_COMPLETE, "result");
                 Log.d(TAG, "🩺 BP lifecycle: complete with valid data [" + sys + "/" + dia + ", HR " + pr + "]");
             } else {
                 Log.e(TAG, "🩺 NO VALID BP DATA - not sending measurement complete events");
@@ -932,53 +1296,177 @@ public class WelluePlugin extends Plugin {
 
                         // Ship ECG batched at ~200 ms for smoother rendering; convert to mV
                         // Gate emission strictly to active ECG measuring window
-                        if (ecgMeasuringActive && ((ecgShorts != null && ecgShorts.length > 0) || (ecgFloats != null && ecgFloats.length > 0))) {
+                        int ecgLen = decodedLen >= 0 ? decodedLen : ecgShorts != null ? ecgShorts.length : ecgFloats != null ? ecgFloats.length : 0;
+                        if (s.ecgMeasuringActive && ecgLen > 0) {
                             final double scale = 0.003098; // per vendor (mV per count)
                             // Raw logging BEFORE scaling for engineering validation
-                            try {
+                            if (diag) try {
                                 if (ecgShorts != null) {
-                                    int prevLen = Math.min(ecgShorts.length, 200);
+                                    int prevLen = Math.min(ecgLen, 200);
                                     short[] preview = Arrays.copyOf(ecgShorts, prevLen);
-                                    Log.d("BP2_RAW_ECG", "SampleRate=" + sampleRate + " Hz, mvPerCount=" + scale + ", shortsCount=" + ecgShorts.length + ", preview=" + Arrays.toString(preview));
+                                    Log.d("BP2_RAW_ECG", "SampleRate=" + sampleRate + " Hz, mvPerCount=" + scale + ", shortsCount=" + ecgLen + ", preview=" + Arrays.toString(preview));
                                 } else if (ecgFloats != null) {
                                     int prevLen = Math.min(ecgFloats.length, 200);
                                     float[] preview = Arrays.copyOf(ecgFloats, prevLen);
                                     Log.d("BP2_RAW_ECG", "SampleRate=" + sampleRate + " Hz, mvPerCount=" + scale + ", floatsCount=" + ecgFloats.length + ", preview=" + Arrays.toString(preview));
                                 }
                             } catch (Throwable ignore) {}
-                            synchronized (ecgLock) {
-                                if (ecgShorts != null) {
-                                    // Emit RAW counts (unscaled) so UI can convert with mvPerCount
-                                    for (short s : ecgShorts) ecgAccumFloats.add((float) s);
-                                } else {
-                                    // If floats provided by SDK, pass through (may already be mV)
-                                    for (float f : ecgFloats) ecgAccumFloats.add(f);
+                            int offered = ecgLen;
+                            int accepted;
+                            if (s.qrs.sampleRate() != sampleRate && sampleRate > 0) s.qrs = new QrsDetector(sampleRate);
+                            for (int i = 0; i < offered; i++) {
+                                if (s.qrs.process(ecgShorts != null ? ecgShorts[i] : ecgFloats[i]) && s.ecgBeatCount < s.ecgBeatScratch.length) {
+                                    s.ecgBeatScratch[s.ecgBeatCount++] = s.qrs.lastBeatMs();
+                                }
+                            }
+                            int detectedHr = s.qrs.heartRateBpm();
+                            int output = s.ecgOutput;
+                            int filtered = 0;
+                            if (output != ECG_OUTPUT_RAW) {
+                                if (s.ecgFilter.sampleRate() != sampleRate && sampleRate > 0) {
+                                    s.ecgFilter = new EcgFilter(sampleRate, s.ecgFilter.highPassHz(), s.ecgFilter.notchHz() < sampleRate / 2.0 ? s.ecgFilter.notchHz() : 0);
                                 }
-                                long now = System.currentTimeMillis();
+                                // A single packet never outgrows the ring; anything past capacity would be dropped anyway
+                                filtered = Math.min(offered, s.ecgFilterScratch.length);
+                                if (ecgShorts != null) s.ecgFilter.process(ecgShorts, 0, filtered, s.ecgFilterScratch, 0);
+                                else s.ecgFilter.process(ecgFloats, 0, filtered, s.ecgFilterScratch, 0);
+                            }
+                            int free = s.ecgRing.capacity() - s.ecgRing.size();
+                            if (ecgFlowEnabled && offered > free) {
+                                // Consumer is behind: keep the newest samples, drop the oldest buffered ones
+                                s.ecgFlowDroppedSamples += s.ecgRing.skip(offered - free);
+                                if (output == ECG_OUTPUT_BOTH) s.ecgRingFiltered.skip(offered - free);
+                            }
+                            if (output == ECG_OUTPUT_FILTERED) {
+                                // Filtered signal keeps the source unit (counts stay counts)
+                                accepted = s.ecgRing.offer(s.ecgFilterScratch, 0, filtered);
+                                s.ecgRingHoldsCounts = ecgShorts != null;
+                            } else if (ecgShorts != null) {
+                                // Emit RAW counts (unscaled) so UI can convert with mvPerCount
+                                accepted = s.ecgRing.offer(ecgShorts, 0, offered);
+                                s.ecgRingHoldsCounts = true;
+                            } else {
+                                // If floats provided by SDK, pass through (may already be mV)
+                                accepted = s.ecgRing.offer(ecgFloats, 0, offered);
+                                s.ecgRingHoldsCounts = false;
+                            }
+                            if (output == ECG_OUTPUT_BOTH) s.ecgRingFiltered.offer(s.ecgFilterScratch, 0, filtered);
+                            if (accepted < offered) {
+                                s.ecgOverflowSamples += (offered - accepted);
+                                Log.w(TAG, "⚠️ ECG ring full, dropped " + (offered - accepted) + " samples (total=" + s.ecgOverflowSamples + ")");
+                            }
+                            long now = System.currentTimeMillis();
+                            int limit;
+                            if (ecgFlowEnabled) {
+                                limit = s.ecgFlow.poll(now, s.ecgRing.size());
+                            } else {
                                 // Emit every ~200 ms or if batch grows large (>1000)
-                                if ((now - lastEcgEmitMs) >= 200 || ecgAccumFloats.size() >= 1000) {
-                                    int n = Math.min(ecgAccumFloats.size(), 1200);
+                                limit = (now - s.lastEcgEmitMs) >= 200 || s.ecgRing.size() >= 1000 ? ECG_EMIT_MAX_POINTS : 0;
+                            }
+                            if (limit > 0) {
+                                int n = s.ecgRing.drain(s.ecgDrainScratch, limit);
+                                boolean both = output == ECG_OUTPUT_BOTH;
+                                // Same offers and skips as s.ecgRing, so this drains the same n samples
+                                int nf = both ? s.ecgRingFiltered.drain(s.ecgFilteredDrainScratch, n) : 0;
+                                s.lastEcgEmitMs = now;
+                                long seq = ++s.ecgSeq;
+                                if (ecgFlowEnabled) s.ecgFlow.onEmit(seq, n, now);
+                                // Display decimation: ~1-2 points per target pixel instead of every sample
+                                float[] out = s.ecgDrainScratch;
+                                float[] fout = s.ecgFilteredDrainScratch;
+                                int m = n;
+                                int mf = nf;
+                                String decimation = null;
+                                int displayWidth = ecgDisplayWidth;
+                                if (displayWidth > 0 && n > 0) {
+                                    int buckets = EcgDecimator.bucketsFor(n, displayWidth, ecgDisplayWindowSec * sampleRate);
+                                    if (ecgDisplayLttb) {
+                                        if (buckets >= 3 && buckets < n) {
+                                            m = EcgDecimator.lttb(s.ecgDrainScratch, 0, n, buckets, s.ecgDisplayIdx);
+                                            for (int i = 0; i < m; i++) s.ecgDisplayScratch[i] = s.ecgDrainScratch[s.ecgDisplayIdx[i]];
+                                            out = s.ecgDisplayScratch;
+                                            decimation = "lttb";
+                                            if (both && nf == n) {
+                                                // Same picks for the filtered trace so both strips stay aligned
+                                                for (int i = 0; i < m; i++) s.ecgFilteredDisplayScratch[i] = s.ecgFilteredDrainScratch[s.ecgDisplayIdx[i]];
+                                                fout = s.ecgFilteredDisplayScratch;
+                                                mf = m;
+                                            }
+                                        }
+                                    } else {
+                                        m = EcgDecimator.minMax(s.ecgDrainScratch, 0, n, buckets, s.ecgDisplayScratch);
+                                        if (m < n) {
+                                            out = s.ecgDisplayScratch;
+                                            decimation = "minmax";
+                                            if (both) {
+                                                mf = EcgDecimator.minMax(s.ecgFilteredDrainScratch, 0, nf, buckets, s.ecgFilteredDisplayScratch);
+                                                fout = s.ecgFilteredDisplayScratch;
+                                            }
+                                        }
+                                    }
+                                }
+                                // Only build the representation(s) somebody is listening for
+                                if (hasListeners(ECG_EVENT_JSON)) {
                                     com.getcapacitor.JSArray wf = new com.getcapacitor.JSArray();
-                                    for (int i = 0; i < n; i++) wf.put((double) ecgAccumFloats.get(i));
-                                    // drop what we sent
-                                    for (int i = 0; i < n; i++) ecgAccumFloats.remove(0);
-                                    lastEcgEmitMs = now;
+                                    for (int i = 0; i < m; i++) wf.put((double) out[i]);
                                     JSObject ecg = new JSObject();
                                     ecg.put("waveform", wf);
-                                    if (hr != null) ecg.put("heartRate", hr);
+                                    if (both) {
+                                        com.getcapacitor.JSArray fwf = new com.getcapacitor.JSArray();
+                                        for (int i = 0; i < mf; i++) fwf.put((double) fout[i]);
+                                        ecg.put("filteredWaveform", fwf);
+                                    }
+                                    putEcgFilter(s, ecg, output);
+                                    if (decimation != null) {
+                                        ecg.put("decimation", decimation);
+                                        ecg.put("sourceCount", n);
+                                        if ("lttb".equals(decimation)) {
+                                            com.getcapacitor.JSArray idx = new com.getcapacitor.JSArray();
+                                            for (int i = 0; i < m; i++) idx.put(s.ecgDisplayIdx[i]);
+                                            ecg.put("indices", idx);
+                                        }
+                                    }
+                                    putQrs(s, ecg, hr, detectedHr);
                                     // Provide metadata for UI scaling/logging
                                     ecg.put("sampleRate", sampleRate);
                                     ecg.put("mvPerCount", scale);
-                                    notifyListeners("ecgData", ecg);
-                                    Log.d(TAG, "📈 ecgData emitted points=" + wf.length() + " hr=" + hr);
+                                    ecg.put("seq", seq);
+                                    notifyDevice(s, ECG_EVENT_JSON, ecg);
+                                }
+                                if (hasListeners(ECG_EVENT_BINARY)) {
+                                    int len = packEcgSamples(s, out, m, s.ecgRingHoldsCounts);
+                                    JSObject bin = new JSObject();
+                                    // Same layout as Bp2Plugin.resolveEcg: base64 of little-endian Int16 counts
+                                    bin.put(s.ecgRingHoldsCounts ? "base64Int16" : "base64Float32", android.util.Base64.encodeToString(s.ecgPackScratch, 0, len, android.util.Base64.NO_WRAP));
+                                    bin.put("count", m);
+                                    if (both) {
+                                        len = packEcgSamples(s, fout, mf, s.ecgRingHoldsCounts);
+                                        bin.put(s.ecgRingHoldsCounts ? "filteredBase64Int16" : "filteredBase64Float32", android.util.Base64.encodeToString(s.ecgPackScratch, 0, len, android.util.Base64.NO_WRAP));
+                                        bin.put("filteredCount", mf);
+                                    }
+                                    putEcgFilter(s, bin, output);
+                                    bin.put("seq", seq);
+                                    if (decimation != null) {
+                                        bin.put("decimation", decimation);
+                                        bin.put("sourceCount", n);
+                                    }
+                                    bin.put("sampleRate", sampleRate);
+                                    bin.put("mvPerCount", s.ecgRingHoldsCounts ? scale : 1.0);
+                                    putQrs(s, bin, hr, detectedHr);
+                                    notifyDevice(s, ECG_EVENT_BINARY, bin);
                                 }
+                                s.ecgBeatCount = 0;
+                                if (diag) Log.d(TAG, "📈 ecg batch emitted seq=" + seq + " points=" + n + " hr=" + hr + " qrsHr=" + detectedHr);
                             }
                         }
                     } catch (Throwable t) {
                         Log.w(TAG, "RtData parse error", t);
                     }
                 }
-            });
+            };
+            // Routed by the event's model to that device's session
+            LiveEventBus.get(key, Object.class).observeForever(obj -> routeRtPacket(obj, Bluetooth.MODEL_BP2));
+            LiveEventBus.get(InterfaceEvent.BP2W.EventBp2wRtData, Object.class).observeForever(obj -> routeRtPacket(obj, Bluetooth.MODEL_BP2W));
             bp2RtObserverRegistered = true;
             Log.d(TAG, "📡 BP2 RtData observer registered");
         } catch (Throwable t) {
@@ -997,10 +1485,8 @@ public class WelluePlugin extends Plugin {
                 // numeric string
                 try { return Integer.parseInt(m); } catch (Throwable ignore) {}
             }
-            if (activeWellueAddress != null) {
-                Integer stored = modelByAddress.get(activeWellueAddress);
-                if (stored != null) return stored;
-            }
+            Integer stored = state.model(state.active());
+            if (stored != null) return stored;
         } catch (Throwable ignore) {}
         return def;
     }
@@ -1011,8 +1497,7 @@ public class WelluePlugin extends Plugin {
             if (!ensurePermissions(call)) return;
             if (!isWellueSDKInitialized) isWellueSDKInitialized = true;
             ensureBp2RtObserver();
-            String modelStr = call.getString("model");
-            int model = resolveModelFromStringOrActive(modelStr);
+            int model = commandModel(call);
             Object helper = getBleHelper();
             if (helper == null) { call.reject("BleServiceHelper unavailable"); return; }
             helper.getClass().getMethod("startRtTask", int.class).invoke(helper, model);
@@ -1029,8 +1514,7 @@ public class WelluePlugin extends Plugin {
         try {
             if (!ensurePermissions(call)) return;
             if (!isWellueSDKInitialized) isWellueSDKInitialized = true;
-            String modelStr = call.getString("model");
-            int model = resolveModelFromStringOrActive(modelStr);
+            int model = commandModel(call);
             Object helper = getBleHelper();
             if (helper == null) { call.reject("BleServiceHelper unavailable"); return; }
             helper.getClass().getMethod("stopRtTask", int.class).invoke(helper, model);
@@ -1042,14 +1526,184 @@ public class WelluePlugin extends Plugin {
         }
     }
 
+    // Vendor HR wins when present; otherwise the native QRS estimate fills heartRate
+    private void putQrs(DeviceSession s, JSObject ev, Integer vendorHr, int detectedHr) {
+        if (vendorHr != null) {
+            ev.put("heartRate", vendorHr);
+        } else if (detectedHr > 0) {
+            ev.put("heartRate", detectedHr);
+            ev.put("heartRateSource", "qrs");
+        }
+        if (detectedHr > 0) ev.put("detectedHeartRate", detectedHr);
+        if (s.ecgBeatCount > 0) {
+            com.getcapacitor.JSArray beats = new com.getcapacitor.JSArray();
+            for (int i = 0; i < s.ecgBeatCount; i++) beats.put(s.ecgBeatScratch[i]);
+            ev.put("beats", beats);
+        }
+    }
+
+    private static EcgFlowController newEcgFlow(int minIntervalMs, int maxIntervalMs, int maxInFlight) {
+        return new EcgFlowController(minIntervalMs, maxIntervalMs, maxInFlight, DeviceSession.ECG_RING_CAPACITY, EcgFlowController.DEFAULT_STALL_MS);
+    }
+
+    // { enabled, minIntervalMs?, maxIntervalMs?, maxInFlight? } - with flow control on, JS must call ackEcg with rendered seqs.
+    // Global, not per device: every session swaps in a fresh controller on its own decode thread
+    @PluginMethod
+    public void setEcgFlowControl(PluginCall call) {
+        final boolean enabled = Boolean.TRUE.equals(call.getBoolean("enabled", false));
+        final int minMs = call.getInt("minIntervalMs", EcgFlowController.DEFAULT_MIN_INTERVAL_MS);
+        final int maxMs = call.getInt("maxIntervalMs", EcgFlowController.DEFAULT_MAX_INTERVAL_MS);
+        final int maxInFlight = call.getInt("maxInFlight", EcgFlowController.DEFAULT_MAX_IN_FLIGHT);
+        try {
+            newEcgFlow(minMs, maxMs, maxInFlight);
+        } catch (IllegalArgumentException e) {
+            call.reject("Invalid flow control settings: " + e.getMessage());
+            return;
+        }
+        ecgFlowMinIntervalMs = minMs;
+        ecgFlowMaxIntervalMs = maxMs;
+        ecgFlowMaxInFlight = maxInFlight;
+        for (DeviceSession s : sessionByModel.values()) {
+            final EcgFlowController fc = newEcgFlow(minMs, maxMs, maxInFlight);
+            s.post(() -> {
+                fc.reset(s.ecgSeq, System.currentTimeMillis());
+                s.ecgFlow = fc;
+            });
+        }
+        ecgFlowEnabled = enabled;
+        JSObject out = new JSObject();
+        out.put("enabled", enabled);
+        // seq of the default (most recently connected) device
+        DeviceSession s = sessionFor(call);
+        if (s != null) out.put("seq", s.ecgSeq);
+        call.resolve(out);
+    }
+
+    // { width, windowSec?, mode? } - decimate live ECG batches for a strip `width` px wide showing windowSec seconds; width 0 = off
+    @PluginMethod
+    public void setEcgDisplay(PluginCall call) {
+        int width = Math.max(0, call.getInt("width", 0));
+        int windowSec = Math.max(1, call.getInt("windowSec", 10));
+        String mode = call.getString("mode", "minmax");
+        ecgDisplayWindowSec = windowSec;
+        ecgDisplayLttb = "lttb".equalsIgnoreCase(mode);
+        ecgDisplayWidth = width;
+        JSObject out = new JSObject();
+        out.put("width", width);
+        out.put("windowSec", windowSec);
+        out.put("mode", ecgDisplayLttb ? "lttb" : "minmax");
+        call.resolve(out);
+    }
+
+    // { highPassHz?, notchHz?: 0|50|60, output?: 'raw'|'filtered'|'both' } - native baseline/mains filter for live ECG,
+    // applied to every device
+    @PluginMethod
+    public void setEcgFilter(PluginCall call) {
+        final double highPassHz = call.getDouble("highPassHz", EcgFilter.DEFAULT_HIGH_PASS_HZ);
+        final int notchHz = call.getInt("notchHz", 0);
+        String mode = call.getString("output", "filtered");
+        final int output;
+        if ("raw".equalsIgnoreCase(mode)) output = ECG_OUTPUT_RAW;
+        else if ("filtered".equalsIgnoreCase(mode)) output = ECG_OUTPUT_FILTERED;
+        else if ("both".equalsIgnoreCase(mode)) output = ECG_OUTPUT_BOTH;
+        else { call.reject("output must be 'raw', 'filtered' or 'both'"); return; }
+        try {
+            // Designed for the BP2's 125 Hz stream; rebuilt on the decode thread if a batch reports another rate
+            new EcgFilter(125, highPassHz, notchHz);
+        } catch (IllegalArgumentException e) {
+            call.reject("Invalid filter settings: " + e.getMessage());
+            return;
+        }
+        ecgFilterHighPassHz = highPassHz;
+        ecgFilterNotchHz = notchHz;
+        ecgOutput = output;
+        // Filters are stateful, so every session gets its own instance
+        for (DeviceSession s : sessionByModel.values()) {
+            final EcgFilter f = new EcgFilter(125, highPassHz, notchHz);
+            s.post(() -> {
+                s.ecgFilter = f;
+                if (output != s.ecgOutput) {
+                    // Don't mix raw and filtered samples (or leave the side ring half-filled) across a switch
+                    s.ecgRing.clear();
+                    s.ecgRingFiltered.clear();
+                    s.ecgOutput = output;
+                }
+            });
+        }
+        JSObject out = new JSObject();
+        out.put("highPassHz", highPassHz);
+        out.put("notchHz", notchHz);
+        out.put("output", output == ECG_OUTPUT_BOTH ? "both" : output == ECG_OUTPUT_FILTERED ? "filtered" : "raw");
+        call.resolve(out);
+    }
+
+    // Consumer acknowledgement: every ecgData/ecgDataBinary batch up to seq from that device has been rendered
+    @PluginMethod
+    public void ackEcg(PluginCall call) {
+        // Batch seqs are longs natively; read the ack as one
+        JSObject data = call.getData();
+        if (data == null || !data.has("seq")) { call.reject("seq required"); return; }
+        final long ack = data.optLong("seq", -1L);
+        if (ack < 0) { call.reject("seq must be a non-negative number"); return; }
+        final DeviceSession s = sessionFor(call);
+        if (s == null) { call.reject("No session for this device"); return; }
+        s.post(() -> s.ecgFlow.onAck(ack, System.currentTimeMillis()));
+        call.resolve();
+    }
+
+    // Counters are written on each session's decode thread and read here without locking
+    private JSObject sessionStats(DeviceSession s) {
+        JSObject out = new JSObject();
+        if (s.address != null) out.put("deviceId", s.address);
+        out.put("model", s.model);
+        out.put("state", DeviceSession.stateName(s.state));
+        out.put("bpState", s.bpState);
+        out.put("ecgMeasuring", s.ecgMeasuringActive);
+        out.put("ecgOverflowSamples", s.ecgOverflowSamples);
+        EcgFlowController fc = s.ecgFlow;
+        out.put("ecgInFlight", fc.inFlight());
+        out.put("ecgIntervalMs", fc.intervalMs());
+        out.put("ecgDroppedSamples", s.ecgFlowDroppedSamples + s.ecgOverflowSamples);
+        out.put("ecgCoalescedSamples", fc.coalescedSamples());
+        out.put("ecgDeferredTicks", fc.deferredTicks());
+        out.put("ecgStalls", fc.stalls());
+        long decoded = s.decoded;
+        out.put("queueDepth", s.queueDepth());
+        out.put("queueCapacity", DeviceSession.RT_QUEUE_CAPACITY);
+        out.put("queueHighWater", s.queueHighWater);
+        out.put("packetsEnqueued", s.enqueued.get());
+        out.put("packetsDropped", s.dropped.get());
+        out.put("packetsDecoded", decoded);
+        out.put("avgQueueWaitUs", decoded > 0 ? (s.queueWaitNsTotal / decoded) / 1000L : 0L);
+        out.put("avgDecodeUs", decoded > 0 ? (s.decodeNsTotal / decoded) / 1000L : 0L);
+        out.put("maxDecodeUs", s.decodeNsMax / 1000L);
+        return out;
+    }
+
+    // { address? } - top level describes that device (default: the active one); "devices" lists every session
+    @PluginMethod
+    public void getRtDecodeStats(PluginCall call) {
+        DeviceSession target = sessionFor(call);
+        JSObject out = target != null ? sessionStats(target) : new JSObject();
+        out.put("accessorTableHits", rtAccessors.tableHits());
+        out.put("accessorTableMisses", rtAccessors.tableMisses());
+        out.put("resolvedGetters", rtAccessors.resolvedGetters());
+        out.put("missingGetters", rtAccessors.missingGetters());
+        out.put("invokeFailures", rtAccessors.invokeFailures());
+        out.put("cachedClasses", rtAccessors.cachedClasses());
+        out.put("ecgFlowEnabled", ecgFlowEnabled);
+        com.getcapacitor.JSArray devices = new com.getcapacitor.JSArray();
+        for (DeviceSession s : sessionByModel.values()) devices.put(sessionStats(s));
+        out.put("devices", devices);
+        call.resolve(out);
+    }
+
     @PluginMethod
     public void startRtTaskForConnectedDevice(PluginCall call) {
         try {
             String modelStr = null;
-            if (activeWellueAddress != null) {
-                Integer m = modelByAddress.get(activeWellueAddress);
-                if (m != null) modelStr = String.valueOf(m.intValue());
-            }
+            Integer m = state.model(state.active());
+            if (m != null) modelStr = String.valueOf(m.intValue());
             JSObject req = new JSObject();
             req.put("model", modelStr);
             // Reuse startRtTask logic
@@ -1139,9 +1793,24 @@ public class WelluePlugin extends Plugin {
                                 result.put("enabled", isEnabled);
                                 notifyListeners("bluetoothStatusChanged", result);
                                  if (!isEnabled) {
-                                     // Clear active Wellue connection marker when BT goes off
-                                     activeWellueAddress = null;
+                                     // Clear active Wellue connection marker when BT goes off; every link is gone
+                                     WelluePlugin.this.state.clearActive(null);
+                                     for (DeviceSession s : sessionByModel.values()) closeSession(s);
                                  }
+                                 scheduleConnReconcile(0);
+                            } else if (android.bluetooth.BluetoothDevice.ACTION_ACL_CONNECTED.equals(action)
+                                    || android.bluetooth.BluetoothDevice.ACTION_ACL_DISCONNECTED.equals(action)) {
+                                android.bluetooth.BluetoothDevice d = intent.getParcelableExtra(android.bluetooth.BluetoothDevice.EXTRA_DEVICE);
+                                String addr = d != null ? d.getAddress() : null;
+                                if (addr == null) return;
+                                if (android.bluetooth.BluetoothDevice.ACTION_ACL_DISCONNECTED.equals(action)) {
+                                    onGattDisconnected(addr);
+                                    scheduleConnReconcile(CONN_RECONCILE_MIN_MS);
+                                } else if (d.getType() != android.bluetooth.BluetoothDevice.DEVICE_TYPE_CLASSIC) {
+                                    // ACL also fires for classic devices; only LE/dual links can be GATT peers. A raw link is
+                                    // not a usable device yet: deviceConnected comes from SDK ready or the GATT reconcile pass
+                                    scheduleConnReconcile(CONN_RECONCILE_MIN_MS);
+                                }
                             }
                         } catch (Exception e) {
                             Log.e(TAG, "❌ Error in Bluetooth receiver: " + e.getMessage(), e);
@@ -1150,6 +1819,8 @@ public class WelluePlugin extends Plugin {
                 };
                 
                 IntentFilter filter = new IntentFilter(BluetoothAdapter.ACTION_STATE_CHANGED);
+                filter.addAction(android.bluetooth.BluetoothDevice.ACTION_ACL_CONNECTED);
+                filter.addAction(android.bluetooth.BluetoothDevice.ACTION_ACL_DISCONNECTED);
                 getContext().registerReceiver(bluetoothReceiver, filter);
                 Log.d(TAG, "📡 Bluetooth receiver registered");
             } else {
@@ -1160,31 +1831,27 @@ public class WelluePlugin extends Plugin {
 
             // Ensure discovery observer early
             ensureDiscoveryObserver();
-            // Register BP2 debug observers to surface event types in logs
+            // Register BP2 debug observers to surface event types in logs (only when diagnostics are on)
+            loadDiagnosticsPrefs();
             ensureBp2DebugObservers();
             // Register RT observer so we detect device-initiated streams
             ensureBp2RtObserver();
-            // Start connection poller
+            // Event-driven connection tracking, plus a backed-off reconciliation pass
+            ensureBleConnectionObservers();
             connHandler.removeCallbacksAndMessages(null);
+            connReconcileDelayMs = CONN_RECONCILE_MIN_MS;
             connHandler.postDelayed(connPoller, 1500);
 
-            // Attempt auto-reconnect to last MAC if available
-            try {
-                android.content.SharedPreferences sp = getContext().getSharedPreferences("wellue_prefs", Context.MODE_PRIVATE);
-                String last = sp.getString("last_mac", null);
-                if (last != null && !last.isEmpty()) {
-                    Object helper = getBleHelper();
-                    if (helper != null) {
-                        // reconnectByAddress(Integer, String, boolean, boolean)
-                        Integer model = modelByAddress.getOrDefault(last, com.lepu.blepro.objs.Bluetooth.MODEL_BP2);
-                        helper.getClass().getMethod("reconnectByAddress", Integer.class, String.class, boolean.class, boolean.class)
-                                .invoke(helper, model, last, true, true);
-                        Log.d(TAG, "🔁 Auto reconnect attempt to " + last);
-                    }
-                }
-            } catch (Throwable t) {
-                Log.w(TAG, "auto-reconnect error", t);
-            }
+            // Load the device registry (and last_mac) off the main thread, then auto-reconnect to the last device
+            registry().loadAsync(() -> {
+                String last = null;
+                try {
+                    android.content.SharedPreferences sp = getContext().getSharedPreferences("wellue_prefs", Context.MODE_PRIVATE);
+                    last = sp.getString("last_mac", null);
+                } catch (Throwable ignore) {}
+                final String lastMac = last;
+                connHandler.post(() -> autoReconnect(lastMac));
+            });
             
         } catch (Exception e) {
             Log.e(TAG, "❌ Critical error during plugin initialization: " + e.getMessage(), e);
@@ -1195,7 +1862,13 @@ public class WelluePlugin extends Plugin {
     @Override
     public void handleOnDestroy() {
         super.handleOnDestroy();
+        if (bp2Downloads != null) bp2Downloads.shutdown();
+        if (bp2FileLists != null) bp2FileLists.shutdown();
+        if (scanScheduler != null) scanScheduler.shutdown();
         try { connHandler.removeCallbacksAndMessages(null); } catch (Throwable ignore) {}
+        // Queued registry writes still run; later ones are dropped by the registry
+        if (registryIo != null) registryIo.shutdown();
+        shutdownSessions();
         if (bluetoothReceiver != null) {
             try {
                 getContext().unregisterReceiver(bluetoothReceiver);
@@ -1297,6 +1970,8 @@ public class WelluePlugin extends Plugin {
         } else if (action != null && action.equals("bp2ReadFile")) {
             // fileName remains on the original call object
             bp2ReadFile(call);
+        } else if (action != null && action.equals("syncNewRecords")) {
+            syncNewRecords(call);
         } else {
             initialize(call);
         }
@@ -1352,101 +2027,52 @@ public class WelluePlugin extends Plugin {
                 Log.d(TAG, "ℹ️ startScan: lazily marked initialized after permission check");
             }
             // Set interface for all supported models (at least BP2) before scanning
-            try {
-                Class<?> helperCls = Class.forName("com.lepu.blepro.ext.BleServiceHelper");
-                Object companion = helperCls.getField("Companion").get(null);
-                try {
-                    // enable a broad set of models to receive all discovery callbacks
-                    companion.getClass().getMethod("setInterfaces", int.class, boolean.class).invoke(companion, Bluetooth.MODEL_BP2, true);
-                    Log.d(TAG, "setInterfaces(BP2) via Companion OK");
-                } catch (Throwable ignore) {
-                    Object helper = getBleHelper();
-                    if (helper != null) {
-                        helper.getClass().getMethod("setInterfaces", int.class, boolean.class).invoke(helper, Bluetooth.MODEL_BP2, true);
-                        Log.d(TAG, "setInterfaces(BP2) via instance OK");
-                    }
-                }
-            } catch (Throwable t) {
-                Log.w(TAG, "setInterfaces(BP2) failed", t);
-            }
+            ensureInterfaces(Bluetooth.MODEL_BP2);
 
-            // Start real SDK scan and bridge events (try Companion and instance)
-            try {
-                Class<?> helperCls = Class.forName("com.lepu.blepro.ext.BleServiceHelper");
-                Object companion = helperCls.getField("Companion").get(null);
-                try {
-                    companion.getClass().getMethod("startScan", Integer.class, boolean.class)
-                        .invoke(companion, null, true);
-                    Log.d(TAG, "SDK startScan via Companion OK");
-                } catch (Throwable ignore) {
-                    Object helper = getBleHelper();
-                    if (helper != null) {
-                        helper.getClass().getMethod("startScan", Integer.class, boolean.class)
-                            .invoke(helper, null, true);
-                        Log.d(TAG, "SDK startScan via instance OK");
-                    }
-                }
-            } catch (Throwable t) {
-                Log.w(TAG, "SDK startScan error", t);
-            }
+            // { mode?: 'burst'|'balanced'|'opportunistic', burstSec?, timeoutSec? (0 = until stopScan), targetAddress?, reportDelayMs? }
+            ScanScheduler.Config cfg = new ScanScheduler.Config();
+            cfg.mode = ScanScheduler.parseMode(call.getString("mode", "burst"));
+            cfg.burstMs = Math.max(0, call.getInt("burstSec", (int) (ScanScheduler.DEFAULT_BURST_MS / 1000L))) * 1000L;
+            cfg.timeoutMs = Math.max(0, call.getInt("timeoutSec", (int) (ScanScheduler.DEFAULT_TIMEOUT_MS / 1000L))) * 1000L;
+            cfg.targetAddress = call.getString("targetAddress");
+            cfg.reportDelayMs = Math.max(0, call.getInt("reportDelayMs", (int) ScanScheduler.DEFAULT_REPORT_DELAY_MS));
 
-            // Ensure discovery observer
+            // Open the table before the vendor scan so its first adverts (possibly the target) are kept
             ensureDiscoveryObserver();
+            scanTable().start(call.getInt("emitHz", ScanAggregator.DEFAULT_EMIT_HZ));
 
-            // Start Android platform fallback scanner in parallel (broad, dedup by MAC)
-            try {
-                if (systemScanner == null && bluetoothAdapter != null) {
-                    systemScanner = bluetoothAdapter.getBluetoothLeScanner();
-                }
-                if (systemScanner != null) {
-                    seenAddresses.clear();
-                    if (systemScanCallback == null) {
-                        systemScanCallback = new ScanCallback() {
-                            @Override
-                            public void onScanResult(int callbackType, ScanResult result) {
-                                try {
-                                    if (result == null || result.getDevice() == null) return;
-                                    String address = result.getDevice().getAddress();
-                                    if (address == null) return;
-                                    if (!seenAddresses.add(address)) return; // dedup
-                                    String name = result.getDevice().getName();
-                                    int rssi = result.getRssi();
-                                    Log.d(TAG, "🛰️ sysScan device: name=" + name + ", addr=" + address + ", rssi=" + rssi);
-                                    JSObject dev = new JSObject();
-                                    dev.put("deviceName", name != null ? name : "Unknown");
-                                    dev.put("deviceId", address);
-                                    dev.put("address", address);
-                                    dev.put("model", "unknown");
-                                    dev.put("rssi", rssi);
-                                    notifyListeners("deviceFound", dev);
-                                } catch (Throwable ex) {
-                                    Log.w(TAG, "sysScan onScanResult error", ex);
-                                }
-                            }
-                        };
-                    }
-                    ScanSettings settings = new ScanSettings.Builder()
-                        .setScanMode(ScanSettings.SCAN_MODE_LOW_LATENCY)
-                        .build();
-                    // Filter scan to BP2 service UUID to avoid non-Wellue devices
-                    java.util.List<android.bluetooth.le.ScanFilter> filters = new java.util.ArrayList<>();
+            // Start real SDK scan and bridge events (try Companion and instance); opportunistic mode leaves
+            // the radio to other apps, so the vendor scan (which picks its own settings) is skipped
+            if (cfg.mode != ScanScheduler.MODE_OPPORTUNISTIC) {
+                try {
+                    Class<?> helperCls = Class.forName("com.lepu.blepro.ext.BleServiceHelper");
+                    Object companion = helperCls.getField("Companion").get(null);
                     try {
-                        android.os.ParcelUuid serviceUuid = android.os.ParcelUuid.fromString("14839AC4-7D7E-415C-9A42-167340CF2339");
-                        android.bluetooth.le.ScanFilter f = new android.bluetooth.le.ScanFilter.Builder().setServiceUuid(serviceUuid).build();
-                        filters.add(f);
-                    } catch (Throwable ignore) {}
-                    systemScanner.startScan(filters, settings, systemScanCallback);
-                    Log.d(TAG, "🛰️ System BLE scanner started");
-                } else {
-                    Log.w(TAG, "System BLE scanner not available");
+                        companion.getClass().getMethod("startScan", Integer.class, boolean.class)
+                            .invoke(companion, null, true);
+                        Log.d(TAG, "SDK startScan via Companion OK");
+                    } catch (Throwable ignore) {
+                        Object helper = getBleHelper();
+                        if (helper != null) {
+                            helper.getClass().getMethod("startScan", Integer.class, boolean.class)
+                                .invoke(helper, null, true);
+                            Log.d(TAG, "SDK startScan via instance OK");
+                        }
+                    }
+                } catch (Throwable t) {
+                    Log.w(TAG, "SDK startScan error", t);
                 }
-            } catch (Throwable t) {
-                Log.w(TAG, "System scanner start error", t);
             }
+
+            // Start Android platform scanner in parallel, duty-cycled by the scheduler
+            scanScheduler().start(cfg);
+            scanActive = true;
             
             JSObject result = new JSObject();
             result.put("success", true);
             result.put("message", "Native Bluetooth scan started");
+            result.put("mode", ScanScheduler.modeName(cfg.mode));
+            result.put("timeoutSec", cfg.timeoutMs / 1000L);
             call.resolve(result);
             
         } catch (Exception e) {
@@ -1459,23 +2085,11 @@ public class WelluePlugin extends Plugin {
     public void stopScan(PluginCall call) {
         try {
             Log.d(TAG, "🛑 Stopping native Bluetooth scan...");
-            try {
-                Object helper = getBleHelper();
-                if (helper != null) {
-                    helper.getClass().getMethod("stopScan").invoke(helper);
-                }
-            } catch (Throwable t) {
-                Log.w(TAG, "SDK stopScan error", t);
-            }
-            // Stop system fallback scanner
-            try {
-                if (systemScanner != null && systemScanCallback != null) {
-                    systemScanner.stopScan(systemScanCallback);
-                    Log.d(TAG, "🛰️ System BLE scanner stopped");
-                }
-            } catch (Throwable t) {
-                Log.w(TAG, "System scanner stop error", t);
-            }
+            stopVendorScan();
+            // Stop system scanner; the scheduler reports the session end
+            scanScheduler().stop(ScanScheduler.STOP_MANUAL);
+            scanTable().stop();
+            scanActive = false;
             if (call != null) {
             JSObject result = new JSObject();
             result.put("success", true);
@@ -1491,10 +2105,77 @@ public class WelluePlugin extends Plugin {
         }
     }
     
+    private void stopVendorScan() {
+        try {
+            Object helper = getBleHelper();
+            if (helper != null) {
+                helper.getClass().getMethod("stopScan").invoke(helper);
+            }
+        } catch (Throwable t) {
+            Log.w(TAG, "SDK stopScan error", t);
+        }
+    }
+
+    private synchronized ScanScheduler scanScheduler() {
+        if (scanScheduler == null) {
+            // Filter scan to BP2 service UUID to avoid non-Wellue devices
+            java.util.List<android.bluetooth.le.ScanFilter> filters = new java.util.ArrayList<>();
+            try {
+                android.os.ParcelUuid serviceUuid = android.os.ParcelUuid.fromString("14839AC4-7D7E-415C-9A42-167340CF2339");
+                filters.add(new android.bluetooth.le.ScanFilter.Builder().setServiceUuid(serviceUuid).build());
+            } catch (Throwable ignore) {}
+            scanScheduler = new ScanScheduler(connHandler, bluetoothAdapter, filters, new ScanScheduler.Sink() {
+                @Override public void onResult(ScanResult result) {
+                    if (result.getDevice() == null) return;
+                    String address = result.getDevice().getAddress();
+                    if (address == null) return;
+                    scanTable().onAdvertisement(ScanAggregator.SOURCE_SYSTEM, address, result.getDevice().getName(), null, result.getRssi());
+                }
+
+                @Override public void onStopped(String reason) {
+                    if (!ScanScheduler.STOP_MANUAL.equals(reason)) {
+                        // Auto-stop (timeout / target found / failure): end the vendor scan too
+                        stopVendorScan();
+                        scanTable().stop();
+                    }
+                    scanActive = false;
+                    JSObject ev = new JSObject();
+                    ev.put("reason", reason);
+                    try { ev.put("metrics", JSObject.fromJSONObject(scanScheduler.metrics())); } catch (Throwable ignore) {}
+                    notifyListeners("scanStopped", ev);
+                }
+
+                @Override public boolean seen(String address) {
+                    return scanTable().contains(address);
+                }
+            });
+        }
+        return scanScheduler;
+    }
+
+    // Scan wakeups, radio time per mode and session outcomes
+    @PluginMethod
+    public void getScanMetrics(PluginCall call) {
+        final ScanScheduler scheduler = scanScheduler();
+        connHandler.post(() -> {
+            try {
+                call.resolve(JSObject.fromJSONObject(scheduler.metrics()));
+            } catch (Throwable t) {
+                call.reject("Failed to read scan metrics: " + t.getMessage());
+            }
+        });
+    }
+
+    // Current merged scan table (strongest RSSI first) plus aggregator counters
+    @PluginMethod
+    public void getScanTable(PluginCall call) {
+        call.resolve(scanTable().snapshot());
+    }
+
     @PluginMethod
     public void connect(PluginCall call) {
         try {
-            String deviceAddress = call.getString("address");
+            String deviceAddress = WellueState.normalize(call.getString("address"));
             Log.d(TAG, "🔗 Connecting to device: " + deviceAddress);
             
             // Ensure permissions and lazy init
@@ -1509,43 +2190,72 @@ public class WelluePlugin extends Plugin {
                 Log.d(TAG, "ℹ️ connect: lazily marked initialized after permission check");
             }
 
-            // Restrict to a single active Wellue connection only (ignore other GATT devices like earbuds/SPen)
-            if (activeWellueAddress != null && !activeWellueAddress.equalsIgnoreCase(deviceAddress)) {
-                call.reject("Another Wellue device is already connected. Disconnect first.");
-                return;
-            }
-            // Enforce BP2-only by interface: if model mapping says otherwise, coerce to BP2 family
-            modelByAddress.put(deviceAddress, com.lepu.blepro.objs.Bluetooth.MODEL_BP2);
-            
             if (deviceAddress == null || deviceAddress.isEmpty()) {
                 Log.e(TAG, "❌ Device address is required");
                 call.reject("Device address is required");
                 return;
             }
-            
-            lastConnectingAddress = deviceAddress;
+
+            // Fast path: a device the persisted registry already knows (model on disk, connected before), so it
+            // needs no scan/discovery first, including right after an app restart. Full path: anything else.
+            DeviceRegistry.Device known = registry().get(deviceAddress);
+            boolean fast = known != null && known.isKnown() && isBp2Family(known.model);
+            // Enforce BP2-only by interface: keep a discovered (else registered) BP2-family model
+            // (BP2/BP2A/BP2T/BP2W), otherwise coerce to BP2
+            Integer discovered = state.model(deviceAddress);
+            int modelBp2 = isBp2Family(discovered) ? discovered
+                : fast ? known.model : com.lepu.blepro.objs.Bluetooth.MODEL_BP2;
+            state.putModel(deviceAddress, modelBp2);
+            // Devices of different models connect side by side; the SDK holds one link per model
+            DeviceSession holder = sessionByModel.get(modelBp2);
+            if (holder != null && holder.address != null && !holder.address.equalsIgnoreCase(deviceAddress)
+                    && holder.state == DeviceSession.STATE_CONNECTED) {
+                call.reject("Another device of this model (" + holder.address + ") is already connected. Disconnect it first.");
+                return;
+            }
+
+            state.setConnecting(deviceAddress);
+            String path = fast ? DeviceRegistry.PATH_FAST : DeviceRegistry.PATH_FULL;
+            DeviceSession opened = null;
+            String error = null;
             try {
-                // stop scans before connecting (do not resolve the current call)
-                try { stopScan(null); } catch (Throwable ignore) {}
-                // set interface and connect using SDK
-                int modelBp2 = modelByAddress.getOrDefault(deviceAddress, com.lepu.blepro.objs.Bluetooth.MODEL_BP2);
-                android.bluetooth.BluetoothDevice device = bluetoothAdapter.getRemoteDevice(deviceAddress);
+                // stop scans before connecting (do not resolve the current call); nothing to tear down if none is running
+                if (scanActive) {
+                    try { stopScan(null); } catch (Throwable ignore) {}
+                }
+                android.bluetooth.BluetoothDevice device = deviceHandle(deviceAddress);
                 Object helper = getBleHelper();
-                if (helper != null) {
-                    // setInterfaces(int, boolean)
-                    helper.getClass().getMethod("setInterfaces", int.class, boolean.class).invoke(helper, modelBp2, true);
+                if (helper == null) {
+                    error = "BleServiceHelper unavailable";
+                } else {
+                    opened = openSession(deviceAddress, modelBp2);
+                    beginConnectAttempt(deviceAddress, modelBp2, path);
+                    ensureInterfaces(modelBp2);
                     // connect(Context, int, BluetoothDevice, boolean, boolean)
                     helper.getClass().getMethod("connect", Context.class, int.class, android.bluetooth.BluetoothDevice.class, boolean.class, boolean.class)
                             .invoke(helper, getContext(), modelBp2, device, true, true);
                 }
             } catch (Throwable t) {
                 Log.e(TAG, "SDK connect error", t);
+                Throwable cause = t instanceof java.lang.reflect.InvocationTargetException && t.getCause() != null ? t.getCause() : t;
+                error = String.valueOf(cause.getMessage());
+            }
+            if (error != null) {
+                // Nothing is connecting: end the request so isIdle() and auto-reconnect are not blocked
+                if (opened != null) {
+                    if (registry().isConnecting(deviceAddress)) failConnectAttempt(deviceAddress, "connect error");
+                    if (opened.state == DeviceSession.STATE_CONNECTING) closeSession(opened);
+                }
+                state.clearConnecting(deviceAddress);
+                call.reject("Failed to connect to device: " + error);
+                return;
             }
             
             JSObject result = new JSObject();
             result.put("success", true);
             result.put("message", "Native connection initiated");
             result.put("address", deviceAddress);
+            result.put("path", path);
             call.resolve(result);
             
             // persist last mac for auto-reconnect
@@ -1560,22 +2270,64 @@ public class WelluePlugin extends Plugin {
         }
     }
     
+    // Devices connected before, most recent first, with connect attempts/successes and time-to-connected
+    @PluginMethod
+    public void getDeviceRegistry(PluginCall call) {
+        try {
+            call.resolve(JSObject.fromJSONObject(registry().toJson()));
+        } catch (Throwable t) {
+            call.reject("Failed to read device registry: " + t.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void forgetDevice(PluginCall call) {
+        String address = call.getString("address");
+        if (address == null || address.isEmpty()) {
+            call.reject("Device address is required");
+            return;
+        }
+        address = WellueState.normalize(address);
+        registry().forget(address);
+        deviceHandles.remove(address);
+        JSObject result = new JSObject();
+        result.put("success", true);
+        call.resolve(result);
+    }
+
     @PluginMethod
     public void disconnect(PluginCall call) {
         try {
             Log.d(TAG, "🔌 Disconnecting from device...");
-            
+            // { address? } - just that device (its model's link); without an address every device is disconnected
+            String address = WellueState.normalize(call.getString("address"));
+            if (address != null && address.isEmpty()) address = null;
+            DeviceSession session = address != null ? sessions.get(address) : null;
+            if (address != null && session == null) {
+                // Unknown or already closed: never fall through to dropping every device
+                JSObject result = new JSObject();
+                result.put("success", true);
+                result.put("message", "No session for " + address + "; nothing to disconnect");
+                call.resolve(result);
+                return;
+            }
+
             try {
                 Object helper = getBleHelper();
                 if (helper != null) {
-                    helper.getClass().getMethod("disconnect", boolean.class).invoke(helper, true);
+                    if (session != null) {
+                        helper.getClass().getMethod("disconnect", int.class, boolean.class).invoke(helper, session.model, true);
+                    } else {
+                        helper.getClass().getMethod("disconnect", boolean.class).invoke(helper, true);
+                    }
                 }
             } catch (Throwable t) {
                 Log.w(TAG, "SDK disconnect error", t);
             }
 
-            // Clear our active Wellue marker optimistically; it will be confirmed by poller
-            activeWellueAddress = null;
+            // Clear our active Wellue marker optimistically; ACL/SDK events or the reconcile pass confirm it
+            state.clearActive(session != null ? session.address : null);
+            scheduleConnReconcile(CONN_RECONCILE_MIN_MS);
             
             JSObject result = new JSObject();
             result.put("success", true);
@@ -1640,7 +2392,8 @@ public class WelluePlugin extends Plugin {
                     String addr = d.getAddress();
                     // Only expose the BP2 (or our active Wellue) to the app UI
                     boolean isLikelyBp2 = name != null && name.toUpperCase().contains("BP2");
-                    boolean isActive = activeWellueAddress != null && activeWellueAddress.equalsIgnoreCase(addr);
+                    String active = state.active();
+                    boolean isActive = sessions.containsKey(addr) || (active != null && active.equalsIgnoreCase(addr));
                     if (isLikelyBp2 || isActive) {
                         JSObject dev = new JSObject();
                         dev.put("name", name);
@@ -1657,6 +2410,80 @@ public class WelluePlugin extends Plugin {
         }
     }
 
+    /** Parses an EventBp2FileList payload into {fileName, fileType, index} entries and replaces the file index in state. */
+    private java.util.List<JSObject> parseBp2FileList(Object obj) {
+        java.util.List<?> list = null;
+        // direct list
+        if (obj instanceof java.util.List) {
+            list = (java.util.List<?>) obj;
+        } else if (obj != null) {
+            // Try common accessor names
+            String[] methodNames = new String[]{
+                "getFileList", "getList", "getFiles", "getData", "getObj", "getPayload",
+                "getSecond", "component2", "getFirst", "component1"
+            };
+            for (String mn : methodNames) {
+                try {
+                    java.lang.reflect.Method m = obj.getClass().getMethod(mn);
+                    Object v = m.invoke(obj);
+                    if (v instanceof java.util.List) { list = (java.util.List<?>) v; break; }
+                    if (v != null && v.getClass().isArray()) {
+                        Object[] arr = (Object[]) v;
+                        list = java.util.Arrays.asList(arr);
+                        break;
+                    }
+                } catch (Throwable ignore) {}
+            }
+            // Kotlin Pair specific via component1/2
+            if (list == null && obj.getClass().getName().contains("kotlin.Pair")) {
+                try {
+                    Object second = obj.getClass().getMethod("getSecond").invoke(obj);
+                    if (second instanceof java.util.List) list = (java.util.List<?>) second;
+                } catch (Throwable ignore) {}
+            }
+        }
+
+        java.util.List<JSObject> files = new java.util.ArrayList<>();
+        java.util.Map<String, Integer> index = new java.util.HashMap<>();
+        if (list != null) {
+            int idx = 0;
+            for (Object item : list) {
+                String name = null;
+                Integer type = null;
+                try {
+                    java.lang.reflect.Method m = item.getClass().getMethod("getFileName");
+                    Object nv = m.invoke(item);
+                    if (nv != null) name = String.valueOf(nv);
+                } catch (Throwable ignore) {
+                    name = String.valueOf(item);
+                }
+                try {
+                    java.lang.reflect.Method t = item.getClass().getMethod("getType");
+                    Object tv = t.invoke(item);
+                    if (tv instanceof Integer) type = (Integer) tv;
+                } catch (Throwable ignore) {}
+                if (name != null) {
+                    JSObject f = new JSObject();
+                    f.put("fileName", name);
+                    if (type != null) f.put("fileType", type);
+                    f.put("index", idx);
+                    index.put(name, idx);
+                    files.add(f);
+                    
+                    // Debug logging for each file
+                    Log.d(TAG, "📄 File " + idx + ": name='" + name + "' type=" + type);
+                }
+                idx++;
+            }
+        } else if (obj != null) {
+            JSObject f = new JSObject();
+            f.put("fileName", String.valueOf(obj));
+            files.add(f);
+        }
+        state.setFileIndex(index);
+        return files;
+    }
+
     @PluginMethod
     public void getBp2FileList(PluginCall call) {
         try {
@@ -1668,108 +2495,266 @@ public class WelluePlugin extends Plugin {
                 isWellueSDKInitialized = true;
             }
 
-            // One-shot observer for file list
-            final String key = com.lepu.blepro.event.InterfaceEvent.BP2.EventBp2FileList;
-            Observer<Object> obs = new Observer<Object>() {
-                @Override public void onChanged(Object obj) {
+            if (getBleHelper() == null) {
+                call.reject("BleServiceHelper unavailable");
+                return;
+            }
+            // Correlated by model with any other list request (e.g. a running sync) on the same link
+            final int model = state.activeModel(com.lepu.blepro.objs.Bluetooth.MODEL_BP2);
+            connHandler.post(() -> bp2FileLists().await(model, BP2_SYNC_LIST_TIMEOUT_MS, new Bp2FileListRequests.Reply() {
+                @Override public void onList(Object obj) {
                     try {
                         Log.d(TAG, "📥 EventBp2FileList payload class=" + (obj!=null?obj.getClass().getName():"null"));
 
-                        java.util.List<?> list = null;
-                        // direct list
-                        if (obj instanceof java.util.List) {
-                            list = (java.util.List<?>) obj;
-                        } else if (obj != null) {
-                            // Try common accessor names
-                            String[] methodNames = new String[]{
-                                "getFileList", "getList", "getFiles", "getData", "getObj", "getPayload",
-                                "getSecond", "component2", "getFirst", "component1"
-                            };
-                            for (String mn : methodNames) {
-                                try {
-                                    java.lang.reflect.Method m = obj.getClass().getMethod(mn);
-                                    Object v = m.invoke(obj);
-                                    if (v instanceof java.util.List) { list = (java.util.List<?>) v; break; }
-                                    if (v != null && v.getClass().isArray()) {
-                                        Object[] arr = (Object[]) v;
-                                        list = java.util.Arrays.asList(arr);
-                                        break;
-                                    }
-                                } catch (Throwable ignore) {}
-                            }
-                            // Kotlin Pair specific via component1/2
-                            if (list == null && obj.getClass().getName().contains("kotlin.Pair")) {
-                                try {
-                                    Object second = obj.getClass().getMethod("getSecond").invoke(obj);
-                                    if (second instanceof java.util.List) list = (java.util.List<?>) second;
-                                } catch (Throwable ignore) {}
-                            }
-                        }
-
                         com.getcapacitor.JSArray files = new com.getcapacitor.JSArray();
-                        bp2FileIndexMap.clear();
-                        if (list != null) {
-                            int idx = 0;
-                            for (Object item : list) {
-                                String name = null;
-                                Integer type = null;
-                                try {
-                                    java.lang.reflect.Method m = item.getClass().getMethod("getFileName");
-                                    Object nv = m.invoke(item);
-                                    if (nv != null) name = String.valueOf(nv);
-                                } catch (Throwable ignore) {
-                                    name = String.valueOf(item);
-                                }
-                                try {
-                                    java.lang.reflect.Method t = item.getClass().getMethod("getType");
-                                    Object tv = t.invoke(item);
-                                    if (tv instanceof Integer) type = (Integer) tv;
-                                } catch (Throwable ignore) {}
-                                if (name != null) {
-                                    JSObject f = new JSObject();
-                                    f.put("fileName", name);
-                                    if (type != null) f.put("fileType", type);
-                                    f.put("index", idx);
-                                    bp2FileIndexMap.put(name, idx);
-                                    files.put(f);
-                                    
-                                    // Debug logging for each file
-                                    Log.d(TAG, "📄 File " + idx + ": name='" + name + "' type=" + type);
-                                }
-                                idx++;
-                            }
-                        } else if (obj != null) {
-                            JSObject f = new JSObject();
-                            f.put("fileName", String.valueOf(obj));
-                            files.put(f);
-                        }
+                        for (JSObject f : parseBp2FileList(obj)) files.put(f);
                         JSObject out = new JSObject();
                         out.put("files", files);
                         Log.d(TAG, "📄 Parsed BP2 files count=" + files.length());
                         call.resolve(out);
                     } catch (Throwable t) {
                         call.reject("Failed to parse BP2 file list: " + t.getMessage());
-                    } finally {
-                        try { LiveEventBus.get(key, Object.class).removeObserver(this); } catch (Throwable ignore) {}
                     }
                 }
-            };
-            LiveEventBus.get(key, Object.class).observeForever(obs);
 
-            // Trigger file list fetch
-            Object helper = getBleHelper();
-            if (helper != null) {
-                int model = activeWellueAddress != null ? modelByAddress.getOrDefault(activeWellueAddress, com.lepu.blepro.objs.Bluetooth.MODEL_BP2) : com.lepu.blepro.objs.Bluetooth.MODEL_BP2;
-                helper.getClass().getMethod("bp2GetFileList", int.class).invoke(helper, model);
-                Log.d(TAG, "📄 bp2GetFileList requested");
+                @Override public void onFailure(String message) {
+                    call.reject(message);
+                }
+            }));
+        } catch (Exception e) {
+            call.reject("Failed to get BP2 file list: " + e.getMessage());
+        }
+    }
+
+    // File list requests for getBp2FileList and syncNewRecords, correlated by model; touched on connHandler only
+    private Bp2FileListRequests bp2FileLists;
+
+    private Bp2FileListRequests bp2FileLists() {
+        if (bp2FileLists == null) {
+            bp2FileLists = new Bp2FileListRequests(connHandler, model -> {
+                Object helper = getBleHelper();
+                if (helper == null) throw new IllegalStateException("BleServiceHelper unavailable");
+                String method = model == com.lepu.blepro.objs.Bluetooth.MODEL_BP2W ? "bp2wGetFileList" : "bp2GetFileList";
+                helper.getClass().getMethod(method, int.class).invoke(helper, model);
+                Log.d(TAG, "📄 " + method + " requested for model " + model);
+            });
+        }
+        return bp2FileLists;
+    }
+
+    // syncNewRecords: names already pulled per device, persisted in wellue_prefs so a nightly sync only reads new files
+    private static final String PREF_BP2_MANIFEST = "bp2_manifest_";
+    private static final long BP2_SYNC_LIST_TIMEOUT_MS = 15000L;
+    private static final long BP2_SYNC_FILE_TIMEOUT_MS = 30000L;
+    private volatile boolean bp2SyncActive = false;
+
+    private static String manifestKey(String mac) {
+        return PREF_BP2_MANIFEST + mac.replace(":", "").toUpperCase();
+    }
+
+    private java.util.Set<String> loadBp2Manifest(String mac) {
+        try {
+            android.content.SharedPreferences sp = getContext().getSharedPreferences("wellue_prefs", Context.MODE_PRIVATE);
+            // getStringSet hands back the live backing set; copy before mutating
+            return new java.util.HashSet<>(sp.getStringSet(manifestKey(mac), java.util.Collections.<String>emptySet()));
+        } catch (Throwable t) {
+            return new java.util.HashSet<>();
+        }
+    }
+
+    private void saveBp2Manifest(String mac, java.util.Set<String> names) {
+        try {
+            android.content.SharedPreferences sp = getContext().getSharedPreferences("wellue_prefs", Context.MODE_PRIVATE);
+            sp.edit().putStringSet(manifestKey(mac), new java.util.HashSet<>(names)).apply();
+        } catch (Throwable ignore) {}
+    }
+
+    /**
+     * One syncNewRecords run: fetch the file list, diff it against the manifest, then hand every new file to
+     * the download scheduler at once so transfers run back-to-back. All callbacks run on the main looper.
+     */
+    private final class Bp2SyncJob {
+        final PluginCall call;
+        final int model;
+        final String mac;
+        final boolean includeContent;
+        final com.getcapacitor.JSArray synced = new com.getcapacitor.JSArray();
+        final com.getcapacitor.JSArray failed = new com.getcapacitor.JSArray();
+        java.util.Set<String> manifest;
+        int deviceFiles = 0;
+        int total = 0;
+        int seq = 0;
+        int outstanding = 0;
+        long bytes = 0L;
+        long startMs;
+        long lastFileEndMs;
+
+        Bp2SyncJob(PluginCall call, int model, String mac, boolean includeContent) {
+            this.call = call;
+            this.model = model;
+            this.mac = mac;
+            this.includeContent = includeContent;
+        }
+
+        void start() {
+            startMs = android.os.SystemClock.uptimeMillis();
+            lastFileEndMs = startMs;
+            // Only a list from this device's link (model) is diffed against its manifest
+            bp2FileLists().await(model, BP2_SYNC_LIST_TIMEOUT_MS, new Bp2FileListRequests.Reply() {
+                @Override public void onList(Object payload) { onFileList(payload); }
+
+                @Override public void onFailure(String message) { fail(message); }
+            });
+            Log.d(TAG, "🔄 syncNewRecords: file list requested for " + mac);
+        }
+
+        private void onFileList(Object obj) {
+            try {
+                java.util.List<JSObject> files = parseBp2FileList(obj);
+                manifest = loadBp2Manifest(mac);
+                deviceFiles = files.size();
+                java.util.List<String> fresh = new java.util.ArrayList<>();
+                for (JSObject f : files) {
+                    String name = f.getString("fileName");
+                    if (name != null && !manifest.contains(name)) fresh.add(name);
+                }
+                total = fresh.size();
+                Log.d(TAG, "🔄 syncNewRecords: " + total + " new of " + deviceFiles + " on device");
+                for (final String name : fresh) {
+                    // Pulled earlier through bp2ReadFile: record it without another transfer
+                    if (bp2Cache().contains(mac, name)) {
+                        markSynced(name);
+                        emitFile(name, 0, true, null, null);
+                        continue;
+                    }
+                    outstanding++;
+                    bp2Downloads().enqueue(mac, model, name, BP2_SYNC_FILE_TIMEOUT_MS, Bp2DownloadScheduler.DEFAULT_MAX_RETRIES,
+                        new Bp2DownloadScheduler.Callback() {
+                            @Override void onComplete(Bp2RecordCache.Record rec) { onFileDone(name, rec, null); }
+
+                            @Override void onError(String message) { onFileDone(name, null, message); }
+                        });
+                }
+                if (outstanding == 0) finish();
+            } catch (Throwable t) {
+                fail("Failed to parse BP2 file list: " + t.getMessage());
+            }
+        }
+
+        private void onFileDone(String name, Bp2RecordCache.Record rec, String error) {
+            int size = rec == null ? 0 : rec.content != null ? rec.content.remaining() : (rec.waveShorts != null ? rec.waveShorts.length * 2 : 0);
+            if (rec != null && size == 0) error = "empty file";
+            if (error == null) {
+                bytes += size;
+                workHandler().post(() -> bp2Cache().put(mac, name, rec));
+                markSynced(name);
             } else {
-                call.reject("BleServiceHelper unavailable");
+                failed.put(name);
+            }
+            emitFile(name, size, false, error, rec);
+            if (--outstanding == 0) finish();
+        }
+
+        private void markSynced(String name) {
+            manifest.add(name);
+            saveBp2Manifest(mac, manifest);
+            synced.put(name);
+        }
+
+        private void emitFile(String name, int size, boolean cached, String error, Bp2RecordCache.Record rec) {
+            long now = android.os.SystemClock.uptimeMillis();
+            // Transfers are pipelined, so a file's time is measured from the end of the previous one
+            long fileMs = now - lastFileEndMs;
+            lastFileEndMs = now;
+            long elapsedMs = now - startMs;
+            JSObject ev = new JSObject();
+            ev.put("address", mac);
+            ev.put("fileName", name);
+            ev.put("seq", ++seq);
+            ev.put("total", total);
+            ev.put("ok", error == null);
+            if (error != null) ev.put("error", error);
+            ev.put("cached", cached);
+            ev.put("bytes", size);
+            ev.put("durationMs", fileMs);
+            ev.put("bytesPerSec", fileMs > 0 ? size * 1000L / fileMs : 0L);
+            ev.put("totalBytes", bytes);
+            ev.put("elapsedMs", elapsedMs);
+            ev.put("avgBytesPerSec", elapsedMs > 0 ? bytes * 1000L / elapsedMs : 0L);
+            if (rec != null) {
+                if (rec.fileType != null) ev.put("fileType", rec.fileType.intValue());
+                if (includeContent && rec.content != null) {
+                    ev.put("fileContent", android.util.Base64.encodeToString(rec.contentBytes(), android.util.Base64.NO_WRAP));
+                }
+            }
+            notifyListeners("bp2SyncFile", ev);
+        }
+
+        private void finish() {
+            bp2SyncActive = false;
+            long elapsedMs = android.os.SystemClock.uptimeMillis() - startMs;
+            JSObject out = new JSObject();
+            out.put("address", mac);
+            out.put("deviceFiles", deviceFiles);
+            out.put("newFiles", total);
+            out.put("synced", synced);
+            out.put("failed", failed);
+            out.put("bytes", bytes);
+            out.put("durationMs", elapsedMs);
+            out.put("bytesPerSec", elapsedMs > 0 ? bytes * 1000L / elapsedMs : 0L);
+            Log.d(TAG, "🔄 syncNewRecords done: " + synced.length() + " synced, " + failed.length() + " failed, " + bytes + " bytes in " + elapsedMs + "ms");
+            call.resolve(out);
+        }
+
+        void fail(String message) {
+            bp2SyncActive = false;
+            call.reject(message);
+        }
+    }
+
+    // Diffs the device file list against the per-device manifest and pulls only unseen files, emitting bp2SyncFile per file
+    @PluginMethod
+    public void syncNewRecords(PluginCall call) {
+        try {
+            if (!ensurePermissions(call)) {
+                pendingAction = "syncNewRecords";
+                Log.d(TAG, "syncNewRecords awaiting permissions...");
+                return;
             }
+            if (!isWellueSDKInitialized) isWellueSDKInitialized = true;
+            String addr = call.getString("address");
+            final String mac = addr != null && !addr.isEmpty() ? addr : state.active();
+            if (mac == null) { call.reject("address is required"); return; }
+            Object helper = getBleHelper();
+            if (helper == null) { call.reject("BleServiceHelper unavailable"); return; }
+            if (bp2SyncActive) { call.reject("A BP2 sync is already running"); return; }
+            bp2SyncActive = true;
+            boolean includeContent = Boolean.TRUE.equals(call.getBoolean("includeContent", false));
+            int model = state.model(mac, com.lepu.blepro.objs.Bluetooth.MODEL_BP2);
+            final Bp2SyncJob job = new Bp2SyncJob(call, model, mac, includeContent);
+            // Observers and timeouts share the main looper so the job needs no locking
+            connHandler.post(() -> {
+                try {
+                    job.start();
+                } catch (Throwable t) {
+                    job.fail("Failed to start BP2 sync: " + t.getMessage());
+                }
+            });
         } catch (Exception e) {
-            call.reject("Failed to get BP2 file list: " + e.getMessage());
+            bp2SyncActive = false;
+            call.reject("Failed to start BP2 sync: " + e.getMessage());
         }
     }
 
+    @PluginMethod
+    public void resetBp2SyncManifest(PluginCall call) {
+        String addr = call.getString("address");
+        String mac = addr != null && !addr.isEmpty() ? addr : state.active();
+        if (mac == null) { call.reject("address is required"); return; }
+        saveBp2Manifest(mac, java.util.Collections.<String>emptySet());
+        call.resolve();
+    }
+
     @PluginMethod
     public void readBp2File(PluginCall call) {
         try {
@@ -1778,42 +2763,499 @@ public class WelluePlugin extends Plugin {
             if (!ensurePermissions(call)) return;
             if (!isWellueSDKInitialized) isWellueSDKInitialized = true;
 
-            final String key = com.lepu.blepro.event.InterfaceEvent.BP2.EventBp2ReadFileComplete;
-            Observer<Object> obs = new Observer<Object>() {
-                @Override public void onChanged(Object obj) {
-                    try {
-                        byte[] content = null;
-                        Integer type = null;
-                        if (obj != null) {
-                            try { Object v = obj.getClass().getMethod("getContent").invoke(obj); if (v instanceof byte[]) content = (byte[]) v; } catch (Throwable ignore) {}
-                            try { Object t = obj.getClass().getMethod("getType").invoke(obj); if (t instanceof Integer) type = (Integer) t; } catch (Throwable ignore) {}
-                        }
+            String active = state.active();
+            String lane = active != null ? active : "";
+            int model = state.model(lane, com.lepu.blepro.objs.Bluetooth.MODEL_BP2);
+            bp2Downloads().enqueue(lane, model, name, Bp2DownloadScheduler.DEFAULT_TIMEOUT_MS, Bp2DownloadScheduler.DEFAULT_MAX_RETRIES,
+                new Bp2DownloadScheduler.Callback() {
+                    @Override void onComplete(Bp2RecordCache.Record rec) {
                         JSObject out = new JSObject();
                         out.put("name", name);
-                        if (type != null) out.put("type", type);
-                        if (content != null) out.put("base64", android.util.Base64.encodeToString(content, android.util.Base64.NO_WRAP));
+                        if (rec.fileType != null) out.put("type", rec.fileType.intValue());
+                        if (rec.content != null) out.put("base64", android.util.Base64.encodeToString(rec.contentBytes(), android.util.Base64.NO_WRAP));
                         call.resolve(out);
-                    } catch (Throwable t) {
-                        call.reject("Failed to parse file: " + t.getMessage());
-                    } finally {
-                        try { LiveEventBus.get(key, Object.class).removeObserver(this); } catch (Throwable ignore) {}
                     }
-                }
-            };
-            LiveEventBus.get(key, Object.class).observeForever(obs);
 
-            Object helper = getBleHelper();
-            if (helper != null) {
-                helper.getClass().getMethod("bp2ReadFile", int.class, String.class).invoke(helper, com.lepu.blepro.objs.Bluetooth.MODEL_BP2, name);
-                Log.d(TAG, "📥 bp2ReadFile requested: " + name);
-            } else {
-                call.reject("BleServiceHelper unavailable");
-            }
+                    @Override void onError(String message) {
+                        call.reject("Failed to read BP2 file: " + message);
+                    }
+                });
         } catch (Exception e) {
             call.reject("Failed to read BP2 file: " + e.getMessage());
         }
     }
 
+    // bp2ReadFile streaming: chunks are base64 slices of the file (or Int16LE waveform) posted one per handler turn
+    private static final int BP2_CHUNK_DEFAULT = 16 * 1024;
+    private static final int BP2_CHUNK_MIN = 1024;
+    private static final int BP2_CHUNK_MAX = 256 * 1024;
+
+    private static int clampChunkSize(int requested) {
+        int size = Math.max(BP2_CHUNK_MIN, Math.min(BP2_CHUNK_MAX, requested));
+        return size & ~1; // keep Int16 samples whole
+    }
+
+    private void emitBp2FileProgress(String fileName, String phase, int percent) {
+        JSObject ev = new JSObject();
+        ev.put("fileName", fileName);
+        ev.put("phase", phase);
+        ev.put("percent", percent);
+        notifyListeners("bp2FileProgress", ev);
+    }
+
+    // All BP2 transfers go through one scheduler: one observer, one transfer per device, timeouts and retries
+    private Bp2DownloadScheduler bp2Downloads;
+    private static final String[] BP2_READ_COMPLETE_KEYS = {
+        com.lepu.blepro.event.InterfaceEvent.BP2.EventBp2ReadFileComplete, com.lepu.blepro.event.InterfaceEvent.BP2W.EventBp2wReadFileComplete
+    };
+    private static final String[] BP2_READ_PROGRESS_KEYS = {
+        com.lepu.blepro.event.InterfaceEvent.BP2.EventBp2ReadingFileProgress, com.lepu.blepro.event.InterfaceEvent.BP2W.EventBp2wReadingFileProgress
+    };
+
+    private synchronized Bp2DownloadScheduler bp2Downloads() {
+        if (bp2Downloads == null) {
+            bp2Downloads = new Bp2DownloadScheduler(Bp2DownloadScheduler.loop(connHandler), new Bp2DownloadScheduler.Transport() {
+                private Observer<Object> completeObs;
+                private Observer<Object> progressObs;
+
+                @Override public void requestRead(String mac, int model, String fileName) throws Exception {
+                    requestBp2Read(model, fileName);
+                }
+
+                // BP2W links answer on their own keys; both families feed the one scheduler
+                @Override public void observe(Bp2DownloadScheduler.Replies replies) {
+                    completeObs = replies::onComplete;
+                    progressObs = replies::onProgress;
+                    for (String key : BP2_READ_COMPLETE_KEYS) LiveEventBus.get(key, Object.class).observeForever(completeObs);
+                    for (String key : BP2_READ_PROGRESS_KEYS) LiveEventBus.get(key, Object.class).observeForever(progressObs);
+                }
+
+                @Override public void stopObserving() {
+                    if (completeObs == null) return;
+                    for (String key : BP2_READ_COMPLETE_KEYS) {
+                        try { LiveEventBus.get(key, Object.class).removeObserver(completeObs); } catch (Throwable ignore) {}
+                    }
+                    for (String key : BP2_READ_PROGRESS_KEYS) {
+                        try { LiveEventBus.get(key, Object.class).removeObserver(progressObs); } catch (Throwable ignore) {}
+                    }
+                    completeObs = null;
+                    progressObs = null;
+                }
+
+                @Override public Bp2RecordCache.Record decode(Object payload) {
+                    return decodeBp2ReadComplete(payload);
+                }
+
+                @Override public Integer progress(Object payload) {
+                    Object v = payload;
+                    if (v != null && !(v instanceof Number)) {
+                        Object inner = rtAccessors.first(v, RtAccessorCache.UNWRAP);
+                        if (inner != null) v = inner;
+                    }
+                    return v instanceof Number ? ((Number) v).intValue() : null;
+                }
+            });
+        }
+        return bp2Downloads;
+    }
+
+    // Read by name, falling back to the index from the last file list; BP2W has its own read call
+    private void requestBp2Read(int model, String fileName) throws Exception {
+        Object helper = getBleHelper();
+        if (helper == null) throw new IllegalStateException("BleServiceHelper unavailable");
+        String method = model == com.lepu.blepro.objs.Bluetooth.MODEL_BP2W ? "bp2wReadFile" : "bp2ReadFile";
+        try {
+            helper.getClass().getMethod(method, int.class, String.class).invoke(helper, model, fileName);
+            Log.d(TAG, "📥 " + method + " requested: " + fileName);
+        } catch (Throwable primary) {
+            Log.w(TAG, method + "(name) failed, trying index fallback", primary);
+            Integer idx = state.fileIndex(fileName);
+            if (idx == null) throw new IllegalStateException("No index mapping for fileName=" + fileName);
+            helper.getClass().getMethod(method, int.class, int.class).invoke(helper, model, idx.intValue());
+            Log.d(TAG, "📥 " + method + " requested by index: " + idx);
+        }
+    }
+
+    @PluginMethod
+    public void getBp2DownloadStats(PluginCall call) {
+        final Bp2DownloadScheduler scheduler = bp2Downloads();
+        connHandler.post(() -> {
+            try {
+                call.resolve(JSObject.fromJSONObject(scheduler.stats()));
+            } catch (Throwable t) {
+                call.reject("Failed to read download stats: " + t.getMessage());
+            }
+        });
+    }
+
+    private void streamBp2File(final PluginCall call, final String fileName, final Bp2RecordCache.Record rec,
+                               final int chunkSize, final JSObject meta) {
+        final String kind;
+        final ByteBuffer src;
+        if (rec.content != null) {
+            kind = "content";
+            src = rec.content.duplicate();
+        } else if (rec.wave != null) {
+            kind = "waveform";
+            src = rec.wave.duplicate();
+        } else if (rec.waveShorts != null) {
+            kind = "waveform";
+            byte[] w = new byte[rec.waveShorts.length * 2];
+            Bp2Codec.encodeInt16Le(rec.waveShorts, rec.waveShorts.length, w);
+            src = ByteBuffer.wrap(w);
+        } else if (rec.archive != null) {
+            // Cached waveform-only entry: ship the EcgArchive as stored rather than decoding the whole record
+            kind = "archive";
+            src = rec.archive.duplicate();
+        } else {
+            call.reject("File read completed without content");
+            return;
+        }
+        final int base = src.position();
+        final int total = src.remaining();
+        final int chunks = Math.max(1, (total + chunkSize - 1) / chunkSize);
+        final android.os.Handler h = workHandler();
+        h.post(new Runnable() {
+            int seq = 0;
+            // Cached records are mapped files; copy each slice out instead of materialising the whole file
+            final byte[] slice = new byte[Math.min(chunkSize, Math.max(1, total))];
+            @Override public void run() {
+                try {
+                    int off = seq * chunkSize;
+                    int len = Math.min(chunkSize, total - off);
+                    boolean last = seq == chunks - 1;
+                    src.position(base + off);
+                    src.get(slice, 0, len);
+                    JSObject chunk = new JSObject();
+                    chunk.put("fileName", fileName);
+                    chunk.put("kind", kind);
+                    chunk.put("seq", seq);
+                    chunk.put("offset", off);
+                    chunk.put("length", len);
+                    chunk.put("total", total);
+                    chunk.put("last", last);
+                    chunk.put("data", android.util.Base64.encodeToString(slice, 0, len, android.util.Base64.NO_WRAP));
+                    notifyListeners("bp2FileChunk", chunk);
+
+                    emitBp2FileProgress(fileName, "deliver", (int) ((off + len) * 100L / Math.max(1, total)));
+
+                    if (last) {
+                        meta.put("streamed", true);
+                        meta.put("kind", kind);
+                        meta.put("length", total);
+                        meta.put("chunks", chunks);
+                        meta.put("chunkSize", chunkSize);
+                        call.resolve(meta);
+                        return;
+                    }
+                    seq++;
+                    // One chunk per turn so RT decode work can interleave with delivery
+                    h.post(this);
+                } catch (Throwable t) {
+                    call.reject("Failed to stream file: " + t.getMessage());
+                }
+            }
+        });
+    }
+
+    // bp2ReadFile record cache: downloaded files are kept in app storage keyed by MAC + file name
+    private static final long BP2_CACHE_MAX_BYTES = 64L * 1024 * 1024;
+    private Bp2RecordCache bp2Cache;
+
+    private synchronized Bp2RecordCache bp2Cache() {
+        if (bp2Cache == null) {
+            bp2Cache = new Bp2RecordCache(new java.io.File(getContext().getFilesDir(), "bp2_records"), BP2_CACHE_MAX_BYTES);
+        }
+        return bp2Cache;
+    }
+
+    private void deliverBp2File(PluginCall call, String fileName, Bp2RecordCache.Record rec, boolean stream, int chunkSize, boolean cached) {
+        JSObject out = new JSObject();
+        if (rec.fileType != null) out.put("fileType", rec.fileType.intValue());
+        out.put("cached", cached);
+        if (stream) {
+            // Metadata resolves after the last chunk; no full base64 or boxed waveform is built
+            if (rec.sampleRate != null) out.put("sampleRate", rec.sampleRate.intValue());
+            if (rec.recordingTimeSec != null) out.put("recordingTimeSec", rec.recordingTimeSec.intValue());
+            if (rec.measureTimeSec != null) out.put("measureTimeSec", rec.measureTimeSec.intValue());
+            if (rec.diagnosis != null) out.put("diagnosis", rec.diagnosis);
+            if (rec.hasWave()) out.put("mvPerCount", 0.003098);
+            streamBp2File(call, fileName, rec, chunkSize, out);
+            return;
+        }
+        short[] waveShorts = rec.waveShorts();
+        if (rec.content != null) {
+            byte[] content = rec.contentBytes();
+            out.put("fileContent", android.util.Base64.encodeToString(content, android.util.Base64.NO_WRAP));
+            out.put("length", content.length);
+            // Add a short hex preview for debugging/parsing
+            int previewLen = Math.min(64, content.length);
+            StringBuilder sb = new StringBuilder(previewLen * 2);
+            for (int i = 0; i < previewLen; i++) {
+                sb.append(String.format("%02X", content[i] & 0xFF));
+            }
+            out.put("hexPreview", sb.toString());
+        }
+        // Include parsed ECG metadata when available
+        if (rec.sampleRate != null) out.put("sampleRate", rec.sampleRate.intValue());
+        if (rec.recordingTimeSec != null) out.put("recordingTimeSec", rec.recordingTimeSec.intValue());
+        if (rec.measureTimeSec != null) out.put("measureTimeSec", rec.measureTimeSec.intValue());
+        if (rec.diagnosis != null) out.put("diagnosis", rec.diagnosis);
+
+        // If we have waveform data but no sample rate, try to estimate
+        if (waveShorts != null && waveShorts.length > 0 && rec.sampleRate == null) {
+            // Common ECG sample rates: 125Hz, 250Hz, 500Hz, 1000Hz
+            // Try to estimate based on typical ECG recording durations
+            int[] commonRates = {125, 250, 500, 1000};
+            for (int rate : commonRates) {
+                int estimatedDuration = waveShorts.length / rate;
+                // If duration is reasonable (between 10 seconds and 5 minutes)
+                if (estimatedDuration >= 10 && estimatedDuration <= 300) {
+                    Log.d(TAG, "🔍 DEBUG: Estimated sample rate: " + rate + " Hz (duration: " + estimatedDuration + "s)");
+                    out.put("sampleRate", rate);
+                    out.put("recordingTimeSec", estimatedDuration);
+                    break;
+                }
+            }
+        }
+
+        // Return raw counts as array (small enough for ~30s @125Hz), or a display envelope when displayWidth is given.
+        // format 'archive' ships the full waveform as a compact EcgArchive (base64) instead of the counts array.
+        if (waveShorts != null) {
+            Integer displayWidth = call.getInt("displayWidth");
+            boolean archive = "archive".equalsIgnoreCase(call.getString("format", "counts"));
+            if (displayWidth != null && displayWidth > 0) {
+                putDecimatedWaveform(out, waveShorts, displayWidth, call.getString("decimation", "minmax"));
+            } else if (!archive) {
+                com.getcapacitor.JSArray counts = new com.getcapacitor.JSArray();
+                for (short s : waveShorts) counts.put((int) s);
+                out.put("waveformCounts", counts);
+            }
+            if (archive) {
+                byte[] a = rec.archiveBytes();
+                out.put("waveformArchive", android.util.Base64.encodeToString(a, android.util.Base64.NO_WRAP));
+                out.put("archiveBytes", a.length);
+                out.put("sampleCount", waveShorts.length);
+            }
+            out.put("mvPerCount", 0.003098);
+        }
+        call.resolve(out);
+    }
+
+    // Whole-record preview: the full waveform spans displayWidth px, so buckets = width
+    private static void putDecimatedWaveform(JSObject out, short[] waveShorts, int displayWidth, String mode) {
+        int n = waveShorts.length;
+        float[] src = new float[n];
+        for (int i = 0; i < n; i++) src[i] = waveShorts[i];
+        com.getcapacitor.JSArray counts = new com.getcapacitor.JSArray();
+        int buckets = EcgDecimator.bucketsFor(n, displayWidth, n);
+        if ("lttb".equalsIgnoreCase(mode)) {
+            int[] idx = new int[n];
+            int m = EcgDecimator.lttb(src, 0, n, buckets, idx);
+            com.getcapacitor.JSArray indices = new com.getcapacitor.JSArray();
+            for (int i = 0; i < m; i++) {
+                counts.put((int) waveShorts[idx[i]]);
+                indices.put(idx[i]);
+            }
+            out.put("waveformIndices", indices);
+            out.put("decimation", "lttb");
+        } else {
+            float[] dst = new float[n];
+            int m = EcgDecimator.minMax(src, 0, n, buckets, dst);
+            for (int i = 0; i < m; i++) counts.put((int) dst[i]);
+            out.put("decimation", "minmax");
+        }
+        out.put("waveformCounts", counts);
+        out.put("sourceSamples", n);
+        out.put("displayWidth", displayWidth);
+    }
+
+    @PluginMethod
+    public void getBp2CacheStats(PluginCall call) {
+        try {
+            call.resolve(JSObject.fromJSONObject(bp2Cache().stats()));
+        } catch (Throwable t) {
+            call.reject("Failed to read cache stats: " + t.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void clearBp2Cache(PluginCall call) {
+        try {
+            bp2Cache().clear();
+            call.resolve();
+        } catch (Throwable t) {
+            call.reject("Failed to clear cache: " + t.getMessage());
+        }
+    }
+
+    /** Pulls content, waveform and ECG metadata out of an EventBp2ReadFileComplete payload. */
+    private Bp2RecordCache.Record decodeBp2ReadComplete(Object obj) {
+        byte[] content = null;
+        Integer type = null;
+        String eventFileName = null;
+        // Optional parsed fields (when SDK exposes EgcFile APIs)
+        Integer samplingRate = null;
+        Integer recordingTimeSec = null;
+        Integer measureTimeSec = null;
+        String diagnosis = null;
+        short[] waveShorts = null;
+        Object payload = obj;
+        // Unwrap common wrappers (InterfaceEvent, Pair, etc.)
+        if (payload != null) {
+            String[] unwrapMethods = new String[]{
+                    "getObj","getData","getPayload","getSecond","component2","getFile","getResponse"
+            };
+            for (String um : unwrapMethods) {
+                try {
+                    java.lang.reflect.Method m = payload.getClass().getMethod(um);
+                    Object v = m.invoke(payload);
+                    if (v != null) { payload = v; break; }
+                } catch (Throwable ignore) {}
+            }
+        }
+        if (payload != null) {
+            try { Object v = payload.getClass().getMethod("getContent").invoke(payload); if (v instanceof byte[]) content = (byte[]) v; } catch (Throwable ignore) {}
+            if (content == null) {
+                String[] contentMethods = new String[]{"getBytes","getData","bytes","content","getRaw"};
+                for (String cm : contentMethods) {
+                    try {
+                        java.lang.reflect.Method m = payload.getClass().getMethod(cm);
+                        Object v = m.invoke(payload);
+                        if (v instanceof byte[]) { content = (byte[]) v; break; }
+                    } catch (Throwable ignore) {}
+                }
+            }
+            // Type candidates
+            String[] typeMethods = new String[]{"getType","getFileType","getDataType","getFormat","type"};
+            for (String mn : typeMethods) {
+                try { Object t = payload.getClass().getMethod(mn).invoke(payload); if (t instanceof Integer) { type = (Integer) t; break; } } catch (Throwable ignore) {}
+            }
+            // Name candidates
+            try { Object n = payload.getClass().getMethod("getFileName").invoke(payload); if (n != null) eventFileName = String.valueOf(n); } catch (Throwable ignore) {}
+            if (eventFileName == null) {
+                try { Object n = payload.getClass().getMethod("getName").invoke(payload); if (n != null) eventFileName = String.valueOf(n); } catch (Throwable ignore) {}
+            }
+            // Try to parse EgcFile-style metadata and waveform
+            try { Object v = payload.getClass().getMethod("getSamplingRate").invoke(payload); if (v instanceof Number) samplingRate = ((Number) v).intValue(); } catch (Throwable ignore) {}
+            try { Object v = payload.getClass().getMethod("getSampleRate").invoke(payload); if (v instanceof Number) samplingRate = ((Number) v).intValue(); } catch (Throwable ignore) {}
+            try { Object v = payload.getClass().getMethod("getRecordingTime").invoke(payload); if (v instanceof Number) recordingTimeSec = ((Number) v).intValue(); } catch (Throwable ignore) {}
+            try { Object v = payload.getClass().getMethod("getMeasureTime").invoke(payload); if (v instanceof Number) measureTimeSec = ((Number) v).intValue(); } catch (Throwable ignore) {}
+            try { Object v = payload.getClass().getMethod("getDiagnosis").invoke(payload); if (v != null) diagnosis = String.valueOf(v); } catch (Throwable ignore) {}
+            
+            // Try additional method names that might be used
+            if (samplingRate == null) {
+                String[] rateMethods = {"getRate", "getFrequency", "getHz", "getSamplesPerSecond"};
+                for (String rm : rateMethods) {
+                    try { Object v = payload.getClass().getMethod(rm).invoke(payload); if (v instanceof Number) { samplingRate = ((Number) v).intValue(); break; } } catch (Throwable ignore) {}
+                }
+            }
+            
+            if (recordingTimeSec == null) {
+                String[] timeMethods = {"getDuration", "getLength", "getSeconds", "getTime", "getRecordTime"};
+                for (String tm : timeMethods) {
+                    try { Object v = payload.getClass().getMethod(tm).invoke(payload); if (v instanceof Number) { recordingTimeSec = ((Number) v).intValue(); break; } } catch (Throwable ignore) {}
+                }
+            }
+            
+            if (measureTimeSec == null) {
+                String[] measureMethods = {"getMeasureDuration", "getMeasureLength", "getMeasureSeconds"};
+                for (String mm : measureMethods) {
+                    try { Object v = payload.getClass().getMethod(mm).invoke(payload); if (v instanceof Number) { measureTimeSec = ((Number) v).intValue(); break; } } catch (Throwable ignore) {}
+                }
+            }
+            
+            if (diagnosis == null) {
+                String[] diagMethods = {"getResult", "getConclusion", "getAnalysis", "getStatus"};
+                for (String dm : diagMethods) {
+                    try { Object v = payload.getClass().getMethod(dm).invoke(payload); if (v != null) { diagnosis = String.valueOf(v); break; } } catch (Throwable ignore) {}
+                }
+            }
+            
+            // wave shorts - expanded method names
+            String[] waveNames = {"getWaveShortData","getEcgShortData","getShorts","getEcgShorts","getWaveData","getEcgData","getData","getWaveform","getEcgWaveform","getRawData","getSamples"};
+            for (String wn : waveNames) {
+                try {
+                    Object v = payload.getClass().getMethod(wn).invoke(payload);
+                    if (v instanceof short[]) { waveShorts = (short[]) v; break; }
+                    if (v instanceof int[]) { int[] arr = (int[]) v; short[] tmp = new short[arr.length]; for (int i=0;i<arr.length;i++) tmp[i]=(short)arr[i]; waveShorts = tmp; break; }
+                    if (v instanceof float[]) { float[] arr = (float[]) v; short[] tmp = new short[arr.length]; for (int i=0;i<arr.length;i++) tmp[i]=(short)arr[i]; waveShorts = tmp; break; }
+                    if (v instanceof double[]) { double[] arr = (double[]) v; short[] tmp = new short[arr.length]; for (int i=0;i<arr.length;i++) tmp[i]=(short)arr[i]; waveShorts = tmp; break; }
+                } catch (Throwable ignore) {}
+            }
+        }
+        Log.d(TAG, "📦 Read complete for file='" + eventFileName + "' type=" + type + " bytes=" + (content!=null?content.length:0));
+        
+        // EXTENSIVE DEBUGGING: Log everything we received
+        if (diagLevel != DIAG_OFF) Log.d(TAG, "🔍 DEBUG: Full payload object class=" + (payload!=null?payload.getClass().getName():"null"));
+        if (payload != null && diagLevel != DIAG_OFF) {
+            Log.d(TAG, "🔍 DEBUG: Available methods on payload:");
+            for (java.lang.reflect.Method m : payload.getClass().getMethods()) {
+                if (m.getParameterCount() == 0 && !m.getName().equals("getClass") && !m.getName().equals("hashCode")) {
+                    try {
+                        Object result = m.invoke(payload);
+                        Log.d(TAG, "  📋 " + m.getName() + "() -> " + result + " (type: " + (result != null ? result.getClass().getSimpleName() : "null") + ")");
+                    } catch (Throwable e) {
+                        Log.d(TAG, "  ❌ " + m.getName() + "() -> Error: " + e.getMessage());
+                    }
+                }
+            }
+            
+            Log.d(TAG, "🔍 DEBUG: Available fields on payload:");
+            for (java.lang.reflect.Field f : payload.getClass().getDeclaredFields()) {
+                try {
+                    f.setAccessible(true);
+                    Object v = f.get(obj);
+                    Log.d(TAG, "  # " + f.getName() + ": " + (v != null ? v.getClass().getSimpleName() : "null") + " = " + v);
+                } catch (Throwable e) {
+                    Log.d(TAG, "  ❌ " + f.getName() + " -> Error: " + e.getMessage());
+                }
+            }
+            
+            // SPECIFIC DEBUG: Try to find ECG metadata methods
+            Log.d(TAG, "🔍 DEBUG: Trying specific ECG metadata extraction:");
+            String[] ecgMethods = {"getSamplingRate", "getSampleRate", "getRate", "getFrequency", "getHz", "getSamplesPerSecond", "getRecordingTime", "getDuration", "getLength", "getSeconds", "getTime", "getRecordTime", "getMeasureTime", "getMeasureDuration", "getDiagnosis", "getResult", "getConclusion", "getAnalysis", "getStatus"};
+            for (String methodName : ecgMethods) {
+                try {
+                    java.lang.reflect.Method m = payload.getClass().getMethod(methodName);
+                    Object result = m.invoke(payload);
+                    Log.d(TAG, "  🎯 " + methodName + "() -> " + result + " (type: " + (result != null ? result.getClass().getSimpleName() : "null") + ")");
+                } catch (Throwable e) {
+                    Log.d(TAG, "  ❌ " + methodName + "() -> Not found or error: " + e.getMessage());
+                }
+            }
+        }
+        
+        Log.d(TAG, "🔍 DEBUG: Extracted metadata - type=" + type + ", sampleRate=" + samplingRate + ", recordingTime=" + recordingTimeSec + ", measureTime=" + measureTimeSec + ", diagnosis=" + diagnosis + ", waveShorts=" + (waveShorts != null ? waveShorts.length : "null"));
+        
+        // DEBUG: Log waveform data details
+        if (waveShorts != null && waveShorts.length >= 5 && diagLevel != DIAG_OFF) {
+            Log.d(TAG, "🔍 DEBUG: Waveform data details:");
+            Log.d(TAG, "  📊 Length: " + waveShorts.length);
+            Log.d(TAG, "  📊 First 5 values: " + waveShorts[0] + ", " + waveShorts[1] + ", " + waveShorts[2] + ", " + waveShorts[3] + ", " + waveShorts[4]);
+            Log.d(TAG, "  📊 Last 5 values: " + waveShorts[waveShorts.length-5] + ", " + waveShorts[waveShorts.length-4] + ", " + waveShorts[waveShorts.length-3] + ", " + waveShorts[waveShorts.length-2] + ", " + waveShorts[waveShorts.length-1]);
+            
+            // Calculate some basic stats
+            int min = waveShorts[0], max = waveShorts[0];
+            for (short s : waveShorts) {
+                if (s < min) min = s;
+                if (s > max) max = s;
+            }
+            Log.d(TAG, "  📊 Min value: " + min + ", Max value: " + max + ", Range: " + (max - min));
+        }
+
+        Bp2RecordCache.Record rec = new Bp2RecordCache.Record();
+        rec.fileName = eventFileName;
+        rec.content = content != null ? ByteBuffer.wrap(content) : null;
+        rec.waveShorts = waveShorts;
+        rec.fileType = type;
+        rec.sampleRate = samplingRate;
+        rec.recordingTimeSec = recordingTimeSec;
+        rec.measureTimeSec = measureTimeSec;
+        rec.diagnosis = diagnosis;
+        return rec;
+    }
+
     // Aligned with TS bridge: expects { address, fileName } and returns { fileType, fileContent }
     @PluginMethod
     public void bp2ReadFile(PluginCall call) {
@@ -1822,249 +3264,46 @@ public class WelluePlugin extends Plugin {
             if (fileName == null || fileName.isEmpty()) { call.reject("fileName required"); return; }
             if (!ensurePermissions(call)) { pendingAction = "bp2ReadFile"; pendingFileName = fileName; return; }
             if (!isWellueSDKInitialized) isWellueSDKInitialized = true;
+            // Streaming mode: deliver the file as bp2FileChunk events instead of one large resolve payload
+            final boolean stream = Boolean.TRUE.equals(call.getBoolean("stream", false));
+            final int chunkSize = clampChunkSize(call.getInt("chunkSize", BP2_CHUNK_DEFAULT));
+            // Records never change once written, so a cached copy is served without touching BLE
+            final boolean useCache = !Boolean.FALSE.equals(call.getBoolean("useCache", true));
+            String addr = call.getString("address");
+            final String cacheMac = addr != null && !addr.isEmpty() ? addr : state.active();
+            if (useCache && cacheMac != null) {
+                Bp2RecordCache.Record hit = bp2Cache().get(cacheMac, fileName);
+                if (hit != null) {
+                    Log.d(TAG, "📦 bp2ReadFile cache hit: " + fileName);
+                    deliverBp2File(call, fileName, hit, stream, chunkSize, true);
+                    return;
+                }
+            }
+            final String lane = cacheMac != null ? cacheMac : "";
+            int model = state.model(lane, com.lepu.blepro.objs.Bluetooth.MODEL_BP2);
+            int timeoutMs = call.getInt("timeoutMs", (int) Bp2DownloadScheduler.DEFAULT_TIMEOUT_MS);
+            int maxRetries = call.getInt("maxRetries", Bp2DownloadScheduler.DEFAULT_MAX_RETRIES);
+            bp2Downloads().enqueue(lane, model, fileName, timeoutMs, maxRetries, new Bp2DownloadScheduler.Callback() {
+                @Override void onProgress(String name, int percent) {
+                    if (stream) emitBp2FileProgress(name, "transfer", percent);
+                }
 
-            final String key = com.lepu.blepro.event.InterfaceEvent.BP2.EventBp2ReadFileComplete;
-            Observer<Object> obs = new Observer<Object>() {
-                @Override public void onChanged(Object obj) {
+                @Override void onComplete(Bp2RecordCache.Record rec) {
                     try {
-                        byte[] content = null;
-                        Integer type = null;
-                        String eventFileName = null;
-                        // Optional parsed fields (when SDK exposes EgcFile APIs)
-                        Integer samplingRate = null;
-                        Integer recordingTimeSec = null;
-                        Integer measureTimeSec = null;
-                        String diagnosis = null;
-                        short[] waveShorts = null;
-                        Object payload = obj;
-                        // Unwrap common wrappers (InterfaceEvent, Pair, etc.)
-                        if (payload != null) {
-                            String[] unwrapMethods = new String[]{
-                                    "getObj","getData","getPayload","getSecond","component2","getFile","getResponse"
-                            };
-                            for (String um : unwrapMethods) {
-                                try {
-                                    java.lang.reflect.Method m = payload.getClass().getMethod(um);
-                                    Object v = m.invoke(payload);
-                                    if (v != null) { payload = v; break; }
-                                } catch (Throwable ignore) {}
-                            }
-                        }
-                        if (payload != null) {
-                            try { Object v = payload.getClass().getMethod("getContent").invoke(payload); if (v instanceof byte[]) content = (byte[]) v; } catch (Throwable ignore) {}
-                            if (content == null) {
-                                String[] contentMethods = new String[]{"getBytes","getData","bytes","content","getRaw"};
-                                for (String cm : contentMethods) {
-                                    try {
-                                        java.lang.reflect.Method m = payload.getClass().getMethod(cm);
-                                        Object v = m.invoke(payload);
-                                        if (v instanceof byte[]) { content = (byte[]) v; break; }
-                                    } catch (Throwable ignore) {}
-                                }
-                            }
-                            // Type candidates
-                            String[] typeMethods = new String[]{"getType","getFileType","getDataType","getFormat","type"};
-                            for (String mn : typeMethods) {
-                                try { Object t = payload.getClass().getMethod(mn).invoke(payload); if (t instanceof Integer) { type = (Integer) t; break; } } catch (Throwable ignore) {}
-                            }
-                            // Name candidates
-                            try { Object n = payload.getClass().getMethod("getFileName").invoke(payload); if (n != null) eventFileName = String.valueOf(n); } catch (Throwable ignore) {}
-                            if (eventFileName == null) {
-                                try { Object n = payload.getClass().getMethod("getName").invoke(payload); if (n != null) eventFileName = String.valueOf(n); } catch (Throwable ignore) {}
-                            }
-                            // Try to parse EgcFile-style metadata and waveform
-                            try { Object v = payload.getClass().getMethod("getSamplingRate").invoke(payload); if (v instanceof Number) samplingRate = ((Number) v).intValue(); } catch (Throwable ignore) {}
-                            try { Object v = payload.getClass().getMethod("getSampleRate").invoke(payload); if (v instanceof Number) samplingRate = ((Number) v).intValue(); } catch (Throwable ignore) {}
-                            try { Object v = payload.getClass().getMethod("getRecordingTime").invoke(payload); if (v instanceof Number) recordingTimeSec = ((Number) v).intValue(); } catch (Throwable ignore) {}
-                            try { Object v = payload.getClass().getMethod("getMeasureTime").invoke(payload); if (v instanceof Number) measureTimeSec = ((Number) v).intValue(); } catch (Throwable ignore) {}
-                            try { Object v = payload.getClass().getMethod("getDiagnosis").invoke(payload); if (v != null) diagnosis = String.valueOf(v); } catch (Throwable ignore) {}
-                            
-                            // Try additional method names that might be used
-                            if (samplingRate == null) {
-                                String[] rateMethods = {"getRate", "getFrequency", "getHz", "getSamplesPerSecond"};
-                                for (String rm : rateMethods) {
-                                    try { Object v = payload.getClass().getMethod(rm).invoke(payload); if (v instanceof Number) { samplingRate = ((Number) v).intValue(); break; } } catch (Throwable ignore) {}
-                                }
-                            }
-                            
-                            if (recordingTimeSec == null) {
-                                String[] timeMethods = {"getDuration", "getLength", "getSeconds", "getTime", "getRecordTime"};
-                                for (String tm : timeMethods) {
-                                    try { Object v = payload.getClass().getMethod(tm).invoke(payload); if (v instanceof Number) { recordingTimeSec = ((Number) v).intValue(); break; } } catch (Throwable ignore) {}
-                                }
-                            }
-                            
-                            if (measureTimeSec == null) {
-                                String[] measureMethods = {"getMeasureDuration", "getMeasureLength", "getMeasureSeconds"};
-                                for (String mm : measureMethods) {
-                                    try { Object v = payload.getClass().getMethod(mm).invoke(payload); if (v instanceof Number) { measureTimeSec = ((Number) v).intValue(); break; } } catch (Throwable ignore) {}
-                                }
-                            }
-                            
-                            if (diagnosis == null) {
-                                String[] diagMethods = {"getResult", "getConclusion", "getAnalysis", "getStatus"};
-                                for (String dm : diagMethods) {
-                                    try { Object v = payload.getClass().getMethod(dm).invoke(payload); if (v != null) { diagnosis = String.valueOf(v); break; } } catch (Throwable ignore) {}
-                                }
-                            }
-                            
-                            // wave shorts - expanded method names
-                            String[] waveNames = {"getWaveShortData","getEcgShortData","getShorts","getEcgShorts","getWaveData","getEcgData","getData","getWaveform","getEcgWaveform","getRawData","getSamples"};
-                            for (String wn : waveNames) {
-                                try {
-                                    Object v = payload.getClass().getMethod(wn).invoke(payload);
-                                    if (v instanceof short[]) { waveShorts = (short[]) v; break; }
-                                    if (v instanceof int[]) { int[] arr = (int[]) v; short[] tmp = new short[arr.length]; for (int i=0;i<arr.length;i++) tmp[i]=(short)arr[i]; waveShorts = tmp; break; }
-                                    if (v instanceof float[]) { float[] arr = (float[]) v; short[] tmp = new short[arr.length]; for (int i=0;i<arr.length;i++) tmp[i]=(short)arr[i]; waveShorts = tmp; break; }
-                                    if (v instanceof double[]) { double[] arr = (double[]) v; short[] tmp = new short[arr.length]; for (int i=0;i<arr.length;i++) tmp[i]=(short)arr[i]; waveShorts = tmp; break; }
-                                } catch (Throwable ignore) {}
-                            }
-                        }
-                        Log.d(TAG, "📦 Read complete for file='" + eventFileName + "' req='" + fileName + "' type=" + type + " bytes=" + (content!=null?content.length:0));
-                        
-                        // EXTENSIVE DEBUGGING: Log everything we received
-                        Log.d(TAG, "🔍 DEBUG: Full payload object class=" + (payload!=null?payload.getClass().getName():"null"));
-                        if (payload != null) {
-                            Log.d(TAG, "🔍 DEBUG: Available methods on payload:");
-                            for (java.lang.reflect.Method m : payload.getClass().getMethods()) {
-                                if (m.getParameterCount() == 0 && !m.getName().equals("getClass") && !m.getName().equals("hashCode")) {
-                                    try {
-                                        Object result = m.invoke(payload);
-                                        Log.d(TAG, "  📋 " + m.getName() + "() -> " + result + " (type: " + (result != null ? result.getClass().getSimpleName() : "null") + ")");
-                                    } catch (Throwable e) {
-                                        Log.d(TAG, "  ❌ " + m.getName() + "() -> Error: " + e.getMessage());
-                                    }
-                                }
-                            }
-                            
-                            Log.d(TAG, "🔍 DEBUG: Available fields on payload:");
-                            for (java.lang.reflect.Field f : payload.getClass().getDeclaredFields()) {
-                                try {
-                                    f.setAccessible(true);
-                                    Object v = f.get(obj);
-                                    Log.d(TAG, "  # " + f.getName() + ": " + (v != null ? v.getClass().getSimpleName() : "null") + " = " + v);
-                                } catch (Throwable e) {
-                                    Log.d(TAG, "  ❌ " + f.getName() + " -> Error: " + e.getMessage());
-                                }
-                            }
-                            
-                            // SPECIFIC DEBUG: Try to find ECG metadata methods
-                            Log.d(TAG, "🔍 DEBUG: Trying specific ECG metadata extraction:");
-                            String[] ecgMethods = {"getSamplingRate", "getSampleRate", "getRate", "getFrequency", "getHz", "getSamplesPerSecond", "getRecordingTime", "getDuration", "getLength", "getSeconds", "getTime", "getRecordTime", "getMeasureTime", "getMeasureDuration", "getDiagnosis", "getResult", "getConclusion", "getAnalysis", "getStatus"};
-                            for (String methodName : ecgMethods) {
-                                try {
-                                    java.lang.reflect.Method m = payload.getClass().getMethod(methodName);
-                                    Object result = m.invoke(payload);
-                                    Log.d(TAG, "  🎯 " + methodName + "() -> " + result + " (type: " + (result != null ? result.getClass().getSimpleName() : "null") + ")");
-                                } catch (Throwable e) {
-                                    Log.d(TAG, "  ❌ " + methodName + "() -> Not found or error: " + e.getMessage());
-                                }
-                            }
-                        }
-                        
-                        Log.d(TAG, "🔍 DEBUG: Extracted metadata - type=" + type + ", sampleRate=" + samplingRate + ", recordingTime=" + recordingTimeSec + ", measureTime=" + measureTimeSec + ", diagnosis=" + diagnosis + ", waveShorts=" + (waveShorts != null ? waveShorts.length : "null"));
-                        
-                        // DEBUG: Log waveform data details
-                        if (waveShorts != null && waveShorts.length > 0) {
-                            Log.d(TAG, "🔍 DEBUG: Waveform data details:");
-                            Log.d(TAG, "  📊 Length: " + waveShorts.length);
-                            Log.d(TAG, "  📊 First 5 values: " + waveShorts[0] + ", " + waveShorts[1] + ", " + waveShorts[2] + ", " + waveShorts[3] + ", " + waveShorts[4]);
-                            Log.d(TAG, "  📊 Last 5 values: " + waveShorts[waveShorts.length-5] + ", " + waveShorts[waveShorts.length-4] + ", " + waveShorts[waveShorts.length-3] + ", " + waveShorts[waveShorts.length-2] + ", " + waveShorts[waveShorts.length-1]);
-                            
-                            // Calculate some basic stats
-                            int min = waveShorts[0], max = waveShorts[0];
-                            for (short s : waveShorts) {
-                                if (s < min) min = s;
-                                if (s > max) max = s;
-                            }
-                            Log.d(TAG, "  📊 Min value: " + min + ", Max value: " + max + ", Range: " + (max - min));
+                        if (cacheMac != null && (rec.content != null || rec.waveShorts != null)) {
+                            // Disk write off the event thread; the arrays are not touched again after delivery
+                            workHandler().post(() -> bp2Cache().put(cacheMac, fileName, rec));
                         }
-                        
-                        // If event has a different file name than requested, ignore it (safety)
-                        if (eventFileName != null && !fileName.equals(eventFileName)) {
-                            return;
-                        }
-                        JSObject out = new JSObject();
-                        if (type != null) out.put("fileType", type);
-                        if (content != null) {
-                            out.put("fileContent", android.util.Base64.encodeToString(content, android.util.Base64.NO_WRAP));
-                            out.put("length", content.length);
-                            // Add a short hex preview for debugging/parsing
-                            int previewLen = Math.min(64, content.length);
-                            StringBuilder sb = new StringBuilder(previewLen * 2);
-                            for (int i = 0; i < previewLen; i++) {
-                                sb.append(String.format("%02X", content[i] & 0xFF));
-                            }
-                            out.put("hexPreview", sb.toString());
-                        }
-                        // Include parsed ECG metadata when available
-                        if (samplingRate != null) out.put("sampleRate", samplingRate.intValue());
-                        if (recordingTimeSec != null) out.put("recordingTimeSec", recordingTimeSec.intValue());
-                        if (measureTimeSec != null) out.put("measureTimeSec", measureTimeSec.intValue());
-                        if (diagnosis != null) out.put("diagnosis", diagnosis);
-                        
-                        // If we have waveform data but no sample rate, try to estimate
-                        if (waveShorts != null && waveShorts.length > 0 && samplingRate == null) {
-                            // Common ECG sample rates: 125Hz, 250Hz, 500Hz, 1000Hz
-                            // Try to estimate based on typical ECG recording durations
-                            int[] commonRates = {125, 250, 500, 1000};
-                            for (int rate : commonRates) {
-                                int estimatedDuration = waveShorts.length / rate;
-                                // If duration is reasonable (between 10 seconds and 5 minutes)
-                                if (estimatedDuration >= 10 && estimatedDuration <= 300) {
-                                    Log.d(TAG, "🔍 DEBUG: Estimated sample rate: " + rate + " Hz (duration: " + estimatedDuration + "s)");
-                                    out.put("sampleRate", rate);
-                                    out.put("recordingTimeSec", estimatedDuration);
-                                    break;
-                                }
-                            }
-                        }
-                        
-                        // Return raw counts as array (small enough for ~30s @125Hz)
-                        if (waveShorts != null) {
-                            com.getcapacitor.JSArray counts = new com.getcapacitor.JSArray();
-                            for (short s : waveShorts) counts.put((int) s);
-                            out.put("waveformCounts", counts);
-                            out.put("mvPerCount", 0.003098);
-                        }
-                        call.resolve(out);
+                        deliverBp2File(call, fileName, rec, stream, chunkSize, false);
                     } catch (Throwable t) {
                         call.reject("Failed to parse file: " + t.getMessage());
-                    } finally {
-                        try { LiveEventBus.get(key, Object.class).removeObserver(this); } catch (Throwable ignore) {}
                     }
                 }
-            };
-            LiveEventBus.get(key, Object.class).observeForever(obs);
 
-            Object helper = getBleHelper();
-            if (helper != null) {
-                try {
-                    // Preferred: read by name (with model awareness)
-                    int model = activeWellueAddress != null ? modelByAddress.getOrDefault(activeWellueAddress, com.lepu.blepro.objs.Bluetooth.MODEL_BP2) : com.lepu.blepro.objs.Bluetooth.MODEL_BP2;
-                    helper.getClass().getMethod("bp2ReadFile", int.class, String.class)
-                        .invoke(helper, model, fileName);
-                    Log.d(TAG, "📥 bp2ReadFile requested: " + fileName);
-                } catch (Throwable primary) {
-                    Log.w(TAG, "bp2ReadFile(name) failed, trying index fallback", primary);
-                    // Fallback: read by index if available
-                    Integer idx = bp2FileIndexMap.get(fileName);
-                    if (idx != null) {
-                        try {
-                            int model = activeWellueAddress != null ? modelByAddress.getOrDefault(activeWellueAddress, com.lepu.blepro.objs.Bluetooth.MODEL_BP2) : com.lepu.blepro.objs.Bluetooth.MODEL_BP2;
-                            helper.getClass().getMethod("bp2ReadFile", int.class, int.class)
-                                .invoke(helper, model, idx.intValue());
-                            Log.d(TAG, "📥 bp2ReadFile requested by index: " + idx);
-                        } catch (Throwable secondary) {
-                            Log.e(TAG, "bp2ReadFile(index) also failed", secondary);
-                        }
-                    } else {
-                        Log.w(TAG, "No index mapping for fileName=" + fileName);
-                    }
+                @Override void onError(String message) {
+                    call.reject("Failed to read BP2 file: " + message);
                 }
-            } else {
-                call.reject("BleServiceHelper unavailable");
-            }
+            });
         } catch (Exception e) {
             call.reject("Failed to read BP2 file: " + e.getMessage());
         }
@@ -2108,48 +3347,52 @@ public class WelluePlugin extends Plugin {
     @PluginMethod
     public void startBPMeasurement(PluginCall call) {
         try {
-            Log.e(TAG, "🩺🩺🩺 NEW STARTBPMEASUREMENT CALLED - VERIFY CODE UPDATE 🩺🩺🩺");
-            Log.e(TAG, "🩺 startBPMeasurement requested - Using BP2 SDK with startRtTask");
-            Log.e(TAG, "🔍 activeWellueAddress: " + activeWellueAddress);
-            Log.e(TAG, "🔍 lastConnectingAddress: " + lastConnectingAddress);
-            Log.e(TAG, "🔍 isWellueSDKInitialized: " + isWellueSDKInitialized);
+            Log.d(TAG, "🩺 startBPMeasurement requested - Using BP2 SDK with startRtTask");
+            // Step-by-step trace only with diagnostics on (setDiagnostics)
+            final boolean trace = diagLevel != DIAG_OFF;
+            if (trace) {
+                Log.d(TAG, "🔍 activeWellueAddress: " + state.active());
+                Log.d(TAG, "🔍 lastConnectingAddress: " + state.connecting());
+                Log.d(TAG, "🔍 isWellueSDKInitialized: " + isWellueSDKInitialized);
+            }
             
             // Ensure permissions and lazy init
             if (!ensurePermissions(call)) { 
                 Log.e(TAG, "❌ Permissions check failed");
                 return; 
             }
-            Log.e(TAG, "✅ Permissions check passed");
             
             if (!isWellueSDKInitialized) isWellueSDKInitialized = true;
 
-            // Basic guard: ensure we have (or recently had) an active Wellue connection
-            if (activeWellueAddress == null && lastConnectingAddress == null) {
+            // Basic guard: ensure we have (or recently had) a Wellue connection; { address? } picks the device
+            DeviceSession target = sessionFor(call);
+            if (target == null && call.getString("address") == null && !state.isIdle()) {
+                target = modelSession(resolveModelFromStringOrActive(null));
+            }
+            final DeviceSession s = target;
+            if (s == null) {
                 Log.e(TAG, "❌ No Wellue device connected - rejecting");
                 call.reject("No Wellue device connected");
                 return;
             }
-            Log.e(TAG, "✅ Device connection check passed");
+            if (trace) Log.d(TAG, "✅ Device connection check passed");
 
             // Ensure BP2 real-time observer is registered (this handles all BP2 events)
-            Log.e(TAG, "🔧 Calling ensureBp2RtObserver()...");
             ensureBp2RtObserver();
-            Log.e(TAG, "✅ ensureBp2RtObserver() completed");
 
             // Start real-time task using BP2 SDK - same as ECG method
             try {
-                Log.e(TAG, "🔧 Getting BLE helper...");
                 Object helper = getBleHelper();
-                Log.e(TAG, "🔧 getBleHelper() returned: " + (helper != null ? helper.getClass().getName() : "null"));
+                if (trace) Log.d(TAG, "🔧 getBleHelper() returned: " + (helper != null ? helper.getClass().getName() : "null"));
                 if (helper == null) { 
                     Log.e(TAG, "❌ BleServiceHelper unavailable - rejecting call");
                     call.reject("BleServiceHelper unavailable"); 
                     return; 
                 }
-                Log.e(TAG, "✅ BleServiceHelper obtained successfully");
                 
                 // Log all available methods for debugging
-                Log.e(TAG, "🔍 Listing ALL methods on BleServiceHelper:");
+                if (trace) {
+                Log.d(TAG, "🔍 Listing ALL methods on BleServiceHelper:");
                 int methodCount = 0;
                 for (java.lang.reflect.Method m : helper.getClass().getMethods()) {
                     methodCount++;
@@ -2157,72 +3400,53 @@ public class WelluePlugin extends Plugin {
                         m.getName().toLowerCase().contains("rt") || 
                         m.getName().toLowerCase().contains("bp") ||
                         m.getName().toLowerCase().contains("task")) {
-                        Log.e(TAG, "  📋 RELEVANT: " + m.getName() + "(" + m.getParameterCount() + " params)");
+                        Log.d(TAG, "  📋 RELEVANT: " + m.getName() + "(" + m.getParameterCount() + " params)");
                         for (Class<?> param : m.getParameterTypes()) {
-                            Log.e(TAG, "    - param: " + param.getSimpleName());
+                            Log.d(TAG, "    - param: " + param.getSimpleName());
                         }
                     }
                 }
-                Log.e(TAG, "🔍 Total methods on helper: " + methodCount);
-                
-                                        // STEP 1: Stop any existing real-time task to reset device state
-                        try {
-                            Log.e(TAG, "🔧 STEP 1: Stopping any existing real-time task...");
-                            java.lang.reflect.Method stopRtTaskMethod = helper.getClass().getMethod("stopRtTask", int.class);
-                            stopRtTaskMethod.invoke(helper, com.lepu.blepro.objs.Bluetooth.MODEL_BP2);
-                            Log.e(TAG, "✅ stopRtTask(MODEL_BP2) completed - device state reset");
-                        } catch (Throwable e) {
-                            Log.e(TAG, "ℹ️ stopRtTask not found or failed (might be OK): " + e.getMessage());
-                        }
-
-                        // STEP 2: Wait a moment for device to reset
-                        try {
-                            Thread.sleep(500); // 500ms delay for device state reset
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                        }
-
-                        // STEP 3: Start fresh real-time monitoring
-                        try {
-                            Log.e(TAG, "🔧 STEP 3: Starting fresh real-time monitoring...");
-                            java.lang.reflect.Method startRtTaskMethod = helper.getClass().getMethod("startRtTask", int.class);
-                            Log.e(TAG, "✅ startRtTask method found! Invoking with MODEL_BP2...");
+                Log.d(TAG, "🔍 Total methods on helper: " + methodCount);
+                }
 
-                            Log.e(TAG, "🔧 MODEL_BP2 value: " + com.lepu.blepro.objs.Bluetooth.MODEL_BP2);
-                            startRtTaskMethod.invoke(helper, com.lepu.blepro.objs.Bluetooth.MODEL_BP2);
-                            Log.e(TAG, "✅✅✅ startRtTask(MODEL_BP2) invoked successfully for BP measurement ✅✅✅");
+                try {
+                    helper.getClass().getMethod("startRtTask", int.class);
                 } catch (NoSuchMethodException e) {
                     Log.e(TAG, "❌ startRtTask method not found", e);
-                    Log.e(TAG, "🔍 Available methods:");
-                    for (java.lang.reflect.Method m : helper.getClass().getMethods()) {
-                        if (m.getName().contains("start") || m.getName().contains("Start")) {
-                            Log.e(TAG, "  - " + m.getName() + " (params: " + m.getParameterCount() + ")");
-                        }
-                    }
                     call.reject("startRtTask method not found in SDK");
                     return;
-                } catch (Throwable e) {
-                    Log.e(TAG, "❌ startRtTask invocation failed", e);
-                    Log.e(TAG, "❌ Exception type: " + e.getClass().getName());
-                    Log.e(TAG, "❌ Exception message: " + e.getMessage());
-                    e.printStackTrace();
-                    call.reject("Failed to start real-time task: " + e.getMessage());
-                return;
-            }
+                }
 
-            JSObject ok = new JSObject();
-            ok.put("success", true);
-                ok.put("message", "BP measurement started via startRtTask - NEW CODE");
-            call.resolve(ok);
-                Log.e(TAG, "✅✅✅ BP2 measurement started successfully via startRtTask - RESPONSE SENT ✅✅✅");
+                // The busy check, reset (stopRtTask + settle) and start all run on the session's decode thread, so
+                // back-to-back calls are serialized there; progress arrives as bpMeasurementState
+                boolean posted = s.post(() -> {
+                    String bpState = s.bpState;
+                    boolean busy = BP_RESETTING.equals(bpState) || BP_STARTING.equals(bpState) || BP_MEASURING.equals(bpState);
+                    // Already in flight: report the current state instead of restarting the device
+                    if (!busy) {
+                        try {
+                            bpBeginMeasurement(s);
+                        } catch (Throwable t) {
+                            Log.e(TAG, "❌ BP measurement start failed", t);
+                            call.reject("startBPMeasurement failed: " + t.getMessage());
+                            return;
+                        }
+                    }
+                    JSObject ok = new JSObject();
+                    ok.put("success", true);
+                    ok.put("state", s.bpState);
+                    if (s.address != null) ok.put("deviceId", s.address);
+                    ok.put("message", busy ? "BP measurement already in progress" : "BP measurement start dispatched");
+                    call.resolve(ok);
+                    if (!busy) Log.d(TAG, "✅ BP2 measurement start dispatched");
+                });
+                if (!posted) call.reject("Device disconnected");
             } catch (Throwable t) {
                 Log.e(TAG, "❌ startBPMeasurement inner error", t);
-                t.printStackTrace();
                 call.reject("startBPMeasurement failed: " + t.getMessage());
             }
         } catch (Throwable t) {
             Log.e(TAG, "❌ startBPMeasurement outer error", t);
-            t.printStackTrace();
             call.reject("Unexpected error: " + t.getMessage());
         }
     }
@@ -2234,11 +3458,12 @@ public class WelluePlugin extends Plugin {
             if (!ensurePermissions(call)) { return; }
             if (!isWellueSDKInitialized) isWellueSDKInitialized = true;
             ensureBp2RtObserver();
+            int model = commandModel(call);
             Object helper = getBleHelper();
             if (helper != null) {
                 try {
-                    helper.getClass().getMethod("startRtTask", int.class).invoke(helper, com.lepu.blepro.objs.Bluetooth.MODEL_BP2);
-                    Log.d(TAG, "▶️ startRtTask(BP2) invoked");
+                    helper.getClass().getMethod("startRtTask", int.class).invoke(helper, model);
+                    Log.d(TAG, "▶️ startRtTask(model=" + model + ") invoked");
                 } catch (Throwable t) {
                     Log.e(TAG, "startRtTask error", t);
                     call.reject("Failed to start real-time task: " + t.getMessage());
@@ -2257,18 +3482,19 @@ public class WelluePlugin extends Plugin {
     @PluginMethod
     public void stopMeasurement(PluginCall call) {
         try {
+            int model = commandModel(call);
             Object helper = getBleHelper();
             if (helper != null) {
                 try {
-                    helper.getClass().getMethod("bpmStop", int.class).invoke(helper, com.lepu.blepro.objs.Bluetooth.MODEL_BP2);
-                    Log.d(TAG, "⏹️ bpmStop(BP2) invoked");
+                    helper.getClass().getMethod("bpmStop", int.class).invoke(helper, model);
+                    Log.d(TAG, "⏹️ bpmStop(model=" + model + ") invoked");
                 } catch (NoSuchMethodException nsme) {
                     try { helper.getClass().getMethod("bp2StopMeasure").invoke(helper); Log.d(TAG, "⏹️ bp2StopMeasure() invoked"); } catch (Throwable nested) { Log.w(TAG, "No stop method found", nested); }
                 }
                 // Also stop real-time stream if active
                 try {
-                    helper.getClass().getMethod("stopRtTask", int.class).invoke(helper, com.lepu.blepro.objs.Bluetooth.MODEL_BP2);
-                    Log.d(TAG, "⏹️ stopRtTask(BP2) invoked");
+                    helper.getClass().getMethod("stopRtTask", int.class).invoke(helper, model);
+                    Log.d(TAG, "⏹️ stopRtTask(model=" + model + ") invoked");
                 } catch (Throwable ignore) {}
             }
             JSObject ok = new JSObject(); ok.put("success", true); ok.put("message", "Measurement stop requested"); call.resolve(ok);
@@ -0,0 +1,176 @@
+package com.priti.wellue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * Plugin state shared by the scan callbacks, the main looper, LiveEventBus observers and plugin call threads.
+ *
+ * Connected MACs, the active device and the address being connected form one immutable {@link Snapshot}.
+ * Every transition is a compare-and-set on it, so readers always see a consistent triple and can iterate
+ * {@link Snapshot#connected} without a lock. Per-MAC models live in a ConcurrentHashMap. The BP2 file
+ * index is swapped in whole on each list refresh, never edited in place.
+ *
+ * MACs are upper-cased on the way in (Android reports them that way, JS may not), so every lookup here
+ * is an exact match.
+ */
+final class WellueState {
+
+    static final class Snapshot {
+        /** Unmodifiable. */
+        final Set<String> connected;
+        final String active;
+        final String connecting;
+
+        Snapshot(Set<String> connected, String active, String connecting) {
+            this.connected = connected;
+            this.active = active;
+            this.connecting = connecting;
+        }
+
+        boolean isConnected(String address) {
+            return address != null && connected.contains(normalize(address));
+        }
+    }
+
+    /** Canonical MAC form used throughout the plugin; null stays null. */
+    static String normalize(String address) {
+        return address != null ? address.toUpperCase(Locale.ROOT) : null;
+    }
+
+    private static final Snapshot EMPTY = new Snapshot(Collections.<String>emptySet(), null, null);
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(EMPTY);
+    private final ConcurrentHashMap<String, Integer> models = new ConcurrentHashMap<>();
+    private volatile Map<String, Integer> fileIndex = Collections.emptyMap();
+
+    Snapshot snapshot() {
+        return snapshot.get();
+    }
+
+    /** The device calls without an address target, or null. */
+    String active() {
+        return snapshot.get().active;
+    }
+
+    /** The address of the connect request in flight, or null. */
+    String connecting() {
+        return snapshot.get().connecting;
+    }
+
+    /** Neither a managed device nor a connect request. */
+    boolean isIdle() {
+        Snapshot s = snapshot.get();
+        return s.active == null && s.connecting == null;
+    }
+
+    void setConnecting(String address) {
+        address = normalize(address);
+        Snapshot cur;
+        do {
+            cur = snapshot.get();
+        } while (!snapshot.compareAndSet(cur, new Snapshot(cur.connected, cur.active, address)));
+    }
+
+    /** The connect request for {@code address} failed or timed out; clears it if it is still the one in flight. */
+    void clearConnecting(String address) {
+        address = normalize(address);
+        Snapshot cur;
+        do {
+            cur = snapshot.get();
+            if (address == null || !address.equals(cur.connecting)) return;
+        } while (!snapshot.compareAndSet(cur, new Snapshot(cur.connected, cur.active, null)));
+    }
+
+    /**
+     * Adds {@code address} to the connected set. It becomes active if {@code claim} is set or it is the
+     * address being connected, which also ends that connect request. Returns false if it was already
+     * connected; nothing changes then.
+     */
+    boolean onConnected(String address, boolean claim) {
+        address = normalize(address);
+        if (address == null) return false;
+        Snapshot cur;
+        Snapshot next;
+        do {
+            cur = snapshot.get();
+            if (cur.connected.contains(address)) return false;
+            Set<String> connected = new HashSet<>(cur.connected);
+            connected.add(address);
+            boolean requested = address.equals(cur.connecting);
+            next = new Snapshot(Collections.unmodifiableSet(connected), claim || requested ? address : cur.active,
+                requested ? null : cur.connecting);
+        } while (!snapshot.compareAndSet(cur, next));
+        return true;
+    }
+
+    /**
+     * Removes {@code address} from the connected set. If it was active, the first remaining connected
+     * address that passes {@code eligible} takes over (or none). Returns false if it was not connected.
+     */
+    boolean onDisconnected(String address, Predicate<String> eligible) {
+        address = normalize(address);
+        if (address == null) return false;
+        Snapshot cur;
+        Snapshot next;
+        do {
+            cur = snapshot.get();
+            if (!cur.connected.contains(address)) return false;
+            Set<String> connected = new HashSet<>(cur.connected);
+            connected.remove(address);
+            String active = cur.active;
+            if (address.equals(active)) {
+                active = null;
+                for (String other : connected) {
+                    if (eligible == null || eligible.test(other)) { active = other; break; }
+                }
+            }
+            next = new Snapshot(Collections.unmodifiableSet(connected), active, cur.connecting);
+        } while (!snapshot.compareAndSet(cur, next));
+        return true;
+    }
+
+    /** Clears the active device; with an address, only if that device is the active one. */
+    void clearActive(String address) {
+        address = normalize(address);
+        Snapshot cur;
+        do {
+            cur = snapshot.get();
+            if (cur.active == null || (address != null && !cur.active.equals(address))) return;
+        } while (!snapshot.compareAndSet(cur, new Snapshot(cur.connected, null, cur.connecting)));
+    }
+
+    Integer model(String address) {
+        return address != null ? models.get(normalize(address)) : null;
+    }
+
+    int model(String address, int def) {
+        Integer m = model(address);
+        return m != null ? m : def;
+    }
+
+    /** Model of the active device (read once, so it cannot change underneath), else {@code def}. */
+    int activeModel(int def) {
+        return model(active(), def);
+    }
+
+    void putModel(String address, int model) {
+        if (address != null) models.put(normalize(address), model);
+    }
+
+    /** Replaces the BP2 file name -> list index map from the latest file list. */
+    void setFileIndex(Map<String, Integer> index) {
+        fileIndex = Collections.unmodifiableMap(new HashMap<>(index));
+    }
+
+    Integer fileIndex(String fileName) {
+        return fileName != null ? fileIndex.get(fileName) : null;
+    }
+}
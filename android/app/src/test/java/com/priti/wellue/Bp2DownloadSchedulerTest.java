@@ -0,0 +1,160 @@
+package com.priti.wellue;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+public class Bp2DownloadSchedulerTest {
+
+    private static final int MODEL = 1;
+    private static final long TIMEOUT_MS = 1000L;
+    private static final long GRACE_MS = 5000L;
+
+    /** Single-threaded loop with a manual clock. */
+    private static final class FakeLoop implements Bp2DownloadScheduler.Loop {
+        private static final class Task implements Comparable<Task> {
+            final long dueMs;
+            final long order;
+            final Runnable r;
+
+            Task(long dueMs, long order, Runnable r) {
+                this.dueMs = dueMs;
+                this.order = order;
+                this.r = r;
+            }
+
+            @Override public int compareTo(Task o) {
+                return dueMs != o.dueMs ? Long.compare(dueMs, o.dueMs) : Long.compare(order, o.order);
+            }
+        }
+
+        private final PriorityQueue<Task> tasks = new PriorityQueue<>();
+        private long now;
+        private long order;
+
+        @Override public void post(Runnable r) { postDelayed(r, 0L); }
+
+        @Override public void postDelayed(Runnable r, long delayMs) { tasks.add(new Task(now + delayMs, order++, r)); }
+
+        @Override public void removeCallbacks(Runnable r) { tasks.removeIf(t -> t.r == r); }
+
+        @Override public long uptimeMillis() { return now; }
+
+        void advance(long ms) {
+            long until = now + ms;
+            while (!tasks.isEmpty() && tasks.peek().dueMs <= until) {
+                Task t = tasks.poll();
+                now = t.dueMs;
+                t.r.run();
+            }
+            now = until;
+        }
+    }
+
+    /** Payloads are file names (null for an unnamed reply). */
+    private static final class FakeTransport implements Bp2DownloadScheduler.Transport {
+        final List<String> reads = new ArrayList<>();
+        Bp2DownloadScheduler.Replies replies;
+
+        @Override public void requestRead(String mac, int model, String fileName) { reads.add(fileName); }
+
+        @Override public void observe(Bp2DownloadScheduler.Replies replies) { this.replies = replies; }
+
+        @Override public void stopObserving() { replies = null; }
+
+        @Override public Bp2RecordCache.Record decode(Object payload) {
+            Bp2RecordCache.Record rec = new Bp2RecordCache.Record();
+            rec.fileName = (String) payload;
+            rec.waveShorts = new short[] { 1, 2 };
+            return rec;
+        }
+
+        @Override public Integer progress(Object payload) { return null; }
+
+        void reply(String fileName) {
+            assertNotNull("no reply observer", replies);
+            replies.onComplete(fileName);
+        }
+    }
+
+    private static final class Result extends Bp2DownloadScheduler.Callback {
+        Bp2RecordCache.Record rec;
+        String error;
+
+        @Override void onComplete(Bp2RecordCache.Record rec) { this.rec = rec; }
+
+        @Override void onError(String message) { error = message; }
+    }
+
+    private final FakeLoop loop = new FakeLoop();
+    private final FakeTransport transport = new FakeTransport();
+    private final Bp2DownloadScheduler scheduler = new Bp2DownloadScheduler(loop, transport);
+
+    private Result read(String fileName, int maxRetries) {
+        Result r = new Result();
+        scheduler.enqueue("AA:BB:CC:DD:EE:01", MODEL, fileName, TIMEOUT_MS, maxRetries, r);
+        loop.advance(0L);
+        return r;
+    }
+
+    @Test
+    public void unnamedReplyCompletesTheInFlightRead() {
+        Result r = read("a", 0);
+        transport.reply(null);
+        assertNotNull(r.rec);
+        assertEquals("a", r.rec.fileName);
+        assertNull("observers released when idle", transport.replies);
+    }
+
+    @Test
+    public void unnamedReplyDuringGraceSettlesTheTimedOutRead() {
+        Result r = read("a", 1);
+        loop.advance(TIMEOUT_MS);
+        assertNull(r.rec);
+        transport.reply(null);
+        assertNotNull(r.rec);
+        assertEquals("a", r.rec.fileName);
+        // The pending retry was dropped, not sent
+        loop.advance(GRACE_MS);
+        assertEquals(1, transport.reads.size());
+    }
+
+    @Test
+    public void retryAfterGraceAcceptsAnUnnamedReply() {
+        Result r = read("a", 1);
+        loop.advance(TIMEOUT_MS);
+        loop.advance(GRACE_MS);
+        assertEquals(2, transport.reads.size());
+        transport.reply(null);
+        assertNull(r.error);
+        assertNotNull(r.rec);
+        assertEquals("a", r.rec.fileName);
+    }
+
+    @Test
+    public void laneRecoversAfterATimedOutReadFails() {
+        Result first = read("a", 0);
+        loop.advance(TIMEOUT_MS + GRACE_MS);
+        assertNotNull(first.error);
+        assertNull("observers released once the lane is idle", transport.replies);
+
+        Result second = read("b", 0);
+        transport.reply(null);
+        assertNull(second.error);
+        assertNotNull(second.rec);
+        assertEquals("b", second.rec.fileName);
+    }
+
+    @Test
+    public void namedReplyForAnotherFileIsStray() {
+        Result r = read("a", 0);
+        transport.reply("zzz");
+        assertNull(r.rec);
+        transport.reply("a");
+        assertNotNull(r.rec);
+    }
+}
@@ -0,0 +1,129 @@
+package com.priti.wellue;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WellueStateTest {
+
+    private static final String A = "AA:BB:CC:DD:EE:01";
+    private static final String B = "AA:BB:CC:DD:EE:02";
+
+    @Test
+    public void requestedDeviceBecomesActiveAndEndsTheRequest() {
+        WellueState state = new WellueState();
+        state.setConnecting(A);
+        assertFalse(state.isIdle());
+        assertTrue(state.onConnected(A, false));
+        assertEquals(A, state.active());
+        assertNull(state.connecting());
+        assertTrue(state.snapshot().isConnected(A));
+    }
+
+    @Test
+    public void duplicateConnectIsIgnored() {
+        WellueState state = new WellueState();
+        assertTrue(state.onConnected(A, true));
+        WellueState.Snapshot before = state.snapshot();
+        assertFalse(state.onConnected(A, true));
+        assertSame(before, state.snapshot());
+    }
+
+    @Test
+    public void unrequestedDeviceDoesNotTakeOverUnlessClaimed() {
+        WellueState state = new WellueState();
+        state.onConnected(A, true);
+        state.onConnected(B, false);
+        assertEquals(A, state.active());
+        assertTrue(state.snapshot().isConnected(B));
+    }
+
+    @Test
+    public void failedConnectReturnsToIdle() {
+        WellueState state = new WellueState();
+        state.setConnecting(A);
+        // Only the request in flight is cleared
+        state.clearConnecting(B);
+        assertEquals(A, state.connecting());
+        state.clearConnecting(A);
+        assertNull(state.connecting());
+        assertTrue(state.isIdle());
+    }
+
+    @Test
+    public void addressesMatchRegardlessOfCase() {
+        WellueState state = new WellueState();
+        state.setConnecting(A.toLowerCase());
+        assertTrue(state.onConnected(A, false));
+        assertEquals(A, state.active());
+        assertFalse(state.onConnected(A.toLowerCase(), false));
+        assertTrue(state.snapshot().isConnected(A.toLowerCase()));
+        state.putModel(A.toLowerCase(), 7);
+        assertEquals(7, state.model(A, 0));
+        assertTrue(state.onDisconnected(A.toLowerCase(), null));
+        assertTrue(state.snapshot().connected.isEmpty());
+        assertTrue(state.isIdle());
+    }
+
+    @Test
+    public void activeHandsOverToAnEligibleDeviceOnDisconnect() {
+        WellueState state = new WellueState();
+        state.onConnected(A, true);
+        state.onConnected(B, false);
+        assertTrue(state.onDisconnected(A, B::equals));
+        assertEquals(B, state.active());
+        assertFalse(state.onDisconnected(A, null));
+    }
+
+    @Test
+    public void noEligibleDeviceLeavesNoneActive() {
+        WellueState state = new WellueState();
+        state.onConnected(A, true);
+        state.onConnected(B, false);
+        state.onDisconnected(A, other -> false);
+        assertNull(state.active());
+        assertEquals(Collections.singleton(B), state.snapshot().connected);
+    }
+
+    @Test
+    public void clearActiveOnlyForTheActiveDevice() {
+        WellueState state = new WellueState();
+        state.onConnected(A, true);
+        state.clearActive(B);
+        assertEquals(A, state.active());
+        state.clearActive(A.toLowerCase());
+        assertNull(state.active());
+        assertTrue(state.snapshot().isConnected(A));
+    }
+
+    @Test
+    public void concurrentTransitionsLoseNoUpdates() throws Exception {
+        final WellueState state = new WellueState();
+        final int threads = 8;
+        final int perThread = 500;
+        final CountDownLatch go = new CountDownLatch(1);
+        final AtomicInteger added = new AtomicInteger();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            workers[t] = new Thread(() -> {
+                try { go.await(); } catch (InterruptedException e) { return; }
+                for (int i = 0; i < perThread; i++) {
+                    String mac = String.format("%02X:00:00:00:%02X:%02X", id, i >> 8, i & 0xFF);
+                    if (state.onConnected(mac, false)) added.incrementAndGet();
+                    // Every other device leaves again
+                    if ((i & 1) == 1) state.onDisconnected(mac, null);
+                }
+            });
+            workers[t].start();
+        }
+        go.countDown();
+        for (Thread w : workers) w.join();
+        assertEquals(threads * perThread, added.get());
+        assertEquals(threads * perThread / 2, state.snapshot().connected.size());
+    }
+}
@@ -0,0 +1,56 @@
+package com.priti.bp2bench;
+
+import com.priti.bp2codec.Bp2Codec;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Int16 -> base64 for a full ECG record (Bp2Plugin.shortsToBase64). java.util.Base64 stands in for
+ * android.util.Base64 NO_WRAP, which produces the same output.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class Base64Benchmark {
+
+    private short[] samples;
+    private byte[] scratch;
+
+    @Setup
+    public void setup() {
+        byte[] file = Bp2Fixtures.ecgFile();
+        samples = Bp2Codec.decodeInt16Le(file);
+        scratch = new byte[samples.length * 2];
+    }
+
+    @Benchmark
+    public String legacyByteBufferPutShort() {
+        ByteBuffer bb = ByteBuffer.allocate(samples.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (short s : samples) bb.putShort(s);
+        return Base64.getEncoder().encodeToString(bb.array());
+    }
+
+    @Benchmark
+    public String codecEncode() {
+        byte[] bytes = new byte[samples.length * 2];
+        Bp2Codec.encodeInt16Le(samples, samples.length, bytes);
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    @Benchmark
+    public String codecEncodeReusedScratch() {
+        Bp2Codec.encodeInt16Le(samples, samples.length, scratch);
+        return Base64.getEncoder().encodeToString(scratch);
+    }
+}
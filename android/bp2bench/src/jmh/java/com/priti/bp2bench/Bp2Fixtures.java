@@ -0,0 +1,102 @@
+package com.priti.bp2bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark inputs. Defaults are the BP result frame captured on device plus deterministic synthetic
+ * ECG (125 Hz, ~1 mV R waves in 0.003098 mV counts). Pointing the {@code bp2bench.captures} system
+ * property at a directory replays real captures instead: {@code rt_packets.hex} (one RT wave payload
+ * per line, hex bytes) and {@code ecg_file.bin} (raw file read content).
+ */
+final class Bp2Fixtures {
+
+    /** Device showed 128/90, HR 70. */
+    static final byte[] BP_RESULT_FRAME = hex("01 00 00 80 00 5A 00 6C 00 46");
+    /** The same result wrapped as a full RtParam frame (type 1 prefix). */
+    static final byte[] RT_PARAM_BP_RESULT = hex("01 01 00 00 80 00 5A 00 6C 00 46");
+    /** RtParam type 0 (BP measuring) carrying 150 mmHg big-endian. */
+    static final byte[] RT_PARAM_PRESSURE = hex("00 00 96");
+
+    static final int SAMPLE_RATE = 125;
+    static final int RT_PACKET_SAMPLES = 25;
+    static final int FILE_SECONDS = 30;
+
+    private Bp2Fixtures() {}
+
+    static byte[] hex(String s) {
+        String[] parts = s.trim().split("\\s+");
+        byte[] out = new byte[parts.length];
+        for (int i = 0; i < parts.length; i++) out[i] = (byte) Integer.parseInt(parts[i], 16);
+        return out;
+    }
+
+    /** Synthetic ECG counts: baseline wander plus a narrow R wave once per second (60 bpm). */
+    static short[] syntheticEcg(int samples) {
+        short[] out = new short[samples];
+        for (int i = 0; i < samples; i++) {
+            double t = (double) i / SAMPLE_RATE;
+            double mv = 0.1 * Math.sin(2 * Math.PI * 0.3 * t);
+            double phase = t - Math.floor(t);
+            if (phase < 0.04) mv += Math.sin(Math.PI * phase / 0.04);
+            out[i] = (short) Math.round(mv / 0.003098);
+        }
+        return out;
+    }
+
+    static byte[] toInt16Le(short[] samples) {
+        byte[] out = new byte[samples.length * 2];
+        for (int i = 0; i < samples.length; i++) {
+            out[2 * i] = (byte) samples[i];
+            out[2 * i + 1] = (byte) (samples[i] >> 8);
+        }
+        return out;
+    }
+
+    /** RT wave payloads: captured when available, else one second of synthetic packets. */
+    static byte[][] rtPackets() {
+        Path dir = capturesDir();
+        if (dir != null && Files.exists(dir.resolve("rt_packets.hex"))) {
+            try {
+                List<byte[]> packets = new ArrayList<>();
+                for (String line : Files.readAllLines(dir.resolve("rt_packets.hex"), StandardCharsets.US_ASCII)) {
+                    if (!line.trim().isEmpty()) packets.add(hex(line));
+                }
+                if (!packets.isEmpty()) return packets.toArray(new byte[0][]);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to read rt_packets.hex", e);
+            }
+        }
+        short[] wave = syntheticEcg(SAMPLE_RATE);
+        byte[][] packets = new byte[SAMPLE_RATE / RT_PACKET_SAMPLES][];
+        for (int p = 0; p < packets.length; p++) {
+            short[] chunk = new short[RT_PACKET_SAMPLES];
+            System.arraycopy(wave, p * RT_PACKET_SAMPLES, chunk, 0, RT_PACKET_SAMPLES);
+            packets[p] = toInt16Le(chunk);
+        }
+        return packets;
+    }
+
+    /** ECG file content: captured when available, else a synthetic 30 s recording. */
+    static byte[] ecgFile() {
+        Path dir = capturesDir();
+        if (dir != null && Files.exists(dir.resolve("ecg_file.bin"))) {
+            try {
+                return Files.readAllBytes(dir.resolve("ecg_file.bin"));
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to read ecg_file.bin", e);
+            }
+        }
+        return toInt16Le(syntheticEcg(SAMPLE_RATE * FILE_SECONDS));
+    }
+
+    private static Path capturesDir() {
+        String p = System.getProperty("bp2bench.captures");
+        return p == null || p.isEmpty() ? null : Paths.get(p);
+    }
+}
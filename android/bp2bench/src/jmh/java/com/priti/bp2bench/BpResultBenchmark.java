@@ -0,0 +1,47 @@
+package com.priti.bp2bench;
+
+import com.priti.bp2codec.Bp2BpResult;
+import com.priti.bp2codec.Bp2Codec;
+import com.priti.bp2codec.Bp2RtParam;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/** BP result and live-pressure frame parsing on the captured frames. Expect 0 B/op for the codec paths. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BpResultBenchmark {
+
+    private final ByteBuffer resultFrame = ByteBuffer.wrap(Bp2Fixtures.BP_RESULT_FRAME);
+    private final ByteBuffer pressureFrame = ByteBuffer.wrap(Bp2Fixtures.RT_PARAM_PRESSURE);
+    private final ByteBuffer paramFrame = ByteBuffer.wrap(Bp2Fixtures.RT_PARAM_BP_RESULT);
+    private final Bp2BpResult result = new Bp2BpResult();
+    private final Bp2RtParam param = new Bp2RtParam();
+
+    @Benchmark
+    public int bpResult() {
+        result.decode(resultFrame);
+        return result.systolic + result.diastolic + result.pulseRate + result.map;
+    }
+
+    @Benchmark
+    public int pressure() {
+        ByteBuffer data = pressureFrame.duplicate();
+        data.position(1);
+        return Bp2Codec.decodePressure(data);
+    }
+
+    @Benchmark
+    public int rtParamDispatch() {
+        param.decode(paramFrame);
+        return param.bpResult.systolic;
+    }
+}
@@ -0,0 +1,57 @@
+package com.priti.bp2bench;
+
+import com.priti.bp2codec.Bp2Codec;
+import com.priti.bp2codec.EcgRingBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Live ECG batching as done on the RT decode thread: decode each packet, push it into the ring, and
+ * every ~200 ms (25 Hz worth of packets at 125 Hz) drain and pack the batch for the ecgDataBinary event.
+ * One op = one second of stream.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EcgBatchBenchmark {
+
+    private static final int EMIT_MAX_POINTS = 1200;
+    private static final int PACKETS_PER_EMIT = 5;
+
+    private byte[][] packets;
+    private short[] decodeScratch;
+    private final EcgRingBuffer ring = new EcgRingBuffer(4096);
+    private final float[] drainScratch = new float[EMIT_MAX_POINTS];
+    private final byte[] packScratch = new byte[EMIT_MAX_POINTS * 4];
+
+    @Setup
+    public void setup() {
+        packets = Bp2Fixtures.rtPackets();
+        int maxPacket = 0;
+        for (byte[] p : packets) maxPacket = Math.max(maxPacket, p.length);
+        decodeScratch = new short[maxPacket / 2];
+    }
+
+    @Benchmark
+    public int oneSecondOfStream() {
+        int packed = 0;
+        for (int i = 0; i < packets.length; i++) {
+            int n = Bp2Codec.decodeInt16Le(ByteBuffer.wrap(packets[i]), decodeScratch, 0);
+            ring.offer(decodeScratch, 0, n);
+            if ((i + 1) % PACKETS_PER_EMIT == 0 || i == packets.length - 1) {
+                int drained = ring.drain(drainScratch, EMIT_MAX_POINTS);
+                packed += Bp2Codec.encodeInt16Le(drainScratch, drained, packScratch);
+            }
+        }
+        return packed;
+    }
+}
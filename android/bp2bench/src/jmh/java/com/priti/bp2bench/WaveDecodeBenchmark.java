@@ -0,0 +1,77 @@
+package com.priti.bp2bench;
+
+import com.priti.bp2codec.Bp2Codec;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Little-endian Int16 wave decoding: one RT packet (the 125 Hz hot path) and a whole ECG file.
+ * {@code legacy*} mirror the per-packet loop the RT observer used before bp2codec.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WaveDecodeBenchmark {
+
+    private byte[][] packets;
+    private byte[] file;
+    private short[] packetScratch;
+    private short[] fileScratch;
+    private int next;
+
+    @Setup
+    public void setup() {
+        packets = Bp2Fixtures.rtPackets();
+        file = Bp2Fixtures.ecgFile();
+        int maxPacket = 0;
+        for (byte[] p : packets) maxPacket = Math.max(maxPacket, p.length);
+        packetScratch = new short[maxPacket / 2];
+        fileScratch = new short[file.length / 2];
+    }
+
+    private byte[] nextPacket() {
+        byte[] p = packets[next];
+        next = (next + 1) % packets.length;
+        return p;
+    }
+
+    static short[] legacyDecode(byte[] bytes) {
+        int n = bytes.length / 2;
+        short[] tmp = new short[n];
+        for (int i = 0; i < n; i++) {
+            int lo = bytes[2 * i] & 0xFF;
+            int hi = bytes[2 * i + 1] & 0xFF;
+            tmp[i] = (short) ((hi << 8) | lo);
+        }
+        return tmp;
+    }
+
+    @Benchmark
+    public short[] legacyPacket() {
+        return legacyDecode(nextPacket());
+    }
+
+    @Benchmark
+    public int codecPacketIntoScratch() {
+        return Bp2Codec.decodeInt16Le(ByteBuffer.wrap(nextPacket()), packetScratch, 0);
+    }
+
+    @Benchmark
+    public short[] legacyFile() {
+        return legacyDecode(file);
+    }
+
+    @Benchmark
+    public int codecFileIntoScratch() {
+        return Bp2Codec.decodeInt16Le(ByteBuffer.wrap(file), fileScratch, 0);
+    }
+}
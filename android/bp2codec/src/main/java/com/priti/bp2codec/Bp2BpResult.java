@@ -0,0 +1,51 @@
+package com.priti.bp2codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * BP2 blood-pressure result frame (RtParam data type 1), decoded in place.
+ *
+ * Layout observed on device (device 128/90 HR 70 -> {@code 01 00 00 80 00 5A 00 6C 00 46}):
+ * systolic at byte 3, diastolic at byte 5, pulse rate at byte 9, result code at byte 6 (or 16 when
+ * byte 6 is zero and the frame is long enough). MAP is derived as (2*dia + sys) / 3.
+ * Instances are mutable and meant to be reused across frames.
+ */
+public final class Bp2BpResult {
+
+    public static final int MIN_LENGTH = 10;
+
+    public int systolic;
+    public int diastolic;
+    public int pulseRate;
+    public int map;
+    public int resultCode;
+
+    /**
+     * Decodes from {@code buf} starting at its position without moving it.
+     * Returns false (leaving fields untouched) when fewer than {@link #MIN_LENGTH} bytes remain.
+     */
+    public boolean decode(ByteBuffer buf) {
+        return decode(buf, buf.position());
+    }
+
+    /** {@link #decode(ByteBuffer)} reading from index {@code p} up to the limit. */
+    public boolean decode(ByteBuffer buf, int p) {
+        int len = buf.limit() - p;
+        if (len < MIN_LENGTH) return false;
+        systolic = buf.get(p + 3) & 0xFF;
+        diastolic = buf.get(p + 5) & 0xFF;
+        pulseRate = buf.get(p + 9) & 0xFF;
+        int code = buf.get(p + 6) & 0xFF;
+        if (code == 0 && len > 16) code = buf.get(p + 16) & 0xFF;
+        resultCode = code;
+        map = (systolic > 0 && diastolic > 0) ? (2 * diastolic + systolic) / 3 : 0;
+        return true;
+    }
+
+    /** Plausibility window used for logging; out-of-range values are still reported. */
+    public boolean inRange() {
+        return systolic >= 70 && systolic <= 250
+            && diastolic >= 40 && diastolic <= 150
+            && pulseRate >= 40 && pulseRate <= 180;
+    }
+}
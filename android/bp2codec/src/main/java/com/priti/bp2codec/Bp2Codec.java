@@ -0,0 +1,148 @@
+package com.priti.bp2codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stateless BP2 frame decoders over {@link ByteBuffer}s.
+ *
+ * The decoders and the encoders into a caller-supplied {@code dst} do not allocate: callers pass the
+ * destination arrays and reuse them. Only the convenience overload {@link #decodeInt16Le(byte[])}
+ * allocates (the result array). Reads are absolute (from the buffer's position, or from an explicit
+ * index where a method takes one) unless a method says it consumes the buffer.
+ */
+public final class Bp2Codec {
+
+    /** Returned by {@link #decodePressure} when no strategy yields a plausible cuff pressure. */
+    public static final int PRESSURE_INVALID = -1;
+    public static final int PRESSURE_MAX_MMHG = 400;
+
+    public static final int HR_MIN = 30;
+    public static final int HR_MAX = 200;
+
+    private Bp2Codec() {}
+
+    /**
+     * Live cuff pressure (RtParam data type 0). The byte order is not documented, so the first
+     * plausible reading wins: big-endian u16, then little-endian u16, then the first byte alone.
+     */
+    public static int decodePressure(ByteBuffer buf) {
+        return decodePressure(buf, buf.position());
+    }
+
+    /** {@link #decodePressure(ByteBuffer)} reading from index {@code p} up to the limit. */
+    public static int decodePressure(ByteBuffer buf, int p) {
+        if (buf.limit() - p < 2) return PRESSURE_INVALID;
+        int b0 = buf.get(p) & 0xFF;
+        int b1 = buf.get(p + 1) & 0xFF;
+        int v = (b0 << 8) | b1;
+        if (v <= PRESSURE_MAX_MMHG) return v;
+        v = (b1 << 8) | b0;
+        if (v <= PRESSURE_MAX_MMHG) return v;
+        return b0 <= PRESSURE_MAX_MMHG ? b0 : PRESSURE_INVALID;
+    }
+
+    /**
+     * Heart rate fallback for ECG result frames: little-endian u16 at bytes 0-1, else at bytes 2-3,
+     * accepted only inside [{@link #HR_MIN}, {@link #HR_MAX}]. Returns -1 when neither fits.
+     */
+    public static int decodeEcgHeartRate(ByteBuffer buf) {
+        return decodeEcgHeartRate(buf, buf.position());
+    }
+
+    /** {@link #decodeEcgHeartRate(ByteBuffer)} reading from index {@code p} up to the limit. */
+    public static int decodeEcgHeartRate(ByteBuffer buf, int p) {
+        if (buf.limit() - p < 4) return -1;
+        int hr1 = ((buf.get(p + 1) & 0xFF) << 8) | (buf.get(p) & 0xFF);
+        if (hr1 >= HR_MIN && hr1 <= HR_MAX) return hr1;
+        int hr2 = ((buf.get(p + 3) & 0xFF) << 8) | (buf.get(p + 2) & 0xFF);
+        if (hr2 >= HR_MIN && hr2 <= HR_MAX) return hr2;
+        return -1;
+    }
+
+    /** Number of whole little-endian Int16 samples remaining in {@code buf}. */
+    public static int int16Count(ByteBuffer buf) {
+        return buf.remaining() >> 1;
+    }
+
+    /**
+     * Decodes little-endian signed 16-bit samples into {@code dst[off..]}, consuming the bytes read.
+     * Returns the number of samples written (bounded by the space left in {@code dst}).
+     */
+    public static int decodeInt16Le(ByteBuffer buf, short[] dst, int off) {
+        int n = decodeInt16Le(buf, buf.position(), dst, off);
+        buf.position(buf.position() + 2 * n);
+        return n;
+    }
+
+    /** Decodes the samples from index {@code p} up to the limit into {@code dst[off..]} without moving {@code buf}. */
+    public static int decodeInt16Le(ByteBuffer buf, int p, short[] dst, int off) {
+        int n = Math.min(Math.max(0, buf.limit() - p) >> 1, dst.length - off);
+        for (int i = 0; i < n; i++, p += 2) {
+            dst[off + i] = (short) ((buf.get(p) & 0xFF) | (buf.get(p + 1) << 8));
+        }
+        return n;
+    }
+
+    /** Decodes all whole samples of {@code bytes} into {@code dst[off..]}; returns the number written. */
+    public static int decodeInt16Le(byte[] bytes, short[] dst, int off) {
+        int n = Math.min(bytes.length >> 1, dst.length - off);
+        for (int i = 0, p = 0; i < n; i++, p += 2) {
+            dst[off + i] = (short) ((bytes[p] & 0xFF) | (bytes[p + 1] << 8));
+        }
+        return n;
+    }
+
+    /** Same as {@link #decodeInt16Le(ByteBuffer, short[], int)} but widens straight into floats (raw counts). */
+    public static int decodeInt16Le(ByteBuffer buf, float[] dst, int off) {
+        int n = Math.min(buf.remaining() >> 1, dst.length - off);
+        int p = buf.position();
+        for (int i = 0; i < n; i++, p += 2) {
+            dst[off + i] = (short) ((buf.get(p) & 0xFF) | (buf.get(p + 1) << 8));
+        }
+        buf.position(p);
+        return n;
+    }
+
+    /** Encodes {@code n} samples little-endian into {@code dst}; returns the byte length (2 * n). */
+    public static int encodeInt16Le(short[] src, int n, byte[] dst) {
+        int pos = 0;
+        for (int i = 0; i < n; i++) {
+            short v = src[i];
+            dst[pos++] = (byte) v;
+            dst[pos++] = (byte) (v >> 8);
+        }
+        return pos;
+    }
+
+    /** Rounds float counts to Int16 (saturating) and encodes them little-endian; returns the byte length. */
+    public static int encodeInt16Le(float[] src, int n, byte[] dst) {
+        int pos = 0;
+        for (int i = 0; i < n; i++) {
+            int v = Math.round(src[i]);
+            if (v > Short.MAX_VALUE) v = Short.MAX_VALUE; else if (v < Short.MIN_VALUE) v = Short.MIN_VALUE;
+            dst[pos++] = (byte) v;
+            dst[pos++] = (byte) (v >> 8);
+        }
+        return pos;
+    }
+
+    /** Encodes {@code n} floats as little-endian IEEE-754 Float32; returns the byte length (4 * n). */
+    public static int encodeFloat32Le(float[] src, int n, byte[] dst) {
+        int pos = 0;
+        for (int i = 0; i < n; i++) {
+            int bits = Float.floatToRawIntBits(src[i]);
+            dst[pos++] = (byte) bits;
+            dst[pos++] = (byte) (bits >> 8);
+            dst[pos++] = (byte) (bits >> 16);
+            dst[pos++] = (byte) (bits >> 24);
+        }
+        return pos;
+    }
+
+    /** Convenience for byte[] payloads: decodes all whole samples into a new array. */
+    public static short[] decodeInt16Le(byte[] bytes) {
+        short[] out = new short[bytes.length >> 1];
+        decodeInt16Le(bytes, out, 0);
+        return out;
+    }
+}
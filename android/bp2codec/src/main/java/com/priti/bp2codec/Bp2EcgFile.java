@@ -0,0 +1,36 @@
+package com.priti.bp2codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * BP2 ECG file contents as returned by a file read (file type 2).
+ *
+ * The app treats the body as little-endian Int16 counts at {@link #MV_PER_COUNT} mV per count,
+ * 125 Hz. Callers that know the vendor header length pass it as {@code bodyOffset}; 0 decodes the
+ * whole file, which is what the WebView fallback does today.
+ */
+public final class Bp2EcgFile {
+
+    public static final int FILE_TYPE_ECG = 2;
+    public static final int SAMPLE_RATE_HZ = 125;
+    public static final double MV_PER_COUNT = 0.003098;
+
+    private Bp2EcgFile() {}
+
+    /** Samples available after {@code bodyOffset}, or 0 when the file is shorter than the offset. */
+    public static int sampleCount(ByteBuffer file, int bodyOffset) {
+        int body = file.remaining() - bodyOffset;
+        return body > 0 ? body >> 1 : 0;
+    }
+
+    /** Decodes the body into {@code dst} without moving {@code file}; returns the sample count. */
+    public static int decodeWave(ByteBuffer file, int bodyOffset, short[] dst) {
+        if (sampleCount(file, bodyOffset) == 0) return 0;
+        return Bp2Codec.decodeInt16Le(file, file.position() + bodyOffset, dst, 0);
+    }
+
+    /** Whole seconds of waveform in {@code samples} at {@link #SAMPLE_RATE_HZ}. */
+    public static int durationSec(int samples) {
+        return samples / SAMPLE_RATE_HZ;
+    }
+}
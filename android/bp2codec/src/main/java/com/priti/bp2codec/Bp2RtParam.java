@@ -0,0 +1,60 @@
+package com.priti.bp2codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * BP2 real-time parameter frame: {@code param_data_type (u8)} followed by {@code param_data}.
+ *
+ * Data types: 0 = BP measuring (live pressure), 1 = BP result, 2 = ECG measuring, 3 = ECG result.
+ * {@link #decode} dispatches on the type and fills the matching fields; the holder (and its
+ * {@link #bpResult}) is reused, so decoding a frame allocates nothing.
+ */
+public final class Bp2RtParam {
+
+    public static final int TYPE_BP_MEASURING = 0;
+    public static final int TYPE_BP_RESULT = 1;
+    public static final int TYPE_ECG_MEASURING = 2;
+    public static final int TYPE_ECG_RESULT = 3;
+
+    public int dataType = -1;
+    /** Live cuff pressure for type 0, or {@link Bp2Codec#PRESSURE_INVALID}. */
+    public int pressure = Bp2Codec.PRESSURE_INVALID;
+    /** Valid when {@link #hasBpResult} is true (type 1). */
+    public final Bp2BpResult bpResult = new Bp2BpResult();
+    public boolean hasBpResult;
+    /** ECG result heart rate for type 3, or -1. */
+    public int ecgHeartRate = -1;
+
+    /** Decodes a full frame (type byte first) from the buffer's position without moving it. */
+    public boolean decode(ByteBuffer buf) {
+        if (!buf.hasRemaining()) return false;
+        int p = buf.position();
+        return decodeData(buf.get(p) & 0xFF, buf, p + 1);
+    }
+
+    /** Decodes {@code param_data} when the type is already known (e.g. from the vendor getter). */
+    public boolean decodeData(int type, ByteBuffer data) {
+        return decodeData(type, data, data.position());
+    }
+
+    /** Decodes {@code param_data} starting at index {@code p} of {@code buf}, up to its limit. */
+    public boolean decodeData(int type, ByteBuffer buf, int p) {
+        dataType = type;
+        pressure = Bp2Codec.PRESSURE_INVALID;
+        hasBpResult = false;
+        ecgHeartRate = -1;
+        switch (type) {
+            case TYPE_BP_MEASURING:
+                pressure = Bp2Codec.decodePressure(buf, p);
+                return pressure != Bp2Codec.PRESSURE_INVALID;
+            case TYPE_BP_RESULT:
+                hasBpResult = bpResult.decode(buf, p);
+                return hasBpResult;
+            case TYPE_ECG_RESULT:
+                ecgHeartRate = Bp2Codec.decodeEcgHeartRate(buf, p);
+                return ecgHeartRate > 0;
+            default:
+                return type == TYPE_ECG_MEASURING;
+        }
+    }
+}
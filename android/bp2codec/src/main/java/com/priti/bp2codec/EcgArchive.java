@@ -0,0 +1,345 @@
+package com.priti.bp2codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Compact archive format for ECG counts: delta, then zigzag, then LEB128 varint, in independent blocks.
+ *
+ * Layout (little-endian):
+ * <pre>
+ *   header  "ECGZ" | version u8 | reserved u8 | sampleRate u16 | scaleUvPerLsb f32 | durationMs u32
+ *   block   sampleCount varint (1..) | payloadBytes varint | first sample (zigzag varint) | deltas (zigzag varint)...
+ *   end     0 varint | totalSamples varint
+ * </pre>
+ * Each block restarts from an absolute sample, which bounds the delta chain to one block. There is no
+ * checksum or resync: a malformed block or truncated stream ends the read with an IOException. ECG counts move a few LSB per sample at 125 Hz, so most deltas fit in one
+ * byte: about 1.06 bytes/sample on a realistic strip, i.e. ~1.9x smaller than Int16LE, ~2.5x than base64
+ * Int16 and ~3x than a JSON count array (see EcgArchiveTest). {@link Writer} and {@link Reader} stream block by
+ * block with buffers sized once; {@link #encode} and {@link #decode} are whole-record conveniences.
+ */
+public final class EcgArchive {
+
+    public static final int MAGIC = 0x5A474345; // "ECGZ" read as little-endian u32
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 16;
+    public static final int DEFAULT_BLOCK_SAMPLES = 256;
+    // An Int16 delta zigzags to at most 17 bits = 3 varint bytes
+    private static final int MAX_BYTES_PER_SAMPLE = 3;
+    private static final int MAX_BLOCK_SAMPLES = 1 << 16;
+
+    private EcgArchive() {}
+
+    /** Archive of {@code samples[0, n)}; {@code durationMs} 0 means "derive from sample count". */
+    public static byte[] encode(short[] samples, int n, int sampleRate, float scaleUvPerLsb, long durationMs) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(HEADER_BYTES + n + n / 4 + 16);
+        try {
+            Writer w = new Writer(bos, sampleRate, scaleUvPerLsb, durationMs, DEFAULT_BLOCK_SAMPLES);
+            w.write(samples, 0, n);
+            w.finish();
+        } catch (IOException e) {
+            // ByteArrayOutputStream does not throw
+            throw new IllegalStateException(e);
+        }
+        return bos.toByteArray();
+    }
+
+    /** Decodes a whole archive (the buffer is not moved). */
+    public static short[] decode(ByteBuffer archive) throws IOException {
+        Reader r = new Reader(new ByteBufferInputStream(archive.duplicate()));
+        return r.readAll();
+    }
+
+    public static short[] decode(byte[] archive) throws IOException {
+        return decode(ByteBuffer.wrap(archive));
+    }
+
+    static int zigzag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    static int unzigzag(int v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    static int putVarint(byte[] dst, int pos, int v) {
+        while ((v & ~0x7F) != 0) {
+            dst[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        dst[pos++] = (byte) v;
+        return pos;
+    }
+
+    private static void writeVarint(OutputStream out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    private static long readVarint(InputStream in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) throw new EOFException("Truncated ECG archive");
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("Malformed varint in ECG archive");
+    }
+
+    private static void readFully(InputStream in, byte[] dst, int len) throws IOException {
+        int off = 0;
+        while (off < len) {
+            int r = in.read(dst, off, len - off);
+            if (r < 0) throw new EOFException("Truncated ECG archive");
+            off += r;
+        }
+    }
+
+    /**
+     * Streams samples into an archive. The header is written by the constructor, a block each time
+     * {@code blockSamples} samples have been written, and the final partial block plus the end marker
+     * by {@link #finish()}. Not thread-safe.
+     */
+    public static final class Writer implements Closeable {
+        private final OutputStream out;
+        private final short[] block;
+        private final byte[] payload;
+        private int count;
+        private long samples;
+        private long bytes;
+        private boolean finished;
+
+        public Writer(OutputStream out, int sampleRate, float scaleUvPerLsb, long durationMs) throws IOException {
+            this(out, sampleRate, scaleUvPerLsb, durationMs, DEFAULT_BLOCK_SAMPLES);
+        }
+
+        public Writer(OutputStream out, int sampleRate, float scaleUvPerLsb, long durationMs, int blockSamples) throws IOException {
+            if (sampleRate <= 0 || sampleRate > 0xFFFF) throw new IllegalArgumentException("sampleRate out of range: " + sampleRate);
+            if (blockSamples <= 0 || blockSamples > MAX_BLOCK_SAMPLES) throw new IllegalArgumentException("blockSamples out of range: " + blockSamples);
+            if (durationMs < 0 || durationMs > 0xFFFFFFFFL) throw new IllegalArgumentException("durationMs out of range: " + durationMs);
+            this.out = out;
+            block = new short[blockSamples];
+            payload = new byte[blockSamples * MAX_BYTES_PER_SAMPLE];
+            ByteBuffer h = ByteBuffer.allocate(HEADER_BYTES).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+            h.putInt(MAGIC);
+            h.put((byte) VERSION);
+            h.put((byte) 0);
+            h.putShort((short) sampleRate);
+            h.putFloat(scaleUvPerLsb);
+            h.putInt((int) durationMs);
+            out.write(h.array());
+            bytes = HEADER_BYTES;
+        }
+
+        public void write(short[] src, int off, int len) throws IOException {
+            if (finished) throw new IOException("ECG archive already finished");
+            while (len > 0) {
+                int n = Math.min(len, block.length - count);
+                System.arraycopy(src, off, block, count, n);
+                count += n;
+                off += n;
+                len -= n;
+                if (count == block.length) flushBlock();
+            }
+        }
+
+        /** Writes the pending partial block and the end marker; the stream is left open. */
+        public void finish() throws IOException {
+            if (finished) return;
+            flushBlock();
+            writeVarint(out, 0);
+            writeVarint(out, samples);
+            bytes += 1 + varintLength(samples);
+            out.flush();
+            finished = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                finish();
+            } finally {
+                out.close();
+            }
+        }
+
+        public long samples() {
+            return samples + count;
+        }
+
+        /** Bytes written to the stream so far. */
+        public long bytes() {
+            return bytes;
+        }
+
+        private void flushBlock() throws IOException {
+            if (count == 0) return;
+            int pos = putVarint(payload, 0, zigzag(block[0]));
+            for (int i = 1; i < count; i++) pos = putVarint(payload, pos, zigzag(block[i] - block[i - 1]));
+            writeVarint(out, count);
+            writeVarint(out, pos);
+            out.write(payload, 0, pos);
+            bytes += varintLength(count) + varintLength(pos) + pos;
+            samples += count;
+            count = 0;
+        }
+
+        private static int varintLength(long v) {
+            int n = 1;
+            while ((v & ~0x7FL) != 0) {
+                v >>>= 7;
+                n++;
+            }
+            return n;
+        }
+    }
+
+    /** Streams samples back out of an archive. The header is read by the constructor. Not thread-safe. */
+    public static final class Reader implements Closeable {
+        private final InputStream in;
+        private final int sampleRate;
+        private final float scaleUvPerLsb;
+        private final long durationMs;
+        private byte[] payload = new byte[DEFAULT_BLOCK_SAMPLES * MAX_BYTES_PER_SAMPLE];
+        private short[] block = new short[DEFAULT_BLOCK_SAMPLES];
+        private int blockLen;
+        private int blockPos;
+        private long samples;
+        private long decoded;
+        private boolean ended;
+
+        public Reader(InputStream in) throws IOException {
+            this.in = in;
+            byte[] h = new byte[HEADER_BYTES];
+            readFully(in, h, HEADER_BYTES);
+            ByteBuffer b = ByteBuffer.wrap(h).order(java.nio.ByteOrder.LITTLE_ENDIAN);
+            if (b.getInt() != MAGIC) throw new IOException("Not an ECG archive");
+            int version = b.get() & 0xFF;
+            if (version != VERSION) throw new IOException("Unsupported ECG archive version " + version);
+            b.get();
+            sampleRate = b.getShort() & 0xFFFF;
+            scaleUvPerLsb = b.getFloat();
+            durationMs = b.getInt() & 0xFFFFFFFFL;
+        }
+
+        public int sampleRate() {
+            return sampleRate;
+        }
+
+        public float scaleUvPerLsb() {
+            return scaleUvPerLsb;
+        }
+
+        /** Duration from the header; when the writer left it 0, derived from the samples read so far. */
+        public long durationMs() {
+            if (durationMs > 0 || sampleRate == 0) return durationMs;
+            return samples * 1000L / sampleRate;
+        }
+
+        /** Samples returned so far. */
+        public long samples() {
+            return samples;
+        }
+
+        /** Reads up to {@code len} samples; returns the count, or -1 at the end of the archive. */
+        public int read(short[] dst, int off, int len) throws IOException {
+            int total = 0;
+            while (total < len) {
+                if (blockPos == blockLen && !nextBlock()) break;
+                int n = Math.min(len - total, blockLen - blockPos);
+                System.arraycopy(block, blockPos, dst, off + total, n);
+                blockPos += n;
+                total += n;
+            }
+            samples += total;
+            return total == 0 && len > 0 ? -1 : total;
+        }
+
+        public short[] readAll() throws IOException {
+            // Presize from the header; capped so a bogus duration cannot force a huge allocation
+            short[] out = new short[(int) Math.max(16, Math.min(1 << 20, durationMs * sampleRate / 1000L))];
+            int n = 0;
+            while (true) {
+                if (n == out.length) out = java.util.Arrays.copyOf(out, out.length * 2);
+                int r = read(out, n, out.length - n);
+                if (r < 0) break;
+                n += r;
+            }
+            return n == out.length ? out : java.util.Arrays.copyOf(out, n);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private boolean nextBlock() throws IOException {
+            if (ended) return false;
+            long count = readVarint(in);
+            if (count == 0) {
+                long expected = readVarint(in);
+                ended = true;
+                if (expected != decoded) throw new IOException("ECG archive sample count mismatch");
+                return false;
+            }
+            long len = readVarint(in);
+            if (count > MAX_BLOCK_SAMPLES || len > count * MAX_BYTES_PER_SAMPLE || len < count) {
+                throw new IOException("Malformed ECG archive block");
+            }
+            if (block.length < count) block = new short[(int) count];
+            if (payload.length < len) payload = new byte[(int) len];
+            readFully(in, payload, (int) len);
+            int pos = 0;
+            int prev = 0;
+            for (int i = 0; i < count; i++) {
+                int v = 0;
+                int shift = 0;
+                int b;
+                do {
+                    if (pos >= len || shift > 28) throw new IOException("Malformed ECG archive block");
+                    b = payload[pos++];
+                    v |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+                prev = i == 0 ? unzigzag(v) : prev + unzigzag(v);
+                block[i] = (short) prev;
+            }
+            if (pos != len) throw new IOException("Malformed ECG archive block");
+            blockLen = (int) count;
+            blockPos = 0;
+            decoded += count;
+            return true;
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buf;
+
+        ByteBufferInputStream(ByteBuffer buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        public int read() {
+            return buf.hasRemaining() ? buf.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buf.hasRemaining()) return -1;
+            int n = Math.min(len, buf.remaining());
+            buf.get(b, off, n);
+            return n;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.priti.bp2codec;
+
+/**
+ * Display decimation for ECG strips: reduces a waveform to roughly one or two points per target pixel
+ * before it crosses the bridge.
+ *
+ * {@link #minMax} keeps the min and max of every bucket, in the order they occur, so a polyline through
+ * the output traces the same envelope as the full signal (QRS peaks survive). {@link #lttb}
+ * (Largest-Triangle-Three-Buckets) picks one representative sample per bucket, for smoother previews.
+ * Both write into caller-owned arrays and never allocate.
+ */
+public final class EcgDecimator {
+
+    private EcgDecimator() {}
+
+    /** Buckets needed to show {@code samples} over {@code widthPx} pixels spanning {@code windowSamples}. */
+    public static int bucketsFor(int samples, int widthPx, int windowSamples) {
+        if (samples <= 0 || widthPx <= 0) return 0;
+        if (windowSamples <= 0) windowSamples = samples;
+        long b = ((long) samples * widthPx + windowSamples - 1) / windowSamples;
+        return (int) Math.max(1, Math.min(samples, b));
+    }
+
+    /**
+     * Min/max envelope of {@code src[off, off+len)} in {@code buckets} equal buckets. Writes at most
+     * {@code 2 * buckets} values into {@code dst} (one value for a single-sample bucket or a flat one)
+     * and returns the count written. When two points per bucket would not be fewer than {@code len},
+     * the input is copied through unchanged, so the output never exceeds the input.
+     */
+    public static int minMax(float[] src, int off, int len, int buckets, float[] dst) {
+        if (len <= 0 || buckets <= 0) return 0;
+        if (2L * buckets >= len) {
+            System.arraycopy(src, off, dst, 0, len);
+            return len;
+        }
+        int w = 0;
+        for (int b = 0; b < buckets; b++) {
+            int start = off + (int) ((long) b * len / buckets);
+            int end = off + (int) ((long) (b + 1) * len / buckets);
+            int iMin = start;
+            int iMax = start;
+            for (int i = start + 1; i < end; i++) {
+                if (src[i] < src[iMin]) iMin = i;
+                if (src[i] > src[iMax]) iMax = i;
+            }
+            if (iMin == iMax) {
+                dst[w++] = src[iMin];
+            } else if (iMin < iMax) {
+                dst[w++] = src[iMin];
+                dst[w++] = src[iMax];
+            } else {
+                dst[w++] = src[iMax];
+                dst[w++] = src[iMin];
+            }
+        }
+        return w;
+    }
+
+    /**
+     * LTTB over {@code src[off, off+len)} down to {@code threshold} points (first and last always kept).
+     * Writes the selected sample indices, relative to {@code off} and ascending, into {@code idxOut}
+     * and returns the count. With {@code threshold >= len} or {@code threshold < 3} every index is kept.
+     */
+    public static int lttb(float[] src, int off, int len, int threshold, int[] idxOut) {
+        if (len <= 0) return 0;
+        if (threshold >= len || threshold < 3) {
+            for (int i = 0; i < len; i++) idxOut[i] = i;
+            return len;
+        }
+        double every = (double) (len - 2) / (threshold - 2);
+        int a = 0;
+        int w = 0;
+        idxOut[w++] = 0;
+        for (int i = 0; i < threshold - 2; i++) {
+            // Average of the next bucket is the third triangle vertex
+            int avgStart = (int) Math.floor((i + 1) * every) + 1;
+            int avgEnd = Math.min((int) Math.floor((i + 2) * every) + 1, len);
+            double avgX = 0;
+            double avgY = 0;
+            int avgLen = avgEnd - avgStart;
+            for (int j = avgStart; j < avgEnd; j++) {
+                avgX += j;
+                avgY += src[off + j];
+            }
+            if (avgLen > 0) {
+                avgX /= avgLen;
+                avgY /= avgLen;
+            } else {
+                avgX = len - 1;
+                avgY = src[off + len - 1];
+            }
+            int rangeStart = (int) Math.floor(i * every) + 1;
+            int rangeEnd = (int) Math.floor((i + 1) * every) + 1;
+            double ax = a;
+            double ay = src[off + a];
+            double maxArea = -1;
+            int next = rangeStart;
+            for (int j = rangeStart; j < rangeEnd; j++) {
+                double area = Math.abs((ax - avgX) * (src[off + j] - ay) - (ax - j) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = j;
+                }
+            }
+            idxOut[w++] = next;
+            a = next;
+        }
+        idxOut[w++] = len - 1;
+        return w;
+    }
+}
@@ -0,0 +1,136 @@
+package com.priti.bp2codec;
+
+/**
+ * Streaming ECG clean-up filter: a 2nd-order Butterworth high-pass (RBJ) for baseline wander followed
+ * by a mains notch (50 or 60 Hz) with a fixed 2 Hz bandwidth. Both stages are biquads in direct form I
+ * with double state, designed for the given sample rate in the constructor; {@code process} is O(1)
+ * per sample and never allocates.
+ *
+ * The first sample after construction or {@link #reset()} primes the high-pass as if the input had
+ * always been at that level, so a large DC offset (raw counts) does not produce a start-up transient.
+ * Output keeps the input's unit. Not thread-safe.
+ */
+public final class EcgFilter {
+
+    public static final double DEFAULT_HIGH_PASS_HZ = 0.5;
+    private static final double HIGH_PASS_Q = 0.7071067811865476;
+    // Pole radius follows the bandwidth in Hz, so the notch is as narrow (and settles as fast, ~0.2 s)
+    // at 60 Hz on a 125 Hz stream as it is at 50 Hz; an RBJ notch narrows sharply near Nyquist
+    private static final double NOTCH_BANDWIDTH_HZ = 2.0;
+
+    private final int fs;
+    private final double highPassHz;
+    private final int notchHz;
+
+    private final boolean hp;
+    private final double hb0, hb1, hb2, ha1, ha2;
+    private double hx1, hx2, hy1, hy2;
+
+    private final boolean notch;
+    private final double nb0, nb1, nb2, na1, na2;
+    private double nx1, nx2, ny1, ny2;
+
+    private boolean primed;
+
+    /**
+     * @param highPassHz high-pass corner, 0 to disable; must be below Nyquist
+     * @param notchHz    mains frequency to remove (typically 50 or 60), 0 to disable; must be below Nyquist
+     */
+    public EcgFilter(int sampleRateHz, double highPassHz, int notchHz) {
+        if (sampleRateHz <= 0) throw new IllegalArgumentException("sampleRateHz must be positive");
+        double nyquist = sampleRateHz / 2.0;
+        if (highPassHz < 0 || highPassHz >= nyquist) throw new IllegalArgumentException("highPassHz out of range: " + highPassHz);
+        if (notchHz < 0 || notchHz >= nyquist) throw new IllegalArgumentException("notchHz out of range for " + sampleRateHz + " Hz: " + notchHz);
+        fs = sampleRateHz;
+        this.highPassHz = highPassHz;
+        this.notchHz = notchHz;
+
+        hp = highPassHz > 0;
+        if (hp) {
+            double w0 = 2 * Math.PI * highPassHz / fs;
+            double cos = Math.cos(w0);
+            double alpha = Math.sin(w0) / (2 * HIGH_PASS_Q);
+            double a0 = 1 + alpha;
+            hb0 = (1 + cos) / 2 / a0;
+            hb1 = -(1 + cos) / a0;
+            hb2 = hb0;
+            ha1 = -2 * cos / a0;
+            ha2 = (1 - alpha) / a0;
+        } else {
+            hb0 = 1;
+            hb1 = hb2 = ha1 = ha2 = 0;
+        }
+
+        notch = notchHz > 0;
+        if (notch) {
+            double cos = Math.cos(2 * Math.PI * notchHz / fs);
+            double r = 1 - Math.PI * NOTCH_BANDWIDTH_HZ / fs;
+            // Zeros on the unit circle at f0, poles just inside; scaled for unity gain at DC
+            double k = (1 - 2 * r * cos + r * r) / (2 - 2 * cos);
+            nb0 = k;
+            nb1 = -2 * cos * k;
+            nb2 = k;
+            na1 = -2 * r * cos;
+            na2 = r * r;
+        } else {
+            nb0 = 1;
+            nb1 = nb2 = na1 = na2 = 0;
+        }
+    }
+
+    public int sampleRate() {
+        return fs;
+    }
+
+    public double highPassHz() {
+        return highPassHz;
+    }
+
+    public int notchHz() {
+        return notchHz;
+    }
+
+    /** Clears the filter state; the next sample primes it again. */
+    public void reset() {
+        hx1 = hx2 = hy1 = hy2 = 0;
+        nx1 = nx2 = ny1 = ny2 = 0;
+        primed = false;
+    }
+
+    public float process(float sample) {
+        double x = sample;
+        if (!primed) {
+            primed = true;
+            // Steady state for a constant input: the high-pass outputs 0, so the notch starts at rest
+            if (hp) hx1 = hx2 = x;
+            else if (notch) nx1 = nx2 = ny1 = ny2 = x;
+        }
+        if (hp) {
+            double y = hb0 * x + hb1 * hx1 + hb2 * hx2 - ha1 * hy1 - ha2 * hy2;
+            hx2 = hx1;
+            hx1 = x;
+            hy2 = hy1;
+            hy1 = y;
+            x = y;
+        }
+        if (notch) {
+            double y = nb0 * x + nb1 * nx1 + nb2 * nx2 - na1 * ny1 - na2 * ny2;
+            nx2 = nx1;
+            nx1 = x;
+            ny2 = ny1;
+            ny1 = y;
+            x = y;
+        }
+        return (float) x;
+    }
+
+    /** Filters {@code src[off, off+len)} into {@code dst[dstOff, dstOff+len)}. */
+    public void process(short[] src, int off, int len, float[] dst, int dstOff) {
+        for (int i = 0; i < len; i++) dst[dstOff + i] = process(src[off + i]);
+    }
+
+    /** Filters {@code src[off, off+len)} into {@code dst[dstOff, dstOff+len)}; may be done in place. */
+    public void process(float[] src, int off, int len, float[] dst, int dstOff) {
+        for (int i = 0; i < len; i++) dst[dstOff + i] = process(src[off + i]);
+    }
+}
@@ -0,0 +1,125 @@
+package com.priti.bp2codec;
+
+/**
+ * Emission cadence for the live ECG stream under consumer acknowledgements.
+ *
+ * The consumer acks the highest batch sequence it has rendered. Batches emitted but not yet acked are
+ * the lag. With no lag the stream runs at {@code minIntervalMs}. Each unacked batch doubles the
+ * interval up to {@code maxIntervalMs}, so a slow consumer gets fewer, larger batches. At
+ * {@code maxInFlight} unacked batches emission pauses until an ack arrives. If no ack arrives for
+ * {@code stallMs}, the consumer is treated as gone and the window resets. Time is caller-supplied
+ * milliseconds, so the class is deterministic under test. Not thread-safe; confine to the decode thread.
+ */
+public final class EcgFlowController {
+
+    public static final int DEFAULT_MIN_INTERVAL_MS = 50;
+    public static final int DEFAULT_MAX_INTERVAL_MS = 1000;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 6;
+    public static final int DEFAULT_STALL_MS = 3000;
+
+    private final int minIntervalMs;
+    private final int maxIntervalMs;
+    private final int maxInFlight;
+    private final int maxBatch;
+    private final long stallMs;
+
+    private long emittedSeq;
+    private long ackedSeq;
+    private long lastEmitMs;
+    private long lastAckMs;
+    private boolean deferredSinceEmit;
+
+    private long deferredTicks;
+    private long coalescedSamples;
+    private long stalls;
+
+    public EcgFlowController(int minIntervalMs, int maxIntervalMs, int maxInFlight, int maxBatch, long stallMs) {
+        if (minIntervalMs <= 0 || maxIntervalMs < minIntervalMs || maxInFlight <= 0 || maxBatch <= 0) {
+            throw new IllegalArgumentException("invalid flow-control window");
+        }
+        this.minIntervalMs = minIntervalMs;
+        this.maxIntervalMs = maxIntervalMs;
+        this.maxInFlight = maxInFlight;
+        this.maxBatch = maxBatch;
+        this.stallMs = stallMs;
+    }
+
+    /** Restarts the window at {@code seq} (the last sequence already emitted), e.g. for a new session. */
+    public void reset(long seq, long nowMs) {
+        emittedSeq = seq;
+        ackedSeq = seq;
+        lastEmitMs = 0L;
+        lastAckMs = nowMs;
+        deferredSinceEmit = false;
+    }
+
+    /** Consumer has rendered every batch up to and including {@code seq}. Stale or future acks are clamped. */
+    public void onAck(long seq, long nowMs) {
+        if (seq > ackedSeq) ackedSeq = Math.min(seq, emittedSeq);
+        lastAckMs = nowMs;
+    }
+
+    public int inFlight() {
+        return (int) (emittedSeq - ackedSeq);
+    }
+
+    /** Current target interval for the observed lag. */
+    public int intervalMs() {
+        int lag = Math.min(inFlight(), 16);
+        long iv = (long) minIntervalMs << lag;
+        return (int) Math.min(maxIntervalMs, iv);
+    }
+
+    /**
+     * How many samples to emit now given {@code pending} buffered; 0 means hold. The caller drains up to
+     * that many and reports the batch with {@link #onEmit}.
+     */
+    public int poll(long nowMs, int pending) {
+        if (pending <= 0) return 0;
+        if (inFlight() >= maxInFlight) {
+            if (nowMs - lastAckMs < stallMs) {
+                deferredTicks++;
+                deferredSinceEmit = true;
+                return 0;
+            }
+            // No ack for too long: assume the consumer dropped acks (reload, backgrounded) and resync
+            stalls++;
+            ackedSeq = emittedSeq;
+            lastAckMs = nowMs;
+        }
+        if (nowMs - lastEmitMs < intervalMs() && pending < maxBatch) {
+            if (inFlight() > 0) {
+                deferredTicks++;
+                deferredSinceEmit = true;
+            }
+            return 0;
+        }
+        return Math.min(pending, maxBatch);
+    }
+
+    /** Records an emitted batch of {@code count} samples with sequence {@code seq}. */
+    public void onEmit(long seq, int count, long nowMs) {
+        if (deferredSinceEmit) coalescedSamples += count;
+        deferredSinceEmit = false;
+        emittedSeq = seq;
+        lastEmitMs = nowMs;
+    }
+
+    /** Ticks held back because the consumer was behind. */
+    public long deferredTicks() {
+        return deferredTicks;
+    }
+
+    /** Samples that went out in a batch stretched by consumer lag. */
+    public long coalescedSamples() {
+        return coalescedSamples;
+    }
+
+    public long stalls() {
+        return stalls;
+    }
+
+    public int maxBatch() {
+        return maxBatch;
+    }
+}
@@ -0,0 +1,81 @@
+package com.priti.bp2codec;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer/single-consumer ring of ECG samples.
+ *
+ * The RT observer writes decoded samples (shorts or floats) and the batcher drains them in bulk
+ * into a caller-owned scratch array, so the live stream never boxes a sample or allocates per packet.
+ * Only the producer may call {@code offer*}; only the consumer may call {@code drain}/{@code clear}.
+ */
+public final class EcgRingBuffer {
+
+    private final float[] data;
+    private final int mask;
+    // Monotonic positions; index = position & mask. Written by exactly one side each.
+    private final AtomicLong readPos = new AtomicLong(0L);
+    private final AtomicLong writePos = new AtomicLong(0L);
+
+    public EcgRingBuffer(int minCapacity) {
+        int cap = Integer.highestOneBit(Math.max(2, minCapacity - 1)) << 1;
+        data = new float[cap];
+        mask = cap - 1;
+    }
+
+    public int capacity() {
+        return data.length;
+    }
+
+    public int size() {
+        return (int) (writePos.get() - readPos.get());
+    }
+
+    /** Producer: copies up to {@code len} samples; returns how many fit (the rest are dropped). */
+    public int offer(short[] src, int off, int len) {
+        long w = writePos.get();
+        int n = Math.min(len, data.length - (int) (w - readPos.get()));
+        for (int i = 0; i < n; i++) {
+            data[(int) ((w + i) & mask)] = src[off + i];
+        }
+        writePos.lazySet(w + n);
+        return n;
+    }
+
+    /** Producer: copies up to {@code len} samples; returns how many fit (the rest are dropped). */
+    public int offer(float[] src, int off, int len) {
+        long w = writePos.get();
+        int n = Math.min(len, data.length - (int) (w - readPos.get()));
+        int start = (int) (w & mask);
+        int first = Math.min(n, data.length - start);
+        System.arraycopy(src, off, data, start, first);
+        if (n > first) System.arraycopy(src, off + first, data, 0, n - first);
+        writePos.lazySet(w + n);
+        return n;
+    }
+
+    /** Consumer: moves up to {@code max} samples into {@code dst}; returns the count moved. */
+    public int drain(float[] dst, int max) {
+        long r = readPos.get();
+        int n = Math.min(Math.min(max, dst.length), (int) (writePos.get() - r));
+        int start = (int) (r & mask);
+        int first = Math.min(n, data.length - start);
+        System.arraycopy(data, start, dst, 0, first);
+        if (n > first) System.arraycopy(data, 0, dst, first, n - first);
+        readPos.lazySet(r + n);
+        return n;
+    }
+
+    /** Consumer: discards up to {@code max} of the oldest samples; returns the count discarded. */
+    public int skip(int max) {
+        long r = readPos.get();
+        int n = Math.min(max, (int) (writePos.get() - r));
+        readPos.lazySet(r + n);
+        return n;
+    }
+
+    /** Consumer: discards everything currently buffered. */
+    public void clear() {
+        readPos.lazySet(writePos.get());
+    }
+}
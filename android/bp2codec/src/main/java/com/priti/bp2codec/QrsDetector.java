@@ -0,0 +1,234 @@
+package com.priti.bp2codec;
+
+/**
+ * Streaming Pan-Tompkins-style QRS detector with a rolling heart rate.
+ *
+ * Each sample is band-passed (biquad centred on 10 Hz), differentiated, squared and run through a
+ * 150 ms moving-window integrator. Peaks of the integrated signal are classified against adaptive
+ * signal/noise levels. A candidate beat is confirmed once the 200 ms refractory window has passed,
+ * and search-back recovers a beat missed after 1.66 average RR intervals. The first two seconds only
+ * train the thresholds. Work per sample is O(1) and all buffers are sized in the constructor.
+ * Input scale does not matter (raw counts or mV). Not thread-safe.
+ */
+public final class QrsDetector {
+
+    private static final double LEARN_SEC = 2.0;
+    private static final double REFRACTORY_SEC = 0.2;
+    private static final double MWI_SEC = 0.15;
+    private static final double MIN_RR_SEC = 0.25;
+    private static final double MAX_RR_SEC = 2.0;
+    private static final int RR_HISTORY = 8;
+
+    private final int fs;
+    private final int refractory;
+    private final int learnSamples;
+    private final int minRr;
+    private final int maxRr;
+    // Integrator peak sits roughly half a window (plus the derivative's 2 samples) after the R wave
+    private final int delay;
+
+    // Band-pass biquad (RBJ, constant 0 dB peak gain)
+    private final double b0, b2, a1, a2;
+    private double x1, x2, y1, y2;
+    // 5-point derivative history
+    private final double[] dHist = new double[4];
+    private int dPos;
+    // Moving-window integrator
+    private final double[] mwi;
+    private int mwiPos;
+    private double mwiSum;
+
+    private long n;
+    private double prev;
+    private double prevPrev;
+    private double learnMax;
+    private double learnSum;
+    private double spki;
+    private double npki;
+
+    private long pendingIdx = -1;
+    private double pendingPeak;
+    private long lastBeatIdx = -1;
+    // Largest sub-threshold peak since the last beat, for search-back
+    private long candIdx = -1;
+    private double candPeak;
+
+    private final int[] rr = new int[RR_HISTORY];
+    private int rrCount;
+    private int rrPos;
+    private long rrSum;
+    private long beats;
+
+    public QrsDetector(int sampleRateHz) {
+        if (sampleRateHz <= 0) throw new IllegalArgumentException("sampleRateHz must be positive");
+        fs = sampleRateHz;
+        refractory = (int) Math.round(REFRACTORY_SEC * fs);
+        learnSamples = (int) Math.round(LEARN_SEC * fs);
+        minRr = (int) Math.round(MIN_RR_SEC * fs);
+        maxRr = (int) Math.round(MAX_RR_SEC * fs);
+        mwi = new double[Math.max(1, (int) Math.round(MWI_SEC * fs))];
+        delay = mwi.length / 2 + 2;
+
+        double f0 = Math.min(10.0, fs * 0.2);
+        double w0 = 2 * Math.PI * f0 / fs;
+        double alpha = Math.sin(w0) / 2.0; // Q = 1: passband roughly 5-15 Hz
+        double a0 = 1 + alpha;
+        b0 = alpha / a0;
+        b2 = -alpha / a0;
+        a1 = -2 * Math.cos(w0) / a0;
+        a2 = (1 - alpha) / a0;
+    }
+
+    public int sampleRate() {
+        return fs;
+    }
+
+    /** Clears all state; the next two seconds train the thresholds again. */
+    public void reset() {
+        x1 = x2 = y1 = y2 = 0;
+        java.util.Arrays.fill(dHist, 0);
+        dPos = 0;
+        java.util.Arrays.fill(mwi, 0);
+        mwiPos = 0;
+        mwiSum = 0;
+        n = 0;
+        prev = prevPrev = 0;
+        learnMax = learnSum = 0;
+        spki = npki = 0;
+        pendingIdx = lastBeatIdx = candIdx = -1;
+        pendingPeak = candPeak = 0;
+        java.util.Arrays.fill(rr, 0);
+        rrCount = rrPos = 0;
+        rrSum = 0;
+        beats = 0;
+    }
+
+    /**
+     * Feeds one sample. Returns true when a beat is confirmed on this call; its position is then
+     * {@link #lastBeatSample()}. Confirmation lags the R wave by about the refractory window.
+     */
+    public boolean process(float sample) {
+        // Band-pass
+        double y = b0 * sample + b2 * x2 - a1 * y1 - a2 * y2;
+        x2 = x1;
+        x1 = sample;
+        y2 = y1;
+        y1 = y;
+        // Derivative: (2x[n] + x[n-1] - x[n-3] - 2x[n-4]) / 8
+        double xm1 = dHist[(dPos + 3) & 3];
+        double xm3 = dHist[(dPos + 1) & 3];
+        double xm4 = dHist[dPos];
+        double d = (2 * y + xm1 - xm3 - 2 * xm4) / 8.0;
+        dHist[dPos] = y;
+        dPos = (dPos + 1) & 3;
+        // Square + integrate
+        double sq = d * d;
+        mwiSum += sq - mwi[mwiPos];
+        mwi[mwiPos] = sq;
+        mwiPos = mwiPos + 1 == mwi.length ? 0 : mwiPos + 1;
+        double v = mwiSum / mwi.length;
+
+        long idx = n++;
+        boolean confirmed = false;
+        if (idx < learnSamples) {
+            if (v > learnMax) learnMax = v;
+            learnSum += v;
+            if (idx == learnSamples - 1) {
+                spki = learnMax / 3.0;
+                npki = learnSum / learnSamples / 2.0;
+            }
+        } else {
+            // Local maximum of the integrated signal at idx - 1
+            if (prev > prevPrev && prev >= v) classify(idx - 1, prev);
+            confirmed = confirmPending(idx) || searchBack(idx);
+        }
+        prevPrev = prev;
+        prev = v;
+        return confirmed;
+    }
+
+    private double threshold() {
+        return npki + 0.25 * (spki - npki);
+    }
+
+    private void classify(long idx, double peak) {
+        if (pendingIdx >= 0 && idx - pendingIdx < refractory) {
+            // Same QRS complex: keep the tallest ripple
+            if (peak > pendingPeak) {
+                pendingIdx = idx;
+                pendingPeak = peak;
+            }
+            return;
+        }
+        if (lastBeatIdx >= 0 && idx - lastBeatIdx < refractory) return;
+        if (peak > threshold()) {
+            pendingIdx = idx;
+            pendingPeak = peak;
+        } else {
+            npki = 0.125 * peak + 0.875 * npki;
+            if (peak > candPeak) {
+                candIdx = idx;
+                candPeak = peak;
+            }
+        }
+    }
+
+    private boolean confirmPending(long now) {
+        if (pendingIdx < 0 || now - pendingIdx < refractory) return false;
+        spki = 0.125 * pendingPeak + 0.875 * spki;
+        accept(pendingIdx);
+        pendingIdx = -1;
+        return true;
+    }
+
+    private boolean searchBack(long now) {
+        if (pendingIdx >= 0 || lastBeatIdx < 0 || rrCount == 0 || candIdx < 0) return false;
+        double rrAvg = (double) rrSum / rrCount;
+        if (now - lastBeatIdx < 1.66 * rrAvg) return false;
+        if (candPeak <= 0.5 * threshold()) return false;
+        spki = 0.25 * candPeak + 0.75 * spki;
+        accept(candIdx);
+        return true;
+    }
+
+    private void accept(long idx) {
+        if (lastBeatIdx >= 0) {
+            int interval = (int) (idx - lastBeatIdx);
+            if (interval >= minRr && interval <= maxRr) {
+                rrSum += interval - rr[rrPos];
+                rr[rrPos] = interval;
+                rrPos = (rrPos + 1) % RR_HISTORY;
+                if (rrCount < RR_HISTORY) rrCount++;
+            }
+        }
+        lastBeatIdx = idx;
+        candIdx = -1;
+        candPeak = 0;
+        beats++;
+    }
+
+    /** Sample index (since reset) of the last confirmed R wave, or -1. */
+    public long lastBeatSample() {
+        return lastBeatIdx < 0 ? -1 : Math.max(0, lastBeatIdx - delay);
+    }
+
+    /** Milliseconds since reset of the last confirmed R wave, or -1. */
+    public long lastBeatMs() {
+        long s = lastBeatSample();
+        return s < 0 ? -1 : s * 1000L / fs;
+    }
+
+    /** Rolling heart rate over the last {@value #RR_HISTORY} RR intervals; 0 until one interval is known. */
+    public int heartRateBpm() {
+        if (rrCount == 0) return 0;
+        return (int) Math.round(60.0 * fs * rrCount / rrSum);
+    }
+
+    public long beats() {
+        return beats;
+    }
+
+    public long samples() {
+        return n;
+    }
+}
@@ -0,0 +1,140 @@
+package com.priti.bp2codec;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class Bp2CodecTest {
+
+    private static byte[] hex(String s) {
+        String[] parts = s.trim().split("\\s+");
+        byte[] out = new byte[parts.length];
+        for (int i = 0; i < parts.length; i++) out[i] = (byte) Integer.parseInt(parts[i], 16);
+        return out;
+    }
+
+    @Test
+    public void bpResult_capturedFrame() {
+        // Device showed 128/90, HR 70
+        Bp2BpResult r = new Bp2BpResult();
+        assertTrue(r.decode(ByteBuffer.wrap(hex("01 00 00 80 00 5A 00 6C 00 46"))));
+        assertEquals(128, r.systolic);
+        assertEquals(90, r.diastolic);
+        assertEquals(70, r.pulseRate);
+        assertEquals((2 * 90 + 128) / 3, r.map);
+        assertEquals(0, r.resultCode);
+        assertTrue(r.inRange());
+    }
+
+    @Test
+    public void bpResult_tooShortLeavesFields() {
+        Bp2BpResult r = new Bp2BpResult();
+        r.systolic = 1;
+        assertFalse(r.decode(ByteBuffer.wrap(new byte[9])));
+        assertEquals(1, r.systolic);
+    }
+
+    @Test
+    public void bpResult_respectsBufferPosition() {
+        ByteBuffer buf = ByteBuffer.wrap(hex("FF FF 01 00 00 80 00 5A 00 6C 00 46"));
+        buf.position(2);
+        Bp2BpResult r = new Bp2BpResult();
+        assertTrue(r.decode(buf));
+        assertEquals(128, r.systolic);
+        assertEquals(2, buf.position());
+    }
+
+    @Test
+    public void pressure_strategies() {
+        assertEquals(0x0096, Bp2Codec.decodePressure(ByteBuffer.wrap(hex("00 96"))));  // big-endian 150
+        assertEquals(0x0096, Bp2Codec.decodePressure(ByteBuffer.wrap(hex("96 00"))));  // little-endian 150
+        assertEquals(0xC8, Bp2Codec.decodePressure(ByteBuffer.wrap(hex("C8 C8"))));    // single byte 200
+        assertEquals(Bp2Codec.PRESSURE_INVALID, Bp2Codec.decodePressure(ByteBuffer.wrap(new byte[1])));
+    }
+
+    @Test
+    public void ecgHeartRate_fallbackOrder() {
+        assertEquals(72, Bp2Codec.decodeEcgHeartRate(ByteBuffer.wrap(hex("48 00 00 00"))));
+        assertEquals(65, Bp2Codec.decodeEcgHeartRate(ByteBuffer.wrap(hex("FF FF 41 00"))));
+        assertEquals(-1, Bp2Codec.decodeEcgHeartRate(ByteBuffer.wrap(hex("FF FF FF FF"))));
+    }
+
+    @Test
+    public void int16Le_signedAndBounded() {
+        ByteBuffer buf = ByteBuffer.wrap(hex("01 00 FF FF 00 80 FF 7F 05"));
+        short[] dst = new short[3];
+        assertEquals(3, Bp2Codec.decodeInt16Le(buf, dst, 0));
+        assertArrayEquals(new short[] { 1, -1, Short.MIN_VALUE }, dst);
+        assertEquals(6, buf.position());
+
+        float[] f = new float[4];
+        assertEquals(1, Bp2Codec.decodeInt16Le(buf, f, 0));
+        assertEquals(Short.MAX_VALUE, f[0], 0f);
+        assertEquals(1, buf.remaining());
+    }
+
+    @Test
+    public void int16Le_absoluteAndArrayDecodeLeaveSourceAlone() {
+        ByteBuffer buf = ByteBuffer.wrap(hex("AA 01 00 FF FF 05"));
+        short[] dst = new short[4];
+        assertEquals(2, Bp2Codec.decodeInt16Le(buf, 1, dst, 1));
+        assertArrayEquals(new short[] { 0, 1, -1, 0 }, dst);
+        assertEquals(0, buf.position());
+        assertEquals(0, Bp2Codec.decodeInt16Le(buf, 9, dst, 0));
+
+        assertEquals(2, Bp2Codec.decodeInt16Le(hex("0A 00 F6 FF 07"), dst, 2));
+        assertArrayEquals(new short[] { 0, 1, 10, -10 }, dst);
+    }
+
+    @Test
+    public void rtParam_decodesAtOffset() {
+        ByteBuffer buf = ByteBuffer.wrap(hex("FF 01 01 00 00 80 00 5A 00 6C 00 46"));
+        Bp2RtParam p = new Bp2RtParam();
+        assertTrue(p.decodeData(Bp2RtParam.TYPE_BP_RESULT, buf, 2));
+        assertEquals(128, p.bpResult.systolic);
+        buf.position(1);
+        assertTrue(p.decode(buf));
+        assertEquals(90, p.bpResult.diastolic);
+        assertEquals(1, buf.position());
+    }
+
+    @Test
+    public void rtParam_dispatchesOnType() {
+        Bp2RtParam p = new Bp2RtParam();
+        assertTrue(p.decode(ByteBuffer.wrap(hex("00 00 96"))));
+        assertEquals(150, p.pressure);
+
+        assertTrue(p.decode(ByteBuffer.wrap(hex("01 01 00 00 80 00 5A 00 6C 00 46"))));
+        assertTrue(p.hasBpResult);
+        assertEquals(Bp2RtParam.TYPE_BP_RESULT, p.dataType);
+        assertEquals(Bp2Codec.PRESSURE_INVALID, p.pressure);
+        assertEquals(90, p.bpResult.diastolic);
+    }
+
+    @Test
+    public void ecgFile_bodyOffset() {
+        ByteBuffer file = ByteBuffer.wrap(hex("AA BB 0A 00 F6 FF"));
+        assertEquals(2, Bp2EcgFile.sampleCount(file, 2));
+        short[] dst = new short[2];
+        assertEquals(2, Bp2EcgFile.decodeWave(file, 2, dst));
+        assertArrayEquals(new short[] { 10, -10 }, dst);
+        assertEquals(0, file.position());
+        assertEquals(0, Bp2EcgFile.sampleCount(file, 8));
+    }
+
+    @Test
+    public void int16Le_encodeRoundTrip() {
+        short[] src = { 0, 1, -1, Short.MAX_VALUE, Short.MIN_VALUE };
+        byte[] bytes = new byte[src.length * 2];
+        assertEquals(bytes.length, Bp2Codec.encodeInt16Le(src, src.length, bytes));
+        assertArrayEquals(src, Bp2Codec.decodeInt16Le(bytes));
+
+        float[] counts = { 1.4f, -1.6f, 40000f };
+        assertEquals(6, Bp2Codec.encodeInt16Le(counts, counts.length, bytes));
+        short[] back = new short[3];
+        Bp2Codec.decodeInt16Le(ByteBuffer.wrap(bytes, 0, 6), back, 0);
+        assertArrayEquals(new short[] { 1, -2, Short.MAX_VALUE }, back);
+    }
+}
@@ -0,0 +1,140 @@
+package com.priti.bp2codec;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class EcgArchiveTest {
+
+    /** 30 s of ECG-like counts at 125 Hz: wander, noise and a spike every 100 samples. */
+    private static short[] strip() {
+        short[] x = new short[30 * 125];
+        java.util.Random rnd = new java.util.Random(3);
+        for (int i = 0; i < x.length; i++) {
+            double v = 2048 + 60 * Math.sin(2 * Math.PI * 0.3 * i / 125) + rnd.nextGaussian() * 3;
+            int k = i % 100;
+            if (k < 5) v += 300 * (1 - Math.abs(k - 2) / 3.0);
+            x[i] = (short) Math.round(v);
+        }
+        return x;
+    }
+
+    /**
+     * 30 s of synthetic lead-I ECG as BP2 counts (3.098 uV/LSB, 125 Hz): P-QRS-T at 72 bpm with a 1.2 mV R wave,
+     * 0.1 mV baseline wander and ~10 uV of noise.
+     */
+    private static short[] ecg() {
+        int fs = 125;
+        short[] x = new short[30 * fs];
+        java.util.Random rnd = new java.util.Random(7);
+        double countsPerMv = 1000 / 3.098;
+        double beat = 60 / 72.0;
+        for (int i = 0; i < x.length; i++) {
+            double t = (double) i / fs;
+            double ph = (t % beat) / beat;
+            double mv = 0.15 * wave(ph, 0.16, 0.02) - 0.1 * wave(ph, 0.245, 0.008) + 1.2 * wave(ph, 0.26, 0.010)
+                - 0.25 * wave(ph, 0.275, 0.008) + 0.3 * wave(ph, 0.5, 0.04) + 0.1 * Math.sin(2 * Math.PI * 0.25 * t);
+            x[i] = (short) Math.round(mv * countsPerMv + rnd.nextGaussian() * 3);
+        }
+        return x;
+    }
+
+    private static double wave(double ph, double center, double width) {
+        return Math.exp(-(ph - center) * (ph - center) / (2 * width * width));
+    }
+
+    @Test
+    public void roundTripsAndShrinks() throws IOException {
+        short[] x = strip();
+        byte[] a = EcgArchive.encode(x, x.length, 125, 3.098f, 30000L);
+        assertArrayEquals(x, EcgArchive.decode(a));
+        // Int16LE is 2 bytes per sample
+        assertTrue("archive " + a.length + " bytes", a.length * 1.7 < x.length * 2);
+    }
+
+    @Test
+    public void shrinksRealisticEcgAgainstCurrentPayloads() throws IOException {
+        short[] x = ecg();
+        byte[] a = EcgArchive.encode(x, x.length, 125, 3.098f, 30000L);
+        assertArrayEquals(x, EcgArchive.decode(a));
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < x.length; i++) json.append(i > 0 ? "," : "").append(x[i]);
+        json.append(']');
+        int int16 = x.length * 2;
+        int base64Int16 = (int16 + 2) / 3 * 4;
+        double perSample = (double) a.length / x.length;
+        // ~1.06 B/sample: ~1.9x vs Int16LE, ~2.5x vs base64 Int16 (getEcgRecord), ~3x vs a JSON array (bp2ReadFile)
+        assertTrue("bytes/sample " + perSample, perSample <= 1.1);
+        assertTrue("vs Int16LE " + (double) int16 / a.length, int16 >= 1.8 * a.length);
+        assertTrue("vs base64 " + (double) base64Int16 / a.length, base64Int16 >= 2.4 * a.length);
+        assertTrue("vs JSON " + (double) json.length() / a.length, json.length() >= 3.0 * a.length);
+    }
+
+    @Test
+    public void headerCarriesMetadata() throws IOException {
+        short[] x = strip();
+        byte[] a = EcgArchive.encode(x, x.length, 250, 3.098f, 15000L);
+        EcgArchive.Reader r = new EcgArchive.Reader(new ByteArrayInputStream(a));
+        assertEquals(250, r.sampleRate());
+        assertEquals(3.098f, r.scaleUvPerLsb(), 0f);
+        assertEquals(15000L, r.durationMs());
+    }
+
+    @Test
+    public void derivesDurationWhenUnknown() throws IOException {
+        short[] x = strip();
+        EcgArchive.Reader r = new EcgArchive.Reader(new ByteArrayInputStream(EcgArchive.encode(x, x.length, 125, 1f, 0L)));
+        r.readAll();
+        assertEquals(30000L, r.durationMs());
+    }
+
+    @Test
+    public void handlesExtremeDeltas() throws IOException {
+        short[] x = {Short.MIN_VALUE, Short.MAX_VALUE, Short.MIN_VALUE, 0, -1, 1, Short.MAX_VALUE};
+        assertArrayEquals(x, EcgArchive.decode(EcgArchive.encode(x, x.length, 125, 1f, 0L)));
+    }
+
+    @Test
+    public void emptyArchive() throws IOException {
+        assertEquals(0, EcgArchive.decode(EcgArchive.encode(new short[0], 0, 125, 1f, 0L)).length);
+    }
+
+    @Test
+    public void streamsInArbitraryChunks() throws IOException {
+        short[] x = strip();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        EcgArchive.Writer w = new EcgArchive.Writer(bos, 125, 3.098f, 30000L, 100);
+        for (int off = 0; off < x.length; off += 37) w.write(x, off, Math.min(37, x.length - off));
+        assertEquals(x.length, w.samples());
+        w.finish();
+        assertEquals(bos.size(), w.bytes());
+
+        EcgArchive.Reader r = new EcgArchive.Reader(new ByteArrayInputStream(bos.toByteArray()));
+        short[] out = new short[x.length];
+        short[] chunk = new short[53];
+        int n = 0;
+        int got;
+        while ((got = r.read(chunk, 0, chunk.length)) >= 0) {
+            System.arraycopy(chunk, 0, out, n, got);
+            n += got;
+        }
+        assertEquals(x.length, n);
+        assertArrayEquals(x, out);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedArchive() throws IOException {
+        short[] x = strip();
+        byte[] a = EcgArchive.encode(x, x.length, 125, 1f, 0L);
+        EcgArchive.decode(java.util.Arrays.copyOf(a, a.length / 2));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsForeignData() throws IOException {
+        EcgArchive.decode(new byte[32]);
+    }
+}
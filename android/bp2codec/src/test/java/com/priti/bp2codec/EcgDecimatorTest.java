@@ -0,0 +1,65 @@
+package com.priti.bp2codec;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class EcgDecimatorTest {
+
+    @Test
+    public void bucketsScaleWithWindow() {
+        // 10 s @125 Hz on 500 px: a 125-sample batch covers 50 px
+        assertEquals(50, EcgDecimator.bucketsFor(125, 500, 1250));
+        assertEquals(125, EcgDecimator.bucketsFor(125, 5000, 1250));
+        assertEquals(400, EcgDecimator.bucketsFor(7500, 400, 0));
+        assertEquals(0, EcgDecimator.bucketsFor(0, 400, 0));
+    }
+
+    @Test
+    public void minMaxKeepsPeaksInOrder() {
+        float[] src = { 0, 1, 9, 2, 0, -5, 0, 1 };
+        float[] dst = new float[8];
+        int n = EcgDecimator.minMax(src, 0, src.length, 2, dst);
+        assertEquals(4, n);
+        assertArrayEquals(new float[] { 0, 9, -5, 1 }, java.util.Arrays.copyOf(dst, n), 0f);
+    }
+
+    @Test
+    public void minMaxPassesThroughWhenNotReducing() {
+        float[] src = { 3, 1, 2, 5 };
+        float[] dst = new float[4];
+        assertEquals(4, EcgDecimator.minMax(src, 0, 4, 2, dst));
+        assertArrayEquals(src, dst, 0f);
+    }
+
+    @Test
+    public void minMaxFlatBucketEmitsOnce() {
+        float[] src = { 4, 4, 4, 4, 4, 4 };
+        float[] dst = new float[6];
+        assertEquals(2, EcgDecimator.minMax(src, 0, 6, 2, dst));
+    }
+
+    @Test
+    public void lttbKeepsEndpointsAndSpike() {
+        float[] src = new float[100];
+        src[50] = 100f;
+        int[] idx = new int[100];
+        int n = EcgDecimator.lttb(src, 0, src.length, 10, idx);
+        assertEquals(10, n);
+        assertEquals(0, idx[0]);
+        assertEquals(99, idx[n - 1]);
+        boolean spike = false;
+        for (int i = 0; i < n; i++) {
+            if (idx[i] == 50) spike = true;
+            if (i > 0) assertTrue(idx[i] > idx[i - 1]);
+        }
+        assertTrue(spike);
+    }
+
+    @Test
+    public void lttbSmallThresholdKeepsAll() {
+        int[] idx = new int[4];
+        assertEquals(4, EcgDecimator.lttb(new float[] { 1, 2, 3, 4 }, 0, 4, 2, idx));
+        assertArrayEquals(new int[] { 0, 1, 2, 3 }, idx);
+    }
+}
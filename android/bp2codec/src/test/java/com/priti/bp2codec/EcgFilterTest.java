@@ -0,0 +1,79 @@
+package com.priti.bp2codec;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class EcgFilterTest {
+
+    private static final int FS = 125;
+
+    /** Peak amplitude of a filtered sine after the filter has settled. */
+    private static double gain(EcgFilter f, double hz, int seconds) {
+        int n = seconds * FS;
+        double peak = 0;
+        for (int i = 0; i < n; i++) {
+            float y = f.process((float) (1000 * Math.sin(2 * Math.PI * hz * i / FS)));
+            if (i >= n / 2) peak = Math.max(peak, Math.abs(y));
+        }
+        return peak / 1000;
+    }
+
+    @Test
+    public void removesDcOffsetWithoutStartupTransient() {
+        EcgFilter f = new EcgFilter(FS, EcgFilter.DEFAULT_HIGH_PASS_HZ, 0);
+        for (int i = 0; i < 5 * FS; i++) {
+            assertEquals(0f, f.process(2048f), 1e-3f);
+        }
+    }
+
+    @Test
+    public void removesBaselineWander() {
+        assertTrue(gain(new EcgFilter(FS, 0.5, 0), 0.1, 60) < 0.1);
+    }
+
+    @Test
+    public void passesQrsBand() {
+        EcgFilter f = new EcgFilter(FS, 0.5, 50);
+        assertEquals(1.0, gain(f, 10, 10), 0.05);
+        f.reset();
+        assertEquals(1.0, gain(f, 20, 10), 0.1);
+    }
+
+    @Test
+    public void notchesMains() {
+        assertTrue(gain(new EcgFilter(FS, 0.5, 50), 50, 10) < 0.05);
+        assertTrue(gain(new EcgFilter(FS, 0.5, 60), 60, 10) < 0.05);
+        // Off: 50 Hz goes through
+        assertTrue(gain(new EcgFilter(FS, 0.5, 0), 50, 10) > 0.9);
+    }
+
+    @Test
+    public void notchOnlyKeepsDc() {
+        EcgFilter f = new EcgFilter(FS, 0, 50);
+        for (int i = 0; i < FS; i++) assertEquals(512f, f.process(512f), 1e-3f);
+    }
+
+    @Test
+    public void resetReproducesOutput() {
+        EcgFilter f = new EcgFilter(FS, 0.5, 50);
+        short[] in = new short[300];
+        for (int i = 0; i < in.length; i++) in[i] = (short) (1000 + 300 * Math.sin(i * 0.2) + (i % 50 == 0 ? 800 : 0));
+        float[] a = new float[in.length];
+        float[] b = new float[in.length];
+        f.process(in, 0, in.length, a, 0);
+        f.reset();
+        f.process(in, 0, in.length, b, 0);
+        assertArrayEquals(a, b, 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNotchAboveNyquist() {
+        new EcgFilter(100, 0.5, 60);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeHighPass() {
+        new EcgFilter(FS, -1, 50);
+    }
+}
@@ -0,0 +1,72 @@
+package com.priti.bp2codec;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class EcgFlowControllerTest {
+
+    private static EcgFlowController controller() {
+        EcgFlowController fc = new EcgFlowController(50, 1000, 4, 4096, 3000);
+        fc.reset(0L, 0L);
+        return fc;
+    }
+
+    @Test
+    public void idleConsumerGetsMinimumInterval() {
+        EcgFlowController fc = controller();
+        assertEquals(125, fc.poll(100, 125));
+        fc.onEmit(1, 125, 100);
+        fc.onAck(1, 120);
+        assertEquals(50, fc.intervalMs());
+        assertEquals(0, fc.poll(140, 10));
+        assertEquals(10, fc.poll(150, 10));
+    }
+
+    @Test
+    public void lagStretchesIntervalAndCoalesces() {
+        EcgFlowController fc = controller();
+        fc.onEmit(1, 100, 0);
+        fc.onEmit(2, 100, 0);
+        assertEquals(2, fc.inFlight());
+        assertEquals(200, fc.intervalMs());
+        assertEquals(0, fc.poll(100, 300));
+        assertEquals(1, fc.deferredTicks());
+        assertEquals(400, fc.poll(200, 400));
+        fc.onEmit(3, 400, 200);
+        assertEquals(400, fc.coalescedSamples());
+    }
+
+    @Test
+    public void holdsAtWindowUntilAckThenResyncsOnStall() {
+        EcgFlowController fc = controller();
+        for (int seq = 1; seq <= 4; seq++) fc.onEmit(seq, 10, 0);
+        assertEquals(0, fc.poll(50, 4095));
+        fc.onAck(2, 100);
+        assertEquals(2, fc.inFlight());
+        for (int seq = 5; seq <= 6; seq++) fc.onEmit(seq, 10, 100);
+        assertEquals(0, fc.poll(3000, 50));
+        // 3 s without an ack: the window resets and emission resumes
+        assertEquals(50, fc.poll(3100, 50));
+        assertEquals(1, fc.stalls());
+        assertEquals(0, fc.inFlight());
+    }
+
+    @Test
+    public void acksAreClampedToEmitted() {
+        EcgFlowController fc = controller();
+        fc.onEmit(3, 10, 0);
+        fc.onAck(9, 10);
+        assertEquals(0, fc.inFlight());
+        fc.onAck(1, 20);
+        assertEquals(0, fc.inFlight());
+    }
+
+    @Test
+    public void fullBatchBypassesInterval() {
+        EcgFlowController fc = new EcgFlowController(50, 1000, 4, 256, 3000);
+        fc.reset(0L, 0L);
+        fc.onEmit(1, 256, 0);
+        assertEquals(256, fc.poll(10, 300));
+    }
+}
@@ -0,0 +1,48 @@
+package com.priti.bp2codec;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class EcgRingBufferTest {
+
+    @Test
+    public void capacityRoundsUpToPowerOfTwo() {
+        assertEquals(4096, new EcgRingBuffer(4096).capacity());
+        assertEquals(8, new EcgRingBuffer(5).capacity());
+    }
+
+    @Test
+    public void wrapsAndDropsOverflow() {
+        EcgRingBuffer ring = new EcgRingBuffer(8);
+        float[] out = new float[8];
+        assertEquals(6, ring.offer(new short[] { 1, 2, 3, 4, 5, 6 }, 0, 6));
+        assertEquals(4, ring.drain(out, 4));
+        // Write position wraps past the end of the backing array
+        assertEquals(6, ring.offer(new float[] { 7, 8, 9, 10, 11, 12, 13 }, 0, 7));
+        assertEquals(8, ring.size());
+        assertEquals(8, ring.drain(out, 8));
+        assertArrayEquals(new float[] { 5, 6, 7, 8, 9, 10, 11, 12 }, out, 0f);
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    public void clearDiscardsBuffered() {
+        EcgRingBuffer ring = new EcgRingBuffer(4);
+        ring.offer(new short[] { 1, 2, 3 }, 0, 3);
+        ring.clear();
+        assertEquals(0, ring.size());
+        assertEquals(0, ring.drain(new float[4], 4));
+    }
+
+    @Test
+    public void skipDropsOldestFirst() {
+        EcgRingBuffer ring = new EcgRingBuffer(8);
+        float[] out = new float[8];
+        ring.offer(new short[] { 1, 2, 3, 4, 5 }, 0, 5);
+        assertEquals(3, ring.skip(3));
+        assertEquals(2, ring.drain(out, 8));
+        assertEquals(4f, out[0], 0f);
+        assertEquals(0, ring.skip(3));
+    }
+}
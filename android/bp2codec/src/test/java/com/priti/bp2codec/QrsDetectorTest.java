@@ -0,0 +1,79 @@
+package com.priti.bp2codec;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class QrsDetectorTest {
+
+    private static final int FS = 125;
+
+    /** Synthetic strip: triangular QRS complexes every rrSamples with baseline wander and a little noise. */
+    private static float[] strip(int seconds, int rrSamples, int firstBeat, float amplitude) {
+        float[] x = new float[seconds * FS];
+        java.util.Random rnd = new java.util.Random(7);
+        for (int i = 0; i < x.length; i++) {
+            x[i] = (float) (40 * Math.sin(2 * Math.PI * 0.3 * i / FS) + rnd.nextGaussian() * 5);
+        }
+        for (int r = firstBeat; r < x.length; r += rrSamples) {
+            // ~80 ms QRS: Q dip, tall R, S dip
+            for (int k = -5; k <= 5; k++) {
+                int i = r + k;
+                if (i < 0 || i >= x.length) continue;
+                x[i] += amplitude * Math.max(0, 1 - Math.abs(k) / 3.0f);
+            }
+            if (r - 4 >= 0) x[r - 4] -= amplitude * 0.15f;
+            if (r + 4 < x.length) x[r + 4] -= amplitude * 0.25f;
+        }
+        return x;
+    }
+
+    @Test
+    public void estimatesSteadyHeartRate() {
+        // 75 bpm = 0.8 s = 100 samples
+        float[] x = strip(20, 100, 30, 1000f);
+        QrsDetector qrs = new QrsDetector(FS);
+        int confirmed = 0;
+        for (float v : x) {
+            if (qrs.process(v)) {
+                confirmed++;
+                long s = qrs.lastBeatSample();
+                // Located within 60 ms of a true R wave
+                long offset = Math.floorMod(s - 30, 100);
+                assertTrue("beat at " + s, offset <= 8 || offset >= 92);
+            }
+        }
+        assertTrue("confirmed " + confirmed, confirmed >= 20);
+        assertEquals(75, qrs.heartRateBpm(), 2);
+    }
+
+    @Test
+    public void followsRateChangeAndIsScaleInvariant() {
+        // 62 samples ~ 121 bpm, scaled to mV
+        float[] x = strip(20, 62, 10, 1000f);
+        for (int i = 0; i < x.length; i++) x[i] *= 0.003098f;
+        QrsDetector qrs = new QrsDetector(FS);
+        for (float v : x) qrs.process(v);
+        assertEquals(121, qrs.heartRateBpm(), 3);
+    }
+
+    @Test
+    public void noHeartRateDuringLearningOrOnFlatline() {
+        QrsDetector qrs = new QrsDetector(FS);
+        for (int i = 0; i < 2 * FS; i++) assertFalse(qrs.process(0f));
+        assertEquals(0, qrs.heartRateBpm());
+        for (int i = 0; i < 5 * FS; i++) qrs.process(0f);
+        assertEquals(0, qrs.beats());
+        assertEquals(-1, qrs.lastBeatSample());
+    }
+
+    @Test
+    public void resetStartsOver() {
+        QrsDetector qrs = new QrsDetector(FS);
+        for (float v : strip(10, 100, 30, 1000f)) qrs.process(v);
+        assertTrue(qrs.heartRateBpm() > 0);
+        qrs.reset();
+        assertEquals(0, qrs.heartRateBpm());
+        assertEquals(0, qrs.samples());
+    }
+}
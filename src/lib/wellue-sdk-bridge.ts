@@ -10,6 +10,74 @@ export interface WellueDevice {
     isConnected: boolean;
     rssi?: number;
     address?: string;
+    timeToConnectedMs?: number;                 // deviceConnected only, when it closes a connect attempt
+    connectPath?: 'fast' | 'full' | 'auto';     // fast: known from the persisted registry, no discovery needed; auto: reconnect on launch
+}
+
+// Devices connected before, persisted natively (getDeviceRegistry)
+export interface RegisteredDevice {
+    address: string;
+    model?: number;
+    name?: string;
+    lastConnectMs: number;
+    attempts: number;
+    successes: number;
+    successRate: number;
+    lastTimeToConnectMs?: number;
+    avgTimeToConnectMs?: number;
+    lastPath?: 'fast' | 'full' | 'auto';
+}
+
+// Merged native scan table (vendor + system scanner), one entry per MAC
+export interface ScanTableDevice {
+    deviceId: string;
+    address: string;
+    deviceName: string;
+    model: number | 'unknown';
+    rssi?: number;            // EWMA-smoothed
+    lastRssi?: number;
+    firstSeenMs: number;
+    lastSeenMs: number;
+    adverts: number;
+    sources: Array<'vendor' | 'system'>;
+}
+
+export interface ScanTableDelta {
+    seq: number;
+    devices: ScanTableDevice[];   // entries that changed since the last delta
+    removed: string[];            // MACs not heard from for 15 s
+    size: number;
+}
+
+// startScan power options; defaults: burst (10 s low latency, then balanced), auto-stop after 120 s
+export interface ScanOptions {
+    mode?: 'burst' | 'balanced' | 'opportunistic';
+    burstSec?: number;
+    timeoutSec?: number;        // 0 = scan until stopScan
+    targetAddress?: string;     // stop as soon as this MAC is seen
+    reportDelayMs?: number;     // hardware batching for balanced phases where supported; 0 = off
+    emitHz?: number;            // deviceTableDelta rate
+}
+
+export interface ScanMetrics {
+    active: boolean;
+    mode?: string;
+    phase?: 'lowLatency' | 'balanced' | 'opportunistic' | 'idle';
+    sessionMs?: number;
+    batching: boolean;
+    sessions: number;
+    wakeups: number;            // scan callbacks delivered to the app
+    results: number;
+    batches: number;
+    failures: number;
+    lowLatencyMs: number;
+    balancedMs: number;
+    opportunisticMs: number;
+    radioMs: number;            // lowLatencyMs + balancedMs
+    lastSessionMs: number;
+    lastTimeToTargetMs?: number;
+    lastStopReason?: 'manual' | 'timeout' | 'targetFound' | 'failed';
+    stops: Record<string, number>;
 }
 
 // BP measurement interfaces
@@ -53,12 +121,59 @@ export interface ECGData {
     rhythm: 'normal' | 'irregular' | 'bradycardia' | 'tachycardia' | 'afib';
     sampleRate?: number;
     mvPerCount?: number;
+    beats?: number[];             // native QRS detections, ms since ECG start
+    detectedHeartRate?: number;   // rolling HR from the native QRS detector
+    output?: ECGOutput;           // what `waveform` holds (see setEcgFilter)
+    filteredWaveform?: number[];  // output 'both' only
+    deviceId?: string;            // MAC of the device this batch came from
+}
+
+export type ECGOutput = 'raw' | 'filtered' | 'both';
+
+// Opt-in binary ECG batches (subscribe to 'ecgDataBinary' instead of 'ecgData')
+export interface ECGBinaryData {
+    base64Int16?: string;      // little-endian Int16 raw counts
+    base64Float32?: string;    // little-endian Float32 when the SDK delivers floats
+    count: number;
+    seq: number;
+    sampleRate: number;
+    mvPerCount: number;
+    heartRate?: number;
+    heartRateSource?: 'qrs';
+    beats?: number[];
+    detectedHeartRate?: number;
+    output?: ECGOutput;
+    filteredBase64Int16?: string;   // output 'both' only
+    filteredBase64Float32?: string;
+    filteredCount?: number;
+    deviceId?: string;
+}
+
+// Per-device RT session, as listed in getRtDecodeStats().devices
+export interface RtSessionStats {
+    deviceId?: string;            // absent for a session bound only to a model (a link this plugin did not open)
+    model: number;
+    state: 'connecting' | 'connected' | 'disconnected';
+    bpState: string;
+    ecgMeasuring: boolean;
+    queueDepth: number;
+    queueHighWater: number;
+    packetsEnqueued: number;
+    packetsDropped: number;
+    packetsDecoded: number;
+    avgQueueWaitUs: number;
+    avgDecodeUs: number;
+    maxDecodeUs: number;
+    [key: string]: unknown;
 }
 
 // Callback interfaces
 export interface WellueSDKCallbacks {
     onDeviceFound?: (device: WellueDevice) => void;
+    onDeviceTableDelta?: (delta: ScanTableDelta) => void;
+    onScanStopped?: (reason: 'manual' | 'timeout' | 'targetFound' | 'failed', metrics?: ScanMetrics) => void;
     onDeviceConnected?: (device: WellueDevice) => void;
+    onDeviceConnectFailed?: (deviceId: string, reason: 'timeout' | 'disconnected') => void;
     onDeviceDisconnected?: (deviceId: string) => void;
     onBPMeasurement?: (measurement: BPMeasurement) => void;
     onBPProgress?: (progress: BPProgress) => void;
@@ -75,23 +190,120 @@ export interface WellueSDKCallbacks {
 export interface WellueSDKPlugin {
     initialize(): Promise<any>;
     isBluetoothEnabled(): Promise<{ enabled: boolean }>;
-    startScan(): Promise<any>;
+    startScan(options?: ScanOptions): Promise<any>;
     stopScan(): Promise<any>;
+    getScanMetrics?(): Promise<ScanMetrics>;
+    getScanTable?(): Promise<{ devices: ScanTableDevice[]; scanning: boolean; advertisements: number; deltas: number; deviceFoundEvents: number; emitIntervalMs: number }>;
+    // The vendor SDK holds one link per model: a BP2 and a BP2W can be connected together, but a second
+    // cuff of an already-connected model is rejected until the first is disconnected
     connect(options: { address: string }): Promise<any>;
     disconnect(options?: { address?: string }): Promise<any>;
+    getDeviceRegistry?(): Promise<{ loaded: boolean; devices: RegisteredDevice[] }>;
+    forgetDevice?(options: { address: string }): Promise<any>;
     getBatteryLevel(options: { address: string }): Promise<any>;
     getDeviceInfo?(): Promise<any>;
-    startBPMeasurement?(): Promise<any>;
-    startECGMeasurement?(): Promise<any>;
+    // { address? } targets one device (at most one per model, see connect); without it the most recently connected one
+    startBPMeasurement?(options?: { address?: string }): Promise<any>;
+    startECGMeasurement?(options?: { address?: string }): Promise<any>;
     startRtTaskForConnectedDevice?(): Promise<any>;
-    stopMeasurement?(): Promise<any>;
+    stopMeasurement?(options?: { address?: string }): Promise<any>;
     addListener(eventName: string, listenerFunc: (event: any) => void): any;
     removeAllListeners?(): Promise<any>;
     getBondedDevices?(): Promise<{ devices: Array<{ name: string; address: string }> }>;
     isDeviceConnected?(options: { address: string }): Promise<{ connected: boolean }>; 
     getConnectedDevices?(): Promise<{ devices: Array<{ name: string; address: string }> }>;
     getBp2FileList?(options: { address: string }): Promise<{ files: Array<{ fileName: string; fileType?: number }> }>;
-    bp2ReadFile?(options: { address: string; fileName: string }): Promise<{ fileType?: number; fileContent?: string }>;
+    bp2ReadFile?(options: { address: string; fileName: string; stream?: boolean; chunkSize?: number; useCache?: boolean; timeoutMs?: number; maxRetries?: number; displayWidth?: number; decimation?: 'minmax' | 'lttb'; format?: 'counts' | 'archive' }): Promise<{ fileType?: number; fileContent?: string; streamed?: boolean; length?: number; chunks?: number; cached?: boolean; waveformCounts?: number[]; waveformIndices?: number[]; decimation?: 'minmax' | 'lttb'; sourceSamples?: number; waveformArchive?: string; archiveBytes?: number; sampleCount?: number }>;
+    getBp2CacheStats?(): Promise<BP2CacheStats>;
+    clearBp2Cache?(): Promise<void>;
+    syncNewRecords?(options?: { address?: string; includeContent?: boolean }): Promise<BP2SyncResult>;
+    resetBp2SyncManifest?(options?: { address?: string }): Promise<void>;
+    getBp2DownloadStats?(): Promise<BP2DownloadStats>;
+    getRtDecodeStats?(options?: { address?: string }): Promise<Record<string, any> & { devices?: RtSessionStats[] }>;
+    // With flow control enabled, ack the highest ecgData/ecgDataBinary seq rendered, per device; cadence adapts to the lag.
+    // Flow control, display and filter settings apply to every device
+    setEcgFlowControl?(options: { enabled: boolean; minIntervalMs?: number; maxIntervalMs?: number; maxInFlight?: number }): Promise<{ enabled: boolean; seq: number }>;
+    ackEcg?(options: { seq: number; address?: string }): Promise<void>;
+    // Live ecgData batches are reduced to ~1-2 points per pixel of a strip `width` px wide showing windowSec seconds; width 0 = off
+    setEcgDisplay?(options: { width: number; windowSec?: number; mode?: 'minmax' | 'lttb' }): Promise<{ width: number; windowSec: number; mode: 'minmax' | 'lttb' }>;
+    setEcgFilter?(options: { highPassHz?: number; notchHz?: 0 | 50 | 60; output?: ECGOutput }): Promise<{ highPassHz: number; notchHz: number; output: ECGOutput }>;
+    setDiagnostics?(options: { level: 'off' | 'sampled' | 'full'; sampleEvery?: number }): Promise<WellueDiagnostics>;
+    getDiagnostics?(): Promise<WellueDiagnostics>;
+}
+
+// Emitted as "bp2FileChunk" when bp2ReadFile is called with stream: true; data is base64 of bytes [offset, offset + length)
+export interface BP2FileChunk {
+    fileName: string;
+    kind: 'content' | 'waveform' | 'archive';   // waveform = Int16LE counts, archive = EcgArchive (decodeEcgArchive)
+    seq: number;
+    offset: number;
+    length: number;
+    total: number;
+    last: boolean;
+    data: string;
+}
+
+// Emitted as "bp2SyncFile" once per new file during syncNewRecords
+export interface BP2SyncFile {
+    address: string;
+    fileName: string;
+    seq: number;
+    total: number;
+    ok: boolean;
+    error?: string;
+    cached: boolean;
+    bytes: number;
+    durationMs: number;
+    bytesPerSec: number;
+    totalBytes: number;
+    elapsedMs: number;
+    avgBytesPerSec: number;
+    fileType?: number;
+    fileContent?: string;
+}
+
+export interface BP2SyncResult {
+    address: string;
+    deviceFiles: number;
+    newFiles: number;
+    synced: string[];
+    failed: string[];
+    bytes: number;
+    durationMs: number;
+    bytesPerSec: number;
+}
+
+export interface BP2DownloadStats {
+    queued: number;
+    inFlight: number;
+    devices: Array<{ address: string; queued: number; inFlight?: string; attempt?: number; inFlightMs?: number }>;
+    enqueued: number;
+    joined: number;
+    completed: number;
+    failed: number;
+    retries: number;
+    timeouts: number;
+    strayReplies: number;
+    bytes: number;
+    avgBytesPerSec: number;
+    lastBytesPerSec: number;
+    avgQueueWaitMs: number;
+}
+
+export interface BP2CacheStats {
+    entries: number;
+    bytes: number;
+    maxBytes: number;
+    hits: number;
+    misses: number;
+    evictions: number;
+}
+
+export interface WellueDiagnostics {
+    level: 'off' | 'sampled' | 'full';
+    sampleEvery: number;
+    packets: number;
+    packetsTraced: number;
 }
 
 // Register the native plugin
@@ -706,6 +918,16 @@ class NativeWelluePlugin {
             this.callbacks.onDeviceFound?.(device);
         });
 
+        // Coalesced scan table updates (RSSI/last-seen changes, stale devices)
+        this.nativePlugin.addListener('deviceTableDelta', (data: ScanTableDelta) => {
+            this.callbacks.onDeviceTableDelta?.(data);
+        });
+
+        // Scan session ended (stopScan, timeout, target found)
+        this.nativePlugin.addListener('scanStopped', (data: any) => {
+            this.callbacks.onScanStopped?.(data.reason, data.metrics);
+        });
+
         // Device connected event
         this.nativePlugin.addListener('deviceConnected', (data: any) => {
             const device: WellueDevice = {
@@ -714,7 +936,9 @@ class NativeWelluePlugin {
                 model: data.model || 'BP2',
                 battery: data.battery,
                 isConnected: true,
-                address: data.address || data.deviceId
+                address: data.address || data.deviceId,
+                timeToConnectedMs: data.timeToConnectedMs,
+                connectPath: data.connectPath
             };
             this.connectedDevices.set(data.deviceId, device);
             this.activeDeviceId = data.deviceId;
@@ -722,6 +946,11 @@ class NativeWelluePlugin {
             this.callbacks.onDeviceConnected?.(device);
         });
 
+        // Connect attempt timed out or the link dropped before it came up
+        this.nativePlugin.addListener('deviceConnectFailed', (data: any) => {
+            this.callbacks.onDeviceConnectFailed?.(data?.deviceId || '', data?.reason);
+        });
+
         // Device disconnected event
         this.nativePlugin.addListener('deviceDisconnected', (data: any) => {
             if (data?.deviceId) {
@@ -828,6 +1057,10 @@ class NativeWelluePlugin {
                 rhythm: this.getRhythmFromDiagnosis(data.diagnosis),
                 sampleRate: data.sampleRate || 125,
                 mvPerCount: data.mvPerCount || 1,
+                beats: data.beats,
+                detectedHeartRate: data.detectedHeartRate,
+                output: data.output,
+                filteredWaveform: data.filteredWaveform,
             };
             this.callbacks.onECGData?.(ecgData);
         });
@@ -872,7 +1105,7 @@ class NativeWelluePlugin {
     // 🚀 REMOVED: Old inferBPStatus method that was causing incorrect status inference
     // Now using enhanced phase detection in BPMeasurementManager
 
-    async startScan(): Promise<void> {
+    async startScan(options?: ScanOptions): Promise<void> {
         if (!this.isInitialized) {
             throw new Error('Wellue SDK not initialized');
         }
@@ -883,7 +1116,7 @@ class NativeWelluePlugin {
         }
 
         try {
-            await this.nativePlugin.startScan();
+            await this.nativePlugin.startScan(options);
         } catch (error) {
             console.error('Failed to start scan:', error);
             throw error;
@@ -965,7 +1198,7 @@ class NativeWelluePlugin {
             this.bpManager.setDevice(deviceId);
             
             // Start the measurement
-            const result = await this.nativePlugin.startBPMeasurement?.();
+            const result = await this.nativePlugin.startBPMeasurement?.({ address: deviceId });
             console.error('🚨 Native call completed, result:', result);
             
             console.log(`BP measurement started for device: ${deviceId}`);
@@ -987,7 +1220,7 @@ class NativeWelluePlugin {
         }
 
         try {
-            await this.nativePlugin.startECGMeasurement?.();
+            await this.nativePlugin.startECGMeasurement?.({ address: deviceId });
         } catch (error) {
             console.error(`Failed to start ECG measurement for device ${deviceId}:`, error);
             throw error;
@@ -1008,7 +1241,7 @@ class NativeWelluePlugin {
 
     async stopLive(deviceId: string): Promise<void> {
         try {
-            await this.nativePlugin.stopMeasurement?.();
+            await this.nativePlugin.stopMeasurement?.({ address: deviceId });
             this.bpManager.reset();
         } catch (error) {
             console.error('Failed to stop live measurement:', error);
@@ -1131,8 +1364,8 @@ export class WellueSDKBridge {
         this.isInitialized = true;
     }
 
-    async startScan(): Promise<void> {
-        return this.plugin.startScan();
+    async startScan(options?: ScanOptions): Promise<void> {
+        return this.plugin.startScan(options);
     }
 
     async stopScan(): Promise<void> {
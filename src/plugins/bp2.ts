@@ -6,15 +6,28 @@ export interface Bp2RecordList {
 
 export interface Bp2EcgResult {
     base64Int16?: string;      // if present: raw ADC data
+    archiveBase64?: string;    // format 'archive': EcgArchive of the raw ADC data (see decodeEcgArchive)
+    archiveBytes?: number;
+    sampleCount?: number;
     mvFloats?: number[];       // if present: already in mV
     sampleRate: number;        // 125 Hz
     scaleUvPerLsb?: number;    // 3.098 when base64Int16 is used
     durationSec?: number;
 }
 
+export interface Bp2ReplyStats {
+    pending: number;      // calls waiting on a device reply
+    observers: number;    // long-lived vendor event observers (constant)
+    replies: number;
+    coalesced: number;    // calls that joined an identical pending request
+    timeouts: number;
+    unmatched: number;    // events with nobody waiting
+}
+
 export interface Bp2Plugin {
     listEcgRecords(): Promise<Bp2RecordList>;
-    getEcgRecord(options: { recordId: string }): Promise<Bp2EcgResult>;
+    getEcgRecord(options: { recordId: string; format?: 'int16' | 'archive' }): Promise<Bp2EcgResult>;
+    getReplyStats(): Promise<Bp2ReplyStats>;
 }
 
 export const Bp2 = registerPlugin<Bp2Plugin>('Bp2');
@@ -27,6 +40,65 @@ export function base64ToInt16Array(b64: string): Int16Array {
     return new Int16Array(bytes.buffer);
 }
 
+export interface EcgArchive {
+    samples: Int16Array;
+    sampleRate: number;
+    scaleUvPerLsb: number;
+    durationMs: number;
+}
+
+// Decodes a native EcgArchive: 16-byte header, then blocks of zigzag varint deltas (see EcgArchive.java)
+export function decodeEcgArchive(input: string | Uint8Array): EcgArchive {
+    let bytes: Uint8Array;
+    if (typeof input === 'string') {
+        const bin = atob(input);
+        bytes = new Uint8Array(bin.length);
+        for (let i = 0; i < bin.length; i++) bytes[i] = bin.charCodeAt(i);
+    } else {
+        bytes = input;
+    }
+    const view = new DataView(bytes.buffer, bytes.byteOffset, bytes.byteLength);
+    if (bytes.length < 16 || view.getUint32(0, true) !== 0x5A474345) throw new Error('Not an ECG archive');
+    if (bytes[4] !== 1) throw new Error(`Unsupported ECG archive version ${bytes[4]}`);
+    const sampleRate = view.getUint16(6, true);
+    const scaleUvPerLsb = view.getFloat32(8, true);
+    let durationMs = view.getUint32(12, true);
+    let pos = 16;
+    const varint = (): number => {
+        let v = 0;
+        let mul = 1;
+        for (;;) {
+            if (pos >= bytes.length) throw new Error('Truncated ECG archive');
+            const b = bytes[pos++];
+            v += (b & 0x7f) * mul;
+            if ((b & 0x80) === 0) return v;
+            mul *= 128;
+        }
+    };
+    const unzigzag = (v: number): number => (v % 2 === 0 ? v / 2 : -(v + 1) / 2);
+    let samples = new Int16Array(Math.max(16, Math.min(1 << 20, Math.floor(durationMs * sampleRate / 1000))));
+    let n = 0;
+    for (;;) {
+        const count = varint();
+        if (count === 0) break;
+        const end = varint() + pos;
+        if (n + count > samples.length) {
+            const grown = new Int16Array(Math.max(samples.length * 2, n + count));
+            grown.set(samples.subarray(0, n));
+            samples = grown;
+        }
+        let prev = 0;
+        for (let i = 0; i < count; i++) {
+            prev = i === 0 ? unzigzag(varint()) : prev + unzigzag(varint());
+            samples[n++] = prev;
+        }
+        if (pos !== end) throw new Error('Malformed ECG archive block');
+    }
+    if (varint() !== n) throw new Error('ECG archive sample count mismatch');
+    if (durationMs === 0 && sampleRate > 0) durationMs = Math.floor(n * 1000 / sampleRate);
+    return { samples: samples.slice(0, n), sampleRate, scaleUvPerLsb, durationMs };
+}
+
 // Helper to convert Int16Array to mV values
 export function int16ArrayToMv(int16Array: Int16Array, scaleUvPerLsb: number = 3.098): Float32Array {
     const mvPerLsb = scaleUvPerLsb / 1000; // Convert μV to mV
@@ -39,7 +111,10 @@ export function int16ArrayToMv(int16Array: Int16Array, scaleUvPerLsb: number = 3
 
 // Main helper to get ECG data in mV format regardless of source
 export function getEcgDataInMv(result: Bp2EcgResult): { samples: Float32Array; sampleRate: number } {
-    if (result.base64Int16) {
+    if (result.archiveBase64) {
+        const archive = decodeEcgArchive(result.archiveBase64);
+        return { samples: int16ArrayToMv(archive.samples, archive.scaleUvPerLsb), sampleRate: archive.sampleRate };
+    } else if (result.base64Int16) {
         // Convert from Int16 ADC data
         const int16Array = base64ToInt16Array(result.base64Int16);
         const scale = result.scaleUvPerLsb || 3.098;